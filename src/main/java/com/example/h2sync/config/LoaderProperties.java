@@ -0,0 +1,587 @@
+package com.example.h2sync.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+@Component
+@ConfigurationProperties(prefix = "loader")
+public class LoaderProperties {
+
+    public enum RefreshMode {
+        /** Drop and reload every object in place (original behaviour). */
+        DIRECT,
+        /** Load into a staging schema and swap it in with a schema rename once the load succeeded. */
+        SHADOW
+    }
+
+    private RefreshMode refreshMode = RefreshMode.DIRECT;
+    private String targetSchema = "";
+    private String stagingSuffix = "_STAGE";
+    private String previousSuffix = "_PREV";
+    private final Incremental incremental = new Incremental();
+    private final Chunking chunking = new Chunking();
+    private final Pipeline pipeline = new Pipeline();
+    private final Constraints constraints = new Constraints();
+    private final ChangeDetection changeDetection = new ChangeDetection();
+    private final Batching batching = new Batching();
+    private final Lobs lobs = new Lobs();
+    private final Spill spill = new Spill();
+    private final Report report = new Report();
+    private final Copy copy = new Copy();
+    private final Jobs jobs = new Jobs();
+
+    public RefreshMode getRefreshMode() {
+        return refreshMode;
+    }
+
+    public void setRefreshMode(RefreshMode refreshMode) {
+        this.refreshMode = refreshMode;
+    }
+
+    public String getTargetSchema() {
+        return targetSchema;
+    }
+
+    public void setTargetSchema(String targetSchema) {
+        this.targetSchema = targetSchema;
+    }
+
+    public String getStagingSuffix() {
+        return stagingSuffix;
+    }
+
+    public void setStagingSuffix(String stagingSuffix) {
+        this.stagingSuffix = stagingSuffix;
+    }
+
+    public String getPreviousSuffix() {
+        return previousSuffix;
+    }
+
+    public void setPreviousSuffix(String previousSuffix) {
+        this.previousSuffix = previousSuffix;
+    }
+
+    public Incremental getIncremental() {
+        return incremental;
+    }
+
+    public Chunking getChunking() {
+        return chunking;
+    }
+
+    public Pipeline getPipeline() {
+        return pipeline;
+    }
+
+    public Constraints getConstraints() {
+        return constraints;
+    }
+
+    public ChangeDetection getChangeDetection() {
+        return changeDetection;
+    }
+
+    public Batching getBatching() {
+        return batching;
+    }
+
+    public Lobs getLobs() {
+        return lobs;
+    }
+
+    public Spill getSpill() {
+        return spill;
+    }
+
+    public Report getReport() {
+        return report;
+    }
+
+    public Copy getCopy() {
+        return copy;
+    }
+
+    public Jobs getJobs() {
+        return jobs;
+    }
+
+    public static class Batching {
+        /** Tune batch size, fetch size and commit interval per table from measured row width and H2 latency. */
+        private boolean adaptive = true;
+        private int minRows = 100;
+        private int maxRows = 20_000;
+        /** Upper bound for the estimated heap size of one batch. */
+        private long targetBatchBytes = 4L * 1024 * 1024;
+        /** Execute time per batch the controller aims for. */
+        private long targetBatchMs = 500;
+        private int maxFetchSize = 10_000;
+        /** Commit at most every this many batches when commits are slow compared to the inserts. */
+        private int maxCommitInterval = 16;
+        /** Fixed values per table, typically copied from the batching section of the migration report. */
+        private final Map<String, PinnedBatch> pinned = new LinkedHashMap<>();
+
+        public boolean isAdaptive() {
+            return adaptive;
+        }
+
+        public void setAdaptive(boolean adaptive) {
+            this.adaptive = adaptive;
+        }
+
+        public int getMinRows() {
+            return minRows;
+        }
+
+        public void setMinRows(int minRows) {
+            this.minRows = minRows;
+        }
+
+        public int getMaxRows() {
+            return maxRows;
+        }
+
+        public void setMaxRows(int maxRows) {
+            this.maxRows = maxRows;
+        }
+
+        public long getTargetBatchBytes() {
+            return targetBatchBytes;
+        }
+
+        public void setTargetBatchBytes(long targetBatchBytes) {
+            this.targetBatchBytes = targetBatchBytes;
+        }
+
+        public long getTargetBatchMs() {
+            return targetBatchMs;
+        }
+
+        public void setTargetBatchMs(long targetBatchMs) {
+            this.targetBatchMs = targetBatchMs;
+        }
+
+        public int getMaxFetchSize() {
+            return maxFetchSize;
+        }
+
+        public void setMaxFetchSize(int maxFetchSize) {
+            this.maxFetchSize = maxFetchSize;
+        }
+
+        public int getMaxCommitInterval() {
+            return maxCommitInterval;
+        }
+
+        public void setMaxCommitInterval(int maxCommitInterval) {
+            this.maxCommitInterval = maxCommitInterval;
+        }
+
+        public Map<String, PinnedBatch> getPinned() {
+            return pinned;
+        }
+
+        public PinnedBatch findPinned(String table) {
+            for (Map.Entry<String, PinnedBatch> entry : pinned.entrySet()) {
+                if (entry.getKey().trim().toUpperCase(Locale.ROOT).equals(table)) {
+                    return entry.getValue();
+                }
+            }
+            return null;
+        }
+    }
+
+    public static class Lobs {
+        /** Bind large BLOB/CLOB values as streams from the Oracle locator instead of reading them onto the heap. */
+        private boolean streaming = true;
+        /** LOBs up to this many bytes (characters for CLOBs) are still read into memory. */
+        private long inMemoryThreshold = 1024L * 1024;
+        /** A batch is written as soon as its rows carry this many bytes, even when it holds fewer rows. */
+        private long maxBatchBytes = 32L * 1024 * 1024;
+
+        public boolean isStreaming() {
+            return streaming;
+        }
+
+        public void setStreaming(boolean streaming) {
+            this.streaming = streaming;
+        }
+
+        public long getInMemoryThreshold() {
+            return inMemoryThreshold;
+        }
+
+        public void setInMemoryThreshold(long inMemoryThreshold) {
+            this.inMemoryThreshold = inMemoryThreshold;
+        }
+
+        public long getMaxBatchBytes() {
+            return maxBatchBytes;
+        }
+
+        public void setMaxBatchBytes(long maxBatchBytes) {
+            this.maxBatchBytes = maxBatchBytes;
+        }
+    }
+
+    public static class Spill {
+        /** Keep oversized LONG, LONG RAW and non-streamed LOB values in a memory-mapped temp file instead of the heap. */
+        private boolean enabled = true;
+        /** Values longer than this many bytes (characters for text) are spilled. */
+        private long threshold = 256L * 1024;
+        /** Directory of the spill files; the JVM temp directory when empty. */
+        private String dir = "";
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(long threshold) {
+            this.threshold = threshold;
+        }
+
+        public String getDir() {
+            return dir;
+        }
+
+        public void setDir(String dir) {
+            this.dir = dir;
+        }
+    }
+
+    public static class PinnedBatch {
+        private int rows;
+        private int fetchSize;
+        private int commitInterval = 1;
+
+        public int getRows() {
+            return rows;
+        }
+
+        public void setRows(int rows) {
+            this.rows = rows;
+        }
+
+        public int getFetchSize() {
+            return fetchSize;
+        }
+
+        public void setFetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+        }
+
+        public int getCommitInterval() {
+            return commitInterval;
+        }
+
+        public void setCommitInterval(int commitInterval) {
+            this.commitInterval = commitInterval;
+        }
+    }
+
+    public static class ChangeDetection {
+        public enum Strategy {
+            /** ALL_TAB_MODIFICATIONS counters plus ALL_OBJECTS.LAST_DDL_TIME; cheap, but only as fresh as the last flush. */
+            MODIFICATIONS,
+            /** MAX(ORA_ROWSCN) per table plus LAST_DDL_TIME; exact, but scans every table. */
+            ROWSCN
+        }
+
+        /** Skip tables whose Oracle change signature matches the one recorded after their last successful copy. */
+        private boolean enabled = false;
+        private Strategy strategy = Strategy.MODIFICATIONS;
+        /** Call DBMS_STATS.FLUSH_DATABASE_MONITORING_INFO before reading ALL_TAB_MODIFICATIONS. */
+        private boolean flushMonitoringInfo = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Strategy getStrategy() {
+            return strategy;
+        }
+
+        public void setStrategy(Strategy strategy) {
+            this.strategy = strategy;
+        }
+
+        public boolean isFlushMonitoringInfo() {
+            return flushMonitoringInfo;
+        }
+
+        public void setFlushMonitoringInfo(boolean flushMonitoringInfo) {
+            this.flushMonitoringInfo = flushMonitoringInfo;
+        }
+    }
+
+    public static class Report {
+        /** Threads for the row counts the migration report still has to run after a refresh. */
+        private int threads = 4;
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+    }
+
+    public static class Jobs {
+        /** Finished refresh jobs kept for {@code GET /api/loader/jobs}. */
+        private int history = 20;
+        /** How long shutdown waits for cancelled refreshes to roll back. */
+        private long shutdownWaitMs = 30000;
+
+        public int getHistory() {
+            return history;
+        }
+
+        public void setHistory(int history) {
+            this.history = history;
+        }
+
+        public long getShutdownWaitMs() {
+            return shutdownWaitMs;
+        }
+
+        public void setShutdownWaitMs(long shutdownWaitMs) {
+            this.shutdownWaitMs = shutdownWaitMs;
+        }
+    }
+
+    public static class Copy {
+        public enum Engine {
+            /** Stream the rows through the loader and insert them with JDBC batches (original behaviour). */
+            JDBC,
+            /** Spool the rows to a compressed CSV file and load it with {@code INSERT ... DIRECT SELECT ... FROM CSVREAD}. */
+            CSV,
+            /** Let H2 read the rows itself through a {@code CREATE LINKED TABLE} and {@code INSERT ... DIRECT SELECT}. */
+            LINKED
+        }
+
+        /** Engine of every table without an entry in {@code tables}. */
+        private Engine engine = Engine.JDBC;
+        /** Engine per Oracle table name. */
+        private final Map<String, Engine> tables = new LinkedHashMap<>();
+        /** Directory of the CSV spool files; the spill directory when empty. */
+        private String spoolDir = "";
+        /** Rows H2 fetches per round trip through a linked table. */
+        private int linkedFetchSize = 1000;
+
+        public Engine getEngine() {
+            return engine;
+        }
+
+        public void setEngine(Engine engine) {
+            this.engine = engine;
+        }
+
+        public Map<String, Engine> getTables() {
+            return tables;
+        }
+
+        public String getSpoolDir() {
+            return spoolDir;
+        }
+
+        public void setSpoolDir(String spoolDir) {
+            this.spoolDir = spoolDir;
+        }
+
+        public int getLinkedFetchSize() {
+            return linkedFetchSize;
+        }
+
+        public void setLinkedFetchSize(int linkedFetchSize) {
+            this.linkedFetchSize = linkedFetchSize;
+        }
+
+        /**
+         * Returns the engine copying {@code table}, matched case-insensitively against the keys of {@code tables}.
+         */
+        public Engine engineFor(String table) {
+            for (Map.Entry<String, Engine> entry : tables.entrySet()) {
+                if (entry.getKey().trim().toUpperCase(Locale.ROOT).equals(table)) {
+                    return entry.getValue();
+                }
+            }
+            return engine;
+        }
+    }
+
+    public static class Constraints {
+        /** Create tables without PK/UNIQUE constraints and add them once the data is loaded. */
+        private boolean deferred = true;
+        /** Threads that build deferred constraints while other tables are still loading. */
+        private int threads = 2;
+
+        public boolean isDeferred() {
+            return deferred;
+        }
+
+        public void setDeferred(boolean deferred) {
+            this.deferred = deferred;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+    }
+
+    public static class Pipeline {
+        /** Overlap the Oracle fetch with the H2 insert by writing batches on a separate thread. */
+        private boolean enabled = true;
+        /** Filled batches that may wait for the writer; bounds memory to (depth + 1) batches per table. */
+        private int depth = 2;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public void setDepth(int depth) {
+            this.depth = depth;
+        }
+    }
+
+    public static class Chunking {
+        public enum Strategy {
+            /** {@code ORA_HASH} bucket over the primary key (or ROWID when there is none). */
+            HASH,
+            /** Contiguous ranges of a single numeric primary key; falls back to HASH otherwise. */
+            RANGE
+        }
+
+        private boolean enabled = true;
+        private Strategy strategy = Strategy.HASH;
+        private int chunks = 8;
+        private long minRows = 5_000_000L;
+        /** Chunk worker threads; 0 uses loader.threads. */
+        private int threads = 0;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Strategy getStrategy() {
+            return strategy;
+        }
+
+        public void setStrategy(Strategy strategy) {
+            this.strategy = strategy;
+        }
+
+        public int getChunks() {
+            return chunks;
+        }
+
+        public void setChunks(int chunks) {
+            this.chunks = chunks;
+        }
+
+        public long getMinRows() {
+            return minRows;
+        }
+
+        public void setMinRows(long minRows) {
+            this.minRows = minRows;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+    }
+
+    public static class Incremental {
+        /** Oracle table name (case-insensitive) to its incremental settings. */
+        private Map<String, IncrementalTable> tables = new LinkedHashMap<>();
+
+        public Map<String, IncrementalTable> getTables() {
+            return tables;
+        }
+
+        public void setTables(Map<String, IncrementalTable> tables) {
+            this.tables = tables;
+        }
+
+        public IncrementalTable find(String table) {
+            if (table == null || tables == null) {
+                return null;
+            }
+            for (Map.Entry<String, IncrementalTable> entry : tables.entrySet()) {
+                if (entry.getKey().toUpperCase(Locale.ROOT).equals(table.toUpperCase(Locale.ROOT))) {
+                    IncrementalTable settings = entry.getValue();
+                    return settings != null && settings.getWatermarkColumn() != null
+                            && !settings.getWatermarkColumn().isBlank() ? settings : null;
+                }
+            }
+            return null;
+        }
+    }
+
+    public static class IncrementalTable {
+        private String watermarkColumn;
+        private String softDeleteColumn;
+        private String softDeleteValue = "Y";
+
+        public String getWatermarkColumn() {
+            return watermarkColumn;
+        }
+
+        public void setWatermarkColumn(String watermarkColumn) {
+            this.watermarkColumn = watermarkColumn;
+        }
+
+        public String getSoftDeleteColumn() {
+            return softDeleteColumn;
+        }
+
+        public void setSoftDeleteColumn(String softDeleteColumn) {
+            this.softDeleteColumn = softDeleteColumn;
+        }
+
+        public String getSoftDeleteValue() {
+            return softDeleteValue;
+        }
+
+        public void setSoftDeleteValue(String softDeleteValue) {
+            this.softDeleteValue = softDeleteValue;
+        }
+    }
+}
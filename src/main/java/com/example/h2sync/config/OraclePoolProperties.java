@@ -0,0 +1,76 @@
+package com.example.h2sync.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "oracle.pool")
+public class OraclePoolProperties {
+    /** Use a HikariCP pool for Oracle; false opens a new physical connection per request. */
+    private boolean enabled = true;
+    /** 0 sizes the pool for the loader: table and chunk workers, or report threads if more, + the coordinating thread. */
+    private int maximumPoolSize = 0;
+    private long connectionTimeoutMs = 30_000L;
+    private long idleTimeoutMs = 600_000L;
+    private long maxLifetimeMs = 1_800_000L;
+    /** Open one connection per worker concurrently before a refresh starts. */
+    private boolean prewarm = true;
+    /** ojdbc implicit statement cache per connection; 0 disables it. */
+    private int statementCacheSize = 50;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    public void setMaximumPoolSize(int maximumPoolSize) {
+        this.maximumPoolSize = maximumPoolSize;
+    }
+
+    public long getConnectionTimeoutMs() {
+        return connectionTimeoutMs;
+    }
+
+    public void setConnectionTimeoutMs(long connectionTimeoutMs) {
+        this.connectionTimeoutMs = connectionTimeoutMs;
+    }
+
+    public long getIdleTimeoutMs() {
+        return idleTimeoutMs;
+    }
+
+    public void setIdleTimeoutMs(long idleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    public long getMaxLifetimeMs() {
+        return maxLifetimeMs;
+    }
+
+    public void setMaxLifetimeMs(long maxLifetimeMs) {
+        this.maxLifetimeMs = maxLifetimeMs;
+    }
+
+    public boolean isPrewarm() {
+        return prewarm;
+    }
+
+    public void setPrewarm(boolean prewarm) {
+        this.prewarm = prewarm;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+}
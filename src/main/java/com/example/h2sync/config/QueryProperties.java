@@ -0,0 +1,293 @@
+package com.example.h2sync.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "query")
+public class QueryProperties {
+    /** Rows the H2 driver fetches per round trip while a result is streamed. */
+    private int fetchSize = 1000;
+    /** Run queries with H2's LAZY_QUERY_EXECUTION, so rows are produced while they are read instead of up front. */
+    private boolean lazyExecution = true;
+    /** Size of the reused output buffer; it is written to the response whenever it fills up. */
+    private int bufferBytes = 64 * 1024;
+    /** Compress responses with gzip when the client accepts it. */
+    private boolean gzip = true;
+    /** Rows per block of the columnar format. */
+    private int columnarBlockRows = 4096;
+    /** Prepared statements kept open per H2 connection, most recently used first; 0 prepares every query anew. */
+    private int statementCacheSize = 256;
+    private final Cache cache = new Cache();
+    private final Governor governor = new Governor();
+    private final Jobs jobs = new Jobs();
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    public boolean isLazyExecution() {
+        return lazyExecution;
+    }
+
+    public void setLazyExecution(boolean lazyExecution) {
+        this.lazyExecution = lazyExecution;
+    }
+
+    public int getBufferBytes() {
+        return bufferBytes;
+    }
+
+    public void setBufferBytes(int bufferBytes) {
+        this.bufferBytes = bufferBytes;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    public int getColumnarBlockRows() {
+        return columnarBlockRows;
+    }
+
+    public void setColumnarBlockRows(int columnarBlockRows) {
+        this.columnarBlockRows = columnarBlockRows;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Governor getGovernor() {
+        return governor;
+    }
+
+    public Jobs getJobs() {
+        return jobs;
+    }
+
+    public static class Cache {
+        /** Keep query results until a refresh changes the tables they read. */
+        private boolean enabled = true;
+        /** Heap held by cached results; least recently used results are evicted beyond it. */
+        private long maxBytes = 256L * 1024 * 1024;
+        /** Results larger than this are streamed without being cached. */
+        private long maxEntryBytes = 64L * 1024 * 1024;
+        /** Results larger than this are kept in memory-mapped temp files instead of the heap; 0 keeps all on the heap. */
+        private long spillThreshold = 4L * 1024 * 1024;
+        /** Bytes held in memory-mapped files; least recently used spilled results are evicted beyond it. */
+        private long maxSpillBytes = 2L * 1024 * 1024 * 1024;
+        /** Directory of the spill files; the JVM temp directory when empty. */
+        private String spillDir = "";
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+
+        public void setMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        public long getMaxEntryBytes() {
+            return maxEntryBytes;
+        }
+
+        public void setMaxEntryBytes(long maxEntryBytes) {
+            this.maxEntryBytes = maxEntryBytes;
+        }
+
+        public long getSpillThreshold() {
+            return spillThreshold;
+        }
+
+        public void setSpillThreshold(long spillThreshold) {
+            this.spillThreshold = spillThreshold;
+        }
+
+        public long getMaxSpillBytes() {
+            return maxSpillBytes;
+        }
+
+        public void setMaxSpillBytes(long maxSpillBytes) {
+            this.maxSpillBytes = maxSpillBytes;
+        }
+
+        public String getSpillDir() {
+            return spillDir;
+        }
+
+        public void setSpillDir(String spillDir) {
+            this.spillDir = spillDir;
+        }
+    }
+
+    public static class Governor {
+        /** Queries running on H2 at the same time, across all clients. */
+        private int maxConcurrent = 8;
+        /** Queries one client may run at the same time. */
+        private int maxConcurrentPerClient = 4;
+        /** Queries that may wait for a slot; more are rejected right away. */
+        private int maxQueued = 32;
+        /** How long a query waits for a slot before it is rejected. */
+        private long queueWaitMs = 5000;
+        /** Request header naming the client; the remote address is used without it. */
+        private String clientHeader = "X-Client-Id";
+        /** Statement timeout of every query, in seconds; 0 disables. */
+        private int timeoutSeconds = 300;
+        /** Rows a query may return before its result is cut off; 0 disables. */
+        private long maxRows = 10_000_000;
+        /** Queries whose plan is estimated to read more rows than this are rejected; 0 disables. */
+        private long maxCost = 1_000_000_000;
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public int getMaxConcurrentPerClient() {
+            return maxConcurrentPerClient;
+        }
+
+        public void setMaxConcurrentPerClient(int maxConcurrentPerClient) {
+            this.maxConcurrentPerClient = maxConcurrentPerClient;
+        }
+
+        public int getMaxQueued() {
+            return maxQueued;
+        }
+
+        public void setMaxQueued(int maxQueued) {
+            this.maxQueued = maxQueued;
+        }
+
+        public long getQueueWaitMs() {
+            return queueWaitMs;
+        }
+
+        public void setQueueWaitMs(long queueWaitMs) {
+            this.queueWaitMs = queueWaitMs;
+        }
+
+        public String getClientHeader() {
+            return clientHeader;
+        }
+
+        public void setClientHeader(String clientHeader) {
+            this.clientHeader = clientHeader;
+        }
+
+        public int getTimeoutSeconds() {
+            return timeoutSeconds;
+        }
+
+        public void setTimeoutSeconds(int timeoutSeconds) {
+            this.timeoutSeconds = timeoutSeconds;
+        }
+
+        public long getMaxRows() {
+            return maxRows;
+        }
+
+        public void setMaxRows(long maxRows) {
+            this.maxRows = maxRows;
+        }
+
+        public long getMaxCost() {
+            return maxCost;
+        }
+
+        public void setMaxCost(long maxCost) {
+            this.maxCost = maxCost;
+        }
+    }
+
+    public static class Jobs {
+        /** Background threads running submitted queries; more jobs wait their turn. */
+        private int threads = 2;
+        /** Jobs kept at once, finished or not; further submissions are refused until some expire. */
+        private int maxJobs = 100;
+        /** How long a job and its spool file are kept after it finished, or after it was last read. */
+        private long ttlMs = 60L * 60 * 1000;
+        /** Rows per page when the client does not ask for a page size. */
+        private int pageRows = 1000;
+        /** Largest page size a client may ask for. */
+        private int maxPageRows = 50_000;
+        /** Directory of the spool files; the JVM temp directory when empty. */
+        private String spoolDir = "";
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getMaxJobs() {
+            return maxJobs;
+        }
+
+        public void setMaxJobs(int maxJobs) {
+            this.maxJobs = maxJobs;
+        }
+
+        public long getTtlMs() {
+            return ttlMs;
+        }
+
+        public void setTtlMs(long ttlMs) {
+            this.ttlMs = ttlMs;
+        }
+
+        public int getPageRows() {
+            return pageRows;
+        }
+
+        public void setPageRows(int pageRows) {
+            this.pageRows = pageRows;
+        }
+
+        public int getMaxPageRows() {
+            return maxPageRows;
+        }
+
+        public void setMaxPageRows(int maxPageRows) {
+            this.maxPageRows = maxPageRows;
+        }
+
+        public String getSpoolDir() {
+            return spoolDir;
+        }
+
+        public void setSpoolDir(String spoolDir) {
+            this.spoolDir = spoolDir;
+        }
+    }
+}
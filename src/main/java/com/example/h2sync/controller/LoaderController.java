@@ -1,44 +1,150 @@
 package com.example.h2sync.controller;
 
 import com.example.h2sync.scheduler.OracleSyncScheduler;
-import com.example.h2sync.scheduler.OracleSyncScheduler.TriggerResult;
+import com.example.h2sync.scheduler.OracleSyncScheduler.Submission;
+import com.example.h2sync.service.LoadProgress;
+import com.example.h2sync.service.MigrationReport;
+import com.example.h2sync.service.OracleLoaderService;
+import com.example.h2sync.service.RefreshJob;
+import com.example.h2sync.service.RefreshJobService;
 import io.swagger.v3.oas.annotations.Operation;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.net.URI;
+import java.util.List;
+import java.util.Locale;
+
 @RestController
 @RequestMapping("/api/loader")
 public class LoaderController {
 
     private final OracleSyncScheduler scheduler;
+    private final OracleLoaderService loader;
+    private final RefreshJobService jobs;
 
-    public LoaderController(OracleSyncScheduler scheduler) {
+    public LoaderController(OracleSyncScheduler scheduler, OracleLoaderService loader, RefreshJobService jobs) {
         this.scheduler = scheduler;
+        this.loader = loader;
+        this.jobs = jobs;
     }
 
     @Operation(
             summary = "Trigger a full Oracle-to-H2 load",
-            description = "Runs the same full refresh used by the scheduler. The call blocks until the refresh completes."
+            description = "Starts the same full refresh used by the scheduler as a background job and returns the job "
+                    + "at once. Follow it with GET /api/loader/jobs/{id}."
     )
     @PostMapping(path = "/full-refresh")
-    public ResponseEntity<String> triggerFullRefresh(
+    public ResponseEntity<?> triggerFullRefresh(
             @RequestParam(value = "reason", required = false) String reason
     ) {
         String triggerReason = (reason == null || reason.isBlank())
                 ? "manual API request"
                 : "manual API request: " + reason;
 
-        TriggerResult result = scheduler.triggerFullRefresh(triggerReason);
-        return switch (result) {
-            case STARTED -> ResponseEntity.ok("Full refresh completed successfully.");
+        Submission submission = scheduler.submitFullRefresh(triggerReason);
+        return switch (submission.getResult()) {
+            case STARTED -> accepted(submission.getJob());
+            case CANCELLED -> ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("Full refresh was cancelled.");
             case ALREADY_RUNNING -> ResponseEntity.status(HttpStatus.CONFLICT)
                     .body("Full refresh skipped because another run is still in progress.");
             case DISABLED -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
                     .body("Full refresh skipped because loader.enabled=false.");
         };
     }
+
+    @Operation(
+            summary = "List the refresh jobs",
+            description = "Full and sample refresh jobs, running or recently finished, from the newest to the oldest."
+    )
+    @GetMapping(path = "/jobs")
+    public List<RefreshJob> jobs() {
+        return jobs.list();
+    }
+
+    @Operation(
+            summary = "Show one refresh job",
+            description = "State of the job and, per table, the state, rows copied, rows per second and ETA."
+    )
+    @GetMapping(path = "/jobs/{id}")
+    public ResponseEntity<RefreshJob> job(@PathVariable("id") String id) {
+        RefreshJob job = jobs.find(id);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job);
+    }
+
+    @Operation(
+            summary = "Cancel a refresh job",
+            description = "Cancels the running Oracle statements of the job and rolls back the tables being copied. A "
+                    + "SHADOW refresh keeps the live schema as it was. The job ends as CANCELLED shortly after."
+    )
+    @PostMapping(path = "/jobs/{id}/cancel")
+    public ResponseEntity<RefreshJob> cancel(@PathVariable("id") String id) {
+        RefreshJob job = jobs.find(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!jobs.cancel(id)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(job);
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    /**
+     * {@code 202 Accepted} with the job and its status URL.
+     */
+    static ResponseEntity<RefreshJob> accepted(RefreshJob job) {
+        return ResponseEntity.accepted().location(URI.create("/api/loader/jobs/" + job.getId())).body(job);
+    }
+
+    @Operation(
+            summary = "Show the progress of the full load",
+            description = "Per-table state, rows copied, percentage and ETA of the running or last refresh. Totals are "
+                    + "estimates from Oracle statistics (ALL_TABLES.NUM_ROWS)."
+    )
+    @GetMapping(path = "/progress")
+    public LoadProgress progress() {
+        return loader.getProgress();
+    }
+
+    @Operation(
+            summary = "Show the progress of one table",
+            description = "Progress of a single table in the running or last refresh."
+    )
+    @GetMapping(path = "/progress/{table}")
+    public ResponseEntity<LoadProgress.TableProgress> tableProgress(@PathVariable("table") String table) {
+        LoadProgress.TableProgress progress = loader.getProgress().find(table.trim().toUpperCase(Locale.ROOT));
+        return progress == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(progress);
+    }
+
+    @Operation(
+            summary = "Count one table exactly in Oracle and H2",
+            description = "Runs COUNT(1) on the Oracle table and its H2 copy to validate a load. This scans the whole "
+                    + "Oracle table."
+    )
+    @PostMapping(path = "/progress/{table}/exact-count")
+    public ResponseEntity<LoadProgress.ExactCount> exactCount(@PathVariable("table") String table) {
+        try {
+            return ResponseEntity.ok(loader.countRowsExactly(table));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @Operation(
+            summary = "Show the migration report of the last refresh",
+            description = "Oracle and H2 row counts per table, presence of every view, sequence values and batching. "
+                    + "The same data is stored in the H2 table ETL_MIGRATION_REPORT."
+    )
+    @GetMapping(path = "/report")
+    public ResponseEntity<MigrationReport> report() {
+        MigrationReport report = loader.getLastReport();
+        return report == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(report);
+    }
 }
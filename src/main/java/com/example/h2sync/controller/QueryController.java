@@ -1,82 +1,292 @@
 package com.example.h2sync.controller;
 
+import com.example.h2sync.config.QueryProperties;
+import com.example.h2sync.dto.SqlParameter;
 import com.example.h2sync.dto.SqlRequest;
+import com.example.h2sync.service.QueryGovernor;
+import com.example.h2sync.service.QueryService;
+import com.example.h2sync.service.ResultFormat;
 import com.example.h2sync.util.SqlUtils;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.sql.SQLException;
-import java.util.StringJoiner;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/query")
 public class QueryController {
 
-    private final JdbcTemplate jdbcTemplate;
+    private final QueryService queryService;
+    private final QueryProperties properties;
 
     @Autowired
-    public QueryController(JdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
+    public QueryController(QueryService queryService, QueryProperties properties) {
+        this.queryService = queryService;
+        this.properties = properties;
     }
 
     @Operation(
             summary = "Run a SELECT query on H2",
-            description = "Accepts a single SELECT statement in the request body and streams results as CSV-like lines (comma-separated).",
+            description = "Accepts a single SELECT statement in the request body, with optional positional parameters "
+                    + "for its ? placeholders, and streams the result. The format is "
+                    + "chosen with the format parameter or the Accept header: text/csv (CSV with a header row, also "
+                    + "served for text/plain and */*), application/x-ndjson (one JSON object per row) or "
+                    + "application/vnd.h2sync.columnar (binary columnar blocks). Responses are gzip-compressed when "
+                    + "the client sends Accept-Encoding: gzip. Results are cached until a refresh changes the tables "
+                    + "they read; the ETag header identifies that version, and a request whose If-None-Match "
+                    + "carries it is answered with 304 Not Modified without running the query.",
             requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
                     required = true,
                     content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = SqlRequest.class))
             ),
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Query result streamed as text/plain"),
-                    @ApiResponse(responseCode = "400", description = "Invalid SQL"),
+                    @ApiResponse(responseCode = "200", description = "Query result streamed in the negotiated format"),
+                    @ApiResponse(responseCode = "304", description = "The result matching If-None-Match is still current"),
+                    @ApiResponse(responseCode = "400", description = "Invalid SQL or unknown format"),
+                    @ApiResponse(responseCode = "406", description = "None of the accepted media types can be produced"),
+                    @ApiResponse(responseCode = "422", description = "The query is estimated to read more rows than allowed"),
+                    @ApiResponse(responseCode = "429", description = "Too many queries of this client, or too many waiting"),
+                    @ApiResponse(responseCode = "503", description = "No query slot became free within the queue wait"),
             }
     )
-    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.TEXT_PLAIN_VALUE)
-    public void query(@Valid @RequestBody SqlRequest req, HttpServletResponse response) throws IOException {
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void query(
+            @Valid @RequestBody SqlRequest req,
+            @Parameter(description = "csv, ndjson or columnar; overrides the Accept header")
+            @RequestParam(value = "format", required = false) String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
         final String sql = req.getSql();
         if (!SqlUtils.isSafeSelect(sql)) {
             response.sendError(400, "Only a single SELECT statement is allowed.");
             return;
         }
-        response.setContentType("text/plain; charset=UTF-8");
-        jdbcTemplate.query(sql, rs -> {
+        List<Object> params;
+        try {
+            params = bindValues(req);
+        } catch (IllegalArgumentException e) {
+            response.sendError(400, e.getMessage());
+            return;
+        }
+        ResultFormat resultFormat;
+        String contentType;
+        if (format != null && !format.isBlank()) {
+            resultFormat = ResultFormat.fromName(format);
+            if (resultFormat == null) {
+                response.sendError(400, "Unknown format '" + format + "'. Use csv, ndjson or columnar.");
+                return;
+            }
+            contentType = contentType(resultFormat, false);
+        } else {
+            MediaType chosen = negotiate(accept);
+            if (chosen == null) {
+                response.sendError(406, "Supported media types: text/csv, application/x-ndjson, "
+                        + ResultFormat.COLUMNAR.getMediaType());
+                return;
+            }
+            boolean plain = MediaType.TEXT_PLAIN.equalsTypeAndSubtype(chosen);
+            resultFormat = plain || chosen.isWildcardSubtype() ? ResultFormat.CSV
+                    : ResultFormat.fromMediaType(chosen.getType() + "/" + chosen.getSubtype());
+            contentType = contentType(resultFormat, plain);
+        }
+
+        boolean gzip = properties.isGzip() && acceptsGzip(acceptEncoding);
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING);
+        String etag;
+        try {
+            etag = queryService.etag(sql, params, resultFormat);
+        } catch (DataAccessException e) {
+            response.sendError(400, e.getMostSpecificCause().getMessage());
+            return;
+        }
+        if (etag != null) {
+            if (gzip) {
+                // a compressed body is a different representation, so it needs its own strong validator
+                etag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+            }
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+            if (matches(ifNoneMatch, etag)) {
+                response.setStatus(304);
+                return;
+            }
+        }
+        response.setContentType(contentType);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        OutputStream out = gzip
+                ? new GZIPOutputStream(response.getOutputStream(), Math.max(512, properties.getBufferBytes()))
+                : response.getOutputStream();
+        try {
+            queryService.stream(sql, params, resultFormat, out, clientOf(request, properties));
+        } catch (QueryGovernor.Rejected e) {
+            response.reset();
+            if (e.getReason() != QueryGovernor.Reason.TOO_EXPENSIVE) {
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            }
+            response.sendError(statusOf(e.getReason()), e.getMessage());
+            return;
+        } catch (DataAccessException e) {
+            if (response.isCommitted()) {
+                throw e;
+            }
+            // nothing has reached the client yet, so the failure can still be answered properly
+            response.reset();
+            response.sendError(400, e.getMostSpecificCause().getMessage());
+            return;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (gzip) {
+            ((GZIPOutputStream) out).finish();
+        }
+        out.flush();
+    }
+
+    /**
+     * Returns the first media type of {@code accept}, by quality, that a {@link ResultFormat} can serve; a missing
+     * header accepts anything. Returns {@code null} when nothing acceptable can be produced.
+     */
+    private static MediaType negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.valueOf(ResultFormat.CSV.getMediaType());
+        }
+        List<MediaType> types;
+        try {
+            types = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.valueOf(ResultFormat.CSV.getMediaType());
+        }
+        types.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for (MediaType type : types) {
+            if (type.getQualityValue() <= 0) {
+                continue;
+            }
+            if (type.isWildcardType() || type.isWildcardSubtype() && "text".equals(type.getType())
+                    || MediaType.TEXT_PLAIN.equalsTypeAndSubtype(type)
+                    || ResultFormat.fromMediaType(type.getType() + "/" + type.getSubtype()) != null) {
+                return type.isWildcardType() ? MediaType.valueOf(ResultFormat.CSV.getMediaType()) : type;
+            }
+        }
+        return null;
+    }
+
+    private static String contentType(ResultFormat format, boolean plain) {
+        switch (format) {
+            case NDJSON:
+                return format.getMediaType() + "; charset=UTF-8";
+            case COLUMNAR:
+                return format.getMediaType();
+            case CSV:
+            default:
+                return (plain ? MediaType.TEXT_PLAIN_VALUE : format.getMediaType()) + "; charset=UTF-8";
+        }
+    }
+
+    /**
+     * Converts the parameters of {@code req} to the values to bind.
+     *
+     * @throws IllegalArgumentException naming the first parameter that does not fit its type
+     */
+    static List<Object> bindValues(SqlRequest req) {
+        List<Object> values = new ArrayList<>(req.getParams().size());
+        for (SqlParameter param : req.getParams()) {
             try {
-                writeRow(rs, response);
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
+                values.add(param == null ? null : param.toJdbcValue());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Parameter " + (values.size() + 1) + ": " + e.getMessage(), e);
             }
-        });
-        response.getWriter().flush();
+        }
+        return values;
     }
 
-    private void writeRow(ResultSet rs, HttpServletResponse response) throws SQLException, IOException {
-        ResultSetMetaData md = rs.getMetaData();
-        int cols = md.getColumnCount();
-        StringJoiner joiner = new StringJoiner(",");
-        for (int i = 1; i <= cols; i++) {
-            Object val = rs.getObject(i);
-            joiner.add(val == null ? "" : escape(val.toString()));
-        }
-        response.getWriter().write(joiner.toString());
-        response.getWriter().write("\n");
+    /**
+     * Names the client of {@code request} for the query governor: the configured header, or the remote address.
+     */
+    static String clientOf(HttpServletRequest request, QueryProperties properties) {
+        String header = properties.getGovernor().getClientHeader();
+        String client = header == null || header.isBlank() ? null : request.getHeader(header);
+        return client == null || client.isBlank() ? request.getRemoteAddr() : client.trim();
     }
 
-    private String escape(String s) {
-        if (s.contains(",") || s.contains("\"") || s.contains("\n")) {
-            return "\"" + s.replace("\"", "\"\"") + "\"";
+    private static int statusOf(QueryGovernor.Reason reason) {
+        switch (reason) {
+            case TOO_EXPENSIVE:
+                return 422;
+            case BUSY:
+                return 503;
+            case QUEUE_FULL:
+            case CLIENT_BUSY:
+            default:
+                return 429;
+        }
+    }
+
+    /**
+     * Tells whether an If-None-Match header lists {@code etag} or is {@code *}. Weak validators match too, as
+     * RFC 9110 asks for this header.
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String token : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] parts = token.trim().split(";");
+            if (!parts[0].trim().equals("gzip")) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
         }
-        return s;
+        return false;
     }
 }
@@ -0,0 +1,120 @@
+package com.example.h2sync.controller;
+
+import com.example.h2sync.config.QueryProperties;
+import com.example.h2sync.dto.SqlRequest;
+import com.example.h2sync.service.QueryJob;
+import com.example.h2sync.service.QueryJobService;
+import com.example.h2sync.util.SqlUtils;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+@RestController
+@RequestMapping("/api/query/jobs")
+public class QueryJobController {
+
+    private final QueryJobService jobService;
+    private final QueryProperties properties;
+
+    public QueryJobController(QueryJobService jobService, QueryProperties properties) {
+        this.jobService = jobService;
+        this.properties = properties;
+    }
+
+    @Operation(
+            summary = "Submit a SELECT query as a background job",
+            description = "Accepts the same body as POST /api/query and returns the job at once. The query runs in the "
+                    + "background and its rows are spooled to a local file; fetch them with GET /{id}/rows once the "
+                    + "job is DONE."
+    )
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> submit(@Valid @RequestBody SqlRequest req, HttpServletRequest request) {
+        if (!SqlUtils.isSafeSelect(req.getSql())) {
+            return ResponseEntity.badRequest().body("Only a single SELECT statement is allowed.");
+        }
+        List<Object> params;
+        try {
+            params = QueryController.bindValues(req);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        try {
+            QueryJob job = jobService.submit(req.getSql(), params, QueryController.clientOf(request, properties));
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(e.getMessage());
+        }
+    }
+
+    @Operation(summary = "State, row count and expiry of a query job")
+    @GetMapping("/{id}")
+    public ResponseEntity<QueryJob> status(@PathVariable("id") String id) {
+        QueryJob job = jobService.find(id);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job);
+    }
+
+    @Operation(
+            summary = "Fetch a page of a finished query job",
+            description = "Returns {\"job\":..., \"rows\":[...], \"nextToken\":...}. Rows are JSON objects keyed by "
+                    + "column label. Pass nextToken as token to get the following page; it is null on the last page."
+    )
+    @GetMapping(value = "/{id}/rows", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void rows(
+            @PathVariable("id") String id,
+            @Parameter(description = "nextToken of the previous page; omit for the first page")
+            @RequestParam(value = "token", required = false) String token,
+            @Parameter(description = "Rows per page, up to query.jobs.max-page-rows")
+            @RequestParam(value = "limit", required = false) Integer limit,
+            HttpServletResponse response
+    ) throws IOException {
+        QueryJob job = jobService.find(id);
+        if (job == null) {
+            response.sendError(404, "No query job " + id);
+            return;
+        }
+        if (job.getState() != QueryJob.State.DONE) {
+            response.sendError(409, "Query job " + id + " is " + job.getState());
+            return;
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE + ";charset=UTF-8");
+        try {
+            jobService.writePage(id, token, limit, response.getOutputStream());
+        } catch (NoSuchElementException e) {
+            // expired or deleted since the check above
+            response.reset();
+            response.sendError(404, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            response.reset();
+            response.sendError(400, e.getMessage());
+        }
+    }
+
+    @Operation(summary = "Cancel a queued or running query job; it stays visible as CANCELLED until it expires")
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<QueryJob> cancel(@PathVariable("id") String id) {
+        QueryJob job = jobService.find(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!jobService.cancel(id)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(job);
+        }
+        return ResponseEntity.ok(job);
+    }
+
+    @Operation(summary = "Cancel a query job if needed and delete it with its spool file")
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable("id") String id) {
+        return jobService.delete(id) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+}
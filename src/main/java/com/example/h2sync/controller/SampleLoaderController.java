@@ -1,46 +1,40 @@
 package com.example.h2sync.controller;
 
 import com.example.h2sync.service.OracleSampleLoaderService;
+import com.example.h2sync.service.RefreshJobService;
 import io.swagger.v3.oas.annotations.Operation;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.concurrent.atomic.AtomicBoolean;
-
 @RestController
 @RequestMapping("/api/sample-loader")
 public class SampleLoaderController {
 
     private final OracleSampleLoaderService sampleLoaderService;
-    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final RefreshJobService jobs;
 
-    public SampleLoaderController(OracleSampleLoaderService sampleLoaderService) {
+    public SampleLoaderController(OracleSampleLoaderService sampleLoaderService, RefreshJobService jobs) {
         this.sampleLoaderService = sampleLoaderService;
+        this.jobs = jobs;
     }
 
     @Operation(
             summary = "Trigger a limited Oracle-to-H2 load",
-            description = "Loads tables with up to the configured row limit (100 by default), recreates views, and syncs sequences into the sample H2 database."
+            description = "Loads tables with up to the configured row limit (100 by default), recreates views, and syncs sequences into the sample H2 database. "
+                    + "Runs as a background job and returns the job at once; follow it with GET /api/loader/jobs/{id}."
     )
-    @GetMapping("/refresh")
-    public ResponseEntity<String> triggerSampleLoad() {
-        if (!running.compareAndSet(false, true)) {
+    @RequestMapping(path = "/refresh", method = {RequestMethod.POST, RequestMethod.GET})
+    public ResponseEntity<?> triggerSampleLoad() {
+        String reason = String.format("sample load into %s (row limit %d rows per table)",
+                sampleLoaderService.getSampleH2Url(), sampleLoaderService.getRowLimit());
+        try {
+            return LoaderController.accepted(jobs.submit(sampleLoaderService, reason, sampleLoaderService::runSampleLoad));
+        } catch (RefreshJobService.AlreadyRunning e) {
             return ResponseEntity.status(HttpStatus.CONFLICT)
                     .body("Sample load already running.");
         }
-        try {
-            sampleLoaderService.runSampleLoad();
-            String message = String.format(
-                    "Sample refresh completed successfully. H2 URL: %s (row limit %d rows per table).",
-                    sampleLoaderService.getSampleH2Url(),
-                    sampleLoaderService.getRowLimit()
-            );
-            return ResponseEntity.ok(message);
-        } finally {
-            running.set(false);
-        }
     }
 }
@@ -0,0 +1,98 @@
+package com.example.h2sync.dto;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HexFormat;
+import java.util.Locale;
+
+/**
+ * One positional bind parameter of a {@link SqlRequest}. {@code type} may be omitted, in which case it follows the
+ * JSON value: strings bind as {@code STRING}, whole numbers as {@code LONG}, other numbers as {@code DECIMAL} and
+ * booleans as {@code BOOLEAN}. Dates and times are ISO-8601 strings, {@code BYTES} a hex string.
+ */
+public class SqlParameter {
+
+    public enum Type {
+        STRING, LONG, DECIMAL, DOUBLE, BOOLEAN, DATE, TIME, TIMESTAMP, BYTES
+    }
+
+    private Type type;
+    private Object value;
+
+    public SqlParameter() {
+    }
+
+    public SqlParameter(Type type, Object value) {
+        this.type = type;
+        this.value = value;
+    }
+
+    public Type getType() { return type; }
+    public void setType(Type type) { this.type = type; }
+
+    public Object getValue() { return value; }
+    public void setValue(Object value) { this.value = value; }
+
+    /**
+     * Returns the value converted to the Java type JDBC binds for {@code type}.
+     *
+     * @throws IllegalArgumentException when the value does not fit the type
+     */
+    public Object toJdbcValue() {
+        if (value == null) {
+            return null;
+        }
+        Type t = type != null ? type : inferType(value);
+        String text = value.toString();
+        try {
+            switch (t) {
+                case LONG:
+                    return value instanceof Integer || value instanceof Long
+                            ? ((Number) value).longValue()
+                            : new BigDecimal(text.trim()).longValueExact();
+                case DECIMAL:
+                    return new BigDecimal(text.trim());
+                case DOUBLE:
+                    return value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(text);
+                case BOOLEAN:
+                    if (value instanceof Boolean) {
+                        return value;
+                    }
+                    String b = text.trim().toLowerCase(Locale.ROOT);
+                    if (!b.equals("true") && !b.equals("false")) {
+                        throw new IllegalArgumentException("expected true or false");
+                    }
+                    return Boolean.valueOf(b);
+                case DATE:
+                    return LocalDate.parse(text);
+                case TIME:
+                    return LocalTime.parse(text);
+                case TIMESTAMP:
+                    return LocalDateTime.parse(text);
+                case BYTES:
+                    return HexFormat.of().parseHex(text);
+                case STRING:
+                default:
+                    return text;
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("'" + text + "' is not a valid " + t + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static Type inferType(Object value) {
+        if (value instanceof Boolean) {
+            return Type.BOOLEAN;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof BigInteger) {
+            return Type.LONG;
+        }
+        if (value instanceof Number) {
+            return Type.DECIMAL;
+        }
+        return Type.STRING;
+    }
+}
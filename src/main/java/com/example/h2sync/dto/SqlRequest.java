@@ -2,10 +2,18 @@ package com.example.h2sync.dto;
 
 import jakarta.validation.constraints.NotBlank;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class SqlRequest {
     @NotBlank
     private String sql;
+    /** Values of the {@code ?} placeholders of {@code sql}, in order. */
+    private List<SqlParameter> params = new ArrayList<>();
 
     public String getSql() { return sql; }
     public void setSql(String sql) { this.sql = sql; }
+
+    public List<SqlParameter> getParams() { return params; }
+    public void setParams(List<SqlParameter> params) { this.params = params == null ? new ArrayList<>() : params; }
 }
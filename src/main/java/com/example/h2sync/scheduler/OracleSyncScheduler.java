@@ -1,6 +1,11 @@
 package com.example.h2sync.scheduler;
 
+import com.example.h2sync.service.MigrationReport;
 import com.example.h2sync.service.OracleLoaderService;
+import com.example.h2sync.service.QueryService;
+import com.example.h2sync.service.RefreshCancelledException;
+import com.example.h2sync.service.RefreshJob;
+import com.example.h2sync.service.RefreshJobService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -11,6 +16,7 @@ import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 @Component
@@ -18,20 +24,48 @@ public class OracleSyncScheduler implements ApplicationRunner {
     private static final Logger log = LoggerFactory.getLogger(OracleSyncScheduler.class);
 
     private final OracleLoaderService loader;
+    private final QueryService queryService;
+    private final RefreshJobService jobs;
     private final boolean enabled;
-    private final AtomicBoolean running = new AtomicBoolean(false);
     private final AtomicBoolean startupTriggered = new AtomicBoolean(false);
     private volatile String startupReason = "application startup";
 
     public enum TriggerResult {
         STARTED,
+        /** A refresh run on the calling thread was cancelled before it finished. */
+        CANCELLED,
         ALREADY_RUNNING,
         DISABLED
     }
 
+    /**
+     * Outcome of {@link #submitFullRefresh}: the job when the refresh was started.
+     */
+    public static final class Submission {
+        private final TriggerResult result;
+        private final RefreshJob job;
+
+        private Submission(TriggerResult result, RefreshJob job) {
+            this.result = result;
+            this.job = job;
+        }
+
+        public TriggerResult getResult() {
+            return result;
+        }
+
+        public RefreshJob getJob() {
+            return job;
+        }
+    }
+
     public OracleSyncScheduler(OracleLoaderService loader,
+                               QueryService queryService,
+                               RefreshJobService jobs,
                                @Value("${loader.enabled:true}") boolean enabled) {
         this.loader = loader;
+        this.queryService = queryService;
+        this.jobs = jobs;
         this.enabled = enabled;
     }
 
@@ -53,22 +87,55 @@ public class OracleSyncScheduler implements ApplicationRunner {
         }
     }
 
+    /**
+     * Runs a full refresh on the calling thread, registered as a refresh job so it can be followed and cancelled.
+     */
     public TriggerResult triggerFullRefresh(String reason) {
+        return start(reason, false).getResult();
+    }
+
+    /**
+     * Starts a full refresh as a background job and returns at once.
+     */
+    public Submission submitFullRefresh(String reason) {
+        return start(reason, true);
+    }
+
+    private Submission start(String reason, boolean background) {
         if (!enabled) {
             log.info("Full refresh trigger '{}' skipped because loader.enabled=false", reason);
-            return TriggerResult.DISABLED;
+            return new Submission(TriggerResult.DISABLED, null);
         }
-        if (!running.compareAndSet(false, true)) {
+        RefreshJob job;
+        try {
+            // the job service runs one job per loader, which keeps refreshes from overlapping
+            job = background
+                    ? jobs.submit(loader, reason, () -> refresh(reason))
+                    : jobs.run(loader, reason, () -> refresh(reason));
+        } catch (RefreshJobService.AlreadyRunning e) {
             log.info("Full refresh trigger '{}' skipped because another refresh is already running", reason);
-            return TriggerResult.ALREADY_RUNNING;
+            return new Submission(TriggerResult.ALREADY_RUNNING, null);
+        } catch (RefreshCancelledException e) {
+            log.info("Full refresh triggered by '{}' was cancelled.", reason);
+            return new Submission(TriggerResult.CANCELLED, null);
         }
+        return new Submission(TriggerResult.STARTED, job);
+    }
+
+    private void refresh(String reason) {
+        Instant started = Instant.now();
+        MigrationReport report = null;
         try {
             log.info("Starting full refresh (triggered by {}).", reason);
             loader.runFullRefresh();
             log.info("Full refresh triggered by '{}' finished successfully.", reason);
-            return TriggerResult.STARTED;
+            MigrationReport last = loader.getLastReport();
+            if (last != null && !last.getGeneratedAt().isBefore(started)) {
+                report = last;
+            }
         } finally {
-            running.set(false);
+            // without a report of this run, every cached query result is suspect
+            queryService.refreshCompleted(report);
         }
     }
 
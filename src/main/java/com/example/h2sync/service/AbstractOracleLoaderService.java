@@ -1,18 +1,25 @@
 package com.example.h2sync.service;
 
+import com.example.h2sync.config.LoaderProperties;
+import com.example.h2sync.config.OraclePoolProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
 import javax.sql.DataSource;
 import java.io.IOException;
-import java.io.Reader;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -22,13 +29,44 @@ public abstract class AbstractOracleLoaderService {
 
     protected final JdbcTemplate h2;
     protected final DataSource oracleDs;
+    private final WorkerConnections oracleConnections;
+    private final LoaderMetrics metrics;
     protected final int threads;
     protected final int batchSize;
     protected final int maxRetries;
     protected final Set<String> blacklist;
     protected final String oracleSchema;
+    protected final LoaderProperties properties;
     private final OracleViewSqlTranslator viewSqlTranslator;
     private final MigrationReportPrinter reportPrinter;
+    private final WatermarkStore watermarkStore;
+    private final DdlFingerprintStore fingerprintStore;
+    private final TableChangeStore changeStore;
+    private final TableTimingStore timingStore;
+    private final MigrationReportStore reportStore;
+    private final LoadProgress progress = new LoadProgress();
+    private final Map<String, Long> loadedRows = new ConcurrentHashMap<>();
+    private volatile MigrationReport lastReport;
+    private final Map<String, AdaptiveBatchController.Tuning> batchTunings = new ConcurrentHashMap<>();
+    private final BlockingDeque<Runnable> stealableChunks = new LinkedBlockingDeque<>();
+    private volatile TableChangeDetector changeDetector;
+    private final Map<String, String> changeSignatures = new ConcurrentHashMap<>();
+    private final Map<String, String> pendingSignatures = new ConcurrentHashMap<>();
+    private final Set<String> unchangedTables = ConcurrentHashMap.newKeySet();
+    private final Map<String, WatermarkStore.Watermark> pendingWatermarks = new ConcurrentHashMap<>();
+    private final String liveSchema;
+    private final AtomicInteger tableFailures = new AtomicInteger();
+    private final Map<String, String> viewDefinitions = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Map<String, PreparedTable> preparedTables = new ConcurrentHashMap<>();
+    private final Map<LoaderProperties.Copy.Engine, CopyEngine> copyEngines =
+            new EnumMap<>(LoaderProperties.Copy.Engine.class);
+    private volatile String loadSchema;
+    private volatile SchemaCatalog catalog;
+    private volatile boolean cancelRequested;
+    private volatile ExecutorService chunkPool;
+    private volatile ExecutorService writerPool;
+    private volatile ExecutorService constraintPool;
+    private final List<Future<?>> constraintFutures = Collections.synchronizedList(new ArrayList<>());
     private static final int H2_MAX_VARCHAR_LENGTH = 1_000_000_000;
 
     protected AbstractOracleLoaderService(
@@ -38,22 +76,35 @@ public abstract class AbstractOracleLoaderService {
             int threads,
             int batchSize,
             int maxRetries,
-            String blacklistCsv
+            String blacklistCsv,
+            LoaderProperties properties,
+            String metricsJob
     ) {
         this.h2 = h2;
         this.oracleDs = oracleDs;
+        this.metrics = new LoaderMetrics(metricsJob);
+        this.oracleConnections = new WorkerConnections(oracleDs, metrics);
         this.threads = threads;
         this.batchSize = batchSize;
         this.maxRetries = maxRetries;
         this.oracleSchema = schema != null ? schema.toUpperCase(Locale.ROOT) : null;
+        this.properties = properties != null ? properties : new LoaderProperties();
+        this.liveSchema = normalizeSchema(this.properties.getTargetSchema());
+        this.loadSchema = this.liveSchema;
+        if (this.properties.getRefreshMode() == LoaderProperties.RefreshMode.SHADOW
+                && (liveSchema == null || "PUBLIC".equals(liveSchema))) {
+            throw new IllegalStateException("loader.refresh-mode=SHADOW requires loader.target-schema to name a schema other than PUBLIC");
+        }
         this.viewSqlTranslator = new OracleViewSqlTranslator(this.oracleSchema);
         this.reportPrinter = new MigrationReportPrinter(
                 this.log,
                 this.h2,
-                this.oracleDs,
-                this::quoteIdentifier,
+                this.oracleConnections,
+                this::targetName,
+                () -> loadSchema,
                 this::isBlacklisted,
-                this.oracleSchema
+                this.oracleSchema,
+                this.properties.getReport().getThreads()
         );
 
         this.blacklist = Arrays.stream((blacklistCsv == null ? "" : blacklistCsv).split(","))
@@ -63,6 +114,27 @@ public abstract class AbstractOracleLoaderService {
                 .collect(Collectors.toSet());
 
         initFailLogTable();
+        this.watermarkStore = new WatermarkStore(h2);
+        watermarkStore.init();
+        this.fingerprintStore = new DdlFingerprintStore(h2);
+        fingerprintStore.init();
+        this.changeStore = new TableChangeStore(h2);
+        changeStore.init();
+        this.timingStore = new TableTimingStore(h2);
+        timingStore.init();
+        this.reportStore = new MigrationReportStore(h2);
+        reportStore.init();
+        CopyEngine jdbcEngine = new JdbcBatchCopyEngine(oracleConnections, h2, () -> writerPool, this.properties,
+                batchSize, batchTunings::put, metrics, log);
+        copyEngines.put(LoaderProperties.Copy.Engine.JDBC, jdbcEngine);
+        copyEngines.put(LoaderProperties.Copy.Engine.CSV,
+                new CsvSpoolCopyEngine(oracleConnections, h2, this.properties, batchSize, log));
+        copyEngines.put(LoaderProperties.Copy.Engine.LINKED, new LinkedTableCopyEngine(
+                LinkedTableCopyEngine.Source.of(oracleDs), h2, this.properties, jdbcEngine, log));
+        LoaderProperties.ChangeDetection changeDetection = properties.getChangeDetection();
+        this.changeDetector = new DictionaryChangeDetector(
+                changeDetection.getStrategy() == LoaderProperties.ChangeDetection.Strategy.ROWSCN,
+                changeDetection.isFlushMonitoringInfo(), log);
     }
 
     protected static DataSource createOracleDataSource(String driverClass, String url, String user, String pass) {
@@ -74,8 +146,88 @@ public abstract class AbstractOracleLoaderService {
         return ds;
     }
 
+    /**
+     * Creates the Oracle connection pool of a loader. The pool starts lazily on the first refresh, so the
+     * application still boots when Oracle is unreachable. Connection acquire times are published as
+     * {@code hikaricp.connections.acquire} when a registry is available.
+     */
+    protected static DataSource createOracleDataSource(
+            String driverClass,
+            String url,
+            String user,
+            String pass,
+            OraclePoolProperties pool,
+            String poolName,
+            int workers,
+            MeterRegistry meterRegistry
+    ) {
+        if (pool == null || !pool.isEnabled()) {
+            return createOracleDataSource(driverClass, url, user, pass);
+        }
+        HikariDataSource ds = new HikariDataSource();
+        ds.setPoolName(poolName);
+        ds.setDriverClassName(driverClass != null && !driverClass.isBlank() ? driverClass : "oracle.jdbc.OracleDriver");
+        ds.setJdbcUrl(url);
+        ds.setUsername(user);
+        ds.setPassword(pass);
+        int size = pool.getMaximumPoolSize() > 0 ? pool.getMaximumPoolSize() : Math.max(2, workers + 1);
+        ds.setMaximumPoolSize(size);
+        // Keeping the pool full means the logons are paid once and not again at the next refresh.
+        ds.setMinimumIdle(pool.isPrewarm() ? size : 0);
+        ds.setConnectionTimeout(pool.getConnectionTimeoutMs());
+        ds.setIdleTimeout(pool.getIdleTimeoutMs());
+        ds.setMaxLifetime(pool.getMaxLifetimeMs());
+        if (pool.getStatementCacheSize() > 0) {
+            ds.addDataSourceProperty("oracle.jdbc.implicitStatementCacheSize", String.valueOf(pool.getStatementCacheSize()));
+        }
+        if (meterRegistry != null) {
+            ds.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        }
+        return ds;
+    }
+
+    @PreDestroy
+    void closeOracleDataSource() {
+        if (oracleDs instanceof HikariDataSource) {
+            ((HikariDataSource) oracleDs).close();
+        }
+    }
+
+    /**
+     * Connections the loader needs at the same time besides the coordinating thread: the table and chunk workers
+     * during the copy, or the report threads, which count once the workers have returned theirs.
+     */
+    protected static int oracleWorkers(int threads, LoaderProperties properties) {
+        LoaderProperties loader = properties != null ? properties : new LoaderProperties();
+        LoaderProperties.Chunking chunking = loader.getChunking();
+        int chunkWorkers = chunking.isEnabled() ? (chunking.getThreads() > 0 ? chunking.getThreads() : threads) : 0;
+        return Math.max(threads + chunkWorkers, loader.getReport().getThreads());
+    }
+
     protected abstract String getJobName();
 
+    /**
+     * Registers the loader's metrics with {@code meterRegistry}; without one the loader is not measured.
+     */
+    void bindMetrics(MeterRegistry meterRegistry) {
+        metrics.bind(meterRegistry);
+    }
+
+    /**
+     * Whether table copies read complete Oracle tables. Loaders that copy a bounded subset of rows return
+     * {@code false}, which disables strategies that depend on the full table contents such as incremental refresh.
+     */
+    protected boolean copiesCompleteTables() {
+        return true;
+    }
+
+    private static String normalizeSchema(String schema) {
+        if (schema == null || schema.isBlank()) {
+            return null;
+        }
+        return schema.trim().toUpperCase(Locale.ROOT);
+    }
+
     private void initFailLogTable() {
         String create = "CREATE TABLE IF NOT EXISTS ETL_FAIL_LOG (" +
                 "ID BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY," +
@@ -89,47 +241,236 @@ public abstract class AbstractOracleLoaderService {
         h2.execute(create);
     }
 
+    /**
+     * Progress of the running refresh, or of the last one once it has finished.
+     */
+    public LoadProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * Migration report of the last finished refresh, or {@code null} before the first one.
+     */
+    public MigrationReport getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * Counts the rows of one table in Oracle and in H2. This scans the whole Oracle table, so it is only done on
+     * request to validate a copy.
+     */
+    public LoadProgress.ExactCount countRowsExactly(String table) {
+        String name = table == null ? "" : table.trim().toUpperCase(Locale.ROOT);
+        if (name.isEmpty() || isBlacklisted(name)) {
+            throw new IllegalArgumentException("Table " + table + " is not copied by " + getJobName());
+        }
+        long oracleRows;
+        try (Connection conn = oracleConnections.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT COUNT(*) FROM all_tables WHERE owner = ? AND table_name = ?")) {
+                ps.setString(1, oracleSchema);
+                ps.setString(2, name);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next() || rs.getLong(1) == 0) {
+                        throw new IllegalArgumentException("Unknown Oracle table " + oracleSchema + "." + name);
+                    }
+                }
+            }
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT COUNT(1) FROM " + oracleSchema + "." + name)) {
+                rs.next();
+                oracleRows = rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to count Oracle table " + name, e);
+        }
+        Long h2Rows = h2.queryForObject("SELECT COUNT(1) FROM " + liveName(name), Long.class);
+        return new LoadProgress.ExactCount(name, oracleRows, h2Rows == null ? 0 : h2Rows);
+    }
+
+    /**
+     * Runs a refresh on the calling thread.
+     *
+     * @throws RefreshCancelledException when {@link #cancelRefresh()} stopped it
+     */
     public void runFullRefresh() {
+        // Every thread of the refresh keeps a single Oracle session until the copy is done.
+        oracleConnections.open();
+        try {
+            refresh();
+        } finally {
+            oracleConnections.release();
+            catalog = null;
+        }
+    }
+
+    /**
+     * Cancels the running refresh, or the one about to start: the Oracle statements of its workers are cancelled,
+     * the H2 transactions of the tables being copied roll back, and tables that have not started are skipped. A
+     * shadow refresh drops its staging schema and leaves the live schema as it was; a direct refresh keeps the tables
+     * it finished, like after a failure. The request stays in force until {@link #clearCancellation()}.
+     */
+    public void cancelRefresh() {
+        cancelRequested = true;
+        oracleConnections.cancel();
+        log.warn("Cancellation of {} requested", getJobName());
+    }
+
+    /**
+     * Withdraws a cancellation once the refresh it was meant for has ended.
+     */
+    void clearCancellation() {
+        cancelRequested = false;
+    }
+
+    private void checkCancelled() {
+        if (cancelRequested) {
+            throw new RefreshCancelledException(getJobName() + " was cancelled");
+        }
+    }
+
+    private void refresh() {
         String jobName = getJobName();
-        log.info("Starting {}. threads={}, batchSize={}, schema={}, blacklist={}",
-                jobName, threads, batchSize, oracleSchema, blacklist);
+        boolean shadow = properties.getRefreshMode() == LoaderProperties.RefreshMode.SHADOW;
+        log.info("Starting {}. threads={}, batchSize={}, schema={}, mode={}, targetSchema={}, blacklist={}",
+                jobName, threads, batchSize, oracleSchema, properties.getRefreshMode(), liveSchema, blacklist);
         long t0 = System.currentTimeMillis();
 
+        checkCancelled();
         ExecutorService pool = Executors.newFixedThreadPool(threads);
-        List<Future<?>> futures = new ArrayList<>();
-
-        Set<String> tables;
-        Set<String> views;
-        List<Map<String, Object>> sequences;
-        try (Connection metadataConn = oracleDs.getConnection()) {
-            tables = listTables(metadataConn);
-            views = listViews(metadataConn);
-            sequences = listSequences(metadataConn);
+        SchemaCatalog schemaCatalog;
+        try {
+            schemaCatalog = SchemaCatalog.load(oracleConnections, oracleSchema, pool, log);
         } catch (SQLException e) {
+            pool.shutdown();
+            checkCancelled();
             log.error("Oracle connection failure", e);
             throw new RuntimeException(e);
         }
+        catalog = schemaCatalog;
+        Set<String> tables = schemaCatalog.tables();
+        Set<String> views = schemaCatalog.views();
+        List<Map<String, Object>> sequences = schemaCatalog.sequences();
 
+        List<Future<?>> futures = new ArrayList<>();
+        LoaderProperties.Chunking chunking = properties.getChunking();
+        if (chunking.isEnabled() && chunking.getChunks() > 1 && copiesCompleteTables()) {
+            chunkPool = Executors.newFixedThreadPool(chunking.getThreads() > 0 ? chunking.getThreads() : threads);
+        }
+        if (properties.getPipeline().isEnabled()) {
+            writerPool = Executors.newCachedThreadPool();
+        }
+        LoaderProperties.Constraints constraints = properties.getConstraints();
+        if (constraints.isDeferred()) {
+            constraintPool = Executors.newFixedThreadPool(Math.max(1, constraints.getThreads()));
+        }
+
+        tableFailures.set(0);
+        viewDefinitions.clear();
+        pendingWatermarks.clear();
+        preparedTables.clear();
+        changeSignatures.clear();
+        pendingSignatures.clear();
+        unchangedTables.clear();
+        batchTunings.clear();
+        loadedRows.clear();
         try {
-            for (String t : tables) {
-                if (isBlacklisted(t)) continue;
-                futures.add(pool.submit(() -> retry(() -> copyTable(t), "TABLE", t)));
+            loadSchema = prepareLoadSchema(shadow);
+            leaseWorkerConnections(pool);
+            checkCancelled();
+            detectUnchangedTables(tables);
+            List<String> ordered = TableSchedule.longestFirst(tables, schemaCatalog::estimatedBytes, timingStore.findAll());
+            progress.start(jobName, ordered.stream().filter(t -> !isBlacklisted(t)).toList());
+            unchangedTables.stream()
+                    .filter(this::skipsUnchangedTable)
+                    .forEach(t -> progress.table(t).end(LoadProgress.State.UNCHANGED));
+            syncTableSchemas(ordered, pool);
+            AtomicInteger tablesInFlight = new AtomicInteger();
+            for (String t : ordered) {
+                if (isBlacklisted(t) || skipsUnchangedTable(t)) continue;
+                tablesInFlight.incrementAndGet();
+                futures.add(pool.submit(() -> {
+                    try {
+                        retry(() -> copyTable(t), "TABLE", t);
+                    } finally {
+                        tablesInFlight.decrementAndGet();
+                    }
+                }));
+            }
+            if (chunkPool != null) {
+                // Queued behind every table, so they only start on workers that have no table left to copy.
+                for (int i = 0; i < threads; i++) {
+                    futures.add(pool.submit(() -> stealChunks(tablesInFlight)));
+                }
             }
             waitForFutures(futures);
+            awaitConstraintBuilds();
+            checkCancelled();
 
-            syncViewsWithDependencyAwareness(views);
+            syncViewsWithDependencyAwareness(views, pool);
+            checkCancelled();
 
             for (Map<String, Object> seq : sequences) {
                 String name = (String) seq.get("SEQUENCE_NAME");
                 if (isBlacklisted(name)) continue;
                 retry(() -> syncSequence(seq), "SEQUENCE", name);
             }
+
+            checkCancelled();
+            if (shadow) {
+                if (swapShadowSchema(loadSchema)) {
+                    pendingWatermarks.forEach(watermarkStore::save);
+                    pendingSignatures.forEach(changeStore::save);
+                } else {
+                    // the live tables still hold the previous generation, so the loaded counts do not apply
+                    loadedRows.clear();
+                }
+            }
         } finally {
             pool.shutdown();
+            if (chunkPool != null) {
+                chunkPool.shutdown();
+                chunkPool = null;
+            }
+            if (writerPool != null) {
+                writerPool.shutdown();
+                writerPool = null;
+            }
+            if (constraintPool != null) {
+                // Builds that have not started are skipped. Running ones are left to finish, because interrupting
+                // H2 DDL could close its file channel.
+                synchronized (constraintFutures) {
+                    constraintFutures.forEach(f -> f.cancel(false));
+                }
+                constraintPool.shutdown();
+                try {
+                    while (!constraintPool.awaitTermination(10, TimeUnit.SECONDS)) {
+                        log.info("Waiting for running deferred constraint builds to finish");
+                    }
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+                constraintPool = null;
+            }
+            constraintFutures.clear();
+            preparedTables.clear();
+            stealableChunks.clear();
+            if (cancelRequested) {
+                progress.cancelPending();
+                dropStagingSchema();
+            }
+            progress.finish();
+            loadSchema = liveSchema;
+            pendingWatermarks.clear();
         }
         long took = System.currentTimeMillis() - t0;
+        // the report threads borrow their own connections, so the workers give theirs back first
+        oracleConnections.release();
         try {
-            reportPrinter.printReport(tables, views, sequences);
+            MigrationReport report = reportPrinter.printReport(jobName, schemaCatalog, Set.copyOf(unchangedTables),
+                    Map.copyOf(loadedRows), new TreeMap<>(batchTunings));
+            reportStore.save(report);
+            lastReport = report;
         } catch (Exception ex) {
             log.warn("Failed to generate migration report: {}", ex.toString());
             log.debug("Migration report failure", ex);
@@ -144,6 +485,182 @@ public abstract class AbstractOracleLoaderService {
         return false;
     }
 
+    /**
+     * Returns the quoted H2 name for an object of the current load, qualified with the schema that receives it.
+     */
+    protected String targetName(String object) {
+        String schema = loadSchema;
+        return schema == null ? quoteIdentifier(object) : quoteIdentifier(schema) + "." + quoteIdentifier(object);
+    }
+
+    private String liveName(String object) {
+        return liveSchema == null ? quoteIdentifier(object) : quoteIdentifier(liveSchema) + "." + quoteIdentifier(object);
+    }
+
+    private String prepareLoadSchema(boolean shadow) {
+        if (liveSchema == null) {
+            return null;
+        }
+        String previous = liveSchema + properties.getPreviousSuffix();
+        if (!h2SchemaExists(liveSchema) && h2SchemaExists(previous)) {
+            log.warn("Schema {} is missing but previous generation {} exists; restoring it after an interrupted swap", liveSchema, previous);
+            h2.execute("ALTER SCHEMA " + quoteIdentifier(previous) + " RENAME TO " + quoteIdentifier(liveSchema));
+        }
+        h2.execute("CREATE SCHEMA IF NOT EXISTS " + quoteIdentifier(liveSchema));
+        if (!shadow) {
+            return liveSchema;
+        }
+        String staging = liveSchema + properties.getStagingSuffix();
+        h2.execute("DROP SCHEMA IF EXISTS " + quoteIdentifier(staging) + " CASCADE");
+        h2.execute("CREATE SCHEMA " + quoteIdentifier(staging));
+        log.info("Loading into staging schema {}; {} keeps serving the current generation until the swap", staging, liveSchema);
+        return staging;
+    }
+
+    /**
+     * Drops the staging schema of a cancelled shadow refresh, which never replaces the live schema.
+     */
+    private void dropStagingSchema() {
+        if (!isLoadingIntoStaging()) {
+            return;
+        }
+        try {
+            h2.execute("DROP SCHEMA IF EXISTS " + quoteIdentifier(loadSchema) + " CASCADE");
+            log.info("Dropped staging schema {} of the cancelled refresh; {} is unchanged", loadSchema, liveSchema);
+        } catch (RuntimeException ex) {
+            log.warn("Failed to drop staging schema {}: {}", loadSchema, ex.toString());
+        }
+    }
+
+    private boolean h2SchemaExists(String schema) {
+        Integer count = h2.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SCHEMATA WHERE SCHEMA_NAME = ?", Integer.class, schema);
+        return count != null && count > 0;
+    }
+
+    private boolean h2ViewExists(String view) {
+        Integer count = h2.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.VIEWS " +
+                        "WHERE TABLE_SCHEMA = COALESCE(CAST(? AS VARCHAR), SCHEMA()) AND TABLE_NAME = ?",
+                Integer.class, loadSchema, view);
+        return count != null && count > 0;
+    }
+
+    private boolean isLoadingIntoStaging() {
+        String schema = loadSchema;
+        return schema != null && !schema.equals(liveSchema);
+    }
+
+    /**
+     * Replaces the live schema with the staging schema and rebuilds the views in it. The renames and the view builds
+     * run on one connection in H2's exclusive mode, which pauses the statements of every other session, so readers
+     * see either the previous generation or the new one with all of its views. H2 commits each DDL statement, so a
+     * view that fails to build is undone by renaming the schemas back. The previous generation is kept as
+     * {@code <target>_PREV} until the next swap.
+     */
+    private boolean swapShadowSchema(String staging) {
+        int failed = tableFailures.get();
+        if (failed > 0) {
+            log.error("{} table(s) failed to load into {}; keeping the current generation in {} and skipping the swap",
+                    failed, staging, liveSchema);
+            return false;
+        }
+        String previous = liveSchema + properties.getPreviousSuffix();
+        List<Map.Entry<String, String>> views;
+        synchronized (viewDefinitions) {
+            views = new ArrayList<>(viewDefinitions.entrySet());
+        }
+        long t0 = System.currentTimeMillis();
+        Map.Entry<String, SQLException> viewFailure = h2.execute((ConnectionCallback<Map.Entry<String, SQLException>>) con -> {
+            String session = con.getSchema();
+            try (Statement st = con.createStatement()) {
+                st.execute("SET EXCLUSIVE 1");
+                try {
+                    return swapSchemas(con, st, session, staging, previous, views);
+                } finally {
+                    con.setSchema(session);
+                    st.execute("SET EXCLUSIVE 0");
+                }
+            }
+        });
+        if (viewFailure != null) {
+            recordFailure("VIEW", viewFailure.getKey(), 1, viewFailure.getValue());
+            log.error("Failed to rebuild view {} in {}; renamed the schemas back, so {} keeps the current generation: {}",
+                    viewFailure.getKey(), liveSchema, liveSchema, viewFailure.getValue().toString());
+            return false;
+        }
+        loadSchema = liveSchema;
+        log.info("Swapped staging schema {} into {} in {} ms ({} views rebuilt); kept the previous generation as {}",
+                staging, liveSchema, System.currentTimeMillis() - t0, views.size(), previous);
+        return true;
+    }
+
+    /**
+     * The statements of {@link #swapShadowSchema(String)}; returns the view that could not be rebuilt, after the
+     * schemas were renamed back, or {@code null} once the staging schema is live.
+     */
+    private Map.Entry<String, SQLException> swapSchemas(
+            Connection con,
+            Statement st,
+            String session,
+            String staging,
+            String previous,
+            List<Map.Entry<String, String>> views
+    ) throws SQLException {
+        // H2 stores views with schema-qualified references, so staging views cannot survive the rename; they only
+        // served to validate the translated SQL and are rebuilt in the live schema.
+        for (int i = views.size() - 1; i >= 0; i--) {
+            st.execute("DROP VIEW IF EXISTS " + quoteIdentifier(staging) + "."
+                    + quoteIdentifier(views.get(i).getKey()) + " CASCADE");
+        }
+        st.execute("DROP SCHEMA IF EXISTS " + quoteIdentifier(previous) + " CASCADE");
+        st.execute("ALTER SCHEMA " + quoteIdentifier(liveSchema) + " RENAME TO " + quoteIdentifier(previous));
+        try {
+            st.execute("ALTER SCHEMA " + quoteIdentifier(staging) + " RENAME TO " + quoteIdentifier(liveSchema));
+        } catch (SQLException ex) {
+            st.execute("ALTER SCHEMA " + quoteIdentifier(previous) + " RENAME TO " + quoteIdentifier(liveSchema));
+            throw ex;
+        }
+        // translated view SQL references tables without a schema
+        con.setSchema(liveSchema);
+        List<String> built = new ArrayList<>(views.size());
+        for (Map.Entry<String, String> view : views) {
+            String name = quoteIdentifier(liveSchema) + "." + quoteIdentifier(view.getKey());
+            try {
+                st.execute("CREATE VIEW " + name + view.getValue());
+                built.add(name);
+            } catch (SQLException ex) {
+                for (int i = built.size() - 1; i >= 0; i--) {
+                    st.execute("DROP VIEW IF EXISTS " + built.get(i) + " CASCADE");
+                }
+                // H2 resolves the session schema while parsing, so it must not be the one renamed away
+                con.setSchema(session);
+                st.execute("ALTER SCHEMA " + quoteIdentifier(liveSchema) + " RENAME TO " + quoteIdentifier(staging));
+                st.execute("ALTER SCHEMA " + quoteIdentifier(previous) + " RENAME TO " + quoteIdentifier(liveSchema));
+                return Map.entry(view.getKey(), ex);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Opens the connection of every table worker concurrently, so the logons overlap instead of delaying the first
+     * table of each worker.
+     */
+    private void leaseWorkerConnections(ExecutorService pool) {
+        long t0 = System.currentTimeMillis();
+        List<Future<?>> leases = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            leases.add(pool.submit(() -> {
+                // closing the pinned connection keeps it leased to this worker
+                oracleConnections.getConnection().close();
+                return null;
+            }));
+        }
+        waitForFutures(leases);
+        log.info("Leased {} Oracle worker connection(s) in {} ms", oracleConnections.leasedCount(), System.currentTimeMillis() - t0);
+    }
+
     private void waitForFutures(List<Future<?>> futures) {
         try {
             for (Future<?> f : futures) {
@@ -161,64 +678,84 @@ public abstract class AbstractOracleLoaderService {
         }
     }
 
-    private void syncViewsWithDependencyAwareness(Set<String> views) {
-        Deque<String> queue = new ArrayDeque<>();
+    /**
+     * Creates the views level by level in dependency order, running the views of one level in parallel on
+     * {@code pool}. A view whose dependency failed is not attempted, and views on a dependency cycle are attempted
+     * once after all levels; every failure is recorded once, without waiting or retrying.
+     */
+    private void syncViewsWithDependencyAwareness(Set<String> views, ExecutorService pool) {
+        Set<String> candidates = new TreeSet<>();
         for (String view : views) {
             if (!isBlacklisted(view)) {
-                queue.addLast(view);
+                candidates.add(view);
             }
         }
-
-        Map<String, Integer> attempts = new HashMap<>();
-        Map<String, Integer> deferrals = new HashMap<>();
-        int deferralLimit = Math.max(3, maxRetries) * 4;
-
-        while (!queue.isEmpty()) {
-            String view = queue.removeFirst();
-            int attempt = attempts.merge(view, 1, Integer::sum);
-            try {
-                copyView(view);
-                recordSuccess("VIEW", view);
-            } catch (RuntimeException ex) {
-                if (shouldDeferViewCreation(ex) && deferrals.merge(view, 1, Integer::sum) <= deferralLimit) {
-                    int deferralCount = deferrals.get(view);
-                    log.info("Deferring creation of view {} until dependencies are available (attempt {}, deferral {}). Cause: {}",
-                            view, attempt, deferralCount, extractMessage(ex));
-                    sleepQuietly(500L * Math.min(deferralCount, 6));
-                    queue.addLast(view);
-                } else {
-                    recordFailure("VIEW", view, attempt, ex);
-                    log.warn("Giving up on view {} after {} attempts due to error: {}", view, attempt, ex.toString());
+        if (candidates.isEmpty()) {
+            return;
+        }
+        long t0 = System.currentTimeMillis();
+        ViewGraph graph = ViewGraph.of(candidates, viewReferences(candidates));
+        Set<String> failed = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+        for (List<String> level : graph.levels()) {
+            checkCancelled();
+            for (String view : level) {
+                String failedDependency = graph.dependencies(view).stream()
+                        .filter(failed::contains)
+                        .findFirst()
+                        .orElse(null);
+                if (failedDependency != null) {
+                    failed.add(view);
+                    metrics.viewDeferred("failed_dependency");
+                    recordFailure("VIEW", view, 0, new IllegalStateException(
+                            "View " + view + " depends on view " + failedDependency + ", which could not be created"));
+                    log.warn("Skipping view {} because view {} could not be created", view, failedDependency);
+                    continue;
                 }
-            } catch (Exception ex) {
-                recordFailure("VIEW", view, attempt, ex);
-                log.warn("Giving up on view {} after {} attempts due to error: {}", view, attempt, ex.toString());
+                futures.add(pool.submit(() -> createViewOnce(view, failed, null)));
             }
+            waitForFutures(futures);
+        }
+        for (String view : graph.cyclic()) {
+            String cycle = "View " + view + " is on a dependency cycle through " + graph.dependencies(view);
+            metrics.viewDeferred("cycle");
+            log.warn("{}, attempting it once", cycle);
+            createViewOnce(view, failed, cycle);
         }
+        log.info("Created {} of {} views in {} dependency levels in {} ms", candidates.size() - failed.size(),
+                candidates.size(), graph.levels().size(), System.currentTimeMillis() - t0);
     }
 
-    private boolean shouldDeferViewCreation(Throwable ex) {
-        Throwable current = ex;
-        while (current != null) {
-            if (current instanceof SQLException) {
-                SQLException sqlEx = (SQLException) current;
-                if ("42S02".equalsIgnoreCase(sqlEx.getSQLState())) {
-                    return true;
-                }
-                String message = sqlEx.getMessage();
-                if (message != null) {
-                    String upper = message.toUpperCase(Locale.ROOT);
-                    if (upper.contains("TABLE \"") && upper.contains("NOT FOUND")) {
-                        return true;
-                    }
-                    if (upper.contains("VIEW \"") && upper.contains("NOT FOUND")) {
-                        return true;
-                    }
-                }
+    private void createViewOnce(String view, Set<String> failed, String context) {
+        try {
+            copyView(view);
+            recordSuccess("VIEW", view);
+        } catch (RuntimeException ex) {
+            failed.add(view);
+            recordFailure("VIEW", view, 1, context == null ? ex : new IllegalStateException(context, ex));
+            log.warn("Failed to create view {}: {}", view, extractMessage(ex));
+        }
+    }
+
+    /**
+     * References between views, from {@code ALL_DEPENDENCIES} when the catalog has them, otherwise parsed from the
+     * Oracle view texts.
+     */
+    private Map<String, Set<String>> viewReferences(Set<String> views) {
+        SchemaCatalog schemaCatalog = catalog;
+        Map<String, Set<String>> cataloged = schemaCatalog == null ? null : schemaCatalog.viewDependencies();
+        if (cataloged != null) {
+            return cataloged;
+        }
+        Map<String, String> texts = new HashMap<>();
+        for (String view : views) {
+            try {
+                texts.put(view, fetchOracleViewDefinition(view));
+            } catch (RuntimeException ex) {
+                log.debug("Cannot read the text of view {} to find its dependencies: {}", view, ex.toString());
             }
-            current = current.getCause();
         }
-        return false;
+        return ViewGraph.parseReferences(views, texts);
     }
 
     private String extractMessage(Throwable ex) {
@@ -230,28 +767,28 @@ public abstract class AbstractOracleLoaderService {
         return cause == null ? ex.toString() : extractMessage(cause);
     }
 
-    private void sleepQuietly(long millis) {
-        try {
-            Thread.sleep(millis);
-        } catch (InterruptedException ie) {
-            Thread.currentThread().interrupt();
-        }
-    }
-
     private void retry(Runnable task, String type, String name) {
         int attempt = 0;
         while (true) {
+            checkCancelled();
             try {
                 attempt++;
                 task.run();
                 recordSuccess(type, name);
                 return;
             } catch (Exception ex) {
+                oracleConnections.discardCurrent();
+                if (cancelRequested) {
+                    // the failure is the cancellation itself, which is neither retried nor logged as a failure
+                    log.info("Stopped {} {} because the refresh was cancelled", type, name);
+                    throw new RefreshCancelledException(getJobName() + " was cancelled");
+                }
                 log.warn("Failed to process {} {} on attempt {}: {}", type, name, attempt, ex.toString());
                 if (attempt >= maxRetries) {
                     recordFailure(type, name, attempt, ex);
                     throw ex instanceof RuntimeException ? (RuntimeException) ex : new RuntimeException(ex);
                 }
+                metrics.retried(type);
                 try {
                     Thread.sleep(1000L * attempt * attempt);
                 } catch (InterruptedException ie) {
@@ -268,6 +805,9 @@ public abstract class AbstractOracleLoaderService {
     }
 
     private void recordFailure(String type, String name, int attempt, Exception ex) {
+        if ("TABLE".equals(type)) {
+            tableFailures.incrementAndGet();
+        }
         String sql = "MERGE INTO ETL_FAIL_LOG (OBJECT_TYPE, OBJECT_NAME, ATTEMPT_COUNT, LAST_ATTEMPT, ERROR_MESSAGE) " +
                 "KEY (OBJECT_TYPE, OBJECT_NAME) VALUES (?, ?, ?, CURRENT_TIMESTAMP(), ?)";
         h2.update(sql, type, name, attempt, truncate(exToString(ex), 16000));
@@ -286,58 +826,14 @@ public abstract class AbstractOracleLoaderService {
         return sb.toString();
     }
 
-    private Set<String> listTables(Connection conn) throws SQLException {
-        String sql = "SELECT table_name FROM all_tables WHERE owner = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, oracleSchema);
-            try (ResultSet rs = ps.executeQuery()) {
-                Set<String> out = new TreeSet<>();
-                while (rs.next()) out.add(rs.getString(1));
-                log.info("Found {} tables in Oracle schema {}", out.size(), oracleSchema);
-                return out;
-            }
-        }
-    }
-
-    private Set<String> listViews(Connection conn) throws SQLException {
-        String sql = "SELECT view_name FROM all_views WHERE owner = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, oracleSchema);
-            try (ResultSet rs = ps.executeQuery()) {
-                Set<String> out = new TreeSet<>();
-                while (rs.next()) out.add(rs.getString(1));
-                log.info("Found {} views in Oracle schema {}", out.size(), oracleSchema);
-                return out;
-            }
-        }
-    }
-
-    private List<Map<String, Object>> listSequences(Connection conn) throws SQLException {
-        String sql = "SELECT sequence_name, increment_by, last_number FROM all_sequences WHERE sequence_owner = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, oracleSchema);
-            try (ResultSet rs = ps.executeQuery()) {
-                List<Map<String, Object>> out = new ArrayList<>();
-                while (rs.next()) {
-                    Map<String, Object> row = new HashMap<>();
-                    row.put("SEQUENCE_NAME", rs.getString("SEQUENCE_NAME"));
-                    row.put("INCREMENT_BY", rs.getLong("INCREMENT_BY"));
-                    row.put("LAST_NUMBER", rs.getBigDecimal("LAST_NUMBER"));
-                    out.add(row);
-                }
-                log.info("Found {} sequences in Oracle schema {}", out.size(), oracleSchema);
-                return out;
-            }
-        }
-    }
-
     private void syncSequence(Map<String, Object> seq) {
         String name = ((String) seq.get("SEQUENCE_NAME")).toUpperCase(Locale.ROOT);
         long increment = ((Number) seq.get("INCREMENT_BY")).longValue();
         BigDecimal lastNumber = (BigDecimal) seq.get("LAST_NUMBER");
-        String drop = "DROP SEQUENCE IF EXISTS \"" + name + "\"";
-        String create = "CREATE SEQUENCE IF NOT EXISTS \"" + name + "\" START WITH " + lastNumber.toPlainString() + " INCREMENT BY " + increment;
-        String alter = "ALTER SEQUENCE \"" + name + "\" RESTART WITH " + lastNumber.toPlainString();
+        String target = targetName(name);
+        String drop = "DROP SEQUENCE IF EXISTS " + target;
+        String create = "CREATE SEQUENCE IF NOT EXISTS " + target + " START WITH " + lastNumber.toPlainString() + " INCREMENT BY " + increment;
+        String alter = "ALTER SEQUENCE " + target + " RESTART WITH " + lastNumber.toPlainString();
         h2.execute(drop);
         h2.execute(create);
         h2.execute(alter);
@@ -345,22 +841,641 @@ public abstract class AbstractOracleLoaderService {
     }
 
     protected void copyTable(String table) {
+        PreparedTable prepared = preparedTables.remove(table);
+        copyPreparedTable(prepared != null ? prepared : prepareTable(table));
+    }
+
+    /**
+     * Replaces the Oracle change detection, which by default reads the dictionary as configured in
+     * {@code loader.change-detection}.
+     */
+    void setTableChangeDetector(TableChangeDetector changeDetector) {
+        this.changeDetector = Objects.requireNonNull(changeDetector, "changeDetector");
+    }
+
+    /**
+     * Compares the current Oracle change signature of every table with the one recorded after its last successful
+     * copy. Tables that match, and still exist in the live schema, are not read from Oracle again.
+     */
+    private void detectUnchangedTables(Set<String> tables) {
+        if (!properties.getChangeDetection().isEnabled() || !copiesCompleteTables()) {
+            return;
+        }
+        long t0 = System.currentTimeMillis();
+        try (Connection conn = oracleConnections.getConnection()) {
+            changeSignatures.putAll(changeDetector.signatures(conn, oracleSchema, tables));
+        } catch (SQLException | RuntimeException ex) {
+            log.warn("Change detection failed, copying every table: {}", ex.toString());
+            changeSignatures.clear();
+            return;
+        }
+        Map<String, String> recorded = changeStore.findAll();
+        for (String table : tables) {
+            String signature = changeSignatures.get(table);
+            if (signature != null && signature.equals(recorded.get(table)) && !isBlacklisted(table)
+                    && !fetchH2Columns(liveSchema, table).isEmpty()) {
+                unchangedTables.add(table);
+            }
+        }
+        log.info("Change detection found {} of {} tables unchanged in {} ms",
+                unchangedTables.size(), tables.size(), System.currentTimeMillis() - t0);
+    }
+
+    /**
+     * Unchanged tables are left alone when loading in place; a staging schema still needs them and copies them from
+     * the live generation instead of Oracle.
+     */
+    private boolean skipsUnchangedTable(String table) {
+        return unchangedTables.contains(table) && !isLoadingIntoStaging();
+    }
+
+    private void recordChangeSignature(String table) {
+        String signature = changeSignatures.get(table);
+        if (signature == null) {
+            return;
+        }
+        if (isLoadingIntoStaging()) {
+            pendingSignatures.put(table, signature);
+        } else {
+            changeStore.save(table, signature);
+        }
+    }
+
+    /**
+     * Runs the DDL of every table up front and in parallel, so that the copy phase only moves data. A table whose
+     * preparation fails here is prepared again by its copy task, which handles retries and failure logging.
+     */
+    private void syncTableSchemas(List<String> tables, ExecutorService pool) {
+        long t0 = System.currentTimeMillis();
+        List<Future<?>> tasks = new ArrayList<>();
+        for (String t : tables) {
+            if (isBlacklisted(t) || skipsUnchangedTable(t)) continue;
+            tasks.add(pool.submit(() -> {
+                try {
+                    preparedTables.put(t, prepareTable(t));
+                } catch (RuntimeException ex) {
+                    oracleConnections.discardCurrent();
+                    log.warn("Schema sync of table {} failed, retrying with the copy: {}", t, ex.toString());
+                }
+            }));
+        }
+        waitForFutures(tasks);
+        log.info("Synced the structure of {} tables in {} ms", preparedTables.size(), System.currentTimeMillis() - t0);
+    }
+
+    private PreparedTable prepareTable(String table) {
+        long t0 = System.nanoTime();
+        long ddlNanos = 0;
+        long seedNanos = 0;
         String src = oracleSchema + "." + table;
-        String tgt = "\"" + table + "\"";
-        log.info("Copying table {}", src);
-        try (Connection oconn = oracleDs.getConnection();
+        String tgt = targetName(table);
+        boolean unchanged = unchangedTables.contains(table);
+        LoaderProperties.IncrementalTable incremental = copiesCompleteTables() && !unchanged
+                ? properties.getIncremental().find(table)
+                : null;
+        if (changeSignatures.containsKey(table) && !isLoadingIntoStaging()) {
+            // The live table is about to change; until the copy succeeds it must not look up to date.
+            changeStore.delete(table);
+        }
+        WatermarkStore.Watermark watermark = null;
+        List<String> primaryKeys;
+        List<List<String>> uniqueConstraints = Collections.emptyList();
+        boolean deferConstraints = false;
+        List<ChunkQuery> chunks = Collections.emptyList();
+        try (Connection oconn = oracleConnections.getConnection();
              Statement s = oconn.createStatement();
              ResultSet rs = s.executeQuery("SELECT * FROM " + src + " WHERE 1=0")) {
             log.debug("Prepared metadata for {} using Oracle connection {}", src, oconn);
-            List<String> primaryKeys = fetchPrimaryKeys(table, oconn);
-            Map<String, Boolean> nonNullableColumns = fetchNonNullableColumns(table, oconn);
-            List<List<String>> uniqueConstraints = fetchUniqueConstraints(table, oconn);
-            createTargetTableFrom(rs.getMetaData(), tgt, primaryKeys, nonNullableColumns, uniqueConstraints);
+            ResultSetMetaData md = rs.getMetaData();
+            primaryKeys = primaryKeysOf(table, oconn);
+            if (incremental != null) {
+                watermark = resolveIncrementalStart(table, incremental, md, primaryKeys);
+            }
+            if (watermark == null || isLoadingIntoStaging()) {
+                Map<String, Boolean> nonNullableColumns = nonNullableColumnsOf(table, oconn);
+                uniqueConstraints = uniqueConstraintsOf(table, oconn);
+                // Incremental merges look rows up by key, so they keep the indexes from the start.
+                deferConstraints = watermark == null && properties.getConstraints().isDeferred();
+                List<String> columns = columnDefinitions(md, primaryKeys, nonNullableColumns);
+                DdlFingerprintStore.Fingerprint fingerprint =
+                        DdlFingerprintStore.of(columns, keyDefinitions(primaryKeys, uniqueConstraints));
+                List<String> added = watermark == null ? reusableTableChanges(table, tgt, fingerprint) : null;
+                long ddlStart = System.nanoTime();
+                if (added != null) {
+                    reuseTargetTable(table, tgt, added, deferConstraints);
+                    log.info("Reusing table {} ({})", tgt, added.isEmpty() ? "structure unchanged" : "added " + added);
+                } else {
+                    createTargetTableFrom(tgt, columns, primaryKeys,
+                            deferConstraints ? Collections.emptyList() : uniqueConstraints, !deferConstraints);
+                }
+                ddlNanos = System.nanoTime() - ddlStart;
+                recordFingerprint("TABLE", table, fingerprint);
+            }
+            if ((watermark != null || unchanged) && isLoadingIntoStaging()) {
+                long seedStart = System.nanoTime();
+                seedFromLiveGeneration(table, md);
+                seedNanos = System.nanoTime() - seedStart;
+            }
+            if (watermark == null && !unchanged) {
+                chunks = planChunks(table, src, oconn, md, primaryKeys);
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Prepare target table failed for " + src, e);
         }
-        String selectSql = buildTableSelectSql(src, table);
-        bulkInsertFromSelect(selectSql, tgt);
+        metrics.record(LoaderMetrics.Phase.DDL, ddlNanos);
+        metrics.record(LoaderMetrics.Phase.METADATA, System.nanoTime() - t0 - ddlNanos - seedNanos);
+        return new PreparedTable(table, src, tgt, incremental, watermark, primaryKeys, uniqueConstraints,
+                deferConstraints, chunks);
+    }
+
+    /**
+     * Returns the columns to add when the existing H2 table can be truncated and reused, or {@code null} when it has
+     * to be recreated. Tables are only reused when loading in place; staging schemas always start empty.
+     */
+    private List<String> reusableTableChanges(String table, String target, DdlFingerprintStore.Fingerprint fingerprint) {
+        if (isLoadingIntoStaging() || fetchH2Columns(loadSchema, table).isEmpty()) {
+            return null;
+        }
+        DdlFingerprintStore.Fingerprint previous = fingerprintStore.find("TABLE", target);
+        if (fingerprint.matches(previous)) {
+            return Collections.emptyList();
+        }
+        return fingerprint.addedColumnsSince(previous);
+    }
+
+    /**
+     * Records the structure of an object created in the live schema. Objects built in a staging schema only become
+     * live with the swap, so their entry is cleared and the next in-place refresh recreates them once.
+     */
+    private void recordFingerprint(String type, String object, DdlFingerprintStore.Fingerprint fingerprint) {
+        String live = liveName(object);
+        if (isLoadingIntoStaging()) {
+            fingerprintStore.delete(type, live);
+        } else {
+            fingerprintStore.save(type, live, fingerprint);
+        }
+    }
+
+    private void copyPreparedTable(PreparedTable table) {
+        log.info("Copying table {}", table.src);
+        long t0 = System.currentTimeMillis();
+        LoadProgress.TableProgress tableProgress = progress.table(table.name);
+        SchemaCatalog schemaCatalog = catalog;
+        // NUM_ROWS only describes a full copy; incremental and sample copies report rows without a total.
+        tableProgress.begin(schemaCatalog == null || table.watermark != null || !copiesCompleteTables()
+                ? -1 : schemaCatalog.estimatedRows(table.name));
+        String selectSql = buildTableSelectSql(table.src, table.name);
+        try {
+            if (unchangedTables.contains(table.name)) {
+                log.info("Table {} is unchanged in Oracle, seeded it from the live generation", table.src);
+            } else if (table.chunks.size() > 1) {
+                copyInChunks(table.src, selectSql, table.chunks, table.target, tableProgress);
+            } else if (table.watermark == null) {
+                bulkInsertFromSelect(selectSql, Collections.emptyList(), table.target, null, tableProgress);
+            } else {
+                log.info("Incremental copy of {} where {}", table.src, table.watermark);
+                // rows committed after the last run may share its maximum watermark; MERGE makes re-reading them harmless
+                String incrementalSql = selectSql + " WHERE " + quoteIdentifier(table.watermark.getColumn()) + " >= ?";
+                bulkInsertFromSelect(incrementalSql, List.of(table.watermark.toJdbcValue()), table.target,
+                        table.primaryKeys, tableProgress);
+            }
+        } catch (RuntimeException ex) {
+            tableProgress.end(cancelRequested ? LoadProgress.State.CANCELLED : LoadProgress.State.FAILED);
+            throw ex;
+        }
+        tableProgress.end(unchangedTables.contains(table.name) ? LoadProgress.State.UNCHANGED : LoadProgress.State.DONE);
+        if (table.watermark == null && copiesCompleteTables() && !unchangedTables.contains(table.name)) {
+            // every Oracle row was inserted into the emptied table, which the migration report can reuse
+            loadedRows.put(table.name, tableProgress.getRowsCopied());
+        }
+        if (table.incremental != null) {
+            finishIncrementalCopy(table.name, table.incremental, table.target);
+        }
+        if (table.deferConstraints) {
+            scheduleConstraintBuild(table.name, table.target, table.primaryKeys, table.uniqueConstraints);
+        }
+        recordChangeSignature(table.name);
+        if (!unchangedTables.contains(table.name)) {
+            timingStore.save(table.name, System.currentTimeMillis() - t0,
+                    schemaCatalog == null ? -1 : schemaCatalog.estimatedBytes(table.name));
+        }
+    }
+
+    private static final class PreparedTable {
+        private final String name;
+        private final String src;
+        private final String target;
+        private final LoaderProperties.IncrementalTable incremental;
+        private final WatermarkStore.Watermark watermark;
+        private final List<String> primaryKeys;
+        private final List<List<String>> uniqueConstraints;
+        private final boolean deferConstraints;
+        private final List<ChunkQuery> chunks;
+
+        private PreparedTable(
+                String name,
+                String src,
+                String target,
+                LoaderProperties.IncrementalTable incremental,
+                WatermarkStore.Watermark watermark,
+                List<String> primaryKeys,
+                List<List<String>> uniqueConstraints,
+                boolean deferConstraints,
+                List<ChunkQuery> chunks
+        ) {
+            this.name = name;
+            this.src = src;
+            this.target = target;
+            this.incremental = incremental;
+            this.watermark = watermark;
+            this.primaryKeys = primaryKeys;
+            this.uniqueConstraints = uniqueConstraints;
+            this.deferConstraints = deferConstraints;
+            this.chunks = chunks;
+        }
+    }
+
+    /**
+     * Adds the PK/UNIQUE constraints of a table that was loaded bare. The index builds run on the constraint pool,
+     * so they overlap with the tables that are still loading.
+     */
+    private void scheduleConstraintBuild(
+            String table,
+            String target,
+            List<String> primaryKeys,
+            List<List<String>> uniqueConstraints
+    ) {
+        if (primaryKeys.isEmpty() && uniqueConstraints.isEmpty()) {
+            return;
+        }
+        ExecutorService pool = constraintPool;
+        Runnable build = () -> addConstraints(table, target, primaryKeys, uniqueConstraints);
+        if (pool == null) {
+            build.run();
+        } else {
+            constraintFutures.add(pool.submit(build));
+        }
+    }
+
+    private void addConstraints(String table, String target, List<String> primaryKeys, List<List<String>> uniqueConstraints) {
+        long t0 = System.currentTimeMillis();
+        if (!primaryKeys.isEmpty()) {
+            addConstraint(table + ".PRIMARY KEY", "ALTER TABLE " + target + " ADD PRIMARY KEY (" + joinQuoted(primaryKeys) + ")");
+        }
+        for (List<String> unique : uniqueConstraints) {
+            if (unique.isEmpty()) continue;
+            addConstraint(truncate(table + ".UNIQUE(" + String.join(",", unique) + ")", 256),
+                    "ALTER TABLE " + target + " ADD UNIQUE (" + joinQuoted(unique) + ")");
+        }
+        log.info("Built constraints of {} in {} ms", target, System.currentTimeMillis() - t0);
+    }
+
+    private void addConstraint(String name, String ddl) {
+        try {
+            h2.execute(ddl);
+            recordSuccess("CONSTRAINT", name);
+        } catch (RuntimeException ex) {
+            log.warn("Failed to add constraint {}: {}", name, ex.toString());
+            recordFailure("CONSTRAINT", name, 1, ex);
+        }
+    }
+
+    private void awaitConstraintBuilds() {
+        List<Future<?>> pending;
+        synchronized (constraintFutures) {
+            pending = new ArrayList<>(constraintFutures);
+            constraintFutures.clear();
+        }
+        if (!pending.isEmpty()) {
+            log.info("Waiting for {} deferred constraint build(s)", pending.size());
+            waitForFutures(pending);
+        }
+    }
+
+    private String joinQuoted(List<String> columns) {
+        return columns.stream()
+                .map(this::quoteIdentifier)
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Splits large tables into disjoint predicates that are read and inserted by separate workers.
+     * Returns an empty list when the table should be copied by a single cursor.
+     */
+    private List<ChunkQuery> planChunks(
+            String table,
+            String src,
+            Connection oconn,
+            ResultSetMetaData md,
+            List<String> primaryKeys
+    ) throws SQLException {
+        LoaderProperties.Chunking chunking = properties.getChunking();
+        int count = chunking.getChunks();
+        if (chunkPool == null || count < 2) {
+            return Collections.emptyList();
+        }
+        long estimatedRows = fetchEstimatedRowCount(table, oconn);
+        if (estimatedRows < chunking.getMinRows()) {
+            return Collections.emptyList();
+        }
+        if (chunking.getStrategy() == LoaderProperties.Chunking.Strategy.RANGE && primaryKeys.size() == 1) {
+            List<ChunkQuery> ranges = planRangeChunks(src, oconn, md, primaryKeys.get(0), count);
+            if (!ranges.isEmpty()) {
+                log.info("Splitting {} (~{} rows) into {} ranges of {}", src, estimatedRows, ranges.size(), primaryKeys.get(0));
+                return ranges;
+            }
+        }
+        String hashInput = primaryKeys.isEmpty()
+                ? "ROWID"
+                : primaryKeys.stream().map(this::quoteIdentifier).collect(Collectors.joining(" || '|' || "));
+        List<ChunkQuery> buckets = new ArrayList<>(count);
+        for (int bucket = 0; bucket < count; bucket++) {
+            buckets.add(new ChunkQuery("ORA_HASH(" + hashInput + ", " + (count - 1) + ") = " + bucket, Collections.emptyList()));
+        }
+        log.info("Splitting {} (~{} rows) into {} ORA_HASH buckets", src, estimatedRows, count);
+        return buckets;
+    }
+
+    private long fetchEstimatedRowCount(String table, Connection oconn) {
+        SchemaCatalog schemaCatalog = catalog;
+        if (schemaCatalog != null) {
+            return schemaCatalog.estimatedRows(table);
+        }
+        String sql = "SELECT num_rows FROM all_tables WHERE owner = ? AND table_name = ?";
+        try (PreparedStatement ps = oconn.prepareStatement(sql)) {
+            ps.setString(1, oracleSchema);
+            ps.setString(2, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    long rows = rs.getLong(1);
+                    return rs.wasNull() ? -1 : rows;
+                }
+            }
+        } catch (SQLException ex) {
+            log.debug("Row estimate unavailable for {}: {}", table, ex.getMessage());
+        }
+        return -1;
+    }
+
+    private List<ChunkQuery> planRangeChunks(String src, Connection oconn, ResultSetMetaData md, String key, int count)
+            throws SQLException {
+        if (!isIntegralKey(md, key)) {
+            return Collections.emptyList();
+        }
+        String column = quoteIdentifier(key);
+        BigDecimal min;
+        BigDecimal max;
+        try (Statement st = oconn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MIN(" + column + "), MAX(" + column + ") FROM " + src)) {
+            if (!rs.next()) {
+                return Collections.emptyList();
+            }
+            min = rs.getBigDecimal(1);
+            max = rs.getBigDecimal(2);
+        }
+        if (min == null || max == null) {
+            return Collections.emptyList();
+        }
+        BigDecimal span = max.subtract(min).add(BigDecimal.ONE);
+        BigDecimal step = span.divide(BigDecimal.valueOf(count), 0, java.math.RoundingMode.CEILING).max(BigDecimal.ONE);
+        List<ChunkQuery> ranges = new ArrayList<>(count);
+        BigDecimal lower = min;
+        for (int i = 0; i < count && lower.compareTo(max) <= 0; i++) {
+            BigDecimal upper = lower.add(step);
+            boolean first = i == 0;
+            boolean last = i == count - 1 || upper.compareTo(max) > 0;
+            // The outer ranges stay open so rows outside the MIN/MAX snapshot are not lost.
+            if (first && last) {
+                return Collections.emptyList();
+            } else if (first) {
+                ranges.add(new ChunkQuery(column + " < ?", List.of(upper)));
+            } else if (last) {
+                ranges.add(new ChunkQuery(column + " >= ?", List.of(lower)));
+            } else {
+                ranges.add(new ChunkQuery(column + " >= ? AND " + column + " < ?", List.of(lower, upper)));
+            }
+            lower = upper;
+        }
+        return ranges;
+    }
+
+    private boolean isIntegralKey(ResultSetMetaData md, String key) throws SQLException {
+        for (int i = 1; i <= md.getColumnCount(); i++) {
+            if (!key.equals(md.getColumnName(i))) {
+                continue;
+            }
+            switch (md.getColumnType(i)) {
+                case Types.INTEGER:
+                case Types.SMALLINT:
+                case Types.TINYINT:
+                case Types.BIGINT:
+                    return true;
+                case Types.NUMERIC:
+                case Types.DECIMAL:
+                    return md.getScale(i) == 0;
+                default:
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    private void copyInChunks(
+            String src,
+            String selectSql,
+            List<ChunkQuery> chunks,
+            String target,
+            LoadProgress.TableProgress tableProgress
+    ) {
+        ExecutorService workers = chunkPool;
+        ChunkGroup group = new ChunkGroup();
+        List<FutureTask<Void>> futures = new ArrayList<>(chunks.size());
+        for (ChunkQuery chunk : chunks) {
+            FutureTask<Void> task = new FutureTask<>(() -> {
+                if (!group.enter()) {
+                    return;
+                }
+                try {
+                    bulkInsertFromSelect(selectSql + " WHERE " + chunk.predicate, chunk.params, target, null, tableProgress);
+                } catch (RuntimeException ex) {
+                    oracleConnections.discardCurrent();
+                    group.fail(ex);
+                    throw ex;
+                } finally {
+                    group.exit();
+                }
+            }, null);
+            futures.add(task);
+            // A FutureTask runs at most once, so whichever of the chunk pool, an idle table worker or this thread
+            // gets to a chunk first copies it.
+            stealableChunks.add(task);
+            workers.execute(task);
+        }
+        for (FutureTask<Void> task : futures) {
+            task.run();
+        }
+        // Every chunk has started by now; wait for the ones on other threads, so no chunk still writes into the
+        // table once this copy has failed.
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                group.fail(new RuntimeException("Interrupted while copying chunks of " + src, ie));
+                throw group.failure();
+            } catch (ExecutionException ee) {
+                // recorded by the group; later chunks failed because the group stopped them
+            }
+        }
+        if (group.failure() != null) {
+            throw group.failure();
+        }
+        log.info("Copied {} in {} chunks", src, chunks.size());
+    }
+
+    /**
+     * Runs on table workers that have no table left: copies chunks of the tables still in progress until every table
+     * task has finished.
+     */
+    private void stealChunks(AtomicInteger tablesInFlight) {
+        while (tablesInFlight.get() > 0 || !stealableChunks.isEmpty()) {
+            Runnable chunk;
+            try {
+                chunk = stealableChunks.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ie) {
+                // nothing in a refresh interrupts its workers; leave the remaining chunks to their tables
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (chunk != null) {
+                chunk.run();
+            }
+        }
+    }
+
+    /**
+     * The chunks of one table copy. Once a chunk fails, the chunks that have not started are skipped and the ones
+     * running have their Oracle statements cancelled. Their threads are never interrupted, because an interrupt
+     * closes the H2 file channel they may be writing to.
+     */
+    private final class ChunkGroup {
+        private final Set<Thread> running = new HashSet<>();
+        private RuntimeException failure;
+
+        synchronized boolean enter() {
+            if (failure != null) {
+                return false;
+            }
+            running.add(Thread.currentThread());
+            return true;
+        }
+
+        synchronized void exit() {
+            running.remove(Thread.currentThread());
+        }
+
+        synchronized void fail(RuntimeException ex) {
+            if (failure != null) {
+                return;
+            }
+            failure = ex;
+            // the threads stay in this group until exit(), so only statements of its chunks are cancelled
+            for (Thread thread : running) {
+                if (thread != Thread.currentThread()) {
+                    oracleConnections.cancel(thread);
+                }
+            }
+        }
+
+        synchronized RuntimeException failure() {
+            return failure;
+        }
+    }
+
+    private static final class ChunkQuery {
+        private final String predicate;
+        private final List<Object> params;
+
+        private ChunkQuery(String predicate, List<Object> params) {
+            this.predicate = predicate;
+            this.params = params;
+        }
+    }
+
+    /**
+     * Returns the watermark to continue from, or {@code null} when the table needs a full reload first.
+     */
+    private WatermarkStore.Watermark resolveIncrementalStart(
+            String table,
+            LoaderProperties.IncrementalTable incremental,
+            ResultSetMetaData md,
+            List<String> primaryKeys
+    ) throws SQLException {
+        String column = incremental.getWatermarkColumn().trim().toUpperCase(Locale.ROOT);
+        WatermarkStore.Watermark watermark = watermarkStore.find(table);
+        if (watermark == null || !column.equals(watermark.getColumn())) {
+            log.info("No watermark on {} recorded for {}; running a full load first", column, table);
+            return null;
+        }
+        if (primaryKeys.isEmpty()) {
+            log.warn("Table {} is configured for incremental refresh but has no primary key; running a full load", table);
+            return null;
+        }
+        String existingSchema = isLoadingIntoStaging() ? liveSchema : loadSchema;
+        Set<String> existingColumns = fetchH2Columns(existingSchema, table);
+        for (int i = 1; i <= md.getColumnCount(); i++) {
+            if (!existingColumns.contains(md.getColumnName(i))) {
+                log.info("Oracle column {}.{} is missing in H2; running a full load", table, md.getColumnName(i));
+                return null;
+            }
+        }
+        return watermark;
+    }
+
+    private Set<String> fetchH2Columns(String schema, String table) {
+        List<String> columns = h2.queryForList(
+                "SELECT COLUMN_NAME FROM INFORMATION_SCHEMA.COLUMNS " +
+                        "WHERE TABLE_SCHEMA = COALESCE(CAST(? AS VARCHAR), SCHEMA()) AND TABLE_NAME = ?",
+                String.class, schema, table);
+        return new HashSet<>(columns);
+    }
+
+    /**
+     * Copies the current generation of an incremental table into the staging schema, so that only the changed
+     * rows have to come from Oracle.
+     */
+    private void seedFromLiveGeneration(String table, ResultSetMetaData md) throws SQLException {
+        List<String> columns = new ArrayList<>();
+        for (int i = 1; i <= md.getColumnCount(); i++) {
+            columns.add(quoteIdentifier(md.getColumnName(i)));
+        }
+        String columnList = String.join(", ", columns);
+        int rows = h2.update("INSERT INTO " + targetName(table) + " (" + columnList + ") SELECT " + columnList
+                + " FROM " + quoteIdentifier(liveSchema) + "." + quoteIdentifier(table));
+        log.info("Seeded {} rows of {} from the live generation", rows, table);
+    }
+
+    private void finishIncrementalCopy(String table, LoaderProperties.IncrementalTable incremental, String target) {
+        String column = incremental.getWatermarkColumn().trim().toUpperCase(Locale.ROOT);
+        Object max = h2.queryForObject("SELECT MAX(" + quoteIdentifier(column) + ") FROM " + target, Object.class);
+        String softDeleteColumn = incremental.getSoftDeleteColumn();
+        if (softDeleteColumn != null && !softDeleteColumn.isBlank()) {
+            int deleted = h2.update("DELETE FROM " + target + " WHERE "
+                    + quoteIdentifier(softDeleteColumn.trim().toUpperCase(Locale.ROOT)) + " = ?", incremental.getSoftDeleteValue());
+            if (deleted > 0) {
+                log.info("Removed {} soft-deleted rows from {}", deleted, target);
+            }
+        }
+        WatermarkStore.Watermark watermark = WatermarkStore.of(column, max);
+        if (watermark == null) {
+            return;
+        }
+        if (isLoadingIntoStaging()) {
+            pendingWatermarks.put(table, watermark);
+        } else {
+            watermarkStore.save(table, watermark);
+        }
+        log.info("Recorded watermark {} for {}", watermark, table);
     }
 
     protected String buildTableSelectSql(String oracleQualifiedTable, String table) {
@@ -369,14 +1484,12 @@ public abstract class AbstractOracleLoaderService {
 
     private void copyView(String view) {
         String src = oracleSchema + "." + view;
-        String viewName = "\"" + view + "\"";
+        String viewName = targetName(view);
         log.info("Creating H2 view {} from Oracle view {}", viewName, src);
 
         String oracleSql = fetchOracleViewDefinition(view);
         String translatedSql = viewSqlTranslator.translate(oracleSql);
 
-        dropLegacyArtifacts(viewName, view);
-
         List<String> columns = ensureUniqueColumnNames(view, fetchOracleViewColumns(view));
         String columnList = columns.isEmpty()
                 ? ""
@@ -384,18 +1497,61 @@ public abstract class AbstractOracleLoaderService {
                 .map(this::quoteIdentifier)
                 .collect(Collectors.joining(", ", " (", ")"));
 
-        String createViewSql = "CREATE VIEW " + viewName + columnList + " AS " + translatedSql;
-        h2.execute(createViewSql);
+        String body = columnList + " AS " + translatedSql;
+        DdlFingerprintStore.Fingerprint fingerprint = DdlFingerprintStore.of(Collections.emptyList(), body);
+        if (!isLoadingIntoStaging() && h2ViewExists(view)
+                && fingerprint.matches(fingerprintStore.find("VIEW", viewName))) {
+            viewDefinitions.put(view, body);
+            log.info("H2 view {} is unchanged, keeping it", viewName);
+            return;
+        }
+
+        dropLegacyArtifacts(viewName, view);
+        createView(view, body);
+        viewDefinitions.put(view, body);
+        recordFingerprint("VIEW", view, fingerprint);
         log.info("Created H2 view {} using translated Oracle SQL", viewName);
     }
 
+    /**
+     * Translated view SQL references tables without a schema, so it is compiled with the load schema as the
+     * session schema.
+     */
+    private void createView(String view, String body) {
+        String createViewSql = "CREATE VIEW " + targetName(view) + body;
+        String schema = loadSchema;
+        if (schema == null) {
+            h2.execute(createViewSql);
+            return;
+        }
+        h2.execute((ConnectionCallback<Void>) con -> {
+            String previous = con.getSchema();
+            con.setSchema(schema);
+            try (Statement st = con.createStatement()) {
+                st.execute(createViewSql);
+            } finally {
+                con.setSchema(previous);
+            }
+            return null;
+        });
+    }
+
     private List<String> fetchOracleViewColumns(String view) {
         if (oracleSchema == null || oracleSchema.isBlank()) {
             return Collections.emptyList();
         }
 
+        SchemaCatalog schemaCatalog = catalog;
+        List<String> cataloged = schemaCatalog == null ? null : schemaCatalog.columnNames(view);
+        if (cataloged != null) {
+            if (cataloged.isEmpty()) {
+                log.warn("No columns found for Oracle view {}. Falling back to default column names", view);
+            }
+            return cataloged;
+        }
+
         String sql = "SELECT column_name FROM all_tab_columns WHERE owner = ? AND table_name = ? ORDER BY column_id";
-        try (Connection conn = oracleDs.getConnection();
+        try (Connection conn = oracleConnections.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, oracleSchema);
             ps.setString(2, view);
@@ -460,14 +1616,7 @@ public abstract class AbstractOracleLoaderService {
     }
 
     private String quoteIdentifier(String identifier) {
-        if (identifier == null) {
-            throw new IllegalArgumentException("Identifier is null");
-        }
-        String trimmed = identifier.trim();
-        if (trimmed.isEmpty()) {
-            throw new IllegalArgumentException("Identifier is blank");
-        }
-        return "\"" + trimmed.replace("\"", "\"\"") + "\"";
+        return CopyEngine.quoteIdentifier(identifier);
     }
 
     private void dropLegacyArtifacts(String viewName, String view) {
@@ -492,7 +1641,12 @@ public abstract class AbstractOracleLoaderService {
     }
 
     private String fetchOracleViewDefinition(String view) {
-        try (Connection conn = oracleDs.getConnection()) {
+        SchemaCatalog schemaCatalog = catalog;
+        String cataloged = schemaCatalog == null ? null : schemaCatalog.viewText(view);
+        if (cataloged != null) {
+            return cataloged;
+        }
+        try (Connection conn = oracleConnections.getConnection()) {
             String definition = fetchViewTextFromAllViews(conn, view);
             if (definition != null && !definition.isBlank()) {
                 return definition;
@@ -512,7 +1666,7 @@ public abstract class AbstractOracleLoaderService {
                 if (!rs.next()) {
                     return null;
                 }
-                return readLargeText(rs, 1);
+                return SchemaCatalog.readText(rs, 1);
             }
         }
     }
@@ -530,7 +1684,7 @@ public abstract class AbstractOracleLoaderService {
             ps.setString(2, oracleSchema);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    String ddl = readLargeText(rs, 1);
+                    String ddl = SchemaCatalog.readText(rs, 1);
                     if (ddl != null) {
                         String select = extractSelectFromDdl(ddl);
                         if (select != null && !select.isBlank()) {
@@ -554,39 +1708,16 @@ public abstract class AbstractOracleLoaderService {
         return null;
     }
 
-    private String readLargeText(ResultSet rs, int index) throws SQLException {
-        String text = rs.getString(index);
-        if (text != null) {
-            return text;
-        }
-        try (Reader reader = rs.getCharacterStream(index)) {
-            if (reader == null) {
-                return null;
-            }
-            StringBuilder sb = new StringBuilder();
-            char[] buf = new char[4096];
-            int len;
-            while ((len = reader.read(buf)) != -1) {
-                sb.append(buf, 0, len);
-            }
-            return sb.toString();
-        } catch (IOException ex) {
-            throw new SQLException("Failed to read Oracle text column", ex);
-        }
-    }
-
-    private void createTargetTableFrom(
+    /**
+     * Builds the H2 column definitions of an Oracle result set, in Oracle column order.
+     */
+    private List<String> columnDefinitions(
             ResultSetMetaData md,
-            String target,
             List<String> primaryKeys,
-            Map<String, Boolean> nonNullableColumns,
-            List<List<String>> uniqueConstraints
+            Map<String, Boolean> nonNullableColumns
     ) throws SQLException {
-        String drop = "DROP TABLE IF EXISTS " + target + " CASCADE";
-        h2.execute(drop);
-        StringBuilder ddl = new StringBuilder("CREATE TABLE ").append(target).append(" (");
+        List<String> definitions = new ArrayList<>(md.getColumnCount());
         for (int i = 1; i <= md.getColumnCount(); i++) {
-            if (i > 1) ddl.append(", ");
             String name = md.getColumnName(i);
             int type = md.getColumnType(i);
             int precision = md.getPrecision(i);
@@ -595,32 +1726,82 @@ public abstract class AbstractOracleLoaderService {
             boolean notNull = Boolean.TRUE.equals(nonNullableColumns.get(name))
                     || md.isNullable(i) == ResultSetMetaData.columnNoNulls
                     || (primaryKeys != null && primaryKeys.contains(name));
-            ddl.append("\"").append(name).append("\" ").append(mapType(type, precision, scale, displaySize));
-            if (notNull) {
-                ddl.append(" NOT NULL");
-            }
+            definitions.add("\"" + name + "\" " + mapType(type, precision, scale, displaySize) + (notNull ? " NOT NULL" : ""));
         }
-        if (primaryKeys != null && !primaryKeys.isEmpty()) {
-            ddl.append(", PRIMARY KEY (");
-            ddl.append(primaryKeys.stream()
-                    .map(this::quoteIdentifier)
-                    .collect(Collectors.joining(", ")));
-            ddl.append(")");
+        return definitions;
+    }
+
+    private static String keyDefinitions(List<String> primaryKeys, List<List<String>> uniqueConstraints) {
+        StringBuilder keys = new StringBuilder("PK(").append(String.join(",", primaryKeys)).append(")");
+        for (List<String> unique : uniqueConstraints) {
+            keys.append(" UQ(").append(String.join(",", unique)).append(")");
+        }
+        return keys.toString();
+    }
+
+    private void createTargetTableFrom(
+            String target,
+            List<String> columnDefinitions,
+            List<String> primaryKeys,
+            List<List<String>> uniqueConstraints,
+            boolean withPrimaryKey
+    ) {
+        String drop = "DROP TABLE IF EXISTS " + target + " CASCADE";
+        h2.execute(drop);
+        StringBuilder ddl = new StringBuilder("CREATE TABLE ").append(target).append(" (");
+        ddl.append(String.join(", ", columnDefinitions));
+        if (withPrimaryKey && primaryKeys != null && !primaryKeys.isEmpty()) {
+            ddl.append(", PRIMARY KEY (").append(joinQuoted(primaryKeys)).append(")");
         }
         if (uniqueConstraints != null && !uniqueConstraints.isEmpty()) {
             for (List<String> unique : uniqueConstraints) {
                 if (unique.isEmpty()) continue;
-                ddl.append(", UNIQUE (");
-                ddl.append(unique.stream()
-                        .map(this::quoteIdentifier)
-                        .collect(Collectors.joining(", ")));
-                ddl.append(")");
+                ddl.append(", UNIQUE (").append(joinQuoted(unique)).append(")");
             }
         }
         ddl.append(")");
         h2.execute(ddl.toString());
     }
 
+    /**
+     * Empties an existing table whose structure still matches Oracle, adding the columns that are new in Oracle.
+     * With deferred constraints its PK/UNIQUE constraints are dropped as well and rebuilt after the load.
+     */
+    private void reuseTargetTable(String table, String target, List<String> addedColumns, boolean dropKeys) {
+        h2.execute("TRUNCATE TABLE " + target);
+        for (String column : addedColumns) {
+            h2.execute("ALTER TABLE " + target + " ADD COLUMN " + column);
+        }
+        if (dropKeys) {
+            List<String> constraints = h2.queryForList(
+                    "SELECT CONSTRAINT_NAME FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS " +
+                            "WHERE TABLE_SCHEMA = COALESCE(CAST(? AS VARCHAR), SCHEMA()) AND TABLE_NAME = ? " +
+                            "AND CONSTRAINT_TYPE IN ('PRIMARY KEY', 'UNIQUE')",
+                    String.class, loadSchema, table);
+            for (String constraint : constraints) {
+                h2.execute("ALTER TABLE " + target + " DROP CONSTRAINT " + quoteIdentifier(constraint));
+            }
+        }
+    }
+
+    private List<String> primaryKeysOf(String table, Connection oracleConnection) throws SQLException {
+        SchemaCatalog schemaCatalog = catalog;
+        List<String> keys = schemaCatalog == null ? null : schemaCatalog.primaryKey(table);
+        return keys != null ? keys : fetchPrimaryKeys(table, oracleConnection);
+    }
+
+    private Map<String, Boolean> nonNullableColumnsOf(String table, Connection oracleConnection) throws SQLException {
+        SchemaCatalog schemaCatalog = catalog;
+        Map<String, Boolean> columns = schemaCatalog == null ? null : schemaCatalog.nonNullableColumns(table);
+        return columns != null ? columns : fetchNonNullableColumns(table, oracleConnection);
+    }
+
+    private List<List<String>> uniqueConstraintsOf(String table, Connection oracleConnection) throws SQLException {
+        SchemaCatalog schemaCatalog = catalog;
+        List<List<String>> constraints = schemaCatalog == null ? null : schemaCatalog.uniqueConstraints(table);
+        return constraints != null ? constraints : fetchUniqueConstraints(table, oracleConnection);
+    }
+
     private List<String> fetchPrimaryKeys(String table, Connection oracleConnection) throws SQLException {
         String sql = "SELECT cols.column_name " +
                 "FROM all_constraints cons " +
@@ -753,71 +1934,28 @@ public abstract class AbstractOracleLoaderService {
         }
     }
 
-    private void bulkInsertFromSelect(String selectSql, String target) {
-        String countSql = "SELECT COUNT(1) FROM (" + selectSql + ") t";
-        long total = 0;
-        try (Connection oconn = oracleDs.getConnection()) {
-            try (Statement st = oconn.createStatement();
-                 ResultSet crs = st.executeQuery(countSql)) {
-                if (crs.next()) total = crs.getLong(1);
-            } catch (SQLException e) {
-                log.warn("Count failed (non-fatal) for {}: {}", selectSql, e.getMessage());
-            }
-
-            try (PreparedStatement src = oconn.prepareStatement(selectSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
-                log.debug("Streaming data for target {} using Oracle connection {}", target, oconn);
-                src.setFetchSize(Math.max(batchSize, 100));
-                try (ResultSet rs = src.executeQuery()) {
-                    ResultSetMetaData md = rs.getMetaData();
-                    int cols = md.getColumnCount();
-                    StringBuilder sb = new StringBuilder("INSERT INTO ").append(target).append(" (");
-                    for (int i = 1; i <= cols; i++) {
-                        if (i > 1) sb.append(",");
-                        sb.append("\"").append(md.getColumnName(i)).append("\"");
-                    }
-                    sb.append(") VALUES (");
-                    for (int i = 1; i <= cols; i++) {
-                        if (i > 1) sb.append(",");
-                        sb.append("?");
-                    }
-                    sb.append(")");
-                    String insertSql = sb.toString();
-
-                    try (Connection h2conn = Objects.requireNonNull(h2.getDataSource()).getConnection()) {
-                        h2conn.setAutoCommit(false);
-                        try (PreparedStatement ins = h2conn.prepareStatement(insertSql)) {
-                            long n = 0;
-                            while (rs.next()) {
-                                for (int i = 1; i <= cols; i++) {
-                                    Object v = OracleJdbcValueConverter.readColumnValue(rs, md, i, log);
-                                    ins.setObject(i, v);
-                                }
-                                ins.addBatch();
-                                n++;
-                                if (n % batchSize == 0) {
-                                    ins.executeBatch();
-                                    h2conn.commit();
-                                    if (total > 0) {
-                                        log.info("Inserted {} / {} into {}", n, total, target);
-                                    } else if (n % (batchSize * 10) == 0) {
-                                        log.info("Inserted {} rows into {}", n, target);
-                                    }
-                                }
-                            }
-                            ins.executeBatch();
-                            h2conn.commit();
-                            log.info("Inserted {} rows into {}", n, target);
-                        } catch (SQLException ex) {
-                            h2conn.rollback();
-                            throw ex;
-                        } finally {
-                            h2conn.setAutoCommit(true);
-                        }
-                    }
-                }
-            }
-        } catch (SQLException e) {
+    /**
+     * Copies the rows of {@code selectSql} into {@code target} with the engine configured for the table. With
+     * {@code keyColumns} the rows are applied with {@code MERGE ... KEY(...)} instead of a plain insert.
+     */
+    private void bulkInsertFromSelect(
+            String selectSql,
+            List<Object> params,
+            String target,
+            List<String> keyColumns,
+            LoadProgress.TableProgress tableProgress
+    ) {
+        LoaderProperties.Copy.Engine engine = properties.getCopy().engineFor(tableProgress.getTable());
+        metrics.workerStarted();
+        try {
+            copyEngines.get(engine).copy(new CopyEngine.Request(selectSql, params, target, keyColumns, tableProgress));
+        } catch (SQLException | IOException e) {
             throw new RuntimeException("Bulk insert failed for target " + target, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while copying into " + target, e);
+        } finally {
+            metrics.workerFinished();
         }
     }
 
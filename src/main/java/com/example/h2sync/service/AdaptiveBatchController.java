@@ -0,0 +1,180 @@
+package com.example.h2sync.service;
+
+import com.example.h2sync.config.LoaderProperties;
+
+/**
+ * Chooses the batch size, JDBC fetch size and commit interval of one table copy. After every batch it compares the
+ * measured row width and H2 execute latency with the configured targets: batches shrink until they fit
+ * {@code targetBatchBytes} and {@code targetBatchMs}, and grow (at most doubling per step) while they are well below
+ * both. Commits are spread over more batches while they take a noticeable share of the write time.
+ * <p>
+ * The reader thread reads the current values and the writer thread records measurements, so the tuned values are
+ * volatile and only ever written by the writer.
+ */
+final class AdaptiveBatchController {
+
+    private final boolean adaptive;
+    private final int minRows;
+    private final int maxRows;
+    private final long targetBatchBytes;
+    private final long targetBatchMs;
+    private final int maxFetchSize;
+    private final int maxCommitInterval;
+    private volatile int batchRows;
+    private volatile int fetchSize;
+    private volatile int commitInterval;
+    private volatile double bytesPerRow = -1;
+    private double executeMsPerBatch = -1;
+    private long batches;
+
+    private AdaptiveBatchController(
+            boolean adaptive,
+            int batchRows,
+            int fetchSize,
+            int commitInterval,
+            LoaderProperties.Batching settings
+    ) {
+        this.adaptive = adaptive;
+        this.minRows = Math.max(1, settings.getMinRows());
+        this.maxRows = Math.max(minRows, settings.getMaxRows());
+        this.targetBatchBytes = Math.max(1, settings.getTargetBatchBytes());
+        this.targetBatchMs = Math.max(1, settings.getTargetBatchMs());
+        this.maxFetchSize = Math.max(1, settings.getMaxFetchSize());
+        this.maxCommitInterval = Math.max(1, settings.getMaxCommitInterval());
+        this.batchRows = Math.max(1, batchRows);
+        this.fetchSize = Math.max(1, fetchSize);
+        this.commitInterval = Math.max(1, commitInterval);
+    }
+
+    /**
+     * Returns the controller for {@code table}: pinned values when configured, otherwise the global batch size as
+     * the starting point, tuned only when {@code loader.batching.adaptive} is on.
+     */
+    static AdaptiveBatchController forTable(String table, int batchSize, LoaderProperties.Batching settings) {
+        LoaderProperties.PinnedBatch pinned = settings.findPinned(table);
+        if (pinned != null && pinned.getRows() > 0) {
+            int fetch = pinned.getFetchSize() > 0 ? pinned.getFetchSize() : Math.max(pinned.getRows(), 100);
+            return new AdaptiveBatchController(false, pinned.getRows(), fetch, pinned.getCommitInterval(), settings);
+        }
+        if (!settings.isAdaptive()) {
+            return new AdaptiveBatchController(false, batchSize, Math.max(batchSize, 100), 1, settings);
+        }
+        AdaptiveBatchController controller = new AdaptiveBatchController(true, batchSize, batchSize, 1, settings);
+        controller.batchRows = controller.clampRows(batchSize);
+        controller.fetchSize = controller.fetchSizeFor(controller.batchRows);
+        return controller;
+    }
+
+    int batchRows() {
+        return batchRows;
+    }
+
+    int fetchSize() {
+        return fetchSize;
+    }
+
+    int commitInterval() {
+        return commitInterval;
+    }
+
+    /**
+     * Records one executed batch of {@code rows} rows taking about {@code bytes} on the heap.
+     */
+    void recordBatch(int rows, long bytes, long executeNanos) {
+        batches++;
+        if (!adaptive || rows == 0) {
+            return;
+        }
+        double rowBytes = (double) bytes / rows;
+        bytesPerRow = bytesPerRow < 0 ? rowBytes : 0.8 * bytesPerRow + 0.2 * rowBytes;
+        double executeMs = executeNanos / 1_000_000.0;
+        executeMsPerBatch = executeMsPerBatch < 0 ? executeMs : 0.8 * executeMsPerBatch + 0.2 * executeMs;
+        if (rows < batchRows) {
+            // the last, partial batch of a table says nothing about the latency of a full one
+            return;
+        }
+        double byBytes = targetBatchBytes / Math.max(1.0, bytesPerRow);
+        double byLatency = executeMs <= 0 ? maxRows : rows * (double) targetBatchMs / executeMs;
+        long next = (long) Math.min(byBytes, byLatency);
+        next = Math.min(next, 2L * rows);
+        int clamped = clampRows(next);
+        boolean atBound = clamped == minRows || clamped == maxRows;
+        if (clamped != batchRows && (atBound || Math.abs(clamped - batchRows) > batchRows / 4)) {
+            batchRows = clamped;
+            fetchSize = fetchSizeFor(clamped);
+        }
+    }
+
+    /**
+     * Records a commit that covered {@code batchCount} batches.
+     */
+    void recordCommit(int batchCount, long commitNanos) {
+        if (!adaptive || executeMsPerBatch <= 0 || batchCount == 0) {
+            return;
+        }
+        double share = (commitNanos / 1_000_000.0) / (executeMsPerBatch * batchCount);
+        int interval = commitInterval;
+        if (share > 0.10 && interval < maxCommitInterval) {
+            commitInterval = Math.min(maxCommitInterval, interval * 2);
+        } else if (share < 0.02 && interval > 1) {
+            commitInterval = interval / 2;
+        }
+    }
+
+    Tuning snapshot() {
+        return new Tuning(batchRows, fetchSize, commitInterval, Math.round(Math.max(0, bytesPerRow)), batches, adaptive);
+    }
+
+    private int clampRows(long rows) {
+        return (int) Math.max(minRows, Math.min(maxRows, rows));
+    }
+
+    private int fetchSizeFor(int rows) {
+        return Math.max(10, Math.min(maxFetchSize, rows));
+    }
+
+    /**
+     * The values a table copy ended with, as shown in the migration report.
+     */
+    static final class Tuning {
+        private final int batchRows;
+        private final int fetchSize;
+        private final int commitInterval;
+        private final long bytesPerRow;
+        private final long batches;
+        private final boolean adaptive;
+
+        Tuning(int batchRows, int fetchSize, int commitInterval, long bytesPerRow, long batches, boolean adaptive) {
+            this.batchRows = batchRows;
+            this.fetchSize = fetchSize;
+            this.commitInterval = commitInterval;
+            this.bytesPerRow = bytesPerRow;
+            this.batches = batches;
+            this.adaptive = adaptive;
+        }
+
+        int getBatchRows() {
+            return batchRows;
+        }
+
+        int getFetchSize() {
+            return fetchSize;
+        }
+
+        int getCommitInterval() {
+            return commitInterval;
+        }
+
+        long getBytesPerRow() {
+            return bytesPerRow;
+        }
+
+        long getBatches() {
+            return batches;
+        }
+
+        boolean isAdaptive() {
+            return adaptive;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.h2sync.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer that the result writers encode into. Text is encoded to UTF-8 directly into the buffer, so
+ * no intermediate strings or byte arrays are created per value. The buffer is reused: {@link #flushTo} writes it
+ * out and rewinds it.
+ */
+final class ByteSink {
+
+    private byte[] buf;
+    private int size;
+
+    ByteSink(int capacity) {
+        this.buf = new byte[Math.max(16, capacity)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void reset() {
+        size = 0;
+    }
+
+    void flushTo(OutputStream out) throws IOException {
+        if (size > 0) {
+            out.write(buf, 0, size);
+            size = 0;
+        }
+    }
+
+    void copyTo(ByteSink target) {
+        target.write(buf, 0, size);
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, size);
+    }
+
+    void write(int b) {
+        ensure(1);
+        buf[size++] = (byte) b;
+    }
+
+    void write(byte[] bytes) {
+        write(bytes, 0, bytes.length);
+    }
+
+    void write(byte[] bytes, int off, int len) {
+        ensure(len);
+        System.arraycopy(bytes, off, buf, size, len);
+        size += len;
+    }
+
+    void writeAscii(String s) {
+        int len = s.length();
+        ensure(len);
+        for (int i = 0; i < len; i++) {
+            buf[size++] = (byte) s.charAt(i);
+        }
+    }
+
+    void writeUtf8(CharSequence s) {
+        writeUtf8(s, 0, s.length());
+    }
+
+    /**
+     * Encodes the characters {@code from} (inclusive) to {@code to} (exclusive) of {@code s} as UTF-8.
+     */
+    void writeUtf8(CharSequence s, int from, int to) {
+        ensure(to - from);
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (size == buf.length) {
+                    ensure(to - i);
+                }
+                buf[size++] = (byte) c;
+            } else if (c < 0x800) {
+                ensure(2);
+                buf[size++] = (byte) (0xC0 | (c >> 6));
+                buf[size++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                ensure(4);
+                buf[size++] = (byte) (0xF0 | (cp >> 18));
+                buf[size++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[size++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[size++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                write('?');
+            } else {
+                ensure(3);
+                buf[size++] = (byte) (0xE0 | (c >> 12));
+                buf[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Writes {@code value} as an unsigned LEB128 varint.
+     */
+    void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buf[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[size++] = (byte) value;
+    }
+
+    /**
+     * Writes {@code value} zigzag-encoded, so small negative numbers stay short.
+     */
+    void writeZigZag(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void writeLong(long value) {
+        ensure(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buf[size++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+        }
+    }
+}
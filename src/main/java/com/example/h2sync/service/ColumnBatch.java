@@ -0,0 +1,155 @@
+package com.example.h2sync.service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Reusable columnar buffer for a batch of rows. Integral and floating point columns are kept in primitive arrays
+ * with a null bitmap, so numeric cells are never boxed between the Oracle fetch and the H2 insert.
+ * <p>
+ * The batch also counts the bytes its rows carry, and reports itself full once they reach {@code maxBytes}, so a few
+ * rows with large LOBs are written without waiting for the row count to fill up. Oversized values of
+ * large-object columns that cannot be streamed are kept in the batch's {@link SpillBuffer} instead of on the heap.
+ */
+final class ColumnBatch implements AutoCloseable {
+
+    private final ColumnCodec[] codecs;
+    private final Column[] columns;
+    private final int capacity;
+    private final long maxBytes;
+    private final SpillBuffer spill = new SpillBuffer();
+    private int size;
+    private long bytes;
+
+    ColumnBatch(ColumnCodec[] codecs, int capacity) {
+        this(codecs, capacity, Long.MAX_VALUE);
+    }
+
+    ColumnBatch(ColumnCodec[] codecs, int capacity, long maxBytes) {
+        this.codecs = codecs;
+        this.capacity = capacity;
+        this.maxBytes = maxBytes;
+        this.columns = new Column[codecs.length];
+        for (int c = 0; c < codecs.length; c++) {
+            columns[c] = new Column(codecs[c].storage(), capacity, spill);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    boolean isFull() {
+        return size >= capacity || bytes >= maxBytes;
+    }
+
+    /**
+     * Approximates the bytes carried by the rows of this batch, streamed LOBs included, for sizing the next one.
+     */
+    long estimateBytes() {
+        return bytes;
+    }
+
+    private static long estimateBytes(Object value) {
+        if (value == null) {
+            return 4;
+        }
+        if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        }
+        if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        }
+        if (value instanceof ColumnCodec.StreamedLob) {
+            return ((ColumnCodec.StreamedLob) value).bytes;
+        }
+        if (value instanceof SpillBuffer.Region) {
+            return ((SpillBuffer.Region) value).bytes;
+        }
+        return 32;
+    }
+
+    /**
+     * Empties the batch, releasing the LOB locators of its rows and rewinding its spill buffer.
+     */
+    void clear() {
+        for (int c = 0; c < codecs.length; c++) {
+            codecs[c].release(columns[c], size);
+            columns[c].clear(size);
+        }
+        spill.reset();
+        size = 0;
+        bytes = 0;
+    }
+
+    /**
+     * Clears the batch and deletes its spill file, if one was created.
+     */
+    @Override
+    public void close() {
+        clear();
+        spill.close();
+    }
+
+    /**
+     * Copies the current row of {@code rs} into the next free slot.
+     */
+    void readRow(ResultSet rs) throws SQLException {
+        int row = size;
+        for (int c = 0; c < codecs.length; c++) {
+            codecs[c].read(rs, columns[c], row);
+            Object[] objects = columns[c].objects;
+            bytes += objects == null ? 8 : estimateBytes(objects[row]);
+        }
+        size = row + 1;
+    }
+
+    /**
+     * Binds row {@code row} to the parameters of {@code ps}.
+     */
+    void bindRow(PreparedStatement ps, int row) throws SQLException {
+        for (int c = 0; c < codecs.length; c++) {
+            codecs[c].bind(ps, columns[c], row);
+        }
+    }
+
+    /**
+     * Values of one column; only the array matching its {@link ColumnCodec.Storage} is allocated.
+     */
+    static final class Column {
+        final long[] longs;
+        final double[] doubles;
+        final Object[] objects;
+        final SpillBuffer spill;
+        private final long[] nulls;
+
+        Column(ColumnCodec.Storage storage, int capacity, SpillBuffer spill) {
+            this.longs = storage == ColumnCodec.Storage.LONG ? new long[capacity] : null;
+            this.doubles = storage == ColumnCodec.Storage.DOUBLE ? new double[capacity] : null;
+            this.objects = storage == ColumnCodec.Storage.OBJECT ? new Object[capacity] : null;
+            this.nulls = new long[(capacity + 63) >>> 6];
+            this.spill = spill;
+        }
+
+        void markNull(int row) {
+            nulls[row >>> 6] |= 1L << row;
+        }
+
+        boolean isNull(int row) {
+            return (nulls[row >>> 6] & (1L << row)) != 0;
+        }
+
+        private void clear(int size) {
+            Arrays.fill(nulls, 0L);
+            if (objects != null) {
+                Arrays.fill(objects, 0, size, null);
+            }
+        }
+    }
+}
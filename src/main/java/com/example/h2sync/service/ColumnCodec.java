@@ -0,0 +1,640 @@
+package com.example.h2sync.service;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+
+/**
+ * Reader/writer pair for one column of a copied result set. The codecs are chosen once from the
+ * {@link ResultSetMetaData}, so copying a cell is a typed getter followed by the matching setter, without looking at
+ * the column type again.
+ */
+abstract class ColumnCodec {
+
+    /** How {@link ColumnBatch} stores the values of a column. */
+    enum Storage {
+        LONG,
+        DOUBLE,
+        OBJECT
+    }
+
+    /** Largest value, in bytes or characters, kept on the heap by the spilling codecs whatever the threshold. */
+    private static final int MAX_HEAD = 64 * 1024 * 1024;
+
+    final int index;
+
+    private ColumnCodec(int index) {
+        this.index = index;
+    }
+
+    abstract Storage storage();
+
+    /**
+     * Reads the current row of {@code rs} into slot {@code row} of {@code column}.
+     */
+    abstract void read(ResultSet rs, ColumnBatch.Column column, int row) throws SQLException;
+
+    /**
+     * Binds slot {@code row} of {@code column} to the same parameter index of {@code ps}.
+     */
+    abstract void bind(PreparedStatement ps, ColumnBatch.Column column, int row) throws SQLException;
+
+    /**
+     * Releases whatever the first {@code size} slots of {@code column} hold outside the heap once the batch is written.
+     */
+    void release(ColumnBatch.Column column, int size) {
+    }
+
+    /**
+     * Builds the codec of every column of a result set, reading LOBs fully into memory.
+     */
+    static ColumnCodec[] forResultSet(ResultSetMetaData md, Logger log) throws SQLException {
+        return forResultSet(md, 0, log);
+    }
+
+    /**
+     * Builds the codec of every column of a result set. With a positive {@code lobThreshold}, {@code BLOB} and
+     * {@code CLOB} values longer than the threshold stay in Oracle and are streamed into H2 from their locator.
+     */
+    static ColumnCodec[] forResultSet(ResultSetMetaData md, long lobThreshold, Logger log) throws SQLException {
+        return forResultSet(md, lobThreshold, 0, null, log);
+    }
+
+    /**
+     * Builds the codec of every column of a result set. Large-object columns that are not streamed from their
+     * locator ({@code LONG}, {@code LONG RAW}, and LOBs when {@code lobThreshold} is 0) move values longer than a
+     * positive {@code spillThreshold} into a memory-mapped {@link SpillBuffer} under {@code spillDir}.
+     */
+    static ColumnCodec[] forResultSet(
+            ResultSetMetaData md,
+            long lobThreshold,
+            long spillThreshold,
+            Path spillDir,
+            Logger log
+    ) throws SQLException {
+        ColumnCodec[] codecs = new ColumnCodec[md.getColumnCount()];
+        for (int i = 1; i <= codecs.length; i++) {
+            codecs[i - 1] = forColumn(md, i, lobThreshold, spillThreshold, spillDir, log);
+        }
+        return codecs;
+    }
+
+    static ColumnCodec forColumn(
+            ResultSetMetaData md,
+            int index,
+            long lobThreshold,
+            long spillThreshold,
+            Path spillDir,
+            Logger log
+    ) throws SQLException {
+        int jdbcType = md.getColumnType(index);
+        if (lobThreshold > 0) {
+            if (jdbcType == Types.BLOB) {
+                return new BlobCodec(index, lobThreshold);
+            }
+            if (jdbcType == Types.CLOB || jdbcType == Types.NCLOB) {
+                return new ClobCodec(index, lobThreshold);
+            }
+        }
+        if (spillThreshold > 0) {
+            if (jdbcType == Types.BLOB || jdbcType == Types.LONGVARBINARY) {
+                return new SpillingBytesCodec(index, spillThreshold, spillDir);
+            }
+            if (jdbcType == Types.CLOB || jdbcType == Types.NCLOB
+                    || jdbcType == Types.LONGVARCHAR || jdbcType == Types.LONGNVARCHAR) {
+                return new SpillingCharsCodec(index, spillThreshold, spillDir);
+            }
+        }
+        switch (jdbcType) {
+            case Types.INTEGER:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+            case Types.BIGINT:
+                return new LongCodec(index);
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                int precision = md.getPrecision(index);
+                int scale = md.getScale(index);
+                return scale == 0 && precision > 0 && precision <= 18
+                        ? new LongCodec(index)
+                        : new DecimalCodec(index);
+            case Types.FLOAT:
+            case Types.REAL:
+            case Types.DOUBLE:
+                return new DoubleCodec(index);
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.CLOB:
+            case Types.NCLOB:
+            case Types.LONGVARCHAR:
+            case Types.LONGNVARCHAR:
+                return new StringCodec(index);
+            case Types.BLOB:
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                return new BytesCodec(index);
+            case Types.DATE:
+            case Types.TIMESTAMP:
+                return new TimestampCodec(index, md, log);
+            default:
+                return new ConvertingCodec(index, md, log);
+        }
+    }
+
+    private static final class LongCodec extends ColumnCodec {
+        LongCodec(int index) {
+            super(index);
+        }
+
+        @Override
+        Storage storage() {
+            return Storage.LONG;
+        }
+
+        @Override
+        void read(ResultSet rs, ColumnBatch.Column column, int row) throws SQLException {
+            long value = rs.getLong(index);
+            if (rs.wasNull()) {
+                column.markNull(row);
+            } else {
+                column.longs[row] = value;
+            }
+        }
+
+        @Override
+        void bind(PreparedStatement ps, ColumnBatch.Column column, int row) throws SQLException {
+            if (column.isNull(row)) {
+                ps.setNull(index, Types.BIGINT);
+            } else {
+                ps.setLong(index, column.longs[row]);
+            }
+        }
+    }
+
+    private static final class DoubleCodec extends ColumnCodec {
+        DoubleCodec(int index) {
+            super(index);
+        }
+
+        @Override
+        Storage storage() {
+            return Storage.DOUBLE;
+        }
+
+        @Override
+        void read(ResultSet rs, ColumnBatch.Column column, int row) throws SQLException {
+            double value = rs.getDouble(index);
+            if (rs.wasNull()) {
+                column.markNull(row);
+            } else {
+                column.doubles[row] = value;
+            }
+        }
+
+        @Override
+        void bind(PreparedStatement ps, ColumnBatch.Column column, int row) throws SQLException {
+            if (column.isNull(row)) {
+                ps.setNull(index, Types.DOUBLE);
+            } else {
+                ps.setDouble(index, column.doubles[row]);
+            }
+        }
+    }
+
+    private static final class DecimalCodec extends ColumnCodec {
+        DecimalCodec(int index) {
+            super(index);
+        }
+
+        @Override
+        Storage storage() {
+            return Storage.OBJECT;
+        }
+
+        @Override
+        void read(ResultSet rs, ColumnBatch.Column column, int row) throws SQLException {
+            column.objects[row] = rs.getBigDecimal(index);
+        }
+
+        @Override
+        void bind(PreparedStatement ps, ColumnBatch.Column column, int row) throws SQLException {
+            BigDecimal value = (BigDecimal) column.objects[row];
+            if (value == null) {
+                ps.setNull(index, Types.NUMERIC);
+            } else {
+                ps.setBigDecimal(index, value);
+            }
+        }
+    }
+
+    private static final class StringCodec extends ColumnCodec {
+        StringCodec(int index) {
+            super(index);
+        }
+
+        @Override
+        Storage storage() {
+            return Storage.OBJECT;
+        }
+
+        @Override
+        void read(ResultSet rs, ColumnBatch.Column column, int row) throws SQLException {
+            column.objects[row] = rs.getString(index);
+        }
+
+        @Override
+        void bind(PreparedStatement ps, ColumnBatch.Column column, int row) throws SQLException {
+            String value = (String) column.objects[row];
+            if (value == null) {
+                ps.setNull(index, Types.VARCHAR);
+            } else {
+                ps.setString(index, value);
+            }
+        }
+    }
+
+    private static final class BytesCodec extends ColumnCodec {
+        BytesCodec(int index) {
+            super(index);
+        }
+
+        @Override
+        Storage storage() {
+            return Storage.OBJECT;
+        }
+
+        @Override
+        void read(ResultSet rs, ColumnBatch.Column column, int row) throws SQLException {
+            column.objects[row] = rs.getBytes(index);
+        }
+
+        @Override
+        void bind(PreparedStatement ps, ColumnBatch.Column column, int row) throws SQLException {
+            byte[] value = (byte[]) column.objects[row];
+            if (value == null) {
+                ps.setNull(index, Types.VARBINARY);
+            } else {
+                ps.setBytes(index, value);
+            }
+        }
+    }
+
+    /**
+     * A LOB too large to be read into memory: the Oracle locator and its length, bound as a stream by the writer.
+     */
+    static final class StreamedLob {
+        final Object locator;
+        final long length;
+        final long bytes;
+
+        StreamedLob(Object locator, long length, long bytes) {
+            this.locator = locator;
+            this.length = length;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * {@code BLOB} columns. Values up to the threshold are copied as {@code byte[]}, longer ones keep their locator and
+     * are bound with {@code setBinaryStream}, so the value goes from the Oracle LOB straight into H2's LOB storage.
+     */
+    private static final class BlobCodec extends ColumnCodec {
+        private final long threshold;
+
+        BlobCodec(int index, long threshold) {
+            super(index);
+            this.threshold = Math.min(threshold, Integer.MAX_VALUE);
+        }
+
+        @Override
+        Storage storage() {
+            return Storage.OBJECT;
+        }
+
+        @Override
+        void read(ResultSet rs, ColumnBatch.Column column, int row) throws SQLException {
+            Blob blob = rs.getBlob(index);
+            if (blob == null) {
+                column.objects[row] = null;
+                return;
+            }
+            long length = blob.length();
+            if (length > threshold) {
+                column.objects[row] = new StreamedLob(blob, length, length);
+                return;
+            }
+            try {
+                column.objects[row] = blob.getBytes(1, (int) length);
+            } finally {
+                free(blob);
+            }
+        }
+
+        @Override
+        void bind(PreparedStatement ps, ColumnBatch.Column column, int row) throws SQLException {
+            Object value = column.objects[row];
+            if (value == null) {
+                ps.setNull(index, Types.BLOB);
+            } else if (value instanceof StreamedLob) {
+                StreamedLob lob = (StreamedLob) value;
+                ps.setBinaryStream(index, ((Blob) lob.locator).getBinaryStream(), lob.length);
+            } else {
+                ps.setBytes(index, (byte[]) value);
+            }
+        }
+
+        @Override
+        void release(ColumnBatch.Column column, int size) {
+            releaseLocators(column, size);
+        }
+    }
+
+    /**
+     * {@code CLOB} and {@code NCLOB} columns, the character counterpart of {@link BlobCodec}.
+     */
+    private static final class ClobCodec extends ColumnCodec {
+        private final long threshold;
+
+        ClobCodec(int index, long threshold) {
+            super(index);
+            this.threshold = Math.min(threshold, Integer.MAX_VALUE);
+        }
+
+        @Override
+        Storage storage() {
+            return Storage.OBJECT;
+        }
+
+        @Override
+        void read(ResultSet rs, ColumnBatch.Column column, int row) throws SQLException {
+            Clob clob = rs.getClob(index);
+            if (clob == null) {
+                column.objects[row] = null;
+                return;
+            }
+            long length = clob.length();
+            if (length > threshold) {
+                column.objects[row] = new StreamedLob(clob, length, 2 * length);
+                return;
+            }
+            try {
+                column.objects[row] = clob.getSubString(1, (int) length);
+            } finally {
+                free(clob);
+            }
+        }
+
+        @Override
+        void bind(PreparedStatement ps, ColumnBatch.Column column, int row) throws SQLException {
+            Object value = column.objects[row];
+            if (value == null) {
+                ps.setNull(index, Types.CLOB);
+            } else if (value instanceof StreamedLob) {
+                StreamedLob lob = (StreamedLob) value;
+                ps.setCharacterStream(index, ((Clob) lob.locator).getCharacterStream(), lob.length);
+            } else {
+                ps.setString(index, (String) value);
+            }
+        }
+
+        @Override
+        void release(ColumnBatch.Column column, int size) {
+            releaseLocators(column, size);
+        }
+    }
+
+    /**
+     * Binary large-object columns read as a stream. Values up to the threshold become a {@code byte[]}, longer ones
+     * are copied into the batch's {@link SpillBuffer} and replayed from there with {@code setBinaryStream}.
+     */
+    private static final class SpillingBytesCodec extends ColumnCodec {
+        private final Path dir;
+        private final byte[] head;
+
+        SpillingBytesCodec(int index, long threshold, Path dir) {
+            super(index);
+            this.dir = dir;
+            this.head = new byte[(int) Math.min(threshold, MAX_HEAD) + 1];
+        }
+
+        @Override
+        Storage storage() {
+            return Storage.OBJECT;
+        }
+
+        @Override
+        void read(ResultSet rs, ColumnBatch.Column column, int row) throws SQLException {
+            try (InputStream in = rs.getBinaryStream(index)) {
+                if (in == null) {
+                    column.objects[row] = null;
+                    return;
+                }
+                int n = in.readNBytes(head, 0, head.length);
+                if (n < head.length) {
+                    column.objects[row] = Arrays.copyOf(head, n);
+                    return;
+                }
+                SpillBuffer spill = column.spill;
+                long start = spill.position();
+                OutputStream out = spill.append(dir);
+                out.write(head, 0, n);
+                in.transferTo(out);
+                column.objects[row] = new SpillBuffer.Region(start, spill.position() - start, -1);
+            } catch (IOException ex) {
+                throw new SQLException("Could not spill column " + index, ex);
+            }
+        }
+
+        @Override
+        void bind(PreparedStatement ps, ColumnBatch.Column column, int row) throws SQLException {
+            Object value = column.objects[row];
+            if (value == null) {
+                ps.setNull(index, Types.VARBINARY);
+            } else if (value instanceof SpillBuffer.Region) {
+                SpillBuffer.Region region = (SpillBuffer.Region) value;
+                ps.setBinaryStream(index, column.spill.read(region.offset, region.bytes), region.bytes);
+            } else {
+                ps.setBytes(index, (byte[]) value);
+            }
+        }
+    }
+
+    /**
+     * Character large-object columns, the counterpart of {@link SpillingBytesCodec}. Spilled text is stored as UTF-8
+     * and replayed with {@code setCharacterStream}.
+     */
+    private static final class SpillingCharsCodec extends ColumnCodec {
+        private final Path dir;
+        private final char[] head;
+
+        SpillingCharsCodec(int index, long threshold, Path dir) {
+            super(index);
+            this.dir = dir;
+            this.head = new char[(int) Math.min(threshold, MAX_HEAD) + 1];
+        }
+
+        @Override
+        Storage storage() {
+            return Storage.OBJECT;
+        }
+
+        @Override
+        void read(ResultSet rs, ColumnBatch.Column column, int row) throws SQLException {
+            try (Reader in = rs.getCharacterStream(index)) {
+                if (in == null) {
+                    column.objects[row] = null;
+                    return;
+                }
+                int n = 0;
+                int r;
+                while (n < head.length && (r = in.read(head, n, head.length - n)) > 0) {
+                    n += r;
+                }
+                if (n < head.length) {
+                    column.objects[row] = new String(head, 0, n);
+                    return;
+                }
+                SpillBuffer spill = column.spill;
+                long start = spill.position();
+                Writer out = new OutputStreamWriter(spill.append(dir), StandardCharsets.UTF_8);
+                out.write(head, 0, n);
+                long chars = n + in.transferTo(out);
+                out.flush();
+                column.objects[row] = new SpillBuffer.Region(start, spill.position() - start, chars);
+            } catch (IOException ex) {
+                throw new SQLException("Could not spill column " + index, ex);
+            }
+        }
+
+        @Override
+        void bind(PreparedStatement ps, ColumnBatch.Column column, int row) throws SQLException {
+            Object value = column.objects[row];
+            if (value == null) {
+                ps.setNull(index, Types.VARCHAR);
+            } else if (value instanceof SpillBuffer.Region) {
+                SpillBuffer.Region region = (SpillBuffer.Region) value;
+                Reader reader = new InputStreamReader(column.spill.read(region.offset, region.bytes), StandardCharsets.UTF_8);
+                ps.setCharacterStream(index, reader, region.chars);
+            } else {
+                ps.setString(index, (String) value);
+            }
+        }
+    }
+
+    private static void releaseLocators(ColumnBatch.Column column, int size) {
+        for (int row = 0; row < size; row++) {
+            if (column.objects[row] instanceof StreamedLob) {
+                free(((StreamedLob) column.objects[row]).locator);
+            }
+        }
+    }
+
+    private static void free(Object locator) {
+        try {
+            if (locator instanceof Blob) {
+                ((Blob) locator).free();
+            } else if (locator instanceof Clob) {
+                ((Clob) locator).free();
+            }
+        } catch (AbstractMethodError | SQLException ignored) {
+            // drivers without free() release the locator with the result set
+        }
+    }
+
+    /**
+     * Oracle {@code DATE} and {@code TIMESTAMP}. Falls back to {@link OracleJdbcValueConverter} for the rest of the
+     * result set once {@code getTimestamp} is rejected by the driver.
+     */
+    private static final class TimestampCodec extends ColumnCodec {
+        private final ResultSetMetaData md;
+        private final Logger log;
+        private boolean converting;
+
+        TimestampCodec(int index, ResultSetMetaData md, Logger log) {
+            super(index);
+            this.md = md;
+            this.log = log;
+        }
+
+        @Override
+        Storage storage() {
+            return Storage.OBJECT;
+        }
+
+        @Override
+        void read(ResultSet rs, ColumnBatch.Column column, int row) throws SQLException {
+            if (!converting) {
+                try {
+                    column.objects[row] = rs.getTimestamp(index);
+                    return;
+                } catch (SQLException ex) {
+                    log.debug("getTimestamp rejected for column {}, converting values instead: {}", index, ex.getMessage());
+                    converting = true;
+                }
+            }
+            column.objects[row] = OracleJdbcValueConverter.readColumnValue(rs, md, index, log);
+        }
+
+        @Override
+        void bind(PreparedStatement ps, ColumnBatch.Column column, int row) throws SQLException {
+            Object value = column.objects[row];
+            if (value == null) {
+                ps.setNull(index, Types.TIMESTAMP);
+            } else if (value instanceof Timestamp) {
+                ps.setTimestamp(index, (Timestamp) value);
+            } else {
+                ps.setObject(index, value);
+            }
+        }
+    }
+
+    /**
+     * Any other type goes through {@link OracleJdbcValueConverter}.
+     */
+    private static final class ConvertingCodec extends ColumnCodec {
+        private final ResultSetMetaData md;
+        private final Logger log;
+
+        ConvertingCodec(int index, ResultSetMetaData md, Logger log) {
+            super(index);
+            this.md = md;
+            this.log = log;
+        }
+
+        @Override
+        Storage storage() {
+            return Storage.OBJECT;
+        }
+
+        @Override
+        void read(ResultSet rs, ColumnBatch.Column column, int row) throws SQLException {
+            column.objects[row] = OracleJdbcValueConverter.readColumnValue(rs, md, index, log);
+        }
+
+        @Override
+        void bind(PreparedStatement ps, ColumnBatch.Column column, int row) throws SQLException {
+            ps.setObject(index, column.objects[row]);
+        }
+    }
+}
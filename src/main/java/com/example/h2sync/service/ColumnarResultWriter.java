@@ -0,0 +1,216 @@
+package com.example.h2sync.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Compact binary columnar format. Rows are grouped into blocks of up to {@code query.columnar-block-rows} rows, and
+ * each block is written column by column:
+ * <pre>
+ * stream   := "H2SC" version:u8(1) columnCount:varint column* block* varint(0)
+ * column   := nameLength:varint name:UTF-8 type:u8
+ * block    := rowCount:varint(&gt;0) data*            one per column, in column order
+ * data     := length:varint nulls:u8[(rowCount+7)/8] values   bit r (LSB first) set = row r is NULL
+ * </pre>
+ * {@code values} holds the non-null values of the column, encoded by type:
+ * 1 INT64 zigzag varint; 2 FLOAT64 8 bytes big-endian; 3 DECIMAL varint length + plain ASCII digits;
+ * 4 BOOLEAN 1 byte; 5 STRING varint length + UTF-8; 6 BYTES varint length + bytes;
+ * 7 TIMESTAMP zigzag varint microseconds since 1970-01-01T00:00 (no zone); 8 DATE zigzag varint days since
+ * 1970-01-01; 9 TIME varint nanoseconds of day. Varints are unsigned LEB128. The {@code length} of a column's data
+ * lets readers skip columns they do not need.
+ */
+final class ColumnarResultWriter extends ResultStreamWriter {
+
+    static final byte INT64 = 1;
+    static final byte FLOAT64 = 2;
+    static final byte DECIMAL = 3;
+    static final byte BOOLEAN = 4;
+    static final byte STRING = 5;
+    static final byte BYTES = 6;
+    static final byte TIMESTAMP = 7;
+    static final byte DATE = 8;
+    static final byte TIME = 9;
+
+    private static final byte[] MAGIC = "H2SC".getBytes(StandardCharsets.US_ASCII);
+
+    private final int blockRows;
+    private final ByteSink frame = new ByteSink(1024);
+    private final ByteSink scratch = new ByteSink(1024);
+    private byte[] types;
+    private ByteSink[] values;
+    private byte[][] nulls;
+    private int rows;
+
+    ColumnarResultWriter(OutputStream out, int bufferBytes, int blockRows) {
+        super(out, bufferBytes);
+        this.blockRows = Math.max(1, blockRows);
+    }
+
+    @Override
+    void begin(ResultSetMetaData md) throws SQLException, IOException {
+        int cols = md.getColumnCount();
+        types = new byte[cols + 1];
+        values = new ByteSink[cols + 1];
+        nulls = new byte[cols + 1][];
+        frame.write(MAGIC);
+        frame.write(1);
+        frame.writeVarLong(cols);
+        for (int i = 1; i <= cols; i++) {
+            types[i] = typeOf(md.getColumnType(i));
+            values[i] = new ByteSink(1024);
+            nulls[i] = new byte[(blockRows + 7) / 8];
+            scratch.reset();
+            scratch.writeUtf8(md.getColumnLabel(i));
+            frame.writeVarLong(scratch.size());
+            scratch.copyTo(frame);
+            frame.write(types[i]);
+        }
+        frame.flushTo(out);
+    }
+
+    @Override
+    void writeRow(ResultSet rs) throws SQLException, IOException {
+        long blockBytes = 0;
+        for (int i = 1; i < types.length; i++) {
+            if (!writeValue(rs, i, values[i])) {
+                nulls[i][rows >> 3] |= (byte) (1 << (rows & 7));
+            }
+            blockBytes += values[i].size();
+        }
+        rows++;
+        if (rows == blockRows || blockBytes >= 16L * bufferBytes) {
+            flushBlock();
+        }
+    }
+
+    @Override
+    void finish() throws IOException {
+        flushBlock();
+        frame.writeVarLong(0);
+        frame.flushTo(out);
+    }
+
+    /**
+     * Appends the value of column {@code i} to {@code sink}; returns {@code false} when it is {@code NULL}.
+     */
+    private boolean writeValue(ResultSet rs, int i, ByteSink sink) throws SQLException {
+        switch (types[i]) {
+            case INT64: {
+                long value = rs.getLong(i);
+                if (rs.wasNull()) return false;
+                sink.writeZigZag(value);
+                return true;
+            }
+            case FLOAT64: {
+                double value = rs.getDouble(i);
+                if (rs.wasNull()) return false;
+                sink.writeLong(Double.doubleToLongBits(value));
+                return true;
+            }
+            case DECIMAL: {
+                BigDecimal value = rs.getBigDecimal(i);
+                if (value == null) return false;
+                String digits = value.toPlainString();
+                sink.writeVarLong(digits.length());
+                sink.writeAscii(digits);
+                return true;
+            }
+            case BOOLEAN: {
+                boolean value = rs.getBoolean(i);
+                if (rs.wasNull()) return false;
+                sink.write(value ? 1 : 0);
+                return true;
+            }
+            case BYTES: {
+                byte[] value = rs.getBytes(i);
+                if (value == null) return false;
+                sink.writeVarLong(value.length);
+                sink.write(value);
+                return true;
+            }
+            case TIMESTAMP: {
+                LocalDateTime value = rs.getObject(i, LocalDateTime.class);
+                if (value == null) return false;
+                sink.writeZigZag(value.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + value.getNano() / 1_000);
+                return true;
+            }
+            case DATE: {
+                LocalDate value = rs.getObject(i, LocalDate.class);
+                if (value == null) return false;
+                sink.writeZigZag(value.toEpochDay());
+                return true;
+            }
+            case TIME: {
+                LocalTime value = rs.getObject(i, LocalTime.class);
+                if (value == null) return false;
+                sink.writeVarLong(value.toNanoOfDay());
+                return true;
+            }
+            default: {
+                String value = rs.getString(i);
+                if (value == null) return false;
+                scratch.reset();
+                scratch.writeUtf8(value);
+                sink.writeVarLong(scratch.size());
+                scratch.copyTo(sink);
+                return true;
+            }
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+        int bitmapBytes = (rows + 7) / 8;
+        frame.writeVarLong(rows);
+        for (int i = 1; i < types.length; i++) {
+            frame.writeVarLong(bitmapBytes + (long) values[i].size());
+            frame.write(nulls[i], 0, bitmapBytes);
+            frame.flushTo(out);
+            values[i].flushTo(out);
+            Arrays.fill(nulls[i], (byte) 0);
+        }
+        frame.flushTo(out);
+        rows = 0;
+    }
+
+    private static byte typeOf(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return INT64;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return FLOAT64;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return DECIMAL;
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return BOOLEAN;
+            case Types.TIMESTAMP:
+                return TIMESTAMP;
+            case Types.DATE:
+                return DATE;
+            case Types.TIME:
+                return TIME;
+            default:
+                return isBinary(sqlType) ? BYTES : STRING;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.h2sync.service;
+
+import com.example.h2sync.config.LoaderProperties;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Moves the rows of one Oracle query into an existing H2 table. The loader picks an engine per table from
+ * {@code loader.copy}; every engine honours the same request, so a table can switch engines without other changes.
+ */
+interface CopyEngine {
+
+    /**
+     * Copies the rows of {@code request} and returns how many were written.
+     */
+    long copy(Request request) throws SQLException, IOException, InterruptedException;
+
+    /**
+     * One copy: the rows of {@code selectSql} bound with {@code params} go into {@code target}, merged on
+     * {@code keyColumns} when given, and are counted on {@code progress}.
+     */
+    final class Request {
+        final String selectSql;
+        final List<Object> params;
+        final String target;
+        final List<String> keyColumns;
+        final LoadProgress.TableProgress progress;
+
+        Request(String selectSql, List<Object> params, String target, List<String> keyColumns,
+                LoadProgress.TableProgress progress) {
+            this.selectSql = selectSql;
+            this.params = params;
+            this.target = target;
+            this.keyColumns = keyColumns;
+            this.progress = progress;
+        }
+
+        String table() {
+            return progress.getTable();
+        }
+
+        boolean merges() {
+            return keyColumns != null && !keyColumns.isEmpty();
+        }
+
+        /**
+         * Returns {@code INSERT INTO target (columns)} or, for a merge, {@code MERGE INTO target (columns) KEY (keys)}.
+         */
+        String writeHead(List<String> columns) {
+            StringBuilder sb = new StringBuilder(merges() ? "MERGE INTO " : "INSERT INTO ").append(target).append(" (")
+                    .append(columns.stream().map(CopyEngine::quoteIdentifier).collect(Collectors.joining(",")))
+                    .append(")");
+            if (merges()) {
+                sb.append(" KEY (").append(keyColumns.stream()
+                        .map(CopyEngine::quoteIdentifier)
+                        .collect(Collectors.joining(","))).append(")");
+            }
+            return sb.toString();
+        }
+    }
+
+    static String quoteIdentifier(String identifier) {
+        if (identifier == null) {
+            throw new IllegalArgumentException("Identifier is null");
+        }
+        String trimmed = identifier.trim();
+        if (trimmed.isEmpty()) {
+            throw new IllegalArgumentException("Identifier is blank");
+        }
+        return "\"" + trimmed.replace("\"", "\"\"") + "\"";
+    }
+
+    static void bindParameters(PreparedStatement ps, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            ps.setObject(i + 1, params.get(i));
+        }
+    }
+
+    /**
+     * Directory of the loader's temp files: {@code loader.spill.dir}, or the JVM temp directory when empty.
+     */
+    static Path spillDir(LoaderProperties properties) {
+        String dir = properties.getSpill().getDir();
+        return Path.of(dir == null || dir.isBlank() ? System.getProperty("java.io.tmpdir") : dir);
+    }
+}
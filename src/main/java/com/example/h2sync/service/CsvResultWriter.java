@@ -0,0 +1,85 @@
+package com.example.h2sync.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * RFC 4180 CSV: a header row of column labels, then one line per row. Fields holding a comma, quote or line break
+ * are quoted with inner quotes doubled; {@code NULL} is an empty field and binary values are hex.
+ */
+final class CsvResultWriter extends ResultStreamWriter {
+
+    private final ByteSink sink;
+    private boolean[] binary;
+
+    CsvResultWriter(OutputStream out, int bufferBytes) {
+        super(out, bufferBytes);
+        this.sink = new ByteSink(this.bufferBytes + 1024);
+    }
+
+    @Override
+    void begin(ResultSetMetaData md) throws SQLException {
+        int cols = md.getColumnCount();
+        binary = new boolean[cols + 1];
+        for (int i = 1; i <= cols; i++) {
+            binary[i] = isBinary(md.getColumnType(i));
+            if (i > 1) sink.write(',');
+            writeField(md.getColumnLabel(i));
+        }
+        sink.write('\n');
+    }
+
+    @Override
+    void writeRow(ResultSet rs) throws SQLException, IOException {
+        for (int i = 1; i < binary.length; i++) {
+            if (i > 1) sink.write(',');
+            if (binary[i]) {
+                byte[] bytes = rs.getBytes(i);
+                if (bytes != null) {
+                    writeHex(sink, bytes);
+                }
+            } else {
+                String value = rs.getString(i);
+                if (value != null) {
+                    writeField(value);
+                }
+            }
+        }
+        sink.write('\n');
+        if (sink.size() >= bufferBytes) {
+            sink.flushTo(out);
+        }
+    }
+
+    @Override
+    void finish() throws IOException {
+        sink.flushTo(out);
+    }
+
+    private void writeField(String value) {
+        int len = value.length();
+        boolean quote = false;
+        for (int i = 0; i < len && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            sink.writeUtf8(value);
+            return;
+        }
+        sink.write('"');
+        int from = 0;
+        for (int i = 0; i < len; i++) {
+            if (value.charAt(i) == '"') {
+                sink.writeUtf8(value, from, i + 1);
+                sink.write('"');
+                from = i + 1;
+            }
+        }
+        sink.writeUtf8(value, from, len);
+        sink.write('"');
+    }
+}
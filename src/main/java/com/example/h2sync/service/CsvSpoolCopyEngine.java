@@ -0,0 +1,223 @@
+package com.example.h2sync.service;
+
+import com.example.h2sync.config.LoaderProperties;
+import org.slf4j.Logger;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Spools the Oracle rows to a zip-compressed CSV file and lets H2 load it in one
+ * {@code INSERT ... DIRECT SELECT ... FROM CSVREAD('zip:...')} (or {@code MERGE ... KEY} for incremental copies).
+ * The file is deleted once loaded.
+ * <p>
+ * Binary values are written as hex and decoded with {@code HEXTORAW}, which returns bytes in H2's Oracle
+ * compatibility mode only. Empty strings load as {@code NULL}, as they are in Oracle.
+ */
+final class CsvSpoolCopyEngine implements CopyEngine {
+
+    private static final String ENTRY = "data.csv";
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final DataSource oracle;
+    private final JdbcTemplate h2;
+    private final LoaderProperties properties;
+    private final int batchSize;
+    private final Logger log;
+
+    CsvSpoolCopyEngine(DataSource oracle, JdbcTemplate h2, LoaderProperties properties, int batchSize, Logger log) {
+        this.oracle = oracle;
+        this.h2 = h2;
+        this.properties = properties;
+        this.batchSize = batchSize;
+        this.log = log;
+    }
+
+    @Override
+    public long copy(Request request) throws SQLException, IOException {
+        String dir = properties.getCopy().getSpoolDir();
+        Path spoolDir = dir == null || dir.isBlank() ? CopyEngine.spillDir(properties) : Path.of(dir);
+        Files.createDirectories(spoolDir);
+        Path file = Files.createTempFile(spoolDir, "h2sync-spool-", ".zip");
+        try {
+            List<String> columns = new ArrayList<>();
+            List<Kind> kinds = new ArrayList<>();
+            long spooled;
+            try (Connection oconn = oracle.getConnection();
+                 PreparedStatement src = oconn.prepareStatement(request.selectSql, ResultSet.TYPE_FORWARD_ONLY,
+                         ResultSet.CONCUR_READ_ONLY)) {
+                src.setFetchSize(AdaptiveBatchController
+                        .forTable(request.table(), batchSize, properties.getBatching()).fetchSize());
+                CopyEngine.bindParameters(src, request.params);
+                try (ResultSet rs = src.executeQuery()) {
+                    ResultSetMetaData md = rs.getMetaData();
+                    for (int i = 1; i <= md.getColumnCount(); i++) {
+                        columns.add(md.getColumnName(i));
+                        kinds.add(Kind.of(md.getColumnType(i)));
+                    }
+                    spooled = spool(rs, kinds, file);
+                }
+            }
+
+            StringBuilder select = new StringBuilder();
+            for (int i = 1; i <= columns.size(); i++) {
+                if (i > 1) select.append(",");
+                select.append(kinds.get(i - 1) == Kind.BINARY ? "HEXTORAW(\"C" + i + "\")" : "\"C" + i + "\"");
+            }
+            String loadSql = request.writeHead(columns) + (request.merges() ? " SELECT " : " DIRECT SELECT ")
+                    + select + " FROM CSVREAD('zip:" + file.toAbsolutePath().toString().replace("'", "''")
+                    + "!/" + ENTRY + "', NULL, 'charset=UTF-8')";
+            long n;
+            try (Connection h2conn = Objects.requireNonNull(h2.getDataSource()).getConnection();
+                 Statement st = h2conn.createStatement()) {
+                n = st.executeUpdate(loadSql);
+            }
+            request.progress.addRows(n);
+            log.info("Loaded {} rows into {} from a CSV spool of {} rows and {} bytes",
+                    n, request.target, spooled, Files.size(file));
+            return n;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Writes the rows of {@code rs} with the header {@code C1,...,Cn}, so column names never need escaping.
+     */
+    private static long spool(ResultSet rs, List<Kind> kinds, Path file) throws SQLException, IOException {
+        long rows = 0;
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(file))) {
+            zip.setLevel(Deflater.BEST_SPEED);
+            zip.putNextEntry(new ZipEntry(ENTRY));
+            Writer out = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), 64 * 1024);
+            for (int i = 1; i <= kinds.size(); i++) {
+                out.write(i > 1 ? ",C" : "C");
+                out.write(Integer.toString(i));
+            }
+            out.write('\n');
+            char[] buf = new char[8192];
+            byte[] bytes = new byte[8192];
+            while (rs.next()) {
+                for (int i = 1; i <= kinds.size(); i++) {
+                    if (i > 1) out.write(',');
+                    writeValue(rs, i, kinds.get(i - 1), out, buf, bytes);
+                }
+                out.write('\n');
+                rows++;
+            }
+            out.flush();
+            zip.closeEntry();
+        }
+        return rows;
+    }
+
+    private static void writeValue(ResultSet rs, int i, Kind kind, Writer out, char[] buf, byte[] bytes)
+            throws SQLException, IOException {
+        switch (kind) {
+            case BINARY: {
+                try (InputStream in = rs.getBinaryStream(i)) {
+                    if (in == null) {
+                        return;
+                    }
+                    for (int n = in.read(bytes); n >= 0; n = in.read(bytes)) {
+                        for (int k = 0; k < n; k++) {
+                            out.write(HEX[(bytes[k] >> 4) & 0xF]);
+                            out.write(HEX[bytes[k] & 0xF]);
+                        }
+                    }
+                }
+                return;
+            }
+            case TEXT_STREAM: {
+                try (Reader in = rs.getCharacterStream(i)) {
+                    if (in == null) {
+                        return;
+                    }
+                    out.write('"');
+                    for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                        writeEscaped(out, buf, n);
+                    }
+                    out.write('"');
+                }
+                return;
+            }
+            case TEMPORAL: {
+                Timestamp ts = rs.getTimestamp(i);
+                if (ts != null) {
+                    out.write(ts.toString());
+                }
+                return;
+            }
+            default: {
+                String value = rs.getString(i);
+                if (value != null) {
+                    out.write('"');
+                    char[] chars = value.toCharArray();
+                    writeEscaped(out, chars, chars.length);
+                    out.write('"');
+                }
+            }
+        }
+    }
+
+    private static void writeEscaped(Writer out, char[] chars, int length) throws IOException {
+        int from = 0;
+        for (int k = 0; k < length; k++) {
+            if (chars[k] == '"') {
+                out.write(chars, from, k + 1 - from);
+                out.write('"');
+                from = k + 1;
+            }
+        }
+        out.write(chars, from, length - from);
+    }
+
+    private enum Kind {
+        BINARY, TEXT_STREAM, TEMPORAL, TEXT;
+
+        static Kind of(int sqlType) {
+            switch (sqlType) {
+                case Types.BLOB:
+                case Types.BINARY:
+                case Types.VARBINARY:
+                case Types.LONGVARBINARY:
+                    return BINARY;
+                case Types.CLOB:
+                case Types.NCLOB:
+                case Types.LONGVARCHAR:
+                case Types.LONGNVARCHAR:
+                    return TEXT_STREAM;
+                case Types.DATE:
+                case Types.TIME:
+                case Types.TIMESTAMP:
+                case Types.TIMESTAMP_WITH_TIMEZONE:
+                    return TEMPORAL;
+                default:
+                    return TEXT;
+            }
+        }
+    }
+}
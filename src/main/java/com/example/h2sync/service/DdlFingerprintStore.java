@@ -0,0 +1,122 @@
+package com.example.h2sync.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Persists a structural fingerprint of every table and view created in H2 in the table {@code ETL_DDL_FINGERPRINT},
+ * so that an unchanged object can be reused instead of dropped and recreated.
+ */
+final class DdlFingerprintStore {
+
+    private final JdbcTemplate h2;
+
+    DdlFingerprintStore(JdbcTemplate h2) {
+        this.h2 = Objects.requireNonNull(h2, "h2");
+    }
+
+    void init() {
+        h2.execute("CREATE TABLE IF NOT EXISTS ETL_DDL_FINGERPRINT (" +
+                "OBJECT_TYPE VARCHAR(32) NOT NULL," +
+                "OBJECT_NAME VARCHAR(512) NOT NULL," +
+                "FINGERPRINT VARCHAR(64) NOT NULL," +
+                "COLUMN_DEFINITIONS CLOB," +
+                "KEY_DEFINITIONS CLOB," +
+                "UPDATED_AT TIMESTAMP NOT NULL," +
+                "PRIMARY KEY (OBJECT_TYPE, OBJECT_NAME)" +
+                ")");
+    }
+
+    Fingerprint find(String type, String name) {
+        List<Fingerprint> rows = h2.query(
+                "SELECT FINGERPRINT, COLUMN_DEFINITIONS, KEY_DEFINITIONS FROM ETL_DDL_FINGERPRINT " +
+                        "WHERE OBJECT_TYPE = ? AND OBJECT_NAME = ?",
+                (rs, i) -> new Fingerprint(rs.getString(1), split(rs.getString(2)), rs.getString(3)),
+                type, name);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    void save(String type, String name, Fingerprint fingerprint) {
+        h2.update("MERGE INTO ETL_DDL_FINGERPRINT (OBJECT_TYPE, OBJECT_NAME, FINGERPRINT, COLUMN_DEFINITIONS, " +
+                        "KEY_DEFINITIONS, UPDATED_AT) KEY (OBJECT_TYPE, OBJECT_NAME) VALUES (?, ?, ?, ?, ?, CURRENT_TIMESTAMP())",
+                type, name, fingerprint.getHash(), String.join("\n", fingerprint.getColumnDefinitions()),
+                fingerprint.getKeyDefinitions());
+    }
+
+    void delete(String type, String name) {
+        h2.update("DELETE FROM ETL_DDL_FINGERPRINT WHERE OBJECT_TYPE = ? AND OBJECT_NAME = ?", type, name);
+    }
+
+    private static List<String> split(String text) {
+        return text == null || text.isEmpty() ? Collections.emptyList() : Arrays.asList(text.split("\n"));
+    }
+
+    /**
+     * Fingerprint of a table (column definitions plus PK/UNIQUE keys) or of a view (its translated SQL, passed as
+     * the key definitions).
+     */
+    static Fingerprint of(List<String> columnDefinitions, String keyDefinitions) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String column : columnDefinitions) {
+                digest.update(column.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            digest.update((byte) 0);
+            digest.update(keyDefinitions.getBytes(StandardCharsets.UTF_8));
+            return new Fingerprint(HexFormat.of().formatHex(digest.digest()), columnDefinitions, keyDefinitions);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    static final class Fingerprint {
+        private final String hash;
+        private final List<String> columnDefinitions;
+        private final String keyDefinitions;
+
+        Fingerprint(String hash, List<String> columnDefinitions, String keyDefinitions) {
+            this.hash = hash;
+            this.columnDefinitions = columnDefinitions;
+            this.keyDefinitions = keyDefinitions == null ? "" : keyDefinitions;
+        }
+
+        String getHash() {
+            return hash;
+        }
+
+        List<String> getColumnDefinitions() {
+            return columnDefinitions;
+        }
+
+        String getKeyDefinitions() {
+            return keyDefinitions;
+        }
+
+        boolean matches(Fingerprint other) {
+            return other != null && hash.equals(other.hash);
+        }
+
+        /**
+         * Returns the column definitions this fingerprint adds to {@code previous}, or {@code null} when the change
+         * is more than added columns.
+         */
+        List<String> addedColumnsSince(Fingerprint previous) {
+            if (previous == null || !keyDefinitions.equals(previous.keyDefinitions)
+                    || !columnDefinitions.containsAll(previous.columnDefinitions)) {
+                return null;
+            }
+            return columnDefinitions.stream()
+                    .filter(column -> !previous.columnDefinitions.contains(column))
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.h2sync.service;
+
+import org.slf4j.Logger;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Builds table change signatures from the Oracle dictionary: {@code ALL_OBJECTS.LAST_DDL_TIME} plus either the DML
+ * counters of {@code ALL_TAB_MODIFICATIONS} and {@code ALL_TABLES.LAST_ANALYZED}, or {@code MAX(ORA_ROWSCN)} of
+ * every table.
+ * <p>
+ * {@code ALL_TAB_MODIFICATIONS} is only updated when Oracle flushes its monitoring info, so the detector asks for a
+ * flush first when configured to. When that flush fails, for instance without the {@code ANALYZE ANY} privilege,
+ * the counters may miss recent DML, so no signatures are returned and every table is copied. Gathering statistics
+ * deletes a table's counters, so a table changed and then analyzed between two refreshes could show no counters both
+ * times; its new {@code LAST_ANALYZED} changes the signature instead, costing one extra copy rather than a missed
+ * change.
+ */
+final class DictionaryChangeDetector implements TableChangeDetector {
+
+    private final boolean rowScn;
+    private final boolean flushMonitoringInfo;
+    private final Logger log;
+
+    DictionaryChangeDetector(boolean rowScn, boolean flushMonitoringInfo, Logger log) {
+        this.rowScn = rowScn;
+        this.flushMonitoringInfo = flushMonitoringInfo;
+        this.log = Objects.requireNonNull(log, "log");
+    }
+
+    @Override
+    public Map<String, String> signatures(Connection oracle, String owner, Set<String> tables) throws SQLException {
+        Map<String, String> changes = rowScn ? readRowScns(oracle, owner, tables) : readModifications(oracle, owner);
+        if (changes == null) {
+            return Map.of();
+        }
+        Map<String, String> ddlTimes = readDdlTimes(oracle, owner);
+        Map<String, String> analyzed = rowScn ? Map.of() : readLastAnalyzed(oracle, owner);
+        Map<String, String> signatures = new HashMap<>();
+        for (String table : tables) {
+            String ddl = ddlTimes.get(table);
+            if (ddl == null) {
+                continue;
+            }
+            String dml = changes.get(table);
+            if (rowScn && dml == null) {
+                continue;
+            }
+            String signature = "DDL=" + ddl + ";DML=" + (dml == null ? "NONE" : dml);
+            if (!rowScn) {
+                signature += ";STATS=" + analyzed.getOrDefault(table, "NONE");
+            }
+            signatures.put(table, signature);
+        }
+        return signatures;
+    }
+
+    private Map<String, String> readDdlTimes(Connection oracle, String owner) throws SQLException {
+        Map<String, String> ddlTimes = new HashMap<>();
+        String sql = "SELECT object_name, last_ddl_time FROM all_objects WHERE owner = ? AND object_type = 'TABLE'";
+        try (PreparedStatement ps = oracle.prepareStatement(sql)) {
+            ps.setFetchSize(1000);
+            ps.setString(1, owner);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp ddl = rs.getTimestamp(2);
+                    if (ddl != null) {
+                        ddlTimes.put(rs.getString(1), ddl.toString());
+                    }
+                }
+            }
+        }
+        return ddlTimes;
+    }
+
+    private Map<String, String> readLastAnalyzed(Connection oracle, String owner) throws SQLException {
+        Map<String, String> analyzed = new HashMap<>();
+        String sql = "SELECT table_name, last_analyzed FROM all_tables WHERE owner = ?";
+        try (PreparedStatement ps = oracle.prepareStatement(sql)) {
+            ps.setFetchSize(1000);
+            ps.setString(1, owner);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp stats = rs.getTimestamp(2);
+                    if (stats != null) {
+                        analyzed.put(rs.getString(1), stats.toString());
+                    }
+                }
+            }
+        }
+        return analyzed;
+    }
+
+    /**
+     * Returns the DML counters per table, or {@code null} when the requested flush failed and they cannot be trusted.
+     */
+    private Map<String, String> readModifications(Connection oracle, String owner) throws SQLException {
+        if (flushMonitoringInfo) {
+            try (CallableStatement flush = oracle.prepareCall("{call DBMS_STATS.FLUSH_DATABASE_MONITORING_INFO()}")) {
+                flush.execute();
+            } catch (SQLException ex) {
+                log.warn("Could not flush Oracle monitoring info, copying every table: {}", ex.getMessage());
+                return null;
+            }
+        }
+        Map<String, String> modifications = new HashMap<>();
+        String sql = "SELECT table_name, inserts, updates, deletes, truncated, timestamp FROM all_tab_modifications " +
+                "WHERE table_owner = ? AND partition_name IS NULL";
+        try (PreparedStatement ps = oracle.prepareStatement(sql)) {
+            ps.setFetchSize(1000);
+            ps.setString(1, owner);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    modifications.put(rs.getString(1), rs.getLong(2) + "/" + rs.getLong(3) + "/" + rs.getLong(4)
+                            + "/" + rs.getString(5) + "@" + rs.getTimestamp(6));
+                }
+            }
+        }
+        return modifications;
+    }
+
+    private Map<String, String> readRowScns(Connection oracle, String owner, Set<String> tables) {
+        Map<String, String> scns = new HashMap<>();
+        for (String table : tables) {
+            try (Statement st = oracle.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT MAX(ORA_ROWSCN) FROM " + owner + "." + table)) {
+                if (rs.next()) {
+                    scns.put(table, String.valueOf(rs.getBigDecimal(1)));
+                }
+            } catch (SQLException ex) {
+                log.warn("Could not read ORA_ROWSCN of {}, copying it: {}", table, ex.getMessage());
+            }
+        }
+        return scns;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.h2sync.service;
+
+import com.example.h2sync.config.LoaderProperties;
+import org.slf4j.Logger;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Streams the Oracle rows through the loader and inserts them with JDBC batches: this thread fetches and decodes
+ * rows into {@link ColumnBatch}es while a {@link PipelinedBatchWriter} executes and commits the previous ones on H2.
+ * Batch size, fetch size and commit interval come from an {@link AdaptiveBatchController} per table.
+ * <p>
+ * The fetch, conversion, execute and commit time of every copy go to {@link LoaderMetrics}. Reading a row is only
+ * timed for one row in {@link LoaderMetrics#CONVERT_SAMPLE}, so the clock stays out of the per-row loop; the
+ * conversion time is extrapolated from those rows, and the rest of the reading loop, less the waits for the writer,
+ * counts as fetch time.
+ */
+final class JdbcBatchCopyEngine implements CopyEngine {
+
+    private final DataSource oracle;
+    private final JdbcTemplate h2;
+    private final Supplier<ExecutorService> writerPool;
+    private final LoaderProperties properties;
+    private final int batchSize;
+    private final BiConsumer<String, AdaptiveBatchController.Tuning> tunings;
+    private final LoaderMetrics metrics;
+    private final Logger log;
+
+    JdbcBatchCopyEngine(
+            DataSource oracle,
+            JdbcTemplate h2,
+            Supplier<ExecutorService> writerPool,
+            LoaderProperties properties,
+            int batchSize,
+            BiConsumer<String, AdaptiveBatchController.Tuning> tunings,
+            LoaderMetrics metrics,
+            Logger log
+    ) {
+        this.oracle = oracle;
+        this.h2 = h2;
+        this.writerPool = writerPool;
+        this.properties = properties;
+        this.batchSize = batchSize;
+        this.tunings = tunings;
+        this.metrics = metrics;
+        this.log = log;
+    }
+
+    @Override
+    public long copy(Request request) throws SQLException, InterruptedException {
+        AdaptiveBatchController controller =
+                AdaptiveBatchController.forTable(request.table(), batchSize, properties.getBatching());
+        try (Connection oconn = oracle.getConnection();
+             PreparedStatement src = oconn.prepareStatement(request.selectSql, ResultSet.TYPE_FORWARD_ONLY,
+                     ResultSet.CONCUR_READ_ONLY)) {
+            log.debug("Streaming data for target {} using Oracle connection {}", request.target, oconn);
+            src.setFetchSize(controller.fetchSize());
+            CopyEngine.bindParameters(src, request.params);
+            try (ResultSet rs = src.executeQuery()) {
+                ResultSetMetaData md = rs.getMetaData();
+                int cols = md.getColumnCount();
+                List<String> columns = new ArrayList<>(cols);
+                for (int i = 1; i <= cols; i++) {
+                    columns.add(md.getColumnName(i));
+                }
+                StringBuilder sb = new StringBuilder(request.writeHead(columns)).append(" VALUES (");
+                for (int i = 1; i <= cols; i++) {
+                    if (i > 1) sb.append(",");
+                    sb.append("?");
+                }
+                sb.append(")");
+                String insertSql = sb.toString();
+
+                try (Connection h2conn = Objects.requireNonNull(h2.getDataSource()).getConnection()) {
+                    h2conn.setAutoCommit(false);
+                    try (PreparedStatement ins = h2conn.prepareStatement(insertSql)) {
+                        // This thread keeps fetching from Oracle while the writer executes and commits the
+                        // previous batches on H2. Large LOBs are read from their locators by the writer, so the
+                        // Oracle connection stays open until the writer is finished.
+                        LoaderProperties.Lobs lobs = properties.getLobs();
+                        long lobThreshold = lobs.isStreaming() ? Math.max(1, lobs.getInMemoryThreshold()) : 0;
+                        LoaderProperties.Spill spill = properties.getSpill();
+                        long spillThreshold = spill.isEnabled() ? Math.max(1, spill.getThreshold()) : 0;
+                        ColumnCodec[] codecs = ColumnCodec.forResultSet(md, lobThreshold, spillThreshold,
+                                CopyEngine.spillDir(properties), log);
+                        LoaderMetrics.CopyTimes times = new LoaderMetrics.CopyTimes();
+                        PipelinedBatchWriter writer = new PipelinedBatchWriter(
+                                writerPool.get(), h2conn, ins, codecs, controller,
+                                Math.max(1, lobs.getMaxBatchBytes()), properties.getPipeline().getDepth(),
+                                request.target, request.progress::addRows, metrics, times, log);
+                        long readStart = System.nanoTime();
+                        long waitNanos = 0;
+                        long sampledNanos = 0;
+                        long rows = 0;
+                        try {
+                            int fetchSize = controller.fetchSize();
+                            ColumnBatch batch = writer.acquire();
+                            while (rs.next()) {
+                                if (++rows % LoaderMetrics.CONVERT_SAMPLE == 0) {
+                                    long t0 = System.nanoTime();
+                                    batch.readRow(rs);
+                                    sampledNanos += System.nanoTime() - t0;
+                                } else {
+                                    batch.readRow(rs);
+                                }
+                                if (batch.isFull()) {
+                                    long t0 = System.nanoTime();
+                                    writer.submit(batch);
+                                    batch = writer.acquire();
+                                    waitNanos += System.nanoTime() - t0;
+                                    if (fetchSize != controller.fetchSize()) {
+                                        fetchSize = controller.fetchSize();
+                                        rs.setFetchSize(fetchSize);
+                                    }
+                                }
+                            }
+                            long convertNanos = sampledNanos * LoaderMetrics.CONVERT_SAMPLE;
+                            times.convertNanos += convertNanos;
+                            times.fetchNanos = Math.max(0, System.nanoTime() - readStart - waitNanos - convertNanos);
+                            writer.submit(batch);
+                            long n = writer.finish();
+                            metrics.record(times);
+                            AdaptiveBatchController.Tuning tuning = controller.snapshot();
+                            tunings.accept(request.table(), tuning);
+                            log.info("Inserted {} rows into {} (batch {} rows, fetch {}, commit every {} batches)",
+                                    n, request.target, tuning.getBatchRows(), tuning.getFetchSize(),
+                                    tuning.getCommitInterval());
+                            return n;
+                        } catch (SQLException | InterruptedException | RuntimeException ex) {
+                            writer.abort();
+                            throw ex;
+                        }
+                    } catch (SQLException | InterruptedException | RuntimeException ex) {
+                        h2conn.rollback();
+                        throw ex;
+                    } finally {
+                        h2conn.setAutoCommit(true);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.h2sync.service;
+
+import com.example.h2sync.config.LoaderProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDriverBasedDataSource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Lets H2 read the rows itself: the select becomes a session-local {@code CREATE LINKED TABLE} over Oracle and the
+ * copy a single {@code INSERT ... DIRECT SELECT} (or {@code MERGE ... KEY}) inside H2, so no row passes through the
+ * loader.
+ * <p>
+ * Linked tables take no bind parameters and need the driver, URL and credentials of the Oracle data source. Copies
+ * with parameters (incremental and hash-chunked copies) or without a usable source go to {@code fallback}.
+ * H2 shares one Oracle session between linked tables of the same URL and user unless its URL sets
+ * {@code SHARE_LINKED_CONNECTIONS=FALSE}, so parallel linked copies are serialized by default.
+ */
+final class LinkedTableCopyEngine implements CopyEngine {
+
+    private static final AtomicLong LINK_IDS = new AtomicLong();
+
+    private final Source source;
+    private final JdbcTemplate h2;
+    private final LoaderProperties properties;
+    private final CopyEngine fallback;
+    private final Logger log;
+
+    LinkedTableCopyEngine(Source source, JdbcTemplate h2, LoaderProperties properties, CopyEngine fallback, Logger log) {
+        this.source = source;
+        this.h2 = h2;
+        this.properties = properties;
+        this.fallback = fallback;
+        this.log = log;
+    }
+
+    @Override
+    public long copy(Request request) throws SQLException, IOException, InterruptedException {
+        if (source == null || !request.params.isEmpty()) {
+            log.debug("Copying {} with the fallback engine: {}", request.target,
+                    source == null ? "the Oracle data source exposes no JDBC URL" : "the query has bind parameters");
+            return fallback.copy(request);
+        }
+        String link = "ETL_LINK_" + LINK_IDS.incrementAndGet();
+        try (Connection h2conn = Objects.requireNonNull(h2.getDataSource()).getConnection();
+             Statement st = h2conn.createStatement()) {
+            st.execute("CREATE LOCAL TEMPORARY LINKED TABLE " + link + "("
+                    + literal(source.driverClass) + ", " + literal(source.url) + ", "
+                    + literal(source.user) + ", " + literal(source.password) + ", "
+                    + literal("(" + request.selectSql + ")") + ") READONLY FETCH_SIZE "
+                    + Math.max(1, properties.getCopy().getLinkedFetchSize()));
+            try {
+                List<String> columns = new ArrayList<>();
+                try (ResultSet rs = st.executeQuery("SELECT * FROM " + link + " WHERE 1=0")) {
+                    ResultSetMetaData md = rs.getMetaData();
+                    for (int i = 1; i <= md.getColumnCount(); i++) {
+                        columns.add(md.getColumnName(i));
+                    }
+                }
+                String select = columns.stream().map(CopyEngine::quoteIdentifier).collect(Collectors.joining(","));
+                long n = st.executeUpdate(request.writeHead(columns)
+                        + (request.merges() ? " SELECT " : " DIRECT SELECT ") + select + " FROM " + link);
+                request.progress.addRows(n);
+                log.info("Inserted {} rows into {} through a linked table", n, request.target);
+                return n;
+            } finally {
+                st.execute("DROP TABLE IF EXISTS " + link);
+            }
+        }
+    }
+
+    private static String literal(String value) {
+        return value == null ? "''" : "'" + value.replace("'", "''") + "'";
+    }
+
+    /**
+     * Connection settings H2 needs to open its own session on the Oracle database.
+     */
+    static final class Source {
+        final String driverClass;
+        final String url;
+        final String user;
+        final String password;
+
+        Source(String driverClass, String url, String user, String password) {
+            this.driverClass = driverClass;
+            this.url = url;
+            this.user = user;
+            this.password = password;
+        }
+
+        /**
+         * Reads the settings of a Hikari pool or a Spring driver-based data source, or returns {@code null} when
+         * {@code dataSource} exposes no JDBC URL.
+         */
+        static Source of(DataSource dataSource) {
+            if (dataSource instanceof HikariDataSource) {
+                HikariDataSource hikari = (HikariDataSource) dataSource;
+                return of(hikari.getDriverClassName(), hikari.getJdbcUrl(), hikari.getUsername(), hikari.getPassword());
+            }
+            if (dataSource instanceof AbstractDriverBasedDataSource) {
+                AbstractDriverBasedDataSource driverBased = (AbstractDriverBasedDataSource) dataSource;
+                return of(null, driverBased.getUrl(), driverBased.getUsername(), driverBased.getPassword());
+            }
+            return null;
+        }
+
+        private static Source of(String driverClass, String url, String user, String password) {
+            if (url == null || url.isBlank()) {
+                return null;
+            }
+            if (driverClass == null || driverClass.isBlank()) {
+                try {
+                    driverClass = DriverManager.getDriver(url).getClass().getName();
+                } catch (SQLException e) {
+                    return null;
+                }
+            }
+            return new Source(driverClass, url, user, password);
+        }
+    }
+}
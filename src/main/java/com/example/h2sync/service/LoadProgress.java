@@ -0,0 +1,210 @@
+package com.example.h2sync.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live progress of the current (or last) refresh. Row totals come from the Oracle statistics in {@code ALL_TABLES},
+ * so percentages and ETAs are estimates; the counters are updated as each H2 batch commits.
+ */
+public final class LoadProgress {
+
+    public enum State {
+        QUEUED,
+        COPYING,
+        DONE,
+        FAILED,
+        UNCHANGED,
+        /** The refresh was cancelled before the table was copied completely. */
+        CANCELLED
+    }
+
+    private final Map<String, TableProgress> tables = Collections.synchronizedMap(new LinkedHashMap<>());
+    private volatile String job;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+
+    void start(String job, List<String> orderedTables) {
+        synchronized (tables) {
+            tables.clear();
+            for (String table : orderedTables) {
+                tables.put(table, new TableProgress(table));
+            }
+        }
+        this.job = job;
+        this.startedAt = Instant.now();
+        this.finishedAt = null;
+    }
+
+    void finish() {
+        this.finishedAt = Instant.now();
+    }
+
+    /**
+     * Marks the tables that are still queued or copying as cancelled.
+     */
+    void cancelPending() {
+        for (TableProgress table : getTables()) {
+            State state = table.getState();
+            if (state == State.QUEUED || state == State.COPYING) {
+                table.end(State.CANCELLED);
+            }
+        }
+    }
+
+    TableProgress table(String table) {
+        return tables.computeIfAbsent(table, TableProgress::new);
+    }
+
+    public String getJob() {
+        return job;
+    }
+
+    public boolean isRunning() {
+        return startedAt != null && finishedAt == null;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public List<TableProgress> getTables() {
+        synchronized (tables) {
+            return new ArrayList<>(tables.values());
+        }
+    }
+
+    public TableProgress find(String table) {
+        return tables.get(table);
+    }
+
+    public static final class TableProgress {
+        private final String table;
+        private final AtomicLong rowsCopied = new AtomicLong();
+        private volatile State state = State.QUEUED;
+        private volatile long estimatedRows = -1;
+        private volatile long startedAtMs;
+        private volatile long finishedAtMs;
+
+        private TableProgress(String table) {
+            this.table = table;
+        }
+
+        void begin(long estimatedRows) {
+            this.estimatedRows = estimatedRows;
+            rowsCopied.set(0);
+            startedAtMs = System.currentTimeMillis();
+            finishedAtMs = 0;
+            state = State.COPYING;
+        }
+
+        void addRows(long rows) {
+            rowsCopied.addAndGet(rows);
+        }
+
+        void end(State state) {
+            finishedAtMs = System.currentTimeMillis();
+            this.state = state;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * {@code ALL_TABLES.NUM_ROWS} at the start of the copy, or {@code -1} when unknown.
+         */
+        public long getEstimatedRows() {
+            return estimatedRows;
+        }
+
+        public long getRowsCopied() {
+            return rowsCopied.get();
+        }
+
+        public long getElapsedMs() {
+            long started = startedAtMs;
+            if (started == 0) {
+                return 0;
+            }
+            long finished = finishedAtMs;
+            return (finished == 0 ? System.currentTimeMillis() : finished) - started;
+        }
+
+        public Double getPercent() {
+            long estimated = estimatedRows;
+            if (state == State.DONE) {
+                return 100.0;
+            }
+            if (estimated <= 0) {
+                return null;
+            }
+            return Math.min(99.9, 100.0 * rowsCopied.get() / estimated);
+        }
+
+        public long getRowsPerSecond() {
+            long elapsed = getElapsedMs();
+            return elapsed <= 0 ? 0 : rowsCopied.get() * 1000 / elapsed;
+        }
+
+        /**
+         * Estimated milliseconds until the copy finishes at the current rate, or {@code null} when it cannot be told.
+         */
+        public Long getEtaMs() {
+            if (state != State.COPYING) {
+                return state == State.DONE ? 0L : null;
+            }
+            long rows = rowsCopied.get();
+            long remaining = estimatedRows - rows;
+            long elapsed = getElapsedMs();
+            if (estimatedRows <= 0 || rows == 0 || elapsed <= 0) {
+                return null;
+            }
+            return Math.max(0, remaining) * elapsed / rows;
+        }
+    }
+
+    /**
+     * Exact row counts of one table in Oracle and H2, taken on request to validate a copy.
+     */
+    public static final class ExactCount {
+        private final String table;
+        private final long oracleRows;
+        private final long h2Rows;
+
+        ExactCount(String table, long oracleRows, long h2Rows) {
+            this.table = table;
+            this.oracleRows = oracleRows;
+            this.h2Rows = h2Rows;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public long getOracleRows() {
+            return oracleRows;
+        }
+
+        public long getH2Rows() {
+            return h2Rows;
+        }
+
+        public boolean isMatching() {
+            return oracleRows == h2Rows;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.h2sync.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Micrometer meters of one loader, all tagged with {@code job} ({@code full} or {@code sample}):
+ * <ul>
+ *     <li>{@code h2sync.loader.table.phase} times each table copy (each chunk of a chunked table) once per
+ *     {@code phase}: reading its Oracle metadata, running its H2 DDL, fetching rows from Oracle, converting them,
+ *     executing the H2 batches and committing. The last four are measured by the JDBC copy engine only;</li>
+ *     <li>{@code h2sync.loader.rows} and {@code h2sync.loader.bytes} count what the batches wrote, and
+ *     {@code h2sync.loader.rows.per.second} and {@code h2sync.loader.bytes.per.second} give the rate since the
+ *     previous reading at least a second ago;</li>
+ *     <li>{@code h2sync.loader.retries} counts retried attempts by object type, and
+ *     {@code h2sync.loader.view.deferrals} views skipped after a failed dependency or put off because of a
+ *     dependency cycle;</li>
+ *     <li>{@code h2sync.loader.oracle.acquire} times taking an Oracle connection, and
+ *     {@code h2sync.loader.workers.active} counts the workers copying rows.</li>
+ * </ul>
+ * Without a registry nothing is recorded, but the row and byte totals are still kept.
+ */
+final class LoaderMetrics {
+
+    enum Phase {
+        METADATA,
+        DDL,
+        FETCH,
+        CONVERT,
+        EXECUTE_BATCH,
+        COMMIT
+    }
+
+    /** Rows whose conversion is timed; the time of the others is extrapolated from them. */
+    static final int CONVERT_SAMPLE = 64;
+
+    private final String job;
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final Map<Phase, Timer> phases = new EnumMap<>(Phase.class);
+    private final Map<String, Counter> retries = new ConcurrentHashMap<>();
+    private final Map<String, Counter> deferrals = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+    private volatile Timer acquire;
+
+    LoaderMetrics(String job) {
+        this.job = job;
+    }
+
+    /**
+     * Registers the meters with {@code registry}; a {@code null} registry leaves the loader unmeasured.
+     */
+    void bind(MeterRegistry registry) {
+        if (registry == null) {
+            return;
+        }
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, Timer.builder("h2sync.loader.table.phase")
+                    .tag("job", job)
+                    .tag("phase", phase.name().toLowerCase(Locale.ROOT))
+                    .description("Time one table spent in a phase of its copy")
+                    .register(registry));
+        }
+        FunctionCounter.builder("h2sync.loader.rows", rows, AtomicLong::get)
+                .tag("job", job)
+                .description("Rows written to H2")
+                .register(registry);
+        FunctionCounter.builder("h2sync.loader.bytes", bytes, AtomicLong::get)
+                .tag("job", job)
+                .baseUnit("bytes")
+                .description("Estimated bytes of the rows written to H2")
+                .register(registry);
+        Rate rowRate = new Rate(rows);
+        Gauge.builder("h2sync.loader.rows.per.second", rowRate, Rate::value)
+                .tag("job", job)
+                .description("Rows written to H2 per second")
+                .register(registry);
+        Rate byteRate = new Rate(bytes);
+        Gauge.builder("h2sync.loader.bytes.per.second", byteRate, Rate::value)
+                .tag("job", job)
+                .baseUnit("bytes")
+                .description("Estimated bytes written to H2 per second")
+                .register(registry);
+        Gauge.builder("h2sync.loader.workers.active", activeWorkers, AtomicInteger::get)
+                .tag("job", job)
+                .description("Workers copying rows from Oracle to H2")
+                .register(registry);
+        acquire = Timer.builder("h2sync.loader.oracle.acquire")
+                .tag("job", job)
+                .description("Time taken to get an Oracle connection from the pool")
+                .register(registry);
+        this.registry = registry;
+    }
+
+    void record(Phase phase, long nanos) {
+        Timer timer = phases.get(phase);
+        if (timer != null && nanos >= 0) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Records the phases of one finished table copy.
+     */
+    void record(CopyTimes times) {
+        record(Phase.FETCH, times.fetchNanos);
+        record(Phase.CONVERT, times.convertNanos);
+        record(Phase.EXECUTE_BATCH, times.executeNanos);
+        record(Phase.COMMIT, times.commitNanos);
+    }
+
+    void batchWritten(int batchRows, long batchBytes) {
+        rows.addAndGet(batchRows);
+        bytes.addAndGet(batchBytes);
+    }
+
+    void retried(String type) {
+        increment(retries, "h2sync.loader.retries", "type", type, "Failed attempts that were retried");
+    }
+
+    void viewDeferred(String reason) {
+        increment(deferrals, "h2sync.loader.view.deferrals", "reason", reason,
+                "Views skipped after a failed dependency or put off because of a dependency cycle");
+    }
+
+    void oracleAcquired(long nanos) {
+        Timer timer = acquire;
+        if (timer != null) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    void workerStarted() {
+        activeWorkers.incrementAndGet();
+    }
+
+    void workerFinished() {
+        activeWorkers.decrementAndGet();
+    }
+
+    private void increment(Map<String, Counter> counters, String name, String tag, String value, String description) {
+        MeterRegistry meterRegistry = registry;
+        if (meterRegistry == null) {
+            return;
+        }
+        String key = value.toLowerCase(Locale.ROOT);
+        counters.computeIfAbsent(key, k -> Counter.builder(name)
+                .tag("job", job)
+                .tag(tag, k)
+                .description(description)
+                .register(meterRegistry)).increment();
+    }
+
+    /**
+     * Time one table copy spent per phase. The reader thread adds fetch and conversion time, the writer thread
+     * binding, execute and commit time; the writer is done before the times are recorded.
+     */
+    static final class CopyTimes {
+        long fetchNanos;
+        long convertNanos;
+        long executeNanos;
+        long commitNanos;
+    }
+
+    /**
+     * Rate of a growing total over the interval since the previous reading that was at least a second earlier, so
+     * several scrapers do not shorten each other's interval to nothing.
+     */
+    private static final class Rate {
+        private static final long MIN_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+        private final AtomicLong total;
+        private long lastNanos;
+        private long lastTotal;
+        private double rate;
+
+        Rate(AtomicLong total) {
+            this.total = total;
+            this.lastNanos = System.nanoTime();
+            this.lastTotal = total.get();
+        }
+
+        synchronized double value() {
+            long now = System.nanoTime();
+            long elapsed = now - lastNanos;
+            if (elapsed >= MIN_INTERVAL_NANOS) {
+                long current = total.get();
+                rate = (current - lastTotal) * 1e9 / elapsed;
+                lastNanos = now;
+                lastTotal = current;
+            }
+            return rate;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.h2sync.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Outcome of one refresh, compared object by object between Oracle and H2. It is logged as a table by
+ * {@link MigrationReportPrinter}, stored in the H2 table {@code ETL_MIGRATION_REPORT} and served as JSON.
+ */
+public final class MigrationReport {
+
+    /** The table was counted by the loader while it was copied. */
+    public static final String SOURCE_LOADER = "LOADER";
+    /** The table was counted with {@code COUNT(1)} for the report. */
+    public static final String SOURCE_QUERY = "QUERY";
+
+    private final String job;
+    private final Instant generatedAt;
+    private final List<TableEntry> tables;
+    private final List<ViewEntry> views;
+    private final List<SequenceEntry> sequences;
+    private final List<BatchEntry> batching;
+
+    MigrationReport(
+            String job,
+            Instant generatedAt,
+            List<TableEntry> tables,
+            List<ViewEntry> views,
+            List<SequenceEntry> sequences,
+            List<BatchEntry> batching
+    ) {
+        this.job = job;
+        this.generatedAt = generatedAt;
+        this.tables = List.copyOf(tables);
+        this.views = List.copyOf(views);
+        this.sequences = List.copyOf(sequences);
+        this.batching = List.copyOf(batching);
+    }
+
+    public String getJob() {
+        return job;
+    }
+
+    public Instant getGeneratedAt() {
+        return generatedAt;
+    }
+
+    public List<TableEntry> getTables() {
+        return tables;
+    }
+
+    public List<ViewEntry> getViews() {
+        return views;
+    }
+
+    public List<SequenceEntry> getSequences() {
+        return sequences;
+    }
+
+    public List<BatchEntry> getBatching() {
+        return batching;
+    }
+
+    /**
+     * Row counts of one table. {@code status} is {@code MATCH}, the signed difference H2 minus Oracle,
+     * {@code UNCHANGED}, {@code SKIPPED} or {@code ERROR}.
+     */
+    public static final class TableEntry {
+        private final String table;
+        private final Long oracleRows;
+        private final Long h2Rows;
+        private final String status;
+        private final String countSource;
+        private final String oracleError;
+        private final String h2Error;
+
+        TableEntry(String table, Long oracleRows, Long h2Rows, String status, String countSource,
+                   String oracleError, String h2Error) {
+            this.table = table;
+            this.oracleRows = oracleRows;
+            this.h2Rows = h2Rows;
+            this.status = status;
+            this.countSource = countSource;
+            this.oracleError = oracleError;
+            this.h2Error = h2Error;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public Long getOracleRows() {
+            return oracleRows;
+        }
+
+        public Long getH2Rows() {
+            return h2Rows;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public String getCountSource() {
+            return countSource;
+        }
+
+        public String getOracleError() {
+            return oracleError;
+        }
+
+        public String getH2Error() {
+            return h2Error;
+        }
+    }
+
+    /**
+     * Presence of one view in H2: {@code MIGRATED}, {@code MISSING}, {@code SKIPPED} or {@code ERROR}.
+     */
+    public static final class ViewEntry {
+        private final String view;
+        private final String status;
+        private final String error;
+
+        ViewEntry(String view, String status, String error) {
+            this.view = view;
+            this.status = status;
+            this.error = error;
+        }
+
+        public String getView() {
+            return view;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    /**
+     * Oracle {@code LAST_NUMBER} against the current H2 value of one sequence.
+     */
+    public static final class SequenceEntry {
+        private final String sequence;
+        private final BigDecimal oracleValue;
+        private final BigDecimal h2Value;
+        private final String status;
+        private final String error;
+
+        SequenceEntry(String sequence, BigDecimal oracleValue, BigDecimal h2Value, String status, String error) {
+            this.sequence = sequence;
+            this.oracleValue = oracleValue;
+            this.h2Value = h2Value;
+            this.status = status;
+            this.error = error;
+        }
+
+        public String getSequence() {
+            return sequence;
+        }
+
+        public BigDecimal getOracleValue() {
+            return oracleValue;
+        }
+
+        public BigDecimal getH2Value() {
+            return h2Value;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    /**
+     * Batching a table copy ended with, ready to be pinned under {@code loader.batching.pinned}.
+     */
+    public static final class BatchEntry {
+        private final String table;
+        private final int batchRows;
+        private final int fetchSize;
+        private final int commitInterval;
+        private final long bytesPerRow;
+        private final long batches;
+        private final boolean adaptive;
+
+        BatchEntry(String table, AdaptiveBatchController.Tuning tuning) {
+            this.table = table;
+            this.batchRows = tuning.getBatchRows();
+            this.fetchSize = tuning.getFetchSize();
+            this.commitInterval = tuning.getCommitInterval();
+            this.bytesPerRow = tuning.getBytesPerRow();
+            this.batches = tuning.getBatches();
+            this.adaptive = tuning.isAdaptive();
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public int getBatchRows() {
+            return batchRows;
+        }
+
+        public int getFetchSize() {
+            return fetchSize;
+        }
+
+        public int getCommitInterval() {
+            return commitInterval;
+        }
+
+        public long getBytesPerRow() {
+            return bytesPerRow;
+        }
+
+        public long getBatches() {
+            return batches;
+        }
+
+        public boolean isAdaptive() {
+            return adaptive;
+        }
+    }
+}
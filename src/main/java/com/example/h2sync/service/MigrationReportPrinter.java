@@ -2,26 +2,39 @@ package com.example.h2sync.service;
 
 import org.slf4j.Logger;
 import org.springframework.dao.DataAccessException;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 
 import javax.sql.DataSource;
 import java.math.BigDecimal;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
 
+/**
+ * Builds and logs the {@link MigrationReport} of a refresh. Tables the loader copied completely are reported with the
+ * row count it observed while inserting, so the report does not scan them again; the remaining counts run
+ * concurrently on a small pool. Views and sequences are checked with one {@code INFORMATION_SCHEMA} query each.
+ */
 class MigrationReportPrinter {
 
     private static final List<String> H2_SEQUENCE_VALUE_COLUMNS = List.of(
@@ -36,109 +49,273 @@ class MigrationReportPrinter {
     private final Logger log;
     private final JdbcTemplate h2;
     private final DataSource oracleDs;
-    private final UnaryOperator<String> identifierQuoter;
+    private final UnaryOperator<String> targetNameResolver;
+    private final Supplier<String> targetSchema;
     private final Predicate<String> blacklistPredicate;
     private final String oracleSchema;
+    private final int threads;
 
     MigrationReportPrinter(
             Logger log,
             JdbcTemplate h2,
             DataSource oracleDs,
-            UnaryOperator<String> identifierQuoter,
+            UnaryOperator<String> targetNameResolver,
+            Supplier<String> targetSchema,
             Predicate<String> blacklistPredicate,
-            String oracleSchema
+            String oracleSchema,
+            int threads
     ) {
         this.log = Objects.requireNonNull(log, "log");
         this.h2 = Objects.requireNonNull(h2, "h2");
         this.oracleDs = Objects.requireNonNull(oracleDs, "oracleDs");
-        this.identifierQuoter = Objects.requireNonNull(identifierQuoter, "identifierQuoter");
+        this.targetNameResolver = Objects.requireNonNull(targetNameResolver, "targetNameResolver");
+        this.targetSchema = Objects.requireNonNull(targetSchema, "targetSchema");
         this.blacklistPredicate = Objects.requireNonNull(blacklistPredicate, "blacklistPredicate");
         this.oracleSchema = oracleSchema;
+        this.threads = Math.max(1, threads);
     }
 
-    void printReport(Set<String> tables, Set<String> views, List<Map<String, Object>> sequences) {
-        List<String[]> tableRows = new ArrayList<>();
-        for (String table : tables) {
-            tableRows.add(buildTableRow(table));
+    /**
+     * Compares Oracle and H2 and logs the result. Tables in {@code unchangedTables} were not copied in this run and
+     * are not counted in Oracle either. {@code loadedRows} holds the rows the loader copied into tables it loaded
+     * completely, and {@code batchTunings} the batching each copied table ended with.
+     */
+    MigrationReport printReport(
+            String job,
+            SchemaCatalog catalog,
+            Set<String> unchangedTables,
+            Map<String, Long> loadedRows,
+            Map<String, AdaptiveBatchController.Tuning> batchTunings
+    ) {
+        long t0 = System.currentTimeMillis();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<MigrationReport.TableEntry> tables = new ArrayList<>();
+        List<MigrationReport.ViewEntry> views;
+        List<MigrationReport.SequenceEntry> sequences;
+        int queried;
+        try {
+            List<Supplier<MigrationReport.TableEntry>> rows = new ArrayList<>();
+            for (String table : catalog.tables()) {
+                rows.add(tableRow(table, unchangedTables.contains(table), loadedRows.get(table), pool));
+            }
+            queried = (int) rows.stream().filter(row -> row instanceof PendingRow).count();
+            for (Supplier<MigrationReport.TableEntry> row : rows) {
+                tables.add(row.get());
+            }
+        } finally {
+            // counts still running after a failure finish on their own; interrupting H2 I/O could close its files
+            pool.shutdown();
+        }
+        views = buildViewRows(catalog.views());
+        sequences = buildSequenceRows(catalog.sequences());
+        List<MigrationReport.BatchEntry> batching = new ArrayList<>();
+        batchTunings.forEach((table, tuning) -> batching.add(new MigrationReport.BatchEntry(table, tuning)));
+        MigrationReport report = new MigrationReport(job, Instant.now(), tables, views, sequences, batching);
+        log.info("\n{}", render(report));
+        log.debug("Migration report took {} ms ({} of {} tables counted with queries)",
+                System.currentTimeMillis() - t0, queried, tables.size());
+        return report;
+    }
+
+    /**
+     * Returns the row of a table, either right away or as a {@link PendingRow} whose counts run on {@code pool}.
+     */
+    private Supplier<MigrationReport.TableEntry> tableRow(String table, boolean unchanged, Long loaded, ExecutorService pool) {
+        if (isBlacklisted(table)) {
+            MigrationReport.TableEntry entry = new MigrationReport.TableEntry(table, null, null, "SKIPPED", null, null, null);
+            return () -> entry;
+        }
+        if (loaded != null) {
+            MigrationReport.TableEntry entry = new MigrationReport.TableEntry(
+                    table, loaded, loaded, "MATCH", MigrationReport.SOURCE_LOADER, null, null);
+            return () -> entry;
         }
+        Future<NumericResult> oracle = unchanged ? null : pool.submit(() -> fetchOracleTableCount(table));
+        Future<NumericResult> h2Count = pool.submit(() -> fetchH2TableCount(table));
+        return new PendingRow(table, oracle, h2Count);
+    }
 
-        List<String[]> viewRows = new ArrayList<>();
-        for (String view : views) {
-            viewRows.add(buildViewRow(view));
+    private final class PendingRow implements Supplier<MigrationReport.TableEntry> {
+        private final String table;
+        private final Future<NumericResult> oracle;
+        private final Future<NumericResult> h2Count;
+
+        private PendingRow(String table, Future<NumericResult> oracle, Future<NumericResult> h2Count) {
+            this.table = table;
+            this.oracle = oracle;
+            this.h2Count = h2Count;
         }
 
-        List<String[]> sequenceRows = new ArrayList<>();
-        sequences.stream()
-                .sorted(Comparator.comparing(seq -> {
-                    String name = (String) seq.get("SEQUENCE_NAME");
-                    return name == null ? "" : name.toUpperCase(Locale.ROOT);
-                }))
-                .forEach(sequence -> sequenceRows.add(buildSequenceRow(sequence)));
+        @Override
+        public MigrationReport.TableEntry get() {
+            NumericResult h2Result = await(h2Count);
+            if (oracle == null) {
+                return new MigrationReport.TableEntry(table, null, longValue(h2Result),
+                        h2Result.isSuccess() ? "UNCHANGED" : "ERROR", MigrationReport.SOURCE_QUERY, null, h2Result.error);
+            }
+            NumericResult oracleResult = await(oracle);
+            String status = !oracleResult.isSuccess() || !h2Result.isSuccess()
+                    ? "ERROR"
+                    : formatDifference(h2Result.getValue().subtract(oracleResult.getValue()));
+            return new MigrationReport.TableEntry(table, longValue(oracleResult), longValue(h2Result), status,
+                    MigrationReport.SOURCE_QUERY, oracleResult.error, h2Result.error);
+        }
+    }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("==================== MIGRATION REPORT ====================\n\n");
-        sb.append(renderSection("Tables", new String[]{"Table", "Oracle Rows", "H2 Rows", "Status"}, tableRows)).append('\n');
-        sb.append(renderSection("Views", new String[]{"View", "Status"}, viewRows)).append('\n');
-        sb.append(renderSection("Sequences", new String[]{"Sequence", "Oracle Max", "H2 Max", "Status"}, sequenceRows));
-        sb.append("==========================================================");
+    private NumericResult await(Future<NumericResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return NumericResult.error("INTERRUPTED");
+        } catch (ExecutionException ex) {
+            return NumericResult.error(normalizeMessage(truncate(extractMessage(ex.getCause()), 60)));
+        }
+    }
 
-        log.info("\n{}", sb);
+    private static Long longValue(NumericResult result) {
+        return result.isSuccess() ? result.getValue().longValueExact() : null;
     }
 
-    private String[] buildTableRow(String table) {
-        if (isBlacklisted(table)) {
-            return new String[]{table, "-", "-", "SKIPPED"};
+    private List<MigrationReport.ViewEntry> buildViewRows(Set<String> views) {
+        Set<String> present = new HashSet<>();
+        String error = null;
+        try {
+            h2.query("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.VIEWS " +
+                            "WHERE TABLE_SCHEMA = COALESCE(CAST(? AS VARCHAR), SCHEMA())",
+                    (RowCallbackHandler) rs -> present.add(rs.getString(1).toUpperCase(Locale.ROOT)),
+                    targetSchema.get());
+        } catch (DataAccessException ex) {
+            error = normalizeMessage(truncate(extractMessage(ex), 60));
         }
-        NumericResult oracle = fetchOracleTableCount(table);
-        NumericResult h2Result = fetchH2TableCount(table);
-        String status;
-        if (!oracle.isSuccess() || !h2Result.isSuccess()) {
-            status = "ERROR";
-        } else {
-            status = formatDifference(h2Result.getValue().subtract(oracle.getValue()));
+        List<MigrationReport.ViewEntry> rows = new ArrayList<>();
+        for (String view : views) {
+            if (isBlacklisted(view)) {
+                rows.add(new MigrationReport.ViewEntry(view, "SKIPPED", null));
+            } else if (error != null) {
+                rows.add(new MigrationReport.ViewEntry(view, "ERROR", error));
+            } else {
+                rows.add(new MigrationReport.ViewEntry(view,
+                        present.contains(view.toUpperCase(Locale.ROOT)) ? "MIGRATED" : "MISSING", null));
+            }
         }
-        return new String[]{table, oracle.display(), h2Result.display(), status};
+        return rows;
     }
 
-    private String[] buildViewRow(String view) {
-        if (isBlacklisted(view)) {
-            return new String[]{view, "SKIPPED"};
-        }
-        PresenceResult presence = checkH2View(view);
-        if (presence.hasError()) {
-            return new String[]{view, "ERROR: " + presence.getError()};
+    private List<MigrationReport.SequenceEntry> buildSequenceRows(List<Map<String, Object>> sequences) {
+        Map<String, Map<String, Object>> h2Sequences = new HashMap<>();
+        String error = null;
+        try {
+            for (Map<String, Object> row : h2.queryForList("SELECT * FROM INFORMATION_SCHEMA.SEQUENCES " +
+                    "WHERE UPPER(SEQUENCE_SCHEMA) = UPPER(COALESCE(CAST(? AS VARCHAR), SCHEMA()))", targetSchema.get())) {
+                Object name = row.get("SEQUENCE_NAME");
+                if (name != null) {
+                    h2Sequences.put(name.toString().toUpperCase(Locale.ROOT), row);
+                }
+            }
+        } catch (DataAccessException ex) {
+            error = normalizeMessage(truncate(extractMessage(ex), 60));
         }
-        return new String[]{view, presence.isPresent() ? "MIGRATED" : "MISSING"};
+        List<MigrationReport.SequenceEntry> rows = new ArrayList<>();
+        String h2Error = error;
+        sequences.stream()
+                .sorted(Comparator.comparing(seq -> {
+                    String name = (String) seq.get("SEQUENCE_NAME");
+                    return name == null ? "" : name.toUpperCase(Locale.ROOT);
+                }))
+                .forEach(sequence -> rows.add(buildSequenceRow(sequence, h2Sequences, h2Error)));
+        return rows;
     }
 
-    private String[] buildSequenceRow(Map<String, Object> sequence) {
+    private MigrationReport.SequenceEntry buildSequenceRow(
+            Map<String, Object> sequence,
+            Map<String, Map<String, Object>> h2Sequences,
+            String h2Error
+    ) {
         String rawName = (String) sequence.get("SEQUENCE_NAME");
         String name = rawName == null ? "(UNKNOWN)" : rawName.toUpperCase(Locale.ROOT);
+        BigDecimal oracleValue = toBigDecimal(sequence.get("LAST_NUMBER"));
         if (rawName == null) {
-            BigDecimal oracleValue = toBigDecimal(sequence.get("LAST_NUMBER"));
-            return new String[]{name, formatNumber(oracleValue), "ERR: MISSING NAME", "ERROR"};
+            return new MigrationReport.SequenceEntry(name, oracleValue, null, "ERROR", "MISSING NAME");
         }
         if (isBlacklisted(name)) {
-            return new String[]{name, "-", "-", "SKIPPED"};
+            return new MigrationReport.SequenceEntry(name, null, null, "SKIPPED", null);
         }
-        BigDecimal oracleValue = toBigDecimal(sequence.get("LAST_NUMBER"));
-        NumericResult h2Value = fetchH2SequenceValue(name);
-        String oracleDisplay = formatNumber(oracleValue);
-        String status;
-        if (!h2Value.isSuccess()) {
-            status = "ERROR";
+        NumericResult h2Value;
+        if (h2Error != null) {
+            h2Value = NumericResult.error(h2Error);
+        } else if (!h2Sequences.containsKey(name)) {
+            h2Value = NumericResult.error("NOT FOUND");
         } else {
-            status = formatDifference(h2Value.getValue().subtract(oracleValue));
+            BigDecimal value = extractH2SequenceValue(h2Sequences.get(name));
+            h2Value = value == null ? NumericResult.error("VALUE NOT AVAILABLE") : NumericResult.success(value);
         }
-        return new String[]{name, oracleDisplay, h2Value.display(), status};
+        String status = h2Value.isSuccess() ? formatDifference(h2Value.getValue().subtract(oracleValue)) : "ERROR";
+        return new MigrationReport.SequenceEntry(name, oracleValue, h2Value.getValue(), status, h2Value.error);
+    }
+
+    private String render(MigrationReport report) {
+        List<String[]> tableRows = new ArrayList<>();
+        for (MigrationReport.TableEntry table : report.getTables()) {
+            tableRows.add(new String[]{
+                    table.getTable(),
+                    display(table.getOracleRows(), table.getOracleError()),
+                    display(table.getH2Rows(), table.getH2Error()),
+                    table.getStatus()});
+        }
+        List<String[]> viewRows = new ArrayList<>();
+        for (MigrationReport.ViewEntry view : report.getViews()) {
+            viewRows.add(new String[]{view.getView(),
+                    view.getError() == null ? view.getStatus() : "ERROR: " + view.getError()});
+        }
+        List<String[]> sequenceRows = new ArrayList<>();
+        for (MigrationReport.SequenceEntry sequence : report.getSequences()) {
+            boolean skipped = "SKIPPED".equals(sequence.getStatus());
+            sequenceRows.add(new String[]{
+                    sequence.getSequence(),
+                    skipped ? "-" : formatNumber(sequence.getOracleValue()),
+                    skipped ? "-" : sequence.getError() != null ? "ERR: " + sequence.getError() : formatNumber(sequence.getH2Value()),
+                    sequence.getStatus()});
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("==================== MIGRATION REPORT ====================\n\n");
+        sb.append(renderSection("Tables", new String[]{"Table", "Oracle Rows", "H2 Rows", "Status"}, tableRows)).append('\n');
+        sb.append(renderSection("Views", new String[]{"View", "Status"}, viewRows)).append('\n');
+        sb.append(renderSection("Sequences", new String[]{"Sequence", "Oracle Max", "H2 Max", "Status"}, sequenceRows));
+        if (!report.getBatching().isEmpty()) {
+            List<String[]> batchRows = new ArrayList<>();
+            for (MigrationReport.BatchEntry batch : report.getBatching()) {
+                batchRows.add(new String[]{
+                        batch.getTable(),
+                        String.valueOf(batch.getBatchRows()),
+                        String.valueOf(batch.getFetchSize()),
+                        String.valueOf(batch.getCommitInterval()),
+                        String.valueOf(batch.getBytesPerRow()),
+                        String.valueOf(batch.getBatches()),
+                        batch.isAdaptive() ? "ADAPTIVE" : "FIXED"});
+            }
+            sb.append('\n').append(renderSection("Batching",
+                    new String[]{"Table", "Batch Rows", "Fetch Size", "Commit Every", "Bytes/Row", "Batches", "Mode"},
+                    batchRows));
+        }
+        sb.append("==========================================================");
+        return sb.toString();
+    }
+
+    private String display(Long value, String error) {
+        if (error != null) {
+            return "ERR: " + error;
+        }
+        return value == null ? "-" : String.valueOf(value);
     }
 
     private NumericResult fetchOracleTableCount(String table) {
         String qualified = oracleSchema == null ? table : oracleSchema + "." + table;
         String sql = "SELECT COUNT(1) FROM " + qualified;
         try (Connection conn = oracleDs.getConnection();
-             Statement st = conn.createStatement();
-             ResultSet rs = st.executeQuery(sql)) {
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
             if (rs.next()) {
                 long count = rs.getLong(1);
                 return NumericResult.success(BigDecimal.valueOf(count));
@@ -150,7 +327,7 @@ class MigrationReportPrinter {
     }
 
     private NumericResult fetchH2TableCount(String table) {
-        String sql = "SELECT COUNT(1) FROM " + identifierQuoter.apply(table);
+        String sql = "SELECT COUNT(1) FROM " + targetNameResolver.apply(table);
         try {
             Long count = h2.queryForObject(sql, Long.class);
             if (count == null) {
@@ -162,33 +339,6 @@ class MigrationReportPrinter {
         }
     }
 
-    private PresenceResult checkH2View(String view) {
-        String sql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.VIEWS WHERE UPPER(TABLE_NAME) = ? AND TABLE_SCHEMA = SCHEMA()";
-        try {
-            Integer count = h2.queryForObject(sql, Integer.class, view.toUpperCase(Locale.ROOT));
-            return PresenceResult.success(count != null && count > 0);
-        } catch (DataAccessException ex) {
-            return PresenceResult.error(normalizeMessage(truncate(extractMessage(ex), 60)));
-        }
-    }
-
-    private NumericResult fetchH2SequenceValue(String sequence) {
-        String sql = "SELECT * FROM INFORMATION_SCHEMA.SEQUENCES " +
-                "WHERE UPPER(SEQUENCE_NAME) = ? AND UPPER(SEQUENCE_SCHEMA) = UPPER(SCHEMA())";
-        try {
-            Map<String, Object> row = h2.queryForMap(sql, sequence.toUpperCase(Locale.ROOT));
-            BigDecimal value = extractH2SequenceValue(row);
-            if (value == null) {
-                return NumericResult.error("VALUE NOT AVAILABLE");
-            }
-            return NumericResult.success(value);
-        } catch (EmptyResultDataAccessException ex) {
-            return NumericResult.error("NOT FOUND");
-        } catch (DataAccessException ex) {
-            return NumericResult.error(normalizeMessage(truncate(extractMessage(ex), 60)));
-        }
-    }
-
     private BigDecimal extractH2SequenceValue(Map<String, Object> row) {
         for (String column : H2_SEQUENCE_VALUE_COLUMNS) {
             if (!row.containsKey(column)) {
@@ -364,54 +514,5 @@ class MigrationReportPrinter {
         BigDecimal getValue() {
             return value;
         }
-
-        String display() {
-            if (isSuccess()) {
-                return formatStaticNumber(value);
-            }
-            return "ERR: " + error;
-        }
-
-        private static String formatStaticNumber(BigDecimal value) {
-            if (value == null) {
-                return "-";
-            }
-            BigDecimal normalized = value.stripTrailingZeros();
-            if (normalized.compareTo(BigDecimal.ZERO) == 0) {
-                return "0";
-            }
-            return normalized.toPlainString();
-        }
-    }
-
-    private static final class PresenceResult {
-        private final boolean present;
-        private final String error;
-
-        private PresenceResult(boolean present, String error) {
-            this.present = present;
-            this.error = error;
-        }
-
-        static PresenceResult success(boolean present) {
-            return new PresenceResult(present, null);
-        }
-
-        static PresenceResult error(String message) {
-            return new PresenceResult(false, message);
-        }
-
-        boolean isPresent() {
-            return present;
-        }
-
-        boolean hasError() {
-            return error != null;
-        }
-
-        String getError() {
-            return error;
-        }
     }
 }
-
@@ -0,0 +1,103 @@
+package com.example.h2sync.service;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Keeps the {@link MigrationReport} of the last refresh in the H2 table {@code ETL_MIGRATION_REPORT}, one row per
+ * object, so it can be queried with SQL next to the data it describes.
+ */
+final class MigrationReportStore {
+
+    private final JdbcTemplate h2;
+
+    MigrationReportStore(JdbcTemplate h2) {
+        this.h2 = Objects.requireNonNull(h2, "h2");
+    }
+
+    void init() {
+        h2.execute("CREATE TABLE IF NOT EXISTS ETL_MIGRATION_REPORT (" +
+                "OBJECT_TYPE VARCHAR(16) NOT NULL," +
+                "OBJECT_NAME VARCHAR(512) NOT NULL," +
+                "ORACLE_VALUE DECIMAL(38,0)," +
+                "H2_VALUE DECIMAL(38,0)," +
+                "STATUS VARCHAR(64) NOT NULL," +
+                "DETAIL VARCHAR(1024)," +
+                "JOB_NAME VARCHAR(128)," +
+                "GENERATED_AT TIMESTAMP NOT NULL," +
+                "PRIMARY KEY (OBJECT_TYPE, OBJECT_NAME)" +
+                ")");
+    }
+
+    /**
+     * Replaces the stored report with {@code report}.
+     */
+    void save(MigrationReport report) {
+        Timestamp generatedAt = Timestamp.from(report.getGeneratedAt());
+        List<Object[]> rows = new ArrayList<>();
+        for (MigrationReport.TableEntry table : report.getTables()) {
+            String detail = table.getOracleError() != null ? "Oracle: " + table.getOracleError()
+                    : table.getH2Error() != null ? "H2: " + table.getH2Error()
+                    : table.getCountSource() == null ? null : "counted by " + table.getCountSource();
+            rows.add(row("TABLE", table.getTable(), decimal(table.getOracleRows()), decimal(table.getH2Rows()),
+                    table.getStatus(), detail, report, generatedAt));
+        }
+        for (MigrationReport.ViewEntry view : report.getViews()) {
+            rows.add(row("VIEW", view.getView(), null, null, view.getStatus(), view.getError(), report, generatedAt));
+        }
+        for (MigrationReport.SequenceEntry sequence : report.getSequences()) {
+            rows.add(row("SEQUENCE", sequence.getSequence(), sequence.getOracleValue(), sequence.getH2Value(),
+                    sequence.getStatus(), sequence.getError(), report, generatedAt));
+        }
+        for (MigrationReport.BatchEntry batch : report.getBatching()) {
+            String detail = "rows=" + batch.getBatchRows() + ", fetchSize=" + batch.getFetchSize()
+                    + ", commitInterval=" + batch.getCommitInterval() + ", bytesPerRow=" + batch.getBytesPerRow()
+                    + ", batches=" + batch.getBatches();
+            rows.add(row("BATCHING", batch.getTable(), null, BigDecimal.valueOf(batch.getBatchRows()),
+                    batch.isAdaptive() ? "ADAPTIVE" : "FIXED", detail, report, generatedAt));
+        }
+        // one transaction, so readers never see an empty report and a failed insert keeps the previous one
+        h2.execute((ConnectionCallback<Void>) con -> {
+            con.setAutoCommit(false);
+            try (Statement delete = con.createStatement();
+                 PreparedStatement insert = con.prepareStatement("INSERT INTO ETL_MIGRATION_REPORT (OBJECT_TYPE, " +
+                         "OBJECT_NAME, ORACLE_VALUE, H2_VALUE, STATUS, DETAIL, JOB_NAME, GENERATED_AT) " +
+                         "VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+                delete.executeUpdate("DELETE FROM ETL_MIGRATION_REPORT");
+                for (Object[] row : rows) {
+                    for (int i = 0; i < row.length; i++) {
+                        insert.setObject(i + 1, row[i]);
+                    }
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                con.commit();
+            } catch (SQLException | RuntimeException ex) {
+                con.rollback();
+                throw ex;
+            } finally {
+                con.setAutoCommit(true);
+            }
+            return null;
+        });
+    }
+
+    private static Object[] row(String type, String name, BigDecimal oracleValue, BigDecimal h2Value, String status,
+                                String detail, MigrationReport report, Timestamp generatedAt) {
+        String trimmed = detail == null || detail.length() <= 1024 ? detail : detail.substring(0, 1024);
+        return new Object[]{type, name, oracleValue, h2Value, status, trimmed, report.getJob(), generatedAt};
+    }
+
+    private static BigDecimal decimal(Long value) {
+        return value == null ? null : BigDecimal.valueOf(value);
+    }
+}
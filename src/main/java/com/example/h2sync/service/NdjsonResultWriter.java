@@ -0,0 +1,154 @@
+package com.example.h2sync.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Newline-delimited JSON: one object per row, keyed by column label. Integers and decimals are JSON numbers,
+ * booleans JSON booleans, binary values hex strings and everything else strings. Non-finite doubles are written as
+ * strings because JSON has no literal for them.
+ */
+final class NdjsonResultWriter extends ResultStreamWriter {
+
+    private enum Kind { NUMBER, DOUBLE, BOOLEAN, BINARY, TEXT }
+
+    private final ByteSink sink;
+    private Kind[] kinds;
+    private byte[][] keys;
+
+    NdjsonResultWriter(OutputStream out, int bufferBytes) {
+        super(out, bufferBytes);
+        this.sink = new ByteSink(this.bufferBytes + 1024);
+    }
+
+    @Override
+    void begin(ResultSetMetaData md) throws SQLException {
+        int cols = md.getColumnCount();
+        kinds = new Kind[cols + 1];
+        keys = new byte[cols + 1][];
+        ByteSink key = new ByteSink(64);
+        for (int i = 1; i <= cols; i++) {
+            kinds[i] = kindOf(md.getColumnType(i));
+            key.reset();
+            key.write(i == 1 ? '{' : ',');
+            writeString(key, md.getColumnLabel(i));
+            key.write(':');
+            keys[i] = key.toByteArray();
+        }
+    }
+
+    @Override
+    void writeRow(ResultSet rs) throws SQLException, IOException {
+        if (keys.length == 1) {
+            sink.write('{');
+        }
+        for (int i = 1; i < keys.length; i++) {
+            sink.write(keys[i]);
+            switch (kinds[i]) {
+                case NUMBER: {
+                    String value = rs.getString(i);
+                    if (value == null) {
+                        sink.writeAscii("null");
+                    } else {
+                        sink.writeAscii(value);
+                    }
+                    break;
+                }
+                case DOUBLE: {
+                    double value = rs.getDouble(i);
+                    if (rs.wasNull()) {
+                        sink.writeAscii("null");
+                    } else if (Double.isFinite(value)) {
+                        sink.writeAscii(Double.toString(value));
+                    } else {
+                        writeString(sink, Double.toString(value));
+                    }
+                    break;
+                }
+                case BOOLEAN: {
+                    boolean value = rs.getBoolean(i);
+                    sink.writeAscii(rs.wasNull() ? "null" : value ? "true" : "false");
+                    break;
+                }
+                case BINARY: {
+                    byte[] value = rs.getBytes(i);
+                    if (value == null) {
+                        sink.writeAscii("null");
+                    } else {
+                        sink.write('"');
+                        writeHex(sink, value);
+                        sink.write('"');
+                    }
+                    break;
+                }
+                default: {
+                    String value = rs.getString(i);
+                    if (value == null) {
+                        sink.writeAscii("null");
+                    } else {
+                        writeString(sink, value);
+                    }
+                }
+            }
+        }
+        sink.write('}');
+        sink.write('\n');
+        if (sink.size() >= bufferBytes) {
+            sink.flushTo(out);
+        }
+    }
+
+    @Override
+    void finish() throws IOException {
+        sink.flushTo(out);
+    }
+
+    private static Kind kindOf(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return Kind.NUMBER;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return Kind.DOUBLE;
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return Kind.BOOLEAN;
+            default:
+                return isBinary(sqlType) ? Kind.BINARY : Kind.TEXT;
+        }
+    }
+
+    private static void writeString(ByteSink sink, String value) {
+        sink.write('"');
+        int from = 0;
+        int len = value.length();
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            sink.writeUtf8(value, from, i);
+            from = i + 1;
+            switch (c) {
+                case '"': sink.writeAscii("\\\""); break;
+                case '\\': sink.writeAscii("\\\\"); break;
+                case '\n': sink.writeAscii("\\n"); break;
+                case '\r': sink.writeAscii("\\r"); break;
+                case '\t': sink.writeAscii("\\t"); break;
+                default: sink.writeAscii(String.format("\\u%04x", (int) c));
+            }
+        }
+        sink.writeUtf8(value, from, len);
+        sink.write('"');
+    }
+}
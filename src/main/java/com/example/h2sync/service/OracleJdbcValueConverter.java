@@ -2,8 +2,9 @@ package com.example.h2sync.service;
 
 import org.slf4j.Logger;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.sql.Blob;
 import java.sql.Clob;
 import java.sql.ResultSet;
@@ -16,12 +17,29 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Utility methods for converting Oracle JDBC column values into H2-compatible representations.
  */
 final class OracleJdbcValueConverter {
 
+    /**
+     * {@code timestampValue()}, {@code dateValue()} and {@code timeValue()} of each {@code oracle.sql} class, in that
+     * order of preference, resolved once per class.
+     */
+    private static final ClassValue<MethodHandle[]> ORACLE_TEMPORAL_ACCESSORS = new ClassValue<>() {
+        @Override
+        protected MethodHandle[] computeValue(Class<?> type) {
+            List<MethodHandle> accessors = new ArrayList<>(3);
+            addAccessor(accessors, type, "timestampValue", Timestamp.class);
+            addAccessor(accessors, type, "dateValue", java.sql.Date.class);
+            addAccessor(accessors, type, "timeValue", java.sql.Time.class);
+            return accessors.toArray(new MethodHandle[0]);
+        }
+    };
+
     private OracleJdbcValueConverter() {
     }
 
@@ -64,6 +82,16 @@ final class OracleJdbcValueConverter {
         return maybeConvertTemporal(value);
     }
 
+    private static void addAccessor(List<MethodHandle> accessors, Class<?> type, String name, Class<?> returnType) {
+        try {
+            MethodHandle handle = MethodHandles.publicLookup()
+                    .findVirtual(type, name, MethodType.methodType(returnType));
+            accessors.add(handle.asType(MethodType.methodType(Object.class, Object.class)));
+        } catch (NoSuchMethodException | IllegalAccessException ignored) {
+            // the class does not expose this conversion
+        }
+    }
+
     private static boolean isTemporalType(int jdbcType) {
         return jdbcType == Types.DATE
                 || jdbcType == Types.TIME
@@ -186,40 +214,22 @@ final class OracleJdbcValueConverter {
 
         String className = value.getClass().getName();
         if (className.startsWith("oracle.sql.")) {
-            try {
-                Method method = value.getClass().getMethod("timestampValue");
-                Object ts = method.invoke(value);
-                if (ts instanceof Timestamp) {
-                    return ts;
+            MethodHandle[] accessors = ORACLE_TEMPORAL_ACCESSORS.get(value.getClass());
+            for (MethodHandle accessor : accessors) {
+                Object converted;
+                try {
+                    converted = accessor.invoke(value);
+                } catch (SQLException | RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new SQLException("Failed to convert Oracle temporal value of type " + className, e);
                 }
-            } catch (NoSuchMethodException ignored) {
-                // fall through and try other conversion methods
-            } catch (IllegalAccessException | InvocationTargetException e) {
-                throw new SQLException("Failed to convert Oracle temporal value of type " + className, e);
-            }
-
-            try {
-                Method method = value.getClass().getMethod("dateValue");
-                Object date = method.invoke(value);
-                if (date instanceof java.sql.Date) {
-                    return new Timestamp(((java.sql.Date) date).getTime());
+                if (converted instanceof Timestamp) {
+                    return converted;
                 }
-            } catch (NoSuchMethodException ignored) {
-                // fall through
-            } catch (IllegalAccessException | InvocationTargetException e) {
-                throw new SQLException("Failed to convert Oracle temporal value of type " + className, e);
-            }
-
-            try {
-                Method method = value.getClass().getMethod("timeValue");
-                Object time = method.invoke(value);
-                if (time instanceof java.sql.Time) {
-                    return new Timestamp(((java.sql.Time) time).getTime());
+                if (converted instanceof java.util.Date) {
+                    return new Timestamp(((java.util.Date) converted).getTime());
                 }
-            } catch (NoSuchMethodException ignored) {
-                // fall through
-            } catch (IllegalAccessException | InvocationTargetException e) {
-                throw new SQLException("Failed to convert Oracle temporal value of type " + className, e);
             }
         }
 
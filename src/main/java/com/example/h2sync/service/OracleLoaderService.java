@@ -1,5 +1,9 @@
 package com.example.h2sync.service;
 
+import com.example.h2sync.config.LoaderProperties;
+import com.example.h2sync.config.OraclePoolProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -13,6 +17,9 @@ public class OracleLoaderService extends AbstractOracleLoaderService {
     @Autowired
     public OracleLoaderService(
             JdbcTemplate h2,
+            LoaderProperties properties,
+            OraclePoolProperties poolProperties,
+            ObjectProvider<MeterRegistry> meterRegistry,
             @Value("${oracle.driver-class:oracle.jdbc.OracleDriver}") String driverClass,
             @Value("${oracle.url}") String url,
             @Value("${oracle.username}") String user,
@@ -23,7 +30,11 @@ public class OracleLoaderService extends AbstractOracleLoaderService {
             @Value("${loader.maxRetries:3}") int maxRetries,
             @Value("#{'${loader.blacklist:}'.replace('[','').replace(']','')}") String blacklistCsv
     ) {
-        this(h2, createOracleDataSource(driverClass, url, user, pass), schema, threads, batchSize, maxRetries, blacklistCsv);
+        this(h2,
+                createOracleDataSource(driverClass, url, user, pass, poolProperties, "oracle-loader",
+                        oracleWorkers(threads, properties), meterRegistry.getIfAvailable()),
+                schema, threads, batchSize, maxRetries, blacklistCsv, properties);
+        bindMetrics(meterRegistry.getIfAvailable());
     }
 
     OracleLoaderService(
@@ -35,7 +46,20 @@ public class OracleLoaderService extends AbstractOracleLoaderService {
             int maxRetries,
             String blacklistCsv
     ) {
-        super(h2, oracleDs, schema, threads, batchSize, maxRetries, blacklistCsv);
+        this(h2, oracleDs, schema, threads, batchSize, maxRetries, blacklistCsv, new LoaderProperties());
+    }
+
+    OracleLoaderService(
+            JdbcTemplate h2,
+            DataSource oracleDs,
+            String schema,
+            int threads,
+            int batchSize,
+            int maxRetries,
+            String blacklistCsv,
+            LoaderProperties properties
+    ) {
+        super(h2, oracleDs, schema, threads, batchSize, maxRetries, blacklistCsv, properties, "full");
     }
 
     @Override
@@ -1,5 +1,9 @@
 package com.example.h2sync.service;
 
+import com.example.h2sync.config.LoaderProperties;
+import com.example.h2sync.config.OraclePoolProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -16,6 +20,9 @@ public class OracleSampleLoaderService extends AbstractOracleLoaderService {
 
     @Autowired
     public OracleSampleLoaderService(
+            LoaderProperties properties,
+            OraclePoolProperties poolProperties,
+            ObjectProvider<MeterRegistry> meterRegistry,
             @Value("${sample.loader.h2-url:jdbc:h2:./data-sample/h2db;MODE=Oracle;DATABASE_TO_UPPER=false;AUTO_SERVER=TRUE}") String h2Url,
             @Value("${sample.loader.h2-username:sa}") String h2Username,
             @Value("${sample.loader.h2-password:}") String h2Password,
@@ -31,8 +38,10 @@ public class OracleSampleLoaderService extends AbstractOracleLoaderService {
             @Value("${sample.loader.row-limit:100}") int rowLimit
     ) {
         this(createSampleJdbcTemplate(h2Url, h2Username, h2Password),
-                createOracleDataSource(driverClass, url, user, pass),
-                schema, threads, batchSize, maxRetries, blacklistCsv, rowLimit, h2Url);
+                createOracleDataSource(driverClass, url, user, pass, poolProperties, "oracle-sample-loader",
+                        oracleWorkers(threads, properties), meterRegistry.getIfAvailable()),
+                schema, threads, batchSize, maxRetries, blacklistCsv, rowLimit, h2Url, properties);
+        bindMetrics(meterRegistry.getIfAvailable());
     }
 
     OracleSampleLoaderService(
@@ -44,9 +53,10 @@ public class OracleSampleLoaderService extends AbstractOracleLoaderService {
             int maxRetries,
             String blacklistCsv,
             int rowLimit,
-            String h2Url
+            String h2Url,
+            LoaderProperties properties
     ) {
-        super(h2, oracleDs, schema, threads, batchSize, maxRetries, blacklistCsv);
+        super(h2, oracleDs, schema, threads, batchSize, maxRetries, blacklistCsv, properties, "sample");
         this.rowLimit = rowLimit > 0 ? rowLimit : 100;
         this.h2Url = h2Url;
     }
@@ -65,6 +75,11 @@ public class OracleSampleLoaderService extends AbstractOracleLoaderService {
         return "Oracle -> H2 sample refresh";
     }
 
+    @Override
+    protected boolean copiesCompleteTables() {
+        return rowLimit <= 0;
+    }
+
     @Override
     protected String buildTableSelectSql(String oracleQualifiedTable, String table) {
         if (rowLimit > 0) {
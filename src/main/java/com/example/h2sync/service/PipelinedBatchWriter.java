@@ -0,0 +1,260 @@
+package com.example.h2sync.service;
+
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Writes {@link ColumnBatch}es into H2 on a separate thread while the caller keeps fetching from Oracle.
+ * Filled batches travel through a bounded queue and are recycled through a free list, so at most
+ * {@code depth + 1} buffers exist per table, and they are closed, spill files included, once the copy ends.
+ * Without an executor the batches are written inline. Batch size and commit interval follow the
+ * {@link AdaptiveBatchController}, a batch is cut short once it carries {@code maxBatchBytes}, and every executed
+ * batch is reported to the progress callback and {@link LoaderMetrics}.
+ * Binding the rows, executing the batches and committing are timed into the copy's {@link LoaderMetrics.CopyTimes}.
+ */
+final class PipelinedBatchWriter {
+
+    private static final ColumnBatch END = new ColumnBatch(new ColumnCodec[0], 0);
+
+    private final Connection h2conn;
+    private final PreparedStatement insert;
+    private final String target;
+    private final ColumnCodec[] codecs;
+    private final AdaptiveBatchController controller;
+    private final long maxBatchBytes;
+    private final LongConsumer progress;
+    private final LoaderMetrics metrics;
+    private final LoaderMetrics.CopyTimes times;
+    private final Logger log;
+    private final BlockingQueue<ColumnBatch> filled;
+    private final BlockingQueue<ColumnBatch> free;
+    private final List<ColumnBatch> allocated = new ArrayList<>();
+    private final Future<?> writerTask;
+    private volatile boolean aborted;
+    private volatile long written;
+    private long bindNanos;
+    private int uncommittedBatches;
+
+    PipelinedBatchWriter(
+            ExecutorService executor,
+            Connection h2conn,
+            PreparedStatement insert,
+            ColumnCodec[] codecs,
+            AdaptiveBatchController controller,
+            long maxBatchBytes,
+            int depth,
+            String target,
+            LongConsumer progress,
+            LoaderMetrics metrics,
+            LoaderMetrics.CopyTimes times,
+            Logger log
+    ) {
+        this.h2conn = h2conn;
+        this.insert = insert;
+        this.target = target;
+        this.codecs = codecs;
+        this.controller = controller;
+        this.maxBatchBytes = maxBatchBytes;
+        this.progress = progress;
+        this.metrics = metrics;
+        this.times = times;
+        this.log = log;
+        int queueDepth = Math.max(1, depth);
+        int buffers = executor == null ? 1 : queueDepth + 1;
+        this.filled = new ArrayBlockingQueue<>(queueDepth + 1);
+        this.free = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; i++) {
+            free.add(allocate(controller.batchRows()));
+        }
+        this.writerTask = executor == null ? null : executor.submit(this::drain);
+    }
+
+    /**
+     * Returns an empty batch, waiting for the writer to release one when all buffers are in flight. A buffer is
+     * reallocated when the controller has settled on a different batch size.
+     */
+    ColumnBatch acquire() throws SQLException, InterruptedException {
+        while (true) {
+            ColumnBatch batch = free.poll(100, TimeUnit.MILLISECONDS);
+            if (batch != null) {
+                int rows = controller.batchRows();
+                if (batch.capacity() == rows) {
+                    return batch;
+                }
+                batch.close();
+                synchronized (allocated) {
+                    allocated.remove(batch);
+                }
+                return allocate(rows);
+            }
+            checkWriter();
+        }
+    }
+
+    void submit(ColumnBatch batch) throws SQLException, InterruptedException {
+        if (batch.size() == 0) {
+            free.add(batch);
+            return;
+        }
+        if (writerTask == null) {
+            write(batch);
+            return;
+        }
+        while (!filled.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+            checkWriter();
+        }
+    }
+
+    /**
+     * Waits until every submitted batch is committed and returns the number of rows written.
+     */
+    long finish() throws SQLException, InterruptedException {
+        try {
+            if (writerTask != null) {
+                while (!filled.offer(END, 100, TimeUnit.MILLISECONDS)) {
+                    checkWriter();
+                }
+                awaitWriter();
+            } else {
+                commit();
+            }
+            // binding turns the decoded values into H2 parameters, which is conversion work as well
+            times.convertNanos += bindNanos;
+            return written;
+        } finally {
+            if (writerTask == null || writerTask.isDone()) {
+                closeBuffers();
+            }
+        }
+    }
+
+    /**
+     * Stops the writer after a reader failure; batches that were not committed yet are discarded.
+     */
+    void abort() {
+        aborted = true;
+        if (writerTask != null) {
+            List<ColumnBatch> discarded = new ArrayList<>();
+            filled.drainTo(discarded);
+            discarded.forEach(ColumnBatch::clear);
+            filled.offer(END);
+            try {
+                awaitWriter();
+            } catch (SQLException | InterruptedException | RuntimeException ex) {
+                log.debug("Writer for {} stopped after abort: {}", target, ex.toString());
+                if (ex instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        closeBuffers();
+    }
+
+    /**
+     * Buffers that are allocated and not closed yet.
+     */
+    int allocatedBuffers() {
+        synchronized (allocated) {
+            return allocated.size();
+        }
+    }
+
+    private ColumnBatch allocate(int rows) {
+        ColumnBatch batch = new ColumnBatch(codecs, rows, maxBatchBytes);
+        synchronized (allocated) {
+            allocated.add(batch);
+        }
+        return batch;
+    }
+
+    private void closeBuffers() {
+        synchronized (allocated) {
+            allocated.forEach(ColumnBatch::close);
+            allocated.clear();
+        }
+    }
+
+    private Void drain() throws SQLException, InterruptedException {
+        while (true) {
+            ColumnBatch batch = filled.take();
+            if (aborted) {
+                return null;
+            }
+            if (batch == END) {
+                commit();
+                return null;
+            }
+            write(batch);
+        }
+    }
+
+    private void write(ColumnBatch batch) throws SQLException {
+        int rows = batch.size();
+        long bytes = batch.estimateBytes();
+        long t0 = System.nanoTime();
+        for (int row = 0; row < rows; row++) {
+            batch.bindRow(insert, row);
+            insert.addBatch();
+        }
+        long t1 = System.nanoTime();
+        insert.executeBatch();
+        long t2 = System.nanoTime();
+        controller.recordBatch(rows, bytes, t2 - t0);
+        bindNanos += t1 - t0;
+        times.executeNanos += t2 - t1;
+        written += rows;
+        batch.clear();
+        free.add(batch);
+        progress.accept(rows);
+        metrics.batchWritten(rows, bytes);
+        if (++uncommittedBatches >= controller.commitInterval()) {
+            commit();
+        }
+    }
+
+    private void commit() throws SQLException {
+        if (uncommittedBatches == 0) {
+            return;
+        }
+        long t0 = System.nanoTime();
+        h2conn.commit();
+        long commitNanos = System.nanoTime() - t0;
+        controller.recordCommit(uncommittedBatches, commitNanos);
+        times.commitNanos += commitNanos;
+        uncommittedBatches = 0;
+    }
+
+    private void checkWriter() throws SQLException, InterruptedException {
+        if (writerTask != null && writerTask.isDone()) {
+            awaitWriter();
+            throw new SQLException("Writer for " + target + " stopped before the end of the data");
+        }
+    }
+
+    private void awaitWriter() throws SQLException, InterruptedException {
+        try {
+            writerTask.get();
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException("Writer for " + target + " failed", cause);
+        }
+    }
+}
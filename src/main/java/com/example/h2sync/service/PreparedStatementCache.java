@@ -0,0 +1,107 @@
+package com.example.h2sync.service;
+
+import org.h2.jdbc.JdbcConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prepared query statements kept open per H2 connection, so statements that come back, with other parameter values,
+ * skip H2's parse and plan. Statements are prepared on the H2 connection underneath the pool's and Spring's proxies,
+ * since the pool closes every statement opened through its proxy when the connection is returned; H2 recompiles a cached
+ * statement by itself when a refresh has changed the tables it reads.
+ * <p>
+ * A pooled connection is used by one thread at a time, and so are its statements. Each connection keeps its
+ * {@code query.statement-cache-size} most recently used statements; the statements of connections the pool has
+ * closed are dropped when it opens a new one.
+ */
+final class PreparedStatementCache {
+
+    private final int maxPerConnection;
+    private final Map<Connection, LinkedHashMap<String, PreparedStatement>> connections = new IdentityHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    PreparedStatementCache(int maxPerConnection) {
+        this.maxPerConnection = maxPerConnection;
+    }
+
+    /**
+     * Returns an open forward-only statement for {@code sql} on the physical connection of {@code con}. The caller
+     * must not close it; parameters left from its previous use are cleared.
+     */
+    PreparedStatement prepare(Connection con, String sql) throws SQLException {
+        Connection physical = con.unwrap(JdbcConnection.class);
+        LinkedHashMap<String, PreparedStatement> statements = statements(physical);
+        PreparedStatement ps = statements.get(sql);
+        if (ps != null && !ps.isClosed()) {
+            hits.increment();
+            ps.clearParameters();
+            return ps;
+        }
+        misses.increment();
+        ps = physical.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statements.put(sql, ps);
+        Iterator<PreparedStatement> eldest = statements.values().iterator();
+        while (statements.size() > maxPerConnection && eldest.hasNext()) {
+            closeQuietly(eldest.next());
+            eldest.remove();
+        }
+        return ps;
+    }
+
+    /**
+     * Closes and forgets the statement for {@code sql}, after it failed in a way that may have left it unusable.
+     */
+    void evict(Connection con, String sql) throws SQLException {
+        PreparedStatement ps = statements(con.unwrap(JdbcConnection.class)).remove(sql);
+        if (ps != null) {
+            closeQuietly(ps);
+        }
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    synchronized int size() {
+        return connections.values().stream().mapToInt(Map::size).sum();
+    }
+
+    private synchronized LinkedHashMap<String, PreparedStatement> statements(Connection physical) throws SQLException {
+        LinkedHashMap<String, PreparedStatement> statements = connections.get(physical);
+        if (statements == null) {
+            connections.entrySet().removeIf(e -> isClosed(e.getKey()));
+            statements = new LinkedHashMap<>(16, 0.75f, true);
+            connections.put(physical, statements);
+        }
+        return statements;
+    }
+
+    private static boolean isClosed(Connection con) {
+        try {
+            return con.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException ignored) {
+            // the statement is dropped either way
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.example.h2sync.service;
+
+import com.example.h2sync.config.QueryProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Admission control for the query API, so a few runaway SELECTs cannot saturate H2 while the loader writes to it.
+ * <ul>
+ *     <li>{@link #admit} hands out a slot within {@code query.governor.max-concurrent} queries overall and
+ *     {@code max-concurrent-per-client} per client. Without a free slot, up to {@code max-queued} queries wait
+ *     {@code queue-wait-ms} for one; the rest are rejected.</li>
+ *     <li>{@link #checkCost} rejects queries whose plan is estimated to read more than {@code max-cost} rows.</li>
+ *     <li>{@link #applyLimits} sets the statement timeout and the row cap.</li>
+ * </ul>
+ * Rejections are counted as {@code h2sync.query.rejected} by reason, waits are timed as
+ * {@code h2sync.query.queue.wait}, and {@code h2sync.query.active} and {@code h2sync.query.queued} are gauges.
+ */
+@Component
+public class QueryGovernor {
+
+    /**
+     * Why a query was not run.
+     */
+    public enum Reason {
+        /** Too many queries were already waiting for a slot. */
+        QUEUE_FULL,
+        /** The client's own queries kept all its slots for the whole wait. */
+        CLIENT_BUSY,
+        /** All slots stayed taken for the whole wait. */
+        BUSY,
+        /** The estimated cost is above {@code query.governor.max-cost}. */
+        TOO_EXPENSIVE
+    }
+
+    public static final class Rejected extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final Reason reason;
+
+        Rejected(Reason reason, String message) {
+            super(message);
+            this.reason = reason;
+        }
+
+        public Reason getReason() {
+            return reason;
+        }
+    }
+
+    /** Comment of one table access in an EXPLAIN plan: {@code SCHEMA.TABLE.tableScan} or {@code SCHEMA.INDEX: condition}. */
+    private static final Pattern ACCESS = Pattern.compile(
+            "/\\* ([^\\s.:*]+)\\.([^\\s.:*]+)(\\.tableScan)?(?:: (.*?))? \\*/");
+    private static final Pattern RANGE = Pattern.compile("[<>]|\\b(?:LIKE|BETWEEN|IN|IS|OR|NOT)\\b");
+    private static final int ESTIMATES = 1024;
+
+    private final QueryProperties.Governor properties;
+    private final Semaphore global;
+    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Map<String, Double> estimates = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Double> eldest) {
+                    return size() > ESTIMATES;
+                }
+            });
+    private volatile Statistics statistics;
+    private final Map<Reason, Counter> rejections = new EnumMap<>(Reason.class);
+    private final Timer queueWait;
+
+    @Autowired
+    public QueryGovernor(QueryProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        this(properties, meterRegistry.getIfAvailable());
+    }
+
+    QueryGovernor(QueryProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties.getGovernor();
+        this.global = new Semaphore(Math.max(1, this.properties.getMaxConcurrent()), true);
+        if (meterRegistry == null) {
+            this.queueWait = null;
+            return;
+        }
+        for (Reason reason : Reason.values()) {
+            rejections.put(reason, Counter.builder("h2sync.query.rejected")
+                    .tag("reason", reason.name().toLowerCase(Locale.ROOT))
+                    .description("Queries the governor refused to run")
+                    .register(meterRegistry));
+        }
+        this.queueWait = Timer.builder("h2sync.query.queue.wait")
+                .description("Time queries waited for a slot")
+                .register(meterRegistry);
+        Gauge.builder("h2sync.query.active", global, s -> Math.max(1, this.properties.getMaxConcurrent()) - s.availablePermits())
+                .description("Queries running on H2")
+                .register(meterRegistry);
+        Gauge.builder("h2sync.query.queued", waiting, AtomicInteger::get)
+                .description("Queries waiting for a slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes a slot for a query of {@code client}, waiting for one if needed. The returned permit gives it back
+     * when closed.
+     *
+     * @throws Rejected when no slot became free in time or too many queries are waiting already
+     */
+    public Permit admit(String client) {
+        String key = client == null ? "" : client;
+        Client own = enter(key);
+        boolean admitted = false;
+        try {
+            Permit permit = acquire(key, own);
+            admitted = true;
+            return permit;
+        } finally {
+            if (!admitted) {
+                leave(key);
+            }
+        }
+    }
+
+    /**
+     * Clients with a query running or waiting; the others are forgotten.
+     */
+    int clientCount() {
+        return clients.size();
+    }
+
+    private Permit acquire(String key, Client client) {
+        Semaphore own = client.slots;
+        boolean ownHeld = own.tryAcquire();
+        if (ownHeld && global.tryAcquire()) {
+            return new Permit(key, own);
+        }
+        if (waiting.incrementAndGet() > properties.getMaxQueued()) {
+            waiting.decrementAndGet();
+            if (ownHeld) {
+                own.release();
+            }
+            throw reject(Reason.QUEUE_FULL, properties.getMaxQueued() + " queries are already waiting");
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(Math.max(0, properties.getQueueWaitMs()));
+        boolean admitted = false;
+        try {
+            if (!ownHeld) {
+                ownHeld = own.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (!ownHeld) {
+                    throw reject(Reason.CLIENT_BUSY, "Client already runs " + properties.getMaxConcurrentPerClient()
+                            + " queries; no slot became free within " + properties.getQueueWaitMs() + " ms");
+                }
+            }
+            if (!global.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                throw reject(Reason.BUSY, "H2 already runs " + properties.getMaxConcurrent()
+                        + " queries; no slot became free within " + properties.getQueueWaitMs() + " ms");
+            }
+            admitted = true;
+            return new Permit(key, own);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject(Reason.BUSY, "Interrupted while waiting for a slot");
+        } finally {
+            waiting.decrementAndGet();
+            if (queueWait != null) {
+                queueWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            if (!admitted && ownHeld) {
+                own.release();
+            }
+        }
+    }
+
+    /**
+     * Returns the slots of {@code key}, counting the caller as one of its users until {@link #leave}.
+     */
+    private Client enter(String key) {
+        return clients.compute(key, (k, client) -> {
+            Client entry = client != null ? client : new Client(Math.max(1, properties.getMaxConcurrentPerClient()));
+            entry.users++;
+            return entry;
+        });
+    }
+
+    /**
+     * Drops the entry of {@code key} once its last user is gone, so arbitrary client ids do not pile up.
+     */
+    private void leave(String key) {
+        clients.computeIfPresent(key, (k, client) -> --client.users == 0 ? null : client);
+    }
+
+    /**
+     * Rejects {@code sql} when its estimated cost is above {@code query.governor.max-cost}. The estimate multiplies,
+     * over the table accesses of H2's plan, the rows each one reads: one for an index lookup on equality conditions
+     * only, the table's row count estimate for scans and any other index condition. Nested accesses of views and
+     * subqueries are included, so the figure is an upper bound for independent subqueries. Estimates are kept per
+     * SQL text until the next refresh.
+     *
+     * @throws Rejected when the query is too expensive
+     */
+    void checkCost(Connection con, String sql) throws SQLException {
+        long maxCost = properties.getMaxCost();
+        if (maxCost <= 0) {
+            return;
+        }
+        Double cost = estimates.get(sql);
+        if (cost == null) {
+            cost = estimateCost(con, sql);
+            estimates.put(sql, cost);
+        }
+        if (cost > maxCost) {
+            throw reject(Reason.TOO_EXPENSIVE, String.format(Locale.ROOT,
+                    "Estimated to read %.0f rows, more than query.governor.max-cost (%d)", cost, maxCost));
+        }
+    }
+
+    void applyLimits(PreparedStatement ps) throws SQLException {
+        ps.setQueryTimeout(Math.max(0, properties.getTimeoutSeconds()));
+        ps.setLargeMaxRows(Math.max(0, properties.getMaxRows()));
+    }
+
+    /**
+     * Forgets the table statistics and cost estimates, which a refresh may have made stale.
+     */
+    void refreshCompleted() {
+        statistics = null;
+        estimates.clear();
+    }
+
+    private double estimateCost(Connection con, String sql) throws SQLException {
+        String plan;
+        try (PreparedStatement ps = con.prepareStatement("EXPLAIN " + sql);
+             ResultSet rs = ps.executeQuery()) {
+            plan = rs.next() ? rs.getString(1) : "";
+        }
+        Statistics stats = statistics;
+        if (stats == null) {
+            stats = Statistics.load(con);
+            statistics = stats;
+        }
+        double cost = 1;
+        Matcher m = ACCESS.matcher(plan);
+        while (m.find()) {
+            String name = m.group(1) + "." + m.group(2);
+            boolean scan = m.group(3) != null;
+            String table = scan ? name : stats.indexTables.get(name);
+            if (table == null) {
+                continue;
+            }
+            String condition = m.group(4);
+            boolean lookup = !scan && condition != null
+                    && !RANGE.matcher(condition.toUpperCase(Locale.ROOT)).find();
+            if (!lookup) {
+                cost *= Math.max(1, stats.rows.getOrDefault(table, 1L));
+            }
+        }
+        return cost;
+    }
+
+    private Rejected reject(Reason reason, String message) {
+        Counter counter = rejections.get(reason);
+        if (counter != null) {
+            counter.increment();
+        }
+        return new Rejected(reason, message);
+    }
+
+    /**
+     * A slot taken by {@link #admit}; closing it gives the slot back.
+     */
+    public final class Permit implements AutoCloseable {
+        private final String client;
+        private final Semaphore own;
+        private boolean closed;
+
+        private Permit(String client, Semaphore own) {
+            this.client = client;
+            this.own = own;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                global.release();
+                own.release();
+                leave(client);
+            }
+        }
+    }
+
+    /**
+     * The slots of one client and the queries running or waiting on them; {@code users} only changes inside the
+     * map's atomic {@code compute} calls.
+     */
+    private static final class Client {
+        private final Semaphore slots;
+        private int users;
+
+        private Client(int slots) {
+            this.slots = new Semaphore(slots, true);
+        }
+    }
+
+    /**
+     * Row count estimates of the H2 tables and the table of each index, keyed by {@code SCHEMA.NAME}.
+     */
+    private static final class Statistics {
+        private final Map<String, Long> rows = new HashMap<>();
+        private final Map<String, String> indexTables = new HashMap<>();
+
+        static Statistics load(Connection con) throws SQLException {
+            Statistics stats = new Statistics();
+            try (Statement st = con.createStatement()) {
+                try (ResultSet rs = st.executeQuery("SELECT TABLE_SCHEMA, TABLE_NAME, ROW_COUNT_ESTIMATE "
+                        + "FROM INFORMATION_SCHEMA.TABLES WHERE ROW_COUNT_ESTIMATE IS NOT NULL")) {
+                    while (rs.next()) {
+                        stats.rows.put(rs.getString(1) + "." + rs.getString(2), rs.getLong(3));
+                    }
+                }
+                try (ResultSet rs = st.executeQuery("SELECT INDEX_SCHEMA, INDEX_NAME, TABLE_SCHEMA, TABLE_NAME "
+                        + "FROM INFORMATION_SCHEMA.INDEXES")) {
+                    while (rs.next()) {
+                        stats.indexTables.put(rs.getString(1) + "." + rs.getString(2),
+                                rs.getString(3) + "." + rs.getString(4));
+                    }
+                }
+            }
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.h2sync.service;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * A query submitted to {@link QueryJobService}. Its rows are spooled as NDJSON to a local file while it runs and
+ * read back page by page once it is {@code DONE}. The getters make up the status returned by the job API.
+ */
+public final class QueryJob {
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED,
+        CANCELLED
+    }
+
+    private final String id;
+    private final String sql;
+    private final Instant submittedAt = Instant.now();
+    final List<Object> params;
+    final String client;
+    private volatile State state = State.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile Instant lastReadAt;
+    private volatile long rows;
+    private volatile long bytes;
+    private volatile String error;
+    private final long ttlMs;
+    volatile Path spool;
+    volatile Future<?> future;
+    private Statement statement;
+    private boolean cancelRequested;
+
+    QueryJob(String id, String sql, List<Object> params, String client, long ttlMs) {
+        this.id = id;
+        this.sql = sql;
+        this.params = params;
+        this.client = client;
+        this.ttlMs = ttlMs;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Instant getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    /** Rows spooled; final once the job is {@code DONE}. */
+    public long getRows() {
+        return rows;
+    }
+
+    /** Size of the spool file. */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /** When the job and its spool are dropped, unless it is read again before. */
+    public Instant getExpiresAt() {
+        Instant finished = finishedAt;
+        if (finished == null) {
+            return null;
+        }
+        Instant read = lastReadAt;
+        Instant from = read != null && read.isAfter(finished) ? read : finished;
+        return from.plusMillis(ttlMs);
+    }
+
+    boolean isFinished() {
+        State s = state;
+        return s == State.DONE || s == State.FAILED || s == State.CANCELLED;
+    }
+
+    /**
+     * Moves a queued job to {@code RUNNING}; returns {@code false} when it was cancelled while it waited.
+     */
+    synchronized boolean start() {
+        if (state != State.QUEUED) {
+            return false;
+        }
+        state = State.RUNNING;
+        startedAt = Instant.now();
+        return true;
+    }
+
+    /**
+     * Records the statement the job runs, or {@code null} once it is done with it; a cancel that arrived before it
+     * started executing cancels it right away.
+     */
+    synchronized void running(Statement statement) {
+        this.statement = statement;
+        if (statement != null && cancelRequested) {
+            cancelQuietly(statement);
+        }
+    }
+
+    synchronized void progress(long rows, long bytes) {
+        this.rows = rows;
+        this.bytes = bytes;
+    }
+
+    synchronized void finish(State state, String error) {
+        if (cancelRequested && state != State.DONE) {
+            state = State.CANCELLED;
+            error = null;
+        }
+        this.state = state;
+        this.error = error;
+        this.finishedAt = Instant.now();
+    }
+
+    /**
+     * Cancels the job: a queued job never runs, a running one has its statement cancelled. Returns {@code false}
+     * when the job had already finished.
+     */
+    synchronized boolean cancel() {
+        if (isFinished()) {
+            return false;
+        }
+        cancelRequested = true;
+        if (state == State.QUEUED) {
+            state = State.CANCELLED;
+            finishedAt = Instant.now();
+            Future<?> f = future;
+            if (f != null) {
+                f.cancel(false);
+            }
+        } else if (statement != null) {
+            cancelQuietly(statement);
+        }
+        return true;
+    }
+
+    void read() {
+        lastReadAt = Instant.now();
+    }
+
+    private static void cancelQuietly(Statement statement) {
+        try {
+            statement.cancel();
+        } catch (SQLException ignored) {
+            // the statement finished or its connection is gone; either way it no longer runs
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.example.h2sync.service;
+
+import com.example.h2sync.config.QueryProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs queries in the background for clients that should not hold an HTTP request, and an H2 connection, open for a
+ * whole export. A job streams its result through {@link QueryService} into an NDJSON spool file, one row per line,
+ * so the H2 connection is released as soon as the query has been read. Clients then fetch the rows page by page.
+ * <p>
+ * A page token encodes the job, the number of rows before it and the byte offset of its first row in the spool, so
+ * each page starts with a seek rather than a rescan. Jobs and their spool files are dropped
+ * {@code query.jobs.ttl-ms} after they finished or were last read.
+ */
+@Service
+public class QueryJobService {
+    private static final Logger log = LoggerFactory.getLogger(QueryJobService.class);
+
+    private static final int COPY_BYTES = 64 * 1024;
+
+    private final QueryService queryService;
+    private final QueryProperties.Jobs properties;
+    private final ExecutorService executor;
+    private final Map<String, QueryJob> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public QueryJobService(QueryService queryService, QueryProperties properties) {
+        this.queryService = queryService;
+        this.properties = properties.getJobs();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, this.properties.getThreads()));
+    }
+
+    /**
+     * Queues {@code sql} for the background threads and returns its job.
+     *
+     * @throws IllegalStateException when {@code query.jobs.max-jobs} jobs are kept already
+     */
+    public QueryJob submit(String sql, List<Object> params, String client) {
+        if (jobs.size() >= properties.getMaxJobs()) {
+            throw new IllegalStateException(properties.getMaxJobs() + " query jobs are kept already; "
+                    + "delete finished ones or wait for them to expire");
+        }
+        QueryJob job = new QueryJob(UUID.randomUUID().toString(), sql, new ArrayList<>(params), client, properties.getTtlMs());
+        jobs.put(job.getId(), job);
+        job.future = executor.submit(() -> run(job));
+        return job;
+    }
+
+    public QueryJob find(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Cancels a queued or running job, which stays visible as {@code CANCELLED} until it expires.
+     */
+    public boolean cancel(String id) {
+        QueryJob job = jobs.get(id);
+        return job != null && job.cancel();
+    }
+
+    /**
+     * Cancels the job if needed and drops it together with its spool file.
+     */
+    public boolean delete(String id) {
+        QueryJob job = jobs.remove(id);
+        if (job == null) {
+            return false;
+        }
+        job.cancel();
+        deleteSpool(job);
+        return true;
+    }
+
+    /**
+     * Writes one page of a finished job as {@code {"job":..,"rows":[..],"nextToken":..}}: up to {@code limit} rows
+     * from the position of {@code token}, or from the first row without one. {@code nextToken} is {@code null} on
+     * the last page.
+     *
+     * @throws NoSuchElementException   when there is no such job
+     * @throws IllegalStateException    when the job has not finished successfully
+     * @throws IllegalArgumentException when the token does not belong to this job's spool
+     */
+    public void writePage(String id, String token, Integer limit, OutputStream out) throws IOException {
+        QueryJob job = jobs.get(id);
+        if (job == null) {
+            throw new NoSuchElementException("No query job " + id);
+        }
+        if (job.getState() != QueryJob.State.DONE) {
+            throw new IllegalStateException("Query job " + id + " is " + job.getState());
+        }
+        Path spool = job.spool;
+        if (spool == null) {
+            throw new IllegalStateException("Query job " + id + " has no spool");
+        }
+        job.read();
+        int pageRows = Math.min(Math.max(1, limit == null ? properties.getPageRows() : limit), properties.getMaxPageRows());
+        try (FileChannel channel = FileChannel.open(spool, StandardOpenOption.READ)) {
+            long row = 0;
+            long offset = 0;
+            if (token != null && !token.isBlank()) {
+                long[] position = decodeToken(job, token);
+                row = position[0];
+                offset = position[1];
+                if (offset > 0 && !endsLine(channel, offset)) {
+                    throw new IllegalArgumentException("Page token does not point at a row");
+                }
+            }
+            ByteSink head = new ByteSink(128);
+            head.writeAscii("{\"job\":\"");
+            head.writeAscii(id);
+            head.writeAscii("\",\"rows\":[");
+            head.flushTo(out);
+            long[] copied = copyRows(channel, offset, pageRows, out);
+            row += copied[0];
+            long end = copied[1];
+            head.writeAscii("],\"nextToken\":");
+            if (end < job.getBytes()) {
+                head.writeAscii("\"");
+                head.writeAscii(encodeToken(id, row, end));
+                head.writeAscii("\"");
+            } else {
+                head.writeAscii("null");
+            }
+            head.writeAscii("}");
+            head.flushTo(out);
+            out.flush();
+        }
+    }
+
+    /**
+     * Drops the jobs whose time to live has passed.
+     */
+    @Scheduled(fixedDelayString = "${query.jobs.sweep-ms:60000}")
+    public void expire() {
+        Instant now = Instant.now();
+        for (QueryJob job : jobs.values()) {
+            Instant expiresAt = job.getExpiresAt();
+            if (expiresAt != null && expiresAt.isBefore(now) && jobs.remove(job.getId(), job)) {
+                deleteSpool(job);
+                log.debug("Query job {} expired", job.getId());
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        jobs.values().forEach(QueryJob::cancel);
+        executor.shutdownNow();
+        jobs.values().forEach(QueryJobService::deleteSpool);
+        jobs.clear();
+    }
+
+    private void run(QueryJob job) {
+        if (!job.start()) {
+            return;
+        }
+        try {
+            String dir = properties.getSpoolDir();
+            Path spoolDir = Path.of(dir == null || dir.isBlank() ? System.getProperty("java.io.tmpdir") : dir);
+            Files.createDirectories(spoolDir);
+            job.spool = Files.createTempFile(spoolDir, "h2sync-job-", ".ndjson");
+            long rows;
+            try (CountingStream out = new CountingStream(job, Files.newOutputStream(job.spool))) {
+                rows = queryService.spool(job.getSql(), job.params, out, job.client, job::running);
+                out.flush();
+                job.progress(rows, out.bytes);
+            }
+            job.finish(QueryJob.State.DONE, null);
+            log.info("Query job {} spooled {} rows ({} bytes)", job.getId(), rows, job.getBytes());
+        } catch (QueryGovernor.Rejected e) {
+            fail(job, e.getReason() + ": " + e.getMessage());
+        } catch (DataAccessException e) {
+            fail(job, e.getMostSpecificCause().getMessage());
+        } catch (IOException | RuntimeException e) {
+            fail(job, e.toString());
+        }
+        if (!jobs.containsKey(job.getId())) {
+            // deleted while it ran
+            deleteSpool(job);
+        }
+    }
+
+    private void fail(QueryJob job, String error) {
+        job.finish(QueryJob.State.FAILED, error);
+        deleteSpool(job);
+        if (job.getState() == QueryJob.State.CANCELLED) {
+            log.info("Query job {} cancelled", job.getId());
+        } else {
+            log.warn("Query job {} failed: {}", job.getId(), error);
+        }
+    }
+
+    /**
+     * Copies up to {@code pageRows} NDJSON lines starting at {@code offset} to {@code out} as comma-separated JSON
+     * values and returns how many were copied and the offset after the last one.
+     */
+    private static long[] copyRows(FileChannel channel, long offset, int pageRows, OutputStream out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(COPY_BYTES);
+        byte[] chunk = buffer.array();
+        long position = offset;
+        long rows = 0;
+        boolean rowOpen = false;
+        read:
+        while (rows < pageRows) {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            if (n <= 0) {
+                break;
+            }
+            int from = 0;
+            for (int i = 0; i < n; i++) {
+                if (!rowOpen) {
+                    if (rows > 0) {
+                        out.write(',');
+                    }
+                    rowOpen = true;
+                    from = i;
+                }
+                if (chunk[i] == '\n') {
+                    out.write(chunk, from, i - from);
+                    rowOpen = false;
+                    rows++;
+                    if (rows == pageRows) {
+                        position += i + 1;
+                        break read;
+                    }
+                }
+            }
+            if (rowOpen) {
+                out.write(chunk, from, n - from);
+            }
+            position += n;
+        }
+        return new long[]{rows, position};
+    }
+
+    private static boolean endsLine(FileChannel channel, long offset) throws IOException {
+        ByteBuffer previous = ByteBuffer.allocate(1);
+        return channel.read(previous, offset - 1) == 1 && previous.get(0) == '\n';
+    }
+
+    private static String encodeToken(String id, long row, long offset) {
+        String plain = id + ":" + row + ":" + offset;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long[] decodeToken(QueryJob job, String token) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":");
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed page token");
+        }
+        if (parts.length != 3 || !parts[0].equals(job.getId())) {
+            throw new IllegalArgumentException("Page token belongs to another job");
+        }
+        try {
+            long row = Long.parseLong(parts[1]);
+            long offset = Long.parseLong(parts[2]);
+            if (row < 0 || row > job.getRows() || offset < 0 || offset > job.getBytes()) {
+                throw new IllegalArgumentException("Page token is out of range");
+            }
+            return new long[]{row, offset};
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed page token");
+        }
+    }
+
+    private static void deleteSpool(QueryJob job) {
+        Path spool = job.spool;
+        if (spool == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(spool);
+        } catch (IOException e) {
+            log.warn("Could not delete spool {} of query job {}: {}", spool, job.getId(), e.toString());
+        }
+    }
+
+    /**
+     * Buffers the spool file and publishes the rows and bytes written so far on the job.
+     */
+    private static final class CountingStream extends FilterOutputStream {
+        private final QueryJob job;
+        private long bytes;
+        private long rows;
+
+        CountingStream(QueryJob job, OutputStream out) {
+            super(new BufferedOutputStream(out, COPY_BYTES));
+            this.job = job;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n') {
+                    rows++;
+                }
+            }
+            bytes += len;
+            job.progress(rows, bytes);
+        }
+    }
+}
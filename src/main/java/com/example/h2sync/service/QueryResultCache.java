@@ -0,0 +1,362 @@
+package com.example.h2sync.service;
+
+import com.example.h2sync.config.QueryProperties;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Encoded query results, kept until a refresh changes a table they read. Every table has a version: the refresh
+ * generation in which it last changed. An entry records the highest version among its tables when it was produced
+ * and is dropped by {@link #invalidate} as soon as that no longer holds. Entries whose tables are unknown (no table
+ * recognised in the SQL, or a view read) use the generation itself and so do not survive any refresh.
+ * <p>
+ * Entries are evicted least recently used first, against two byte budgets: {@code query.cache.max-bytes} for
+ * results held on the heap and {@code query.cache.max-spill-bytes} for results above
+ * {@code query.cache.spill-threshold}, which are kept in memory-mapped temp files. A spill file is deleted as soon
+ * as it is mapped, so the OS reclaims it once the mapping is garbage collected.
+ */
+final class QueryResultCache {
+
+    private final QueryProperties.Cache properties;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private Map<String, Long> tableVersions = new HashMap<>();
+    private long generation;
+    private long allVersion;
+    private long heapBytes;
+    private long spillBytes;
+
+    QueryResultCache(QueryProperties.Cache properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Returns the cache key of a statement: the format, the SQL with whitespace outside quotes collapsed, and the
+     * parameters with their types.
+     */
+    static String key(String sql, List<?> params, ResultFormat format) {
+        StringBuilder key = new StringBuilder(sql.length() + 16).append(format.name()).append('\n');
+        char quote = 0;
+        boolean space = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote == 0 && Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space && key.charAt(key.length() - 1) != '\n') {
+                key.append(' ');
+            }
+            space = false;
+            if (quote == 0 && (c == '\'' || c == '"')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            }
+            key.append(c);
+        }
+        for (Object param : params) {
+            key.append('\n');
+            if (param == null) {
+                key.append("null");
+            } else if (param instanceof byte[]) {
+                key.append("byte[]:").append(HexFormat.of().formatHex((byte[]) param));
+            } else {
+                key.append(param.getClass().getSimpleName()).append(':').append(param);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the strong ETag of the result of {@code key} at {@code version}. {@code epoch} tells processes apart,
+     * since versions start over with every cache.
+     */
+    static String etag(String key, long epoch, long version) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(digest, 0, 8) + "-" + Long.toString(epoch, 36) + "-" + version + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Returns the highest version among {@code tables}, or the generation when they are unknown ({@code null}).
+     */
+    synchronized long version(Set<String> tables) {
+        if (tables == null) {
+            return generation;
+        }
+        long version = 0;
+        for (String table : tables) {
+            version = Math.max(version, tableVersions.getOrDefault(table, allVersion));
+        }
+        return version;
+    }
+
+    synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Returns a stream that writes to {@code target} and keeps a copy of what went through it for {@link #put}.
+     */
+    Capture capture(OutputStream target) {
+        return new Capture(target);
+    }
+
+    /**
+     * Caches what {@code capture} saw unless a refresh changed {@code tables} since {@code version} was taken, or
+     * the result was too large to keep.
+     */
+    void put(String key, Set<String> tables, long version, long rows, Capture capture) {
+        Entry entry = capture.toEntry(tables, version, rows);
+        if (entry == null) {
+            return;
+        }
+        synchronized (this) {
+            if (version(tables) != version) {
+                return;
+            }
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                release(previous);
+            }
+            if (entry.mapped) {
+                spillBytes += entry.size;
+            } else {
+                heapBytes += entry.size;
+            }
+            evict();
+        }
+    }
+
+    /**
+     * Starts a new generation after a refresh. Tables in {@code unchanged} keep their version; every other table,
+     * and every entry that read one, is invalidated. {@code null} invalidates everything.
+     */
+    synchronized void invalidate(Set<String> unchanged) {
+        Map<String, Long> kept = new HashMap<>();
+        if (unchanged != null) {
+            for (String table : unchanged) {
+                kept.put(table, version(Set.of(table)));
+            }
+        }
+        generation++;
+        allVersion = generation;
+        tableVersions = kept;
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (version(entry.tables) != entry.version) {
+                it.remove();
+                release(entry);
+            }
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext() && (heapBytes > properties.getMaxBytes() || spillBytes > properties.getMaxSpillBytes())) {
+            Entry entry = it.next();
+            if (entry.mapped ? spillBytes > properties.getMaxSpillBytes() : heapBytes > properties.getMaxBytes()) {
+                it.remove();
+                release(entry);
+            }
+        }
+    }
+
+    private void release(Entry entry) {
+        if (entry.mapped) {
+            spillBytes -= entry.size;
+        } else {
+            heapBytes -= entry.size;
+        }
+    }
+
+    private Path spillDir() {
+        String dir = properties.getSpillDir();
+        return Path.of(dir == null || dir.isBlank() ? System.getProperty("java.io.tmpdir") : dir);
+    }
+
+    /**
+     * One cached result: the encoded bytes, on the heap or memory-mapped, and the row count.
+     */
+    static final class Entry {
+        private final Set<String> tables;
+        private final long version;
+        private final long rows;
+        private final ByteBuffer bytes;
+        private final boolean mapped;
+        private final long size;
+
+        private Entry(Set<String> tables, long version, long rows, ByteBuffer bytes, boolean mapped) {
+            this.tables = tables;
+            this.version = version;
+            this.rows = rows;
+            this.bytes = bytes;
+            this.mapped = mapped;
+            this.size = bytes.remaining();
+        }
+
+        long version() {
+            return version;
+        }
+
+        long rows() {
+            return rows;
+        }
+
+        void writeTo(OutputStream out, int chunkBytes) throws IOException {
+            ByteBuffer view = bytes.duplicate();
+            if (view.hasArray()) {
+                out.write(view.array(), view.arrayOffset() + view.position(), view.remaining());
+            } else {
+                byte[] chunk = new byte[Math.min(Math.max(1024, chunkBytes), Math.max(1, view.remaining()))];
+                while (view.hasRemaining()) {
+                    int n = Math.min(chunk.length, view.remaining());
+                    view.get(chunk, 0, n);
+                    out.write(chunk, 0, n);
+                }
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Tee stream used while a result is produced. The copy stays on the heap up to the spill threshold, then moves
+     * to a temp file; it is given up when the result exceeds {@code query.cache.max-entry-bytes} or the file cannot
+     * be written, without affecting the response.
+     */
+    final class Capture extends OutputStream {
+        private final OutputStream target;
+        private ByteSink heap = new ByteSink(1024);
+        private Path file;
+        private FileChannel channel;
+        private long size;
+        private boolean abandoned;
+
+        private Capture(OutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+            if (abandoned) {
+                return;
+            }
+            size += len;
+            long limit = Math.min(properties.getMaxEntryBytes(), Integer.MAX_VALUE);
+            if (size > limit) {
+                abandon();
+                return;
+            }
+            try {
+                if (channel != null) {
+                    writeFully(ByteBuffer.wrap(b, off, len));
+                    return;
+                }
+                heap.write(b, off, len);
+                long threshold = properties.getSpillThreshold();
+                if (threshold > 0 && heap.size() > threshold) {
+                    Files.createDirectories(spillDir());
+                    file = Files.createTempFile(spillDir(), "h2sync-query-", ".bin");
+                    channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    writeFully(ByteBuffer.wrap(heap.toByteArray()));
+                    heap = null;
+                }
+            } catch (IOException e) {
+                abandon();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        /**
+         * Drops the copy when the result was not written completely.
+         */
+        @Override
+        public void close() {
+            abandon();
+        }
+
+        private Entry toEntry(Set<String> tables, long version, long rows) {
+            if (abandoned) {
+                return null;
+            }
+            try {
+                if (channel == null) {
+                    return new Entry(tables, version, rows, ByteBuffer.wrap(heap.toByteArray()), false);
+                }
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                return new Entry(tables, version, rows, mapped, true);
+            } catch (IOException e) {
+                return null;
+            } finally {
+                abandon();
+            }
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        private void abandon() {
+            abandoned = true;
+            heap = null;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // the file is deleted below either way
+                }
+                channel = null;
+            }
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    // still mapped on platforms that refuse to delete open files
+                    file.toFile().deleteOnExit();
+                }
+                file = null;
+            }
+        }
+    }
+}
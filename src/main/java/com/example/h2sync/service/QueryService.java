@@ -0,0 +1,304 @@
+package com.example.h2sync.service;
+
+import com.example.h2sync.config.QueryProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the SELECT statements of the query API against H2 and streams their rows in a {@link ResultFormat}.
+ * Statements use a forward-only cursor with {@code query.fetch-size} and, with {@code query.lazy-execution}, H2's
+ * lazy query execution, so a multi-GB result is produced while it is written instead of being materialised first.
+ * <p>
+ * Statements are taken from a {@link PreparedStatementCache} unless {@code query.statement-cache-size} is 0; its hits
+ * and misses are published as {@code h2sync.query.statements}.
+ * <p>
+ * With {@code query.cache.enabled}, results are kept in a {@link QueryResultCache} and replayed byte for byte until
+ * {@link #refreshCompleted} reports that a table they read has changed. Statements that read no known table, read
+ * the loader's {@code ETL_} bookkeeping or {@code INFORMATION_SCHEMA}, or call a function such as {@code NEXTVAL},
+ * {@code CURRENT_TIMESTAMP} or {@code RAND()} whose value changes between calls are always run and get no ETag.
+ */
+@Service
+public class QueryService {
+
+    private static final Pattern VOLATILE = Pattern.compile(
+            "\\b(?:NEXTVAL|CURRVAL|CURRENT_[A-Z_]+|LOCALTIME|LOCALTIMESTAMP|SYSDATE|SYSTIMESTAMP|INFORMATION_SCHEMA)\\b"
+                    + "|\\b(?:RAND|RANDOM|RANDOM_UUID|UUID|SECURE_RAND|NOW)\\s*\\(");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final QueryProperties properties;
+    private final QueryResultCache cache;
+    private final PreparedStatementCache statements;
+    private final QueryGovernor governor;
+    private final long epoch = System.currentTimeMillis();
+    private volatile TableNames tableNames;
+
+    @Autowired
+    public QueryService(JdbcTemplate jdbcTemplate, QueryProperties properties, QueryGovernor governor,
+                        ObjectProvider<MeterRegistry> meterRegistry) {
+        this(jdbcTemplate, properties, governor, meterRegistry.getIfAvailable());
+    }
+
+    QueryService(JdbcTemplate jdbcTemplate, QueryProperties properties, MeterRegistry meterRegistry) {
+        this(jdbcTemplate, properties, new QueryGovernor(properties, meterRegistry), meterRegistry);
+    }
+
+    QueryService(JdbcTemplate jdbcTemplate, QueryProperties properties, QueryGovernor governor, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.governor = governor;
+        this.cache = properties.getCache().isEnabled() ? new QueryResultCache(properties.getCache()) : null;
+        this.statements = properties.getStatementCacheSize() > 0
+                ? new PreparedStatementCache(properties.getStatementCacheSize()) : null;
+        if (meterRegistry != null && statements != null) {
+            FunctionCounter.builder("h2sync.query.statements", statements, PreparedStatementCache::hits)
+                    .tag("cache", "hit")
+                    .description("Queries run with a statement that was already prepared")
+                    .register(meterRegistry);
+            FunctionCounter.builder("h2sync.query.statements", statements, PreparedStatementCache::misses)
+                    .tag("cache", "miss")
+                    .description("Queries whose statement had to be parsed and planned")
+                    .register(meterRegistry);
+            Gauge.builder("h2sync.query.statements.cached", statements, PreparedStatementCache::size)
+                    .description("Prepared statements kept open across all H2 connections")
+                    .register(meterRegistry);
+        }
+    }
+
+    public QueryService(JdbcTemplate jdbcTemplate, QueryProperties properties) {
+        this(jdbcTemplate, properties, (MeterRegistry) null);
+    }
+
+    public long stream(String sql, ResultFormat format, OutputStream out) {
+        return stream(sql, Collections.emptyList(), format, out);
+    }
+
+    public long stream(String sql, List<?> params, ResultFormat format, OutputStream out) {
+        return stream(sql, params, format, out, null);
+    }
+
+    /**
+     * Writes the rows of {@code sql}, with {@code params} bound in order, to {@code out} and returns how many there
+     * were. Results that are not cached are run within the {@link QueryGovernor} limits for {@code client}. Write
+     * failures are rethrown as {@link UncheckedIOException}, SQL errors as Spring's {@code DataAccessException}, and
+     * refusals of the governor as {@link QueryGovernor.Rejected}.
+     */
+    public long stream(String sql, List<?> params, ResultFormat format, OutputStream out, String client) {
+        if (cache == null) {
+            return execute(sql, params, format, out, client);
+        }
+        Set<String> names = cacheableNames(sql);
+        if (names == null) {
+            return execute(sql, params, format, out, client);
+        }
+        String key = QueryResultCache.key(sql, params, format);
+        Set<String> tables = tables(names);
+        long version = cache.version(tables);
+        QueryResultCache.Entry cached = cache.get(key);
+        if (cached != null && cached.version() == version) {
+            try {
+                cached.writeTo(out, properties.getBufferBytes());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return cached.rows();
+        }
+        QueryResultCache.Capture capture = cache.capture(out);
+        try {
+            long rows = execute(sql, params, format, capture, client);
+            cache.put(key, tables, version, rows, capture);
+            return rows;
+        } finally {
+            capture.close();
+        }
+    }
+
+    /**
+     * Returns the ETag of the result of {@code sql} as of the last refresh, without running it; {@code null} when
+     * the cache is disabled or the result of {@code sql} is not cached.
+     */
+    public String etag(String sql, List<?> params, ResultFormat format) {
+        if (cache == null) {
+            return null;
+        }
+        Set<String> names = cacheableNames(sql);
+        if (names == null) {
+            return null;
+        }
+        String key = QueryResultCache.key(sql, params, format);
+        return QueryResultCache.etag(key, epoch, cache.version(tables(names)));
+    }
+
+    /**
+     * Drops the cached results that a refresh may have changed. Only tables the report lists as {@code UNCHANGED}
+     * keep their results; without a report, after a failed refresh, everything is dropped. The governor's cost
+     * estimates are dropped as well, since row counts have changed.
+     */
+    public void refreshCompleted(MigrationReport report) {
+        governor.refreshCompleted();
+        if (cache == null) {
+            return;
+        }
+        Set<String> unchanged = report == null ? null : report.getTables().stream()
+                .filter(t -> "UNCHANGED".equals(t.getStatus()))
+                .map(t -> t.getTable().toUpperCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+        cache.invalidate(unchanged);
+        // the refresh may have created or dropped tables
+        tableNames = null;
+    }
+
+    /**
+     * Returns the tables and views {@code sql} reads, in upper case, or {@code null} when its result must not be
+     * cached: no table is recognised, an {@code ETL_} table or {@code INFORMATION_SCHEMA} is read, or a
+     * {@link #VOLATILE} function is called.
+     */
+    private Set<String> cacheableNames(String sql) {
+        String upper = sql.toUpperCase(Locale.ROOT);
+        if (VOLATILE.matcher(ViewGraph.stripLiterals(upper)).find()) {
+            return null;
+        }
+        Set<String> referenced = ViewGraph.referencedNames(tableNames().all, upper);
+        if (referenced.isEmpty() || referenced.stream().anyMatch(name -> name.startsWith("ETL_"))) {
+            return null;
+        }
+        return referenced;
+    }
+
+    /**
+     * Returns {@code names} when they are all tables, or {@code null} when a view is read, whose tables would have to
+     * be resolved as well.
+     */
+    private Set<String> tables(Set<String> names) {
+        return names.stream().anyMatch(tableNames().views::contains) ? null : names;
+    }
+
+    private TableNames tableNames() {
+        TableNames names = tableNames;
+        if (names == null) {
+            names = loadTableNames();
+            tableNames = names;
+        }
+        return names;
+    }
+
+    private TableNames loadTableNames() {
+        Set<String> all = new HashSet<>();
+        Set<String> views = new HashSet<>();
+        jdbcTemplate.query("SELECT TABLE_NAME, TABLE_TYPE FROM INFORMATION_SCHEMA.TABLES "
+                + "WHERE TABLE_SCHEMA <> 'INFORMATION_SCHEMA'", rs -> {
+            String name = rs.getString(1).toUpperCase(Locale.ROOT);
+            all.add(name);
+            if ("VIEW".equals(rs.getString(2))) {
+                views.add(name);
+            }
+        });
+        return new TableNames(all, views);
+    }
+
+    /**
+     * Runs {@code sql} for a {@link QueryJobService} job, bypassing the result cache, and writes its rows as NDJSON
+     * to {@code out}. {@code running} receives the statement while it executes, so the job can cancel it, and
+     * {@code null} once it is done with it.
+     */
+    long spool(String sql, List<?> params, OutputStream out, String client, Consumer<Statement> running) {
+        QueryGovernor.Permit permit = governor.admit(client);
+        try {
+            return run(sql, params, ResultFormat.NDJSON, out, running);
+        } finally {
+            permit.close();
+        }
+    }
+
+    private long execute(String sql, List<?> params, ResultFormat format, OutputStream out, String client) {
+        QueryGovernor.Permit permit = governor.admit(client);
+        try {
+            return run(sql, params, format, out, null);
+        } finally {
+            permit.close();
+        }
+    }
+
+    private long run(String sql, List<?> params, ResultFormat format, OutputStream out, Consumer<Statement> running) {
+        Long rows = jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+            governor.checkCost(con, sql);
+            boolean lazy = properties.isLazyExecution();
+            if (lazy) {
+                setLazyExecution(con, true);
+            }
+            PreparedStatement ps = statements != null ? statements.prepare(con, sql)
+                    : con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            try {
+                ps.setFetchSize(Math.max(1, properties.getFetchSize()));
+                governor.applyLimits(ps);
+                for (int i = 0; i < params.size(); i++) {
+                    ps.setObject(i + 1, params.get(i));
+                }
+                if (running != null) {
+                    running.accept(ps);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    return ResultStreamWriter.create(format, out, properties).writeAll(rs);
+                }
+            } catch (SQLException e) {
+                if (statements != null) {
+                    statements.evict(con, sql);
+                }
+                throw e;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                if (running != null) {
+                    // a cached statement is reused by other queries, which a late cancel must not hit
+                    running.accept(null);
+                }
+                if (statements == null) {
+                    ps.close();
+                }
+                if (lazy) {
+                    // the connection goes back to the pool; other users expect the default execution mode
+                    setLazyExecution(con, false);
+                }
+            }
+        });
+        return rows == null ? 0 : rows;
+    }
+
+    private static void setLazyExecution(Connection con, boolean lazy) throws SQLException {
+        try (Statement st = con.createStatement()) {
+            st.execute("SET LAZY_QUERY_EXECUTION " + (lazy ? "TRUE" : "FALSE"));
+        }
+    }
+
+    private static final class TableNames {
+        private final Set<String> all;
+        private final Set<String> views;
+
+        private TableNames(Set<String> all, Set<String> views) {
+            this.all = all;
+            this.views = views;
+        }
+    }
+}
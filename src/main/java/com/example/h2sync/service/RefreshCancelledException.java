@@ -0,0 +1,12 @@
+package com.example.h2sync.service;
+
+/**
+ * Thrown out of a refresh that was cancelled with {@link AbstractOracleLoaderService#cancelRefresh()}.
+ */
+public class RefreshCancelledException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public RefreshCancelledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.h2sync.service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full or sample refresh run by {@link RefreshJobService}. While it runs, {@link #getTables()} shows the live
+ * progress of its loader; once it has finished, the tables as they ended. The getters make up the status returned by
+ * the job API.
+ */
+public final class RefreshJob {
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED,
+        CANCELLED
+    }
+
+    private final String id;
+    private final String job;
+    private final String reason;
+    private final Instant submittedAt = Instant.now();
+    final AbstractOracleLoaderService loader;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile State state = State.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+    private volatile List<LoadProgress.TableProgress> tables;
+    private boolean cancelRequested;
+
+    RefreshJob(String id, AbstractOracleLoaderService loader, String reason) {
+        this.id = id;
+        this.loader = loader;
+        this.job = loader.getJobName();
+        this.reason = reason;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /** Name of the loader, which tells a full refresh from a sample load. */
+    public String getJob() {
+        return job;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Instant getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * State, rows copied, rows per second and ETA of every table of this refresh; empty until the loader has
+     * listed its tables.
+     */
+    public List<LoadProgress.TableProgress> getTables() {
+        List<LoadProgress.TableProgress> ended = tables;
+        if (ended != null) {
+            return ended;
+        }
+        return state == State.RUNNING ? liveTables() : List.of();
+    }
+
+    public long getRowsCopied() {
+        long rows = 0;
+        for (LoadProgress.TableProgress table : getTables()) {
+            rows += table.getRowsCopied();
+        }
+        return rows;
+    }
+
+    boolean isFinished() {
+        State s = state;
+        return s == State.DONE || s == State.FAILED || s == State.CANCELLED;
+    }
+
+    /**
+     * Waits up to {@code timeoutMs} for the job to finish and tells whether it did.
+     */
+    boolean await(long timeoutMs) throws InterruptedException {
+        return finished.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Moves a queued job to {@code RUNNING}; returns {@code false} when it was cancelled while it waited.
+     */
+    synchronized boolean start() {
+        if (state != State.QUEUED) {
+            return false;
+        }
+        startedAt = Instant.now();
+        state = State.RUNNING;
+        return true;
+    }
+
+    synchronized void finish(State state, String error) {
+        tables = liveTables();
+        if (cancelRequested) {
+            // the refresh has ended, so the request must not cancel the next one
+            loader.clearCancellation();
+            if (state != State.DONE) {
+                state = State.CANCELLED;
+                error = null;
+            }
+        }
+        this.error = error;
+        this.finishedAt = Instant.now();
+        this.state = state;
+        finished.countDown();
+    }
+
+    /**
+     * Cancels the job: a queued job never runs, a running one has its refresh cancelled. Returns {@code false} when
+     * the job had already finished.
+     */
+    synchronized boolean cancel() {
+        if (isFinished()) {
+            return false;
+        }
+        cancelRequested = true;
+        if (state == State.QUEUED) {
+            tables = List.of();
+            finishedAt = Instant.now();
+            state = State.CANCELLED;
+            finished.countDown();
+        } else {
+            loader.cancelRefresh();
+        }
+        return true;
+    }
+
+    private List<LoadProgress.TableProgress> liveTables() {
+        Instant started = startedAt;
+        LoadProgress progress = loader.getProgress();
+        Instant progressStarted = progress.getStartedAt();
+        // before the loader lists the tables of this run, its progress still describes the previous one
+        if (started == null || progressStarted == null || progressStarted.isBefore(started)) {
+            return List.of();
+        }
+        return progress.getTables();
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.h2sync.service;
+
+import com.example.h2sync.config.LoaderProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs full and sample refreshes as jobs, so the HTTP request that starts one returns at once with a job to poll.
+ * Scheduled refreshes are registered as jobs too, on the thread that runs them, so every refresh can be followed and
+ * cancelled the same way. A loader runs one job at a time, and the last {@code loader.jobs.history} finished jobs
+ * are kept.
+ * <p>
+ * On shutdown the running jobs are cancelled before the context closes, and the shutdown waits up to
+ * {@code loader.jobs.shutdown-wait-ms} for them to roll back.
+ */
+@Service
+public class RefreshJobService {
+    private static final Logger log = LoggerFactory.getLogger(RefreshJobService.class);
+
+    /**
+     * Thrown when a loader is asked for a job while one of its jobs has not finished.
+     */
+    public static final class AlreadyRunning extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        AlreadyRunning(String message) {
+            super(message);
+        }
+    }
+
+    private final LoaderProperties.Jobs properties;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, RefreshJob> jobs = new LinkedHashMap<>();
+
+    public RefreshJobService(LoaderProperties properties) {
+        this.properties = properties.getJobs();
+    }
+
+    /**
+     * Starts {@code refresh} of {@code loader} on a background thread and returns its job.
+     *
+     * @throws AlreadyRunning when a job of the same loader has not finished yet
+     */
+    public RefreshJob submit(AbstractOracleLoaderService loader, String reason, Runnable refresh) {
+        RefreshJob job = register(loader, reason);
+        try {
+            executor.execute(() -> {
+                try {
+                    run(job, refresh);
+                } catch (RuntimeException ignored) {
+                    // recorded on the job and logged by run
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            job.finish(RefreshJob.State.FAILED, "The application is shutting down");
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * Runs {@code refresh} of {@code loader} on the calling thread as a job, rethrowing its failure.
+     *
+     * @throws AlreadyRunning when a job of the same loader has not finished yet
+     */
+    public RefreshJob run(AbstractOracleLoaderService loader, String reason, Runnable refresh) {
+        RefreshJob job = register(loader, reason);
+        run(job, refresh);
+        return job;
+    }
+
+    public RefreshJob find(String id) {
+        synchronized (jobs) {
+            return jobs.get(id);
+        }
+    }
+
+    /**
+     * Jobs from the newest to the oldest.
+     */
+    public List<RefreshJob> list() {
+        List<RefreshJob> all;
+        synchronized (jobs) {
+            all = new ArrayList<>(jobs.values());
+        }
+        Collections.reverse(all);
+        return all;
+    }
+
+    /**
+     * Cancels a queued or running job, which then ends as {@code CANCELLED}.
+     */
+    public boolean cancel(String id) {
+        RefreshJob job = find(id);
+        return job != null && job.cancel();
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onContextClosed() {
+        List<RefreshJob> running = list().stream().filter(RefreshJob::cancel).toList();
+        if (!running.isEmpty()) {
+            log.info("Cancelling {} refresh job(s) because the application is shutting down", running.size());
+        }
+        long deadline = System.currentTimeMillis() + Math.max(0, properties.getShutdownWaitMs());
+        try {
+            for (RefreshJob job : running) {
+                if (!job.await(Math.max(0, deadline - System.currentTimeMillis()))) {
+                    log.warn("Refresh job {} did not finish within {} ms of its cancellation", job.getId(),
+                            properties.getShutdownWaitMs());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdown();
+    }
+
+    private RefreshJob register(AbstractOracleLoaderService loader, String reason) {
+        synchronized (jobs) {
+            for (RefreshJob job : jobs.values()) {
+                if (job.loader == loader && !job.isFinished()) {
+                    throw new AlreadyRunning(job.getJob() + " is already running as job " + job.getId());
+                }
+            }
+            RefreshJob job = new RefreshJob(UUID.randomUUID().toString(), loader, reason);
+            jobs.put(job.getId(), job);
+            int finished = (int) jobs.values().stream().filter(RefreshJob::isFinished).count();
+            Iterator<RefreshJob> oldest = jobs.values().iterator();
+            while (finished > Math.max(0, properties.getHistory()) && oldest.hasNext()) {
+                if (oldest.next().isFinished()) {
+                    oldest.remove();
+                    finished--;
+                }
+            }
+            return job;
+        }
+    }
+
+    private void run(RefreshJob job, Runnable refresh) {
+        if (!job.start()) {
+            return;
+        }
+        log.info("Refresh job {} started: {} ({})", job.getId(), job.getJob(), job.getReason());
+        try {
+            refresh.run();
+            job.finish(RefreshJob.State.DONE, null);
+            log.info("Refresh job {} finished", job.getId());
+        } catch (RefreshCancelledException e) {
+            job.finish(RefreshJob.State.CANCELLED, null);
+            log.info("Refresh job {} was cancelled", job.getId());
+            throw e;
+        } catch (RuntimeException e) {
+            job.finish(RefreshJob.State.FAILED, e.toString());
+            log.error("Refresh job {} failed", job.getId(), e);
+            throw e;
+        }
+    }
+}
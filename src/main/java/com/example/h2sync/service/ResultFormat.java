@@ -0,0 +1,50 @@
+package com.example.h2sync.service;
+
+import java.util.Locale;
+
+/**
+ * Output formats of the query API.
+ */
+public enum ResultFormat {
+    /** RFC 4180 CSV with a header row; binary values are hex. */
+    CSV("text/csv"),
+    /** One JSON object per row and line, keyed by column label. */
+    NDJSON("application/x-ndjson"),
+    /** Compact binary format written in blocks of rows, column by column; see {@link ColumnarResultWriter}. */
+    COLUMNAR("application/vnd.h2sync.columnar");
+
+    private final String mediaType;
+
+    ResultFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Returns the format named {@code name}, case-insensitively, or {@code null} when there is none.
+     */
+    public static ResultFormat fromName(String name) {
+        for (ResultFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name.trim())) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the format served as {@code mediaType} (type and subtype only), or {@code null} when there is none.
+     */
+    public static ResultFormat fromMediaType(String mediaType) {
+        String type = mediaType.toLowerCase(Locale.ROOT);
+        for (ResultFormat format : values()) {
+            if (format.mediaType.equals(type)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
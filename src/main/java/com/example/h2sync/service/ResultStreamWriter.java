@@ -0,0 +1,81 @@
+package com.example.h2sync.service;
+
+import com.example.h2sync.config.QueryProperties;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Writes a result set to a stream in one {@link ResultFormat}. The metadata is read once in {@link #begin}; rows are
+ * encoded into a reused {@link ByteSink} that goes out whenever it holds {@code query.buffer-bytes}, so memory stays
+ * constant whatever the size of the result.
+ */
+abstract class ResultStreamWriter {
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    protected final OutputStream out;
+    protected final int bufferBytes;
+
+    ResultStreamWriter(OutputStream out, int bufferBytes) {
+        this.out = out;
+        this.bufferBytes = Math.max(1024, bufferBytes);
+    }
+
+    static ResultStreamWriter create(ResultFormat format, OutputStream out, QueryProperties properties) {
+        switch (format) {
+            case NDJSON:
+                return new NdjsonResultWriter(out, properties.getBufferBytes());
+            case COLUMNAR:
+                return new ColumnarResultWriter(out, properties.getBufferBytes(), properties.getColumnarBlockRows());
+            case CSV:
+            default:
+                return new CsvResultWriter(out, properties.getBufferBytes());
+        }
+    }
+
+    /**
+     * Writes every row of {@code rs} and returns how many there were.
+     */
+    final long writeAll(ResultSet rs) throws SQLException, IOException {
+        begin(rs.getMetaData());
+        long rows = 0;
+        while (rs.next()) {
+            writeRow(rs);
+            rows++;
+        }
+        finish();
+        out.flush();
+        return rows;
+    }
+
+    abstract void begin(ResultSetMetaData md) throws SQLException, IOException;
+
+    abstract void writeRow(ResultSet rs) throws SQLException, IOException;
+
+    abstract void finish() throws IOException;
+
+    static boolean isBinary(int sqlType) {
+        switch (sqlType) {
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    static void writeHex(ByteSink sink, byte[] bytes) {
+        for (byte b : bytes) {
+            sink.write(HEX[(b >> 4) & 0xF]);
+            sink.write(HEX[b & 0xF]);
+        }
+    }
+}
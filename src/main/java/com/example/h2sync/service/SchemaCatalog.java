@@ -0,0 +1,371 @@
+package com.example.h2sync.service;
+
+import org.slf4j.Logger;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Immutable snapshot of the Oracle data dictionary for one schema, read with a few set-based queries at the start of
+ * a refresh instead of one round trip per object. Optional sections that could not be read return {@code null} from
+ * their lookups, and the loader then falls back to per-object queries.
+ */
+final class SchemaCatalog {
+
+    private final Set<String> tables;
+    private final Set<String> views;
+    private final List<Map<String, Object>> sequences;
+    private final Map<String, TableStats> tableStats;
+    private final Map<String, List<Column>> columns;
+    private final Map<String, List<String>> primaryKeys;
+    private final Map<String, List<List<String>>> uniqueConstraints;
+    private final Map<String, String> viewTexts;
+    private final Map<String, Set<String>> viewDependencies;
+
+    private SchemaCatalog(
+            Set<String> tables,
+            Set<String> views,
+            List<Map<String, Object>> sequences,
+            Map<String, TableStats> tableStats,
+            Map<String, List<Column>> columns,
+            Constraints constraints,
+            Map<String, String> viewTexts,
+            Map<String, Set<String>> viewDependencies
+    ) {
+        this.tables = Collections.unmodifiableSet(tables);
+        this.views = Collections.unmodifiableSet(views);
+        this.sequences = Collections.unmodifiableList(sequences);
+        this.tableStats = Collections.unmodifiableMap(tableStats);
+        this.columns = columns == null ? null : Collections.unmodifiableMap(columns);
+        this.primaryKeys = constraints == null ? null : Collections.unmodifiableMap(constraints.primaryKeys);
+        this.uniqueConstraints = constraints == null ? null : Collections.unmodifiableMap(constraints.uniqueConstraints);
+        this.viewTexts = viewTexts == null ? null : Collections.unmodifiableMap(viewTexts);
+        this.viewDependencies = viewDependencies == null ? null : Collections.unmodifiableMap(viewDependencies);
+    }
+
+    /**
+     * Reads the dictionary of {@code owner} with concurrent queries on {@code executor}. The object lists are
+     * required; columns, constraints, view texts and view dependencies are optional.
+     */
+    static SchemaCatalog load(DataSource oracleDs, String owner, Executor executor, Logger log) throws SQLException {
+        long t0 = System.currentTimeMillis();
+        CompletableFuture<Map<String, TableStats>> tables = query(executor, oracleDs,
+                "SELECT table_name, num_rows, blocks, avg_row_len FROM all_tables WHERE owner = ?", owner,
+                SchemaCatalog::readTables);
+        CompletableFuture<Set<String>> views = query(executor, oracleDs,
+                "SELECT view_name FROM all_views WHERE owner = ?", owner, SchemaCatalog::readNames);
+        CompletableFuture<List<Map<String, Object>>> sequences = query(executor, oracleDs,
+                "SELECT sequence_name, increment_by, last_number FROM all_sequences WHERE sequence_owner = ?",
+                owner, SchemaCatalog::readSequences);
+        CompletableFuture<Map<String, List<Column>>> columns = optional(log, "columns", query(executor, oracleDs,
+                "SELECT table_name, column_name, nullable FROM all_tab_columns WHERE owner = ? " +
+                        "ORDER BY table_name, column_id", owner, SchemaCatalog::readColumns));
+        CompletableFuture<Constraints> constraints = optional(log, "constraints", query(executor, oracleDs,
+                "SELECT cons.table_name, cons.constraint_name, cons.constraint_type, cols.column_name " +
+                        "FROM all_constraints cons " +
+                        "JOIN all_cons_columns cols ON cons.owner = cols.owner AND cons.constraint_name = cols.constraint_name " +
+                        "AND cons.table_name = cols.table_name " +
+                        "WHERE cons.owner = ? AND cons.constraint_type IN ('P', 'U') " +
+                        "ORDER BY cons.table_name, cons.constraint_name, cols.position", owner, SchemaCatalog::readConstraints));
+        CompletableFuture<Map<String, String>> viewTexts = optional(log, "view texts", query(executor, oracleDs,
+                "SELECT view_name, text FROM all_views WHERE owner = ?", owner, SchemaCatalog::readViewTexts));
+        CompletableFuture<Map<String, Set<String>>> viewDependencies = optional(log, "view dependencies", query(executor,
+                oracleDs, "SELECT name, referenced_name FROM all_dependencies WHERE owner = ? AND type = 'VIEW' " +
+                        "AND referenced_owner = owner AND referenced_type = 'VIEW'", owner, SchemaCatalog::readDependencies));
+        try {
+            Map<String, TableStats> tableRows = tables.join();
+            SchemaCatalog catalog = new SchemaCatalog(
+                    new TreeSet<>(tableRows.keySet()),
+                    views.join(),
+                    sequences.join(),
+                    tableRows,
+                    columns.join(),
+                    constraints.join(),
+                    viewTexts.join(),
+                    viewDependencies.join());
+            log.info("Read dictionary of {}: {} tables, {} views, {} sequences in {} ms", owner,
+                    catalog.tables.size(), catalog.views.size(), catalog.sequences.size(), System.currentTimeMillis() - t0);
+            return catalog;
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw ex;
+        }
+    }
+
+    Set<String> tables() {
+        return tables;
+    }
+
+    Set<String> views() {
+        return views;
+    }
+
+    List<Map<String, Object>> sequences() {
+        return sequences;
+    }
+
+    /**
+     * Returns {@code ALL_TABLES.NUM_ROWS}, or {@code -1} when the table has no statistics.
+     */
+    long estimatedRows(String table) {
+        TableStats stats = tableStats.get(table);
+        return stats == null ? -1 : stats.rows;
+    }
+
+    /**
+     * Estimates the size of a table from {@code NUM_ROWS * AVG_ROW_LEN}, or from {@code BLOCKS} at the default 8 KB
+     * block size; returns {@code -1} when the table has no statistics.
+     */
+    long estimatedBytes(String table) {
+        TableStats stats = tableStats.get(table);
+        if (stats == null) {
+            return -1;
+        }
+        if (stats.rows >= 0 && stats.avgRowLength > 0) {
+            return stats.rows * stats.avgRowLength;
+        }
+        return stats.blocks > 0 ? stats.blocks * 8192 : -1;
+    }
+
+    List<String> primaryKey(String table) {
+        return primaryKeys == null ? null : primaryKeys.getOrDefault(table, Collections.emptyList());
+    }
+
+    List<List<String>> uniqueConstraints(String table) {
+        return uniqueConstraints == null ? null : uniqueConstraints.getOrDefault(table, Collections.emptyList());
+    }
+
+    /**
+     * Maps each column of a table to whether it is declared NOT NULL.
+     */
+    Map<String, Boolean> nonNullableColumns(String object) {
+        if (columns == null) {
+            return null;
+        }
+        Map<String, Boolean> nonNullable = new HashMap<>();
+        for (Column column : columns.getOrDefault(object, Collections.emptyList())) {
+            nonNullable.put(column.name, !column.nullable);
+        }
+        return nonNullable;
+    }
+
+    /**
+     * Column names of a table or view in {@code COLUMN_ID} order.
+     */
+    List<String> columnNames(String object) {
+        if (columns == null) {
+            return null;
+        }
+        List<String> names = new ArrayList<>();
+        for (Column column : columns.getOrDefault(object, Collections.emptyList())) {
+            names.add(column.name);
+        }
+        return names;
+    }
+
+    /**
+     * Returns the {@code ALL_VIEWS.TEXT} of a view, or {@code null} when it is not available from the catalog.
+     */
+    String viewText(String view) {
+        return viewTexts == null ? null : viewTexts.get(view);
+    }
+
+    /**
+     * Maps each view to the views of the same schema it references, from {@code ALL_DEPENDENCIES}, or returns
+     * {@code null} when the dependencies could not be read.
+     */
+    Map<String, Set<String>> viewDependencies() {
+        return viewDependencies;
+    }
+
+    /**
+     * Reads a VARCHAR, CLOB or LONG column as text.
+     */
+    static String readText(ResultSet rs, int index) throws SQLException {
+        String text = rs.getString(index);
+        if (text != null) {
+            return text;
+        }
+        try (Reader reader = rs.getCharacterStream(index)) {
+            if (reader == null) {
+                return null;
+            }
+            StringBuilder sb = new StringBuilder();
+            char[] buf = new char[4096];
+            int len;
+            while ((len = reader.read(buf)) != -1) {
+                sb.append(buf, 0, len);
+            }
+            return sb.toString();
+        } catch (IOException ex) {
+            throw new SQLException("Failed to read Oracle text column", ex);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowsReader<T> {
+        T read(ResultSet rs) throws SQLException;
+    }
+
+    private static <T> CompletableFuture<T> query(
+            Executor executor,
+            DataSource oracleDs,
+            String sql,
+            String owner,
+            RowsReader<T> reader
+    ) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (Connection conn = oracleDs.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setFetchSize(1000);
+                ps.setString(1, owner);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return reader.read(rs);
+                }
+            } catch (SQLException ex) {
+                throw new CompletionException(ex);
+            }
+        }, executor);
+    }
+
+    private static <T> CompletableFuture<T> optional(Logger log, String section, CompletableFuture<T> future) {
+        return future.exceptionally(ex -> {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            log.warn("Dictionary {} unavailable in bulk, reading them per object: {}", section, cause.toString());
+            return null;
+        });
+    }
+
+    private static Map<String, TableStats> readTables(ResultSet rs) throws SQLException {
+        Map<String, TableStats> tables = new HashMap<>();
+        while (rs.next()) {
+            tables.put(rs.getString(1), new TableStats(statistic(rs, 2), statistic(rs, 3), statistic(rs, 4)));
+        }
+        return tables;
+    }
+
+    private static long statistic(ResultSet rs, int index) throws SQLException {
+        long value = rs.getLong(index);
+        return rs.wasNull() ? -1L : value;
+    }
+
+    private static Set<String> readNames(ResultSet rs) throws SQLException {
+        Set<String> names = new TreeSet<>();
+        while (rs.next()) {
+            names.add(rs.getString(1));
+        }
+        return names;
+    }
+
+    private static List<Map<String, Object>> readSequences(ResultSet rs) throws SQLException {
+        List<Map<String, Object>> out = new ArrayList<>();
+        while (rs.next()) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("SEQUENCE_NAME", rs.getString("SEQUENCE_NAME"));
+            row.put("INCREMENT_BY", rs.getLong("INCREMENT_BY"));
+            row.put("LAST_NUMBER", rs.getBigDecimal("LAST_NUMBER"));
+            out.add(row);
+        }
+        return out;
+    }
+
+    private static Map<String, List<Column>> readColumns(ResultSet rs) throws SQLException {
+        Map<String, List<Column>> columns = new HashMap<>();
+        while (rs.next()) {
+            String column = rs.getString(2);
+            if (column == null || column.isBlank()) {
+                continue;
+            }
+            columns.computeIfAbsent(rs.getString(1), k -> new ArrayList<>())
+                    .add(new Column(column, !"N".equalsIgnoreCase(rs.getString(3))));
+        }
+        return columns;
+    }
+
+    private static Constraints readConstraints(ResultSet rs) throws SQLException {
+        Map<String, Map<String, List<String>>> unique = new HashMap<>();
+        Constraints constraints = new Constraints();
+        while (rs.next()) {
+            String table = rs.getString(1);
+            String name = rs.getString(2);
+            String column = rs.getString(4);
+            if (table == null || name == null || column == null) {
+                continue;
+            }
+            if ("P".equals(rs.getString(3))) {
+                constraints.primaryKeys.computeIfAbsent(table, k -> new ArrayList<>()).add(column);
+            } else {
+                unique.computeIfAbsent(table, k -> new LinkedHashMap<>())
+                        .computeIfAbsent(name, k -> new ArrayList<>()).add(column);
+            }
+        }
+        unique.forEach((table, byName) -> constraints.uniqueConstraints.put(table, new ArrayList<>(byName.values())));
+        return constraints;
+    }
+
+    private static Map<String, String> readViewTexts(ResultSet rs) throws SQLException {
+        Map<String, String> texts = new HashMap<>();
+        while (rs.next()) {
+            String view = rs.getString(1);
+            String text = readText(rs, 2);
+            if (view != null && text != null && !text.isBlank()) {
+                texts.put(view, text);
+            }
+        }
+        return texts;
+    }
+
+    private static Map<String, Set<String>> readDependencies(ResultSet rs) throws SQLException {
+        Map<String, Set<String>> dependencies = new HashMap<>();
+        while (rs.next()) {
+            dependencies.computeIfAbsent(rs.getString(1), k -> new TreeSet<>()).add(rs.getString(2));
+        }
+        return dependencies;
+    }
+
+    private static final class Column {
+        private final String name;
+        private final boolean nullable;
+
+        private Column(String name, boolean nullable) {
+            this.name = name;
+            this.nullable = nullable;
+        }
+    }
+
+    private static final class TableStats {
+        private final long rows;
+        private final long blocks;
+        private final long avgRowLength;
+
+        private TableStats(long rows, long blocks, long avgRowLength) {
+            this.rows = rows;
+            this.blocks = blocks;
+            this.avgRowLength = avgRowLength;
+        }
+    }
+
+    private static final class Constraints {
+        private final Map<String, List<String>> primaryKeys = new HashMap<>();
+        private final Map<String, List<List<String>>> uniqueConstraints = new HashMap<>();
+    }
+}
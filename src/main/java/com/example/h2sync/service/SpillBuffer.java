@@ -0,0 +1,153 @@
+package com.example.h2sync.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Memory-mapped temp file that holds the oversized values of one {@link ColumnBatch} outside the heap. Values are
+ * appended while the batch is read from Oracle and replayed as streams when it is bound to the H2 insert. Clearing
+ * the batch rewinds the buffer, so the file is reused by the next batch and only grows to the largest batch seen.
+ * <p>
+ * The file is created on the first append. Appends come from the reader thread and replays from the writer thread,
+ * never at the same time, because a batch is handed over between them through the writer's queues.
+ */
+final class SpillBuffer implements Closeable {
+
+    private static final int SEGMENT_BYTES = 16 * 1024 * 1024;
+
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private Path file;
+    private FileChannel channel;
+    private long position;
+
+    /**
+     * Returns a stream appending at the current end of the buffer; {@link #position()} tells where it stopped.
+     */
+    OutputStream append(Path dir) throws IOException {
+        if (channel == null) {
+            Files.createDirectories(dir);
+            file = Files.createTempFile(dir, "h2sync-spill-", ".bin");
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                segment(position).put((int) (position % SEGMENT_BYTES), (byte) b);
+                position++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                while (len > 0) {
+                    MappedByteBuffer segment = segment(position);
+                    int at = (int) (position % SEGMENT_BYTES);
+                    int n = Math.min(len, SEGMENT_BYTES - at);
+                    segment.put(at, b, off, n);
+                    position += n;
+                    off += n;
+                    len -= n;
+                }
+            }
+        };
+    }
+
+    long position() {
+        return position;
+    }
+
+    /**
+     * Returns a stream over {@code length} bytes written at {@code offset}.
+     */
+    InputStream read(long offset, long length) {
+        return new InputStream() {
+            private long next = offset;
+            private final long end = offset + length;
+
+            @Override
+            public int read() {
+                if (next >= end) {
+                    return -1;
+                }
+                byte b = segments.get((int) (next / SEGMENT_BYTES)).get((int) (next % SEGMENT_BYTES));
+                next++;
+                return b & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (next >= end) {
+                    return -1;
+                }
+                int at = (int) (next % SEGMENT_BYTES);
+                int n = (int) Math.min(Math.min(len, end - next), SEGMENT_BYTES - at);
+                segments.get((int) (next / SEGMENT_BYTES)).get(at, b, off, n);
+                next += n;
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(Integer.MAX_VALUE, end - next);
+            }
+        };
+    }
+
+    /**
+     * Makes the whole buffer available to the next batch.
+     */
+    void reset() {
+        position = 0;
+    }
+
+    @Override
+    public void close() {
+        segments.clear();
+        position = 0;
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // a temp file left behind is removed with the temp directory
+        } finally {
+            channel = null;
+            file = null;
+        }
+    }
+
+    private MappedByteBuffer segment(long offset) throws IOException {
+        int index = (int) (offset / SEGMENT_BYTES);
+        while (segments.size() <= index) {
+            long start = (long) segments.size() * SEGMENT_BYTES;
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, start, SEGMENT_BYTES));
+        }
+        return segments.get(index);
+    }
+
+    /**
+     * Where one spilled value lives: {@code bytes} bytes from {@code offset}, holding {@code chars} characters of
+     * UTF-8 text, or {@code -1} for binary values.
+     */
+    static final class Region {
+        final long offset;
+        final long bytes;
+        final long chars;
+
+        Region(long offset, long bytes, long chars) {
+            this.offset = offset;
+            this.bytes = bytes;
+            this.chars = chars;
+        }
+    }
+}
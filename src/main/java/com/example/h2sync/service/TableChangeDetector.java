@@ -0,0 +1,16 @@
+package com.example.h2sync.service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes a change signature for Oracle tables. Two equal signatures mean the table has not changed in between; a
+ * table missing from the result is treated as changed.
+ */
+@FunctionalInterface
+interface TableChangeDetector {
+
+    Map<String, String> signatures(Connection oracle, String owner, Set<String> tables) throws SQLException;
+}
@@ -0,0 +1,45 @@
+package com.example.h2sync.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Persists the Oracle change signature of every table as of its last successful copy in the H2 table
+ * {@code ETL_TABLE_CHANGE}.
+ */
+final class TableChangeStore {
+
+    private final JdbcTemplate h2;
+
+    TableChangeStore(JdbcTemplate h2) {
+        this.h2 = Objects.requireNonNull(h2, "h2");
+    }
+
+    void init() {
+        h2.execute("CREATE TABLE IF NOT EXISTS ETL_TABLE_CHANGE (" +
+                "TABLE_NAME VARCHAR(512) PRIMARY KEY," +
+                "SIGNATURE VARCHAR(1024) NOT NULL," +
+                "UPDATED_AT TIMESTAMP NOT NULL" +
+                ")");
+    }
+
+    Map<String, String> findAll() {
+        Map<String, String> signatures = new HashMap<>();
+        h2.query("SELECT TABLE_NAME, SIGNATURE FROM ETL_TABLE_CHANGE",
+                (RowCallbackHandler) rs -> signatures.put(rs.getString(1), rs.getString(2)));
+        return signatures;
+    }
+
+    void save(String table, String signature) {
+        h2.update("MERGE INTO ETL_TABLE_CHANGE (TABLE_NAME, SIGNATURE, UPDATED_AT) KEY (TABLE_NAME) " +
+                "VALUES (?, ?, CURRENT_TIMESTAMP())", table, signature);
+    }
+
+    void delete(String table) {
+        h2.update("DELETE FROM ETL_TABLE_CHANGE WHERE TABLE_NAME = ?", table);
+    }
+}
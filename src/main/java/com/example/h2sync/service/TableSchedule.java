@@ -0,0 +1,66 @@
+package com.example.h2sync.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Orders table copies longest-first, so the biggest table starts right away instead of whenever its name comes up.
+ * <p>
+ * A table that was copied before is costed by its measured duration. Any other table is costed by its estimated size,
+ * converted to milliseconds with the throughput observed on the measured tables. Without measurements, sizes are
+ * compared directly, and tables without statistics go last.
+ */
+final class TableSchedule {
+
+    private TableSchedule() {
+    }
+
+    static List<String> longestFirst(
+            Collection<String> tables,
+            ToLongFunction<String> estimatedBytes,
+            Map<String, Timing> previousRuns
+    ) {
+        long measuredBytes = 0;
+        long measuredMs = 0;
+        for (Timing timing : previousRuns.values()) {
+            if (timing.estimatedBytes > 0 && timing.durationMs > 0) {
+                measuredBytes += timing.estimatedBytes;
+                measuredMs += timing.durationMs;
+            }
+        }
+        double bytesPerMs = measuredMs > 0 ? (double) measuredBytes / measuredMs : 0;
+        Map<String, Double> costs = new HashMap<>();
+        for (String table : tables) {
+            Timing timing = previousRuns.get(table);
+            long bytes = estimatedBytes.applyAsLong(table);
+            double cost;
+            if (timing != null) {
+                cost = timing.durationMs;
+            } else if (bytes <= 0) {
+                cost = -1;
+            } else {
+                cost = bytesPerMs > 0 ? bytes / bytesPerMs : bytes;
+            }
+            costs.put(table, cost);
+        }
+        List<String> ordered = new ArrayList<>(tables);
+        ordered.sort(Comparator.comparingDouble((String table) -> costs.get(table)).reversed()
+                .thenComparing(Comparator.naturalOrder()));
+        return ordered;
+    }
+
+    static final class Timing {
+        private final long durationMs;
+        private final long estimatedBytes;
+
+        Timing(long durationMs, long estimatedBytes) {
+            this.durationMs = durationMs;
+            this.estimatedBytes = estimatedBytes;
+        }
+    }
+}
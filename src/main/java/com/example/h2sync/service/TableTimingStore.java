@@ -0,0 +1,43 @@
+package com.example.h2sync.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Persists how long the last successful copy of every table took in the H2 table {@code ETL_TABLE_TIMING}, together
+ * with the size estimate it had at the time, so that the next refresh can schedule the slowest tables first.
+ */
+final class TableTimingStore {
+
+    private final JdbcTemplate h2;
+
+    TableTimingStore(JdbcTemplate h2) {
+        this.h2 = Objects.requireNonNull(h2, "h2");
+    }
+
+    void init() {
+        h2.execute("CREATE TABLE IF NOT EXISTS ETL_TABLE_TIMING (" +
+                "TABLE_NAME VARCHAR(512) PRIMARY KEY," +
+                "DURATION_MS BIGINT NOT NULL," +
+                "ESTIMATED_BYTES BIGINT NOT NULL," +
+                "UPDATED_AT TIMESTAMP NOT NULL" +
+                ")");
+    }
+
+    Map<String, TableSchedule.Timing> findAll() {
+        Map<String, TableSchedule.Timing> timings = new HashMap<>();
+        h2.query("SELECT TABLE_NAME, DURATION_MS, ESTIMATED_BYTES FROM ETL_TABLE_TIMING",
+                (RowCallbackHandler) rs -> timings.put(rs.getString(1),
+                        new TableSchedule.Timing(rs.getLong(2), rs.getLong(3))));
+        return timings;
+    }
+
+    void save(String table, long durationMs, long estimatedBytes) {
+        h2.update("MERGE INTO ETL_TABLE_TIMING (TABLE_NAME, DURATION_MS, ESTIMATED_BYTES, UPDATED_AT) KEY (TABLE_NAME) " +
+                "VALUES (?, ?, ?, CURRENT_TIMESTAMP())", table, durationMs, estimatedBytes);
+    }
+}
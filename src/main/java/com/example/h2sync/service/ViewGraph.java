@@ -0,0 +1,129 @@
+package com.example.h2sync.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Dependency graph of the views of a schema, used to create them level by level: every view of a level only depends
+ * on tables and on views of earlier levels, so the views of one level can be created in parallel.
+ * <p>
+ * Dependencies come from {@code ALL_DEPENDENCIES} when the catalog could read it, otherwise from the identifiers in
+ * the view texts. Only references between the given views count; tables exist before views are created.
+ */
+final class ViewGraph {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("\"([^\"]+)\"|([A-Za-z][A-Za-z0-9_$#]*)");
+
+    private final List<List<String>> levels;
+    private final Map<String, Set<String>> dependencies;
+    private final Set<String> cyclic;
+
+    private ViewGraph(List<List<String>> levels, Map<String, Set<String>> dependencies, Set<String> cyclic) {
+        this.levels = levels;
+        this.dependencies = dependencies;
+        this.cyclic = cyclic;
+    }
+
+    /**
+     * Orders {@code views} with Kahn's algorithm. Views on or behind a dependency cycle end up in {@link #cyclic()}.
+     */
+    static ViewGraph of(Set<String> views, Map<String, Set<String>> references) {
+        Map<String, Set<String>> dependencies = new HashMap<>();
+        Map<String, List<String>> dependents = new HashMap<>();
+        Map<String, Integer> pending = new HashMap<>();
+        for (String view : views) {
+            Set<String> deps = new TreeSet<>();
+            for (String referenced : references.getOrDefault(view, Collections.emptySet())) {
+                if (!referenced.equals(view) && views.contains(referenced)) {
+                    deps.add(referenced);
+                    dependents.computeIfAbsent(referenced, k -> new ArrayList<>()).add(view);
+                }
+            }
+            dependencies.put(view, deps);
+            pending.put(view, deps.size());
+        }
+
+        List<List<String>> levels = new ArrayList<>();
+        List<String> level = new ArrayList<>(new TreeSet<>(views));
+        level.removeIf(view -> pending.get(view) > 0);
+        while (!level.isEmpty()) {
+            levels.add(level);
+            Set<String> next = new TreeSet<>();
+            for (String view : level) {
+                for (String dependent : dependents.getOrDefault(view, Collections.emptyList())) {
+                    if (pending.merge(dependent, -1, Integer::sum) == 0) {
+                        next.add(dependent);
+                    }
+                }
+            }
+            level = new ArrayList<>(next);
+        }
+
+        Set<String> cyclic = new TreeSet<>();
+        pending.forEach((view, count) -> {
+            if (count > 0) {
+                cyclic.add(view);
+            }
+        });
+        return new ViewGraph(levels, dependencies, cyclic);
+    }
+
+    /**
+     * Extracts the references between views from their texts: every identifier, quoted or not, that names one of
+     * {@code views}. Column names that happen to match a view name add a spurious edge, which only delays the view.
+     */
+    static Map<String, Set<String>> parseReferences(Set<String> views, Map<String, String> texts) {
+        Map<String, Set<String>> references = new HashMap<>();
+        for (String view : views) {
+            String text = texts.get(view);
+            if (text == null) {
+                continue;
+            }
+            references.put(view, referencedNames(views, text));
+        }
+        return references;
+    }
+
+    /**
+     * Returns the identifiers of {@code sql}, quoted or not, that name one of {@code names}. Unquoted identifiers are
+     * compared in upper case, as Oracle and H2 store them.
+     */
+    static Set<String> referencedNames(Set<String> names, String sql) {
+        Set<String> referenced = new TreeSet<>();
+        Matcher m = IDENTIFIER.matcher(stripLiterals(sql));
+        while (m.find()) {
+            String name = m.group(1) != null ? m.group(1) : m.group(2).toUpperCase(Locale.ROOT);
+            if (names.contains(name)) {
+                referenced.add(name);
+            }
+        }
+        return referenced;
+    }
+
+    static String stripLiterals(String sql) {
+        return sql.replaceAll("'(?:[^']|'')*'", "''");
+    }
+
+    List<List<String>> levels() {
+        return levels;
+    }
+
+    Set<String> dependencies(String view) {
+        return dependencies.getOrDefault(view, Collections.emptySet());
+    }
+
+    /**
+     * Views that take part in a dependency cycle or depend on one; none of them can be ordered.
+     */
+    Set<String> cyclic() {
+        return cyclic;
+    }
+}
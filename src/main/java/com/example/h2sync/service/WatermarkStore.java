@@ -0,0 +1,116 @@
+package com.example.h2sync.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Persists the high watermark of incrementally refreshed tables in the H2 table {@code ETL_WATERMARK}.
+ */
+final class WatermarkStore {
+
+    private static final String TYPE_TIMESTAMP = "TIMESTAMP";
+    private static final String TYPE_NUMBER = "NUMBER";
+    private static final String TYPE_STRING = "STRING";
+
+    private final JdbcTemplate h2;
+
+    WatermarkStore(JdbcTemplate h2) {
+        this.h2 = Objects.requireNonNull(h2, "h2");
+    }
+
+    void init() {
+        h2.execute("CREATE TABLE IF NOT EXISTS ETL_WATERMARK (" +
+                "TABLE_NAME VARCHAR(256) PRIMARY KEY," +
+                "WATERMARK_COLUMN VARCHAR(128) NOT NULL," +
+                "VALUE_TYPE VARCHAR(16) NOT NULL," +
+                "LAST_VALUE VARCHAR(64) NOT NULL," +
+                "UPDATED_AT TIMESTAMP NOT NULL" +
+                ")");
+    }
+
+    Watermark find(String table) {
+        List<Watermark> rows = h2.query(
+                "SELECT WATERMARK_COLUMN, VALUE_TYPE, LAST_VALUE FROM ETL_WATERMARK WHERE TABLE_NAME = ?",
+                (rs, i) -> new Watermark(rs.getString(1), rs.getString(2), rs.getString(3)),
+                table);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    void save(String table, Watermark watermark) {
+        h2.update("MERGE INTO ETL_WATERMARK (TABLE_NAME, WATERMARK_COLUMN, VALUE_TYPE, LAST_VALUE, UPDATED_AT) " +
+                        "KEY (TABLE_NAME) VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP())",
+                table, watermark.getColumn(), watermark.getType(), watermark.getText());
+    }
+
+    /**
+     * Builds a watermark from a value read back from H2, or returns {@code null} when there is no value.
+     */
+    static Watermark of(String column, Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Timestamp) {
+            return new Watermark(column, TYPE_TIMESTAMP, value.toString());
+        }
+        if (value instanceof LocalDateTime) {
+            return new Watermark(column, TYPE_TIMESTAMP, Timestamp.valueOf((LocalDateTime) value).toString());
+        }
+        if (value instanceof java.util.Date) {
+            return new Watermark(column, TYPE_TIMESTAMP, new Timestamp(((java.util.Date) value).getTime()).toString());
+        }
+        if (value instanceof BigDecimal) {
+            return new Watermark(column, TYPE_NUMBER, ((BigDecimal) value).toPlainString());
+        }
+        if (value instanceof Number) {
+            return new Watermark(column, TYPE_NUMBER, new BigDecimal(value.toString()).toPlainString());
+        }
+        return new Watermark(column, TYPE_STRING, value.toString());
+    }
+
+    static final class Watermark {
+        private final String column;
+        private final String type;
+        private final String text;
+
+        Watermark(String column, String type, String text) {
+            this.column = column;
+            this.type = type;
+            this.text = text;
+        }
+
+        String getColumn() {
+            return column;
+        }
+
+        String getType() {
+            return type;
+        }
+
+        String getText() {
+            return text;
+        }
+
+        /**
+         * Returns the value to bind against the Oracle watermark column.
+         */
+        Object toJdbcValue() {
+            if (TYPE_TIMESTAMP.equals(type)) {
+                return Timestamp.valueOf(text);
+            }
+            if (TYPE_NUMBER.equals(type)) {
+                return new BigDecimal(text);
+            }
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return column + " > " + text;
+        }
+    }
+}
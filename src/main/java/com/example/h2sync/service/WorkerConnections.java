@@ -0,0 +1,192 @@
+package com.example.h2sync.service;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands every thread the same Oracle connection for the duration of a refresh, so a worker reuses one session for
+ * all of its tables instead of borrowing a connection per query. Outside of a refresh, or before {@link #open()},
+ * connections come straight from the delegate.
+ * <p>
+ * The statements created on leased connections are remembered, so {@link #cancel()} can interrupt the queries the
+ * workers are running when a refresh is cancelled.
+ */
+final class WorkerConnections extends AbstractDataSource {
+
+    private final DataSource delegate;
+    private final LoaderMetrics metrics;
+    private static final int PRUNE_STATEMENTS = 256;
+
+    private final Map<Thread, Connection> leased = new ConcurrentHashMap<>();
+    private final Map<Statement, Thread> statements = new ConcurrentHashMap<>();
+    private volatile boolean active;
+    private volatile boolean cancelled;
+
+    WorkerConnections(DataSource delegate, LoaderMetrics metrics) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate");
+        this.metrics = Objects.requireNonNull(metrics, "metrics");
+    }
+
+    void open() {
+        cancelled = false;
+        active = true;
+    }
+
+    /**
+     * Returns every leased connection to the pool and stops pinning connections to threads.
+     */
+    void release() {
+        active = false;
+        leased.values().forEach(WorkerConnections::closeQuietly);
+        leased.clear();
+        statements.clear();
+    }
+
+    /**
+     * Cancels the statements running on leased connections and refuses new connections and statements until the
+     * next {@link #open()}, so workers of a cancelled refresh fail fast instead of starting their next query.
+     */
+    void cancel() {
+        cancelled = true;
+        statements.keySet().forEach(WorkerConnections::cancelQuietly);
+    }
+
+    /**
+     * Cancels the statements {@code thread} created on its leased connection, stopping the query it is running
+     * without interrupting it. Other threads and later statements are not affected.
+     */
+    void cancel(Thread thread) {
+        statements.forEach((statement, owner) -> {
+            if (owner == thread) {
+                cancelQuietly(statement);
+            }
+        });
+    }
+
+    /**
+     * Drops the connection of the calling thread after a failure, so the next attempt starts on a fresh session.
+     */
+    void discardCurrent() {
+        Connection connection = leased.remove(Thread.currentThread());
+        if (connection != null) {
+            closeQuietly(connection);
+        }
+    }
+
+    int leasedCount() {
+        return leased.size();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!active) {
+            return acquire();
+        }
+        checkCancelled();
+        Thread thread = Thread.currentThread();
+        Connection connection = leased.get(thread);
+        if (connection == null || connection.isClosed()) {
+            connection = acquire();
+            leased.put(thread, connection);
+        }
+        return pinned(connection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return delegate.getConnection(username, password);
+    }
+
+    private Connection acquire() throws SQLException {
+        long t0 = System.nanoTime();
+        Connection connection = delegate.getConnection();
+        metrics.oracleAcquired(System.nanoTime() - t0);
+        return connection;
+    }
+
+    private void checkCancelled() throws SQLException {
+        if (cancelled) {
+            throw new SQLException("Refresh was cancelled");
+        }
+    }
+
+    /**
+     * Remembers a statement for {@link #cancel()}, dropping the closed ones once in a while.
+     */
+    private void track(Statement statement) {
+        if (statements.size() >= PRUNE_STATEMENTS) {
+            statements.keySet().removeIf(WorkerConnections::isClosed);
+        }
+        statements.put(statement, Thread.currentThread());
+    }
+
+    /**
+     * Wraps a leased connection so that {@code close()} by the caller keeps it open for the next query.
+     */
+    private Connection pinned(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            return null;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "createStatement":
+                        case "prepareStatement":
+                        case "prepareCall":
+                            checkCancelled();
+                            Statement statement = (Statement) invoke(connection, method, args);
+                            track(statement);
+                            return statement;
+                        default:
+                            return invoke(connection, method, args);
+                    }
+                });
+    }
+
+    private static Object invoke(Connection connection, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(connection, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static boolean isClosed(Statement statement) {
+        try {
+            return statement.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    private static void cancelQuietly(Statement statement) {
+        try {
+            statement.cancel();
+        } catch (SQLException ignored) {
+            // the statement finished or its connection is gone; either way it no longer runs
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // the pool replaces broken connections
+        }
+    }
+}
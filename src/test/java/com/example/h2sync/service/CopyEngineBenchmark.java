@@ -0,0 +1,108 @@
+package com.example.h2sync.service;
+
+import com.example.h2sync.config.LoaderProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Times every copy engine on a narrow, a wide and a LOB table of the H2 stand-in and prints which one wins per
+ * shape. The class name keeps it out of the default test run; start it with
+ * {@code mvn test -Dtest=CopyEngineBenchmark -Dbenchmark.rows=50000}. Against a real Oracle the network round
+ * trips weigh more, so the table is a guide for choosing {@code loader.copy.tables}, not a verdict.
+ */
+class CopyEngineBenchmark {
+
+    private static final String SCHEMA = "BENCH";
+
+    @Test
+    void compareCopyEnginesByTableShape() {
+        int rows = Integer.getInteger("benchmark.rows", 20_000);
+        Map<String, String> shapes = new LinkedHashMap<>();
+        shapes.put("NARROW", "ID INT PRIMARY KEY, NAME VARCHAR(40), AMOUNT DECIMAL(12,2)");
+        StringBuilder wide = new StringBuilder("ID INT PRIMARY KEY");
+        for (int i = 1; i <= 60; i++) {
+            wide.append(i % 2 == 0 ? ", N" + i + " DECIMAL(12,2)" : ", S" + i + " VARCHAR(40)");
+        }
+        shapes.put("WIDE", wide.toString());
+        shapes.put("LOB", "ID INT PRIMARY KEY, BODY CLOB(1000000), DATA BLOB(1000000)");
+
+        for (LoaderProperties.Copy.Engine engine : LoaderProperties.Copy.Engine.values()) {
+            // warm-up, so the first engine measured does not pay for class loading and JIT compilation
+            shapes.forEach((table, columns) -> timeCopy(table, columns, 500, engine));
+        }
+
+        StringBuilder out = new StringBuilder(String.format(Locale.ROOT, "%nCopy engines, %d rows per table%n", rows));
+        out.append(String.format(Locale.ROOT, "%-8s %10s %10s %10s  %s%n", "TABLE", "JDBC ms", "CSV ms", "LINKED ms", "WINNER"));
+        for (Map.Entry<String, String> shape : shapes.entrySet()) {
+            Map<LoaderProperties.Copy.Engine, Long> timings = new EnumMap<>(LoaderProperties.Copy.Engine.class);
+            for (LoaderProperties.Copy.Engine engine : LoaderProperties.Copy.Engine.values()) {
+                timings.put(engine, timeCopy(shape.getKey(), shape.getValue(), rows, engine));
+            }
+            LoaderProperties.Copy.Engine winner = timings.entrySet().stream()
+                    .min(Map.Entry.comparingByValue()).orElseThrow().getKey();
+            out.append(String.format(Locale.ROOT, "%-8s %10d %10d %10d  %s%n", shape.getKey(),
+                    timings.get(LoaderProperties.Copy.Engine.JDBC), timings.get(LoaderProperties.Copy.Engine.CSV),
+                    timings.get(LoaderProperties.Copy.Engine.LINKED), winner));
+        }
+        System.out.println(out);
+    }
+
+    private static long timeCopy(String table, String columns, int rows, LoaderProperties.Copy.Engine engine) {
+        String suffix = UUID.randomUUID().toString().replace("-", "");
+        DriverManagerDataSource oracle = OracleLoaderServiceTest.newOracleStandIn("benchsrc" + suffix);
+        JdbcTemplate oracleJdbc = new JdbcTemplate(oracle);
+        OracleLoaderServiceTest.setupOracleStandIn(oracleJdbc, SCHEMA);
+        oracleJdbc.execute("CREATE TABLE " + SCHEMA + "." + table + " (" + columns + ")");
+        oracleJdbc.update("INSERT INTO " + SCHEMA + "." + table + " SELECT " + generators(columns)
+                + " FROM SYSTEM_RANGE(1, " + rows + ")");
+        OracleLoaderServiceTest.registerTable(oracleJdbc, SCHEMA, table, rows, "ID");
+
+        DriverManagerDataSource h2 = new DriverManagerDataSource(
+                "jdbc:h2:mem:benchdst" + suffix + ";MODE=Oracle;DATABASE_TO_UPPER=false;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate target = new JdbcTemplate(h2);
+        LoaderProperties properties = new LoaderProperties();
+        properties.getCopy().setEngine(engine);
+        OracleLoaderService loader = new OracleLoaderService(target, oracle, SCHEMA, 1, 1000, 1, "EMP,DEPT", properties);
+
+        try {
+            loader.runFullRefresh();
+
+            assertEquals(rows, target.queryForObject("SELECT COUNT(*) FROM \"" + table + "\"", Integer.class));
+            return target.queryForObject("SELECT DURATION_MS FROM ETL_TABLE_TIMING WHERE TABLE_NAME = ?", Long.class, table);
+        } finally {
+            // both databases are kept open by DB_CLOSE_DELAY=-1 and would pile up on the heap
+            target.execute("SHUTDOWN");
+            oracleJdbc.execute("SHUTDOWN");
+        }
+    }
+
+    private static String generators(String columns) {
+        StringBuilder sb = new StringBuilder();
+        for (String column : columns.split(",(?![^(]*\\))")) {
+            String[] parts = column.trim().split(" ");
+            String type = parts[1];
+            if (sb.length() > 0) sb.append(", ");
+            if (type.equals("INT")) {
+                sb.append("X");
+            } else if (type.startsWith("DECIMAL")) {
+                sb.append("X * 1.25");
+            } else if (type.startsWith("VARCHAR")) {
+                sb.append("'value-' || X");
+            } else if (type.startsWith("CLOB")) {
+                sb.append("REPEAT('x', 16384)");
+            } else {
+                sb.append("HEXTORAW(REPEAT('AB', 16384))");
+            }
+        }
+        return sb.toString();
+    }
+}
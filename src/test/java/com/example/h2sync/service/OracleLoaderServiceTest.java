@@ -1,5 +1,9 @@
 package com.example.h2sync.service;
 
+import com.example.h2sync.config.LoaderProperties;
+import com.example.h2sync.config.OraclePoolProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
@@ -12,6 +16,8 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -20,15 +26,22 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Statement;
 import java.sql.Types;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
@@ -70,6 +83,620 @@ class OracleLoaderServiceTest {
                 "Unexpected number of Oracle connections opened during refresh");
     }
 
+    @Test
+    void shadowRefreshSwapsStagingSchemaIntoTargetSchema() {
+        String schema = "TEST";
+        JdbcTemplate target = new JdbcTemplate(newH2DataSource("h2target" + randomSuffix()));
+        JdbcTemplate oracleJdbc = new JdbcTemplate(newOracleStandIn("oraclesrc" + randomSuffix()));
+        setupOracleStandIn(oracleJdbc, schema);
+
+        LoaderProperties properties = new LoaderProperties();
+        properties.setRefreshMode(LoaderProperties.RefreshMode.SHADOW);
+        properties.setTargetSchema("ORA");
+        OracleLoaderService loader = new OracleLoaderService(
+                target, oracleJdbc.getDataSource(), schema, 2, 2, 1, "", properties);
+
+        loader.runFullRefresh();
+
+        assertEquals(3, target.queryForObject("SELECT COUNT(*) FROM ORA.\"EMP\"", Integer.class));
+        assertEquals(3, target.queryForObject("SELECT COUNT(*) FROM ORA.\"EMP_VIEW\"", Integer.class));
+        assertEquals(1, target.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_SCHEMA = 'ORA'", Integer.class));
+        assertEquals(0, target.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SCHEMATA WHERE SCHEMA_NAME = 'ORA_STAGE'", Integer.class));
+        assertEquals(1, target.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SCHEMATA WHERE SCHEMA_NAME = 'ORA_PREV'", Integer.class),
+                "The previous generation is kept until the next swap");
+
+        oracleJdbc.update("INSERT INTO " + schema + ".EMP (ID, NAME, SALARY) VALUES (?,?,?)", 4, "Dave", BigDecimal.ONE);
+        oracleJdbc.update("INSERT INTO ALL_TABLES (OWNER, TABLE_NAME, NUM_ROWS) VALUES (?, ?, ?)", schema, "MISSING", 1);
+
+        loader.runFullRefresh();
+
+        assertEquals(3, target.queryForObject("SELECT COUNT(*) FROM ORA.\"EMP\"", Integer.class),
+                "A failed table must keep the previous generation live");
+
+        oracleJdbc.update("DELETE FROM ALL_TABLES WHERE TABLE_NAME = 'MISSING'");
+        loader.runFullRefresh();
+
+        assertEquals(4, target.queryForObject("SELECT COUNT(*) FROM ORA.\"EMP\"", Integer.class));
+        assertEquals(4, target.queryForObject("SELECT COUNT(*) FROM ORA.\"EMP_VIEW\"", Integer.class));
+        assertEquals(3, target.queryForObject("SELECT COUNT(*) FROM ORA_PREV.\"EMP\"", Integer.class));
+
+        // a view that only compiles against the staging schema fails to rebuild after the rename
+        oracleJdbc.update("INSERT INTO " + schema + ".EMP (ID, NAME, SALARY) VALUES (?,?,?)", 5, "Erin", BigDecimal.ONE);
+        oracleJdbc.update("INSERT INTO ALL_VIEWS (OWNER, VIEW_NAME, TEXT) VALUES (?, 'STAGED', ?)",
+                schema, "select id from ora_stage.emp");
+        loader.runFullRefresh();
+
+        assertEquals(4, target.queryForObject("SELECT COUNT(*) FROM ORA.\"EMP\"", Integer.class),
+                "A view that cannot be rebuilt must keep the previous generation live");
+        assertEquals(4, target.queryForObject("SELECT COUNT(*) FROM ORA.\"EMP_VIEW\"", Integer.class));
+        assertEquals(5, target.queryForObject("SELECT COUNT(*) FROM ORA_STAGE.\"EMP\"", Integer.class));
+        assertEquals(1, target.queryForObject(
+                "SELECT COUNT(*) FROM ETL_FAIL_LOG WHERE OBJECT_TYPE = 'VIEW' AND OBJECT_NAME = 'STAGED'", Integer.class));
+    }
+
+    @Test
+    void incrementalRefreshMergesRowsAboveWatermark() {
+        String schema = "TEST";
+        JdbcTemplate target = new JdbcTemplate(newH2DataSource("h2target" + randomSuffix()));
+        JdbcTemplate oracleJdbc = new JdbcTemplate(newOracleStandIn("oraclesrc" + randomSuffix()));
+        setupOracleStandIn(oracleJdbc, schema);
+        oracleJdbc.execute("CREATE TABLE " + schema + ".ORDERS (ID INT PRIMARY KEY, ITEM VARCHAR(32), " +
+                "LAST_UPDATED TIMESTAMP, IS_DELETED VARCHAR(1))");
+        oracleJdbc.update("INSERT INTO " + schema + ".ORDERS VALUES (1, 'apple', TIMESTAMP '2024-01-01 00:00:00', 'N')");
+        oracleJdbc.update("INSERT INTO " + schema + ".ORDERS VALUES (2, 'pear', TIMESTAMP '2024-01-02 00:00:00', 'N')");
+        oracleJdbc.update("INSERT INTO " + schema + ".ORDERS VALUES (3, 'plum', TIMESTAMP '2024-01-03 00:00:00', 'N')");
+        registerTable(oracleJdbc, schema, "ORDERS", 3, "ID");
+
+        LoaderProperties properties = new LoaderProperties();
+        LoaderProperties.IncrementalTable orders = new LoaderProperties.IncrementalTable();
+        orders.setWatermarkColumn("last_updated");
+        orders.setSoftDeleteColumn("IS_DELETED");
+        properties.getIncremental().getTables().put("orders", orders);
+        OracleLoaderService loader = new OracleLoaderService(
+                target, oracleJdbc.getDataSource(), schema, 2, 2, 1, "", properties);
+
+        loader.runFullRefresh();
+
+        assertEquals(3, target.queryForObject("SELECT COUNT(*) FROM \"ORDERS\"", Integer.class));
+        assertEquals("2024-01-03 00:00:00.0", target.queryForObject(
+                "SELECT LAST_VALUE FROM ETL_WATERMARK WHERE TABLE_NAME = 'ORDERS'", String.class));
+
+        oracleJdbc.update("UPDATE " + schema + ".ORDERS SET IS_DELETED = 'Y', LAST_UPDATED = TIMESTAMP '2024-02-01 00:00:00' WHERE ID = 1");
+        oracleJdbc.update("UPDATE " + schema + ".ORDERS SET ITEM = 'pear2', LAST_UPDATED = TIMESTAMP '2024-02-02 00:00:00' WHERE ID = 2");
+        oracleJdbc.update("UPDATE " + schema + ".ORDERS SET ITEM = 'plum2' WHERE ID = 3");
+        oracleJdbc.update("INSERT INTO " + schema + ".ORDERS VALUES (4, 'fig', TIMESTAMP '2024-02-03 00:00:00', 'N')");
+        // committed after the first run, with the timestamp the first run saved as its watermark
+        oracleJdbc.update("INSERT INTO " + schema + ".ORDERS VALUES (5, 'kiwi', TIMESTAMP '2024-01-03 00:00:00', 'N')");
+        oracleJdbc.update("INSERT INTO " + schema + ".ORDERS VALUES (6, 'date', TIMESTAMP '2023-12-31 00:00:00', 'N')");
+
+        loader.runFullRefresh();
+
+        assertEquals(4, target.queryForObject("SELECT COUNT(*) FROM \"ORDERS\"", Integer.class));
+        assertEquals("pear2", target.queryForObject("SELECT ITEM FROM \"ORDERS\" WHERE ID = 2", String.class));
+        assertEquals("plum2", target.queryForObject("SELECT ITEM FROM \"ORDERS\" WHERE ID = 3", String.class),
+                "Rows at the watermark are read again");
+        assertEquals("fig", target.queryForObject("SELECT ITEM FROM \"ORDERS\" WHERE ID = 4", String.class));
+        assertEquals("kiwi", target.queryForObject("SELECT ITEM FROM \"ORDERS\" WHERE ID = 5", String.class),
+                "A late row with the saved watermark must not be lost");
+        assertEquals(0, target.queryForObject("SELECT COUNT(*) FROM \"ORDERS\" WHERE ID = 6", Integer.class),
+                "Rows below the watermark are not read");
+        assertEquals("2024-02-03 00:00:00.0", target.queryForObject(
+                "SELECT LAST_VALUE FROM ETL_WATERMARK WHERE TABLE_NAME = 'ORDERS'", String.class));
+    }
+
+    @Test
+    void deferredConstraintsAreBuiltAfterLoadAndViolationsLogged() {
+        String schema = "TEST";
+        JdbcTemplate target = new JdbcTemplate(newH2DataSource("h2target" + randomSuffix()));
+        JdbcTemplate oracleJdbc = new JdbcTemplate(newOracleStandIn("oraclesrc" + randomSuffix()));
+        setupOracleStandIn(oracleJdbc, schema);
+        oracleJdbc.execute("CREATE TABLE " + schema + ".TAGS (ID INT PRIMARY KEY, CODE VARCHAR(8))");
+        oracleJdbc.update("INSERT INTO " + schema + ".TAGS VALUES (1, 'dup')");
+        oracleJdbc.update("INSERT INTO " + schema + ".TAGS VALUES (2, 'dup')");
+        registerTable(oracleJdbc, schema, "TAGS", 2, "ID");
+        oracleJdbc.update("INSERT INTO ALL_CONSTRAINTS (OWNER, CONSTRAINT_NAME, CONSTRAINT_TYPE, TABLE_NAME) VALUES (?, 'UQ_TAGS', 'U', 'TAGS')",
+                schema);
+        oracleJdbc.update("INSERT INTO ALL_CONS_COLUMNS (OWNER, CONSTRAINT_NAME, TABLE_NAME, COLUMN_NAME, POSITION) VALUES (?, 'UQ_TAGS', 'TAGS', 'CODE', 1)",
+                schema);
+
+        LoaderProperties properties = new LoaderProperties();
+        properties.getConstraints().setThreads(1);
+        OracleLoaderService loader = new OracleLoaderService(
+                target, oracleJdbc.getDataSource(), schema, 2, 2, 1, "", properties);
+
+        loader.runFullRefresh();
+
+        assertEquals(2, target.queryForObject("SELECT COUNT(*) FROM \"TAGS\"", Integer.class));
+        assertEquals(1, target.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS " +
+                        "WHERE TABLE_NAME = 'EMP' AND CONSTRAINT_TYPE = 'PRIMARY KEY'", Integer.class));
+        assertEquals(1, target.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS " +
+                        "WHERE TABLE_NAME = 'TAGS' AND CONSTRAINT_TYPE = 'PRIMARY KEY'", Integer.class));
+        assertEquals(1, target.queryForObject(
+                "SELECT ATTEMPT_COUNT FROM ETL_FAIL_LOG WHERE OBJECT_TYPE = 'CONSTRAINT' AND OBJECT_NAME = 'TAGS.UNIQUE(CODE)'",
+                Integer.class));
+    }
+
+    @Test
+    void unchangedTablesAreTruncatedAndNewColumnsAdded() {
+        String schema = "TEST";
+        JdbcTemplate target = new JdbcTemplate(newH2DataSource("h2target" + randomSuffix()));
+        JdbcTemplate oracleJdbc = new JdbcTemplate(newOracleStandIn("oraclesrc" + randomSuffix()));
+        setupOracleStandIn(oracleJdbc, schema);
+        OracleLoaderService loader = new OracleLoaderService(
+                target, oracleJdbc.getDataSource(), schema, 2, 2, 1, "", new LoaderProperties());
+
+        loader.runFullRefresh();
+        // A DROP/CREATE would lose these local indexes.
+        target.execute("CREATE INDEX IDX_DEPT_TITLE ON \"DEPT\" (\"TITLE\")");
+        target.execute("CREATE INDEX IDX_EMP_NAME ON \"EMP\" (\"NAME\")");
+        oracleJdbc.update("INSERT INTO " + schema + ".DEPT (ID, TITLE) VALUES (?,?)", 30, "Support");
+        oracleJdbc.execute("ALTER TABLE " + schema + ".EMP ADD BONUS INT");
+        loader.runFullRefresh();
+
+        assertEquals(3, target.queryForObject("SELECT COUNT(*) FROM \"DEPT\"", Integer.class));
+        assertEquals(3, target.queryForObject("SELECT COUNT(*) FROM \"EMP\"", Integer.class));
+        assertEquals(3, target.queryForObject("SELECT COUNT(*) FROM \"EMP_VIEW\"", Integer.class));
+        assertEquals(1, target.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'EMP' AND COLUMN_NAME = 'BONUS'",
+                Integer.class));
+        assertEquals(2, target.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME IN ('IDX_DEPT_TITLE', 'IDX_EMP_NAME')",
+                Integer.class));
+        assertEquals(1, target.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS " +
+                        "WHERE TABLE_NAME = 'EMP' AND CONSTRAINT_TYPE = 'PRIMARY KEY'", Integer.class));
+    }
+
+    @Test
+    void changeDetectionSkipsTablesWithoutOracleModifications() {
+        String schema = "TEST";
+        JdbcTemplate target = new JdbcTemplate(newH2DataSource("h2target" + randomSuffix()));
+        JdbcTemplate oracleJdbc = new JdbcTemplate(newOracleStandIn("oraclesrc" + randomSuffix()));
+        setupOracleStandIn(oracleJdbc, schema);
+        setupChangeDictionary(oracleJdbc);
+        oracleJdbc.execute("CREATE SCHEMA DBMS_STATS");
+        oracleJdbc.execute("CREATE ALIAS DBMS_STATS.FLUSH_DATABASE_MONITORING_INFO FOR 'java.lang.System.gc'");
+        LoaderProperties properties = new LoaderProperties();
+        properties.getChangeDetection().setEnabled(true);
+        OracleLoaderService loader = new OracleLoaderService(
+                target, oracleJdbc.getDataSource(), schema, 2, 2, 1, "", properties);
+
+        loader.runFullRefresh();
+        // EMP changes without Oracle recording it, so only the DEPT insert is visible to the detector.
+        oracleJdbc.update("INSERT INTO " + schema + ".EMP (ID, NAME, SALARY) VALUES (?,?,?)", 4, "Dave", BigDecimal.ONE);
+        oracleJdbc.update("INSERT INTO " + schema + ".DEPT (ID, TITLE) VALUES (?,?)", 30, "Support");
+        oracleJdbc.update("INSERT INTO ALL_TAB_MODIFICATIONS VALUES (?, 'DEPT', NULL, 1, 0, 0, 'NO', CURRENT_TIMESTAMP)",
+                schema);
+        loader.runFullRefresh();
+
+        assertEquals(3, target.queryForObject("SELECT COUNT(*) FROM \"EMP\"", Integer.class));
+        assertEquals(3, target.queryForObject("SELECT COUNT(*) FROM \"DEPT\"", Integer.class));
+        assertEquals(3, target.queryForObject("SELECT COUNT(*) FROM \"EMP_VIEW\"", Integer.class));
+        assertEquals(2, target.queryForObject("SELECT COUNT(*) FROM ETL_TABLE_CHANGE", Integer.class));
+    }
+
+    @Test
+    void changeDetectionCopiesEveryTableWhenMonitoringInfoCannotBeFlushed() {
+        String schema = "TEST";
+        JdbcTemplate target = new JdbcTemplate(newH2DataSource("h2target" + randomSuffix()));
+        JdbcTemplate oracleJdbc = new JdbcTemplate(newOracleStandIn("oraclesrc" + randomSuffix()));
+        setupOracleStandIn(oracleJdbc, schema);
+        // no DBMS_STATS package, like a loader account without ANALYZE ANY
+        setupChangeDictionary(oracleJdbc);
+        LoaderProperties properties = new LoaderProperties();
+        properties.getChangeDetection().setEnabled(true);
+        OracleLoaderService loader = new OracleLoaderService(
+                target, oracleJdbc.getDataSource(), schema, 2, 2, 1, "", properties);
+
+        loader.runFullRefresh();
+        // the unflushed counters do not show this insert
+        oracleJdbc.update("INSERT INTO " + schema + ".EMP (ID, NAME, SALARY) VALUES (?,?,?)", 4, "Dave", BigDecimal.ONE);
+        loader.runFullRefresh();
+
+        assertEquals(4, target.queryForObject("SELECT COUNT(*) FROM \"EMP\"", Integer.class));
+        assertTrue(loader.getLastReport().getTables().stream().noneMatch(t -> "UNCHANGED".equals(t.getStatus())));
+    }
+
+    @Test
+    void changeDetectionCopiesTablesWhoseCountersWereClearedByAStatsGather() {
+        String schema = "TEST";
+        JdbcTemplate target = new JdbcTemplate(newH2DataSource("h2target" + randomSuffix()));
+        JdbcTemplate oracleJdbc = new JdbcTemplate(newOracleStandIn("oraclesrc" + randomSuffix()));
+        setupOracleStandIn(oracleJdbc, schema);
+        setupChangeDictionary(oracleJdbc);
+        oracleJdbc.execute("CREATE SCHEMA DBMS_STATS");
+        oracleJdbc.execute("CREATE ALIAS DBMS_STATS.FLUSH_DATABASE_MONITORING_INFO FOR 'java.lang.System.gc'");
+        LoaderProperties properties = new LoaderProperties();
+        properties.getChangeDetection().setEnabled(true);
+        OracleLoaderService loader = new OracleLoaderService(
+                target, oracleJdbc.getDataSource(), schema, 2, 2, 1, "", properties);
+
+        loader.runFullRefresh();
+        // EMP is modified, then the nightly stats job analyzes it and deletes its counters again
+        oracleJdbc.update("INSERT INTO " + schema + ".EMP (ID, NAME, SALARY) VALUES (?,?,?)", 4, "Dave", BigDecimal.ONE);
+        oracleJdbc.update("INSERT INTO ALL_TAB_MODIFICATIONS VALUES (?, 'EMP', NULL, 1, 0, 0, 'NO', CURRENT_TIMESTAMP)",
+                schema);
+        oracleJdbc.update("DELETE FROM ALL_TAB_MODIFICATIONS WHERE TABLE_NAME = 'EMP'");
+        oracleJdbc.update("UPDATE ALL_TABLES SET LAST_ANALYZED = CURRENT_TIMESTAMP WHERE TABLE_NAME = 'EMP'");
+        loader.runFullRefresh();
+
+        assertEquals(4, target.queryForObject("SELECT COUNT(*) FROM \"EMP\"", Integer.class));
+        assertTrue(loader.getLastReport().getTables().stream()
+                .anyMatch(t -> "DEPT".equals(t.getTable()) && "UNCHANGED".equals(t.getStatus())));
+    }
+
+    private static void setupChangeDictionary(JdbcTemplate oracleJdbc) {
+        oracleJdbc.execute("CREATE TABLE ALL_OBJECTS (OWNER VARCHAR(128), OBJECT_NAME VARCHAR(128), " +
+                "OBJECT_TYPE VARCHAR(32), LAST_DDL_TIME TIMESTAMP)");
+        oracleJdbc.execute("CREATE TABLE ALL_TAB_MODIFICATIONS (TABLE_OWNER VARCHAR(128), TABLE_NAME VARCHAR(128), " +
+                "PARTITION_NAME VARCHAR(128), INSERTS BIGINT, UPDATES BIGINT, DELETES BIGINT, TRUNCATED VARCHAR(3), " +
+                "\"TIMESTAMP\" TIMESTAMP)");
+        oracleJdbc.update("INSERT INTO ALL_OBJECTS SELECT OWNER, TABLE_NAME, 'TABLE', TIMESTAMP '2024-01-01 00:00:00' " +
+                "FROM ALL_TABLES");
+        oracleJdbc.execute("ALTER TABLE ALL_TABLES ADD LAST_ANALYZED TIMESTAMP");
+    }
+
+    @Test
+    void viewsAreCreatedInDependencyOrderAndCyclesReportedOnce() {
+        String schema = "TEST";
+        JdbcTemplate target = new JdbcTemplate(newH2DataSource("h2target" + randomSuffix()));
+        JdbcTemplate oracleJdbc = new JdbcTemplate(newOracleStandIn("oraclesrc" + randomSuffix()));
+        setupOracleStandIn(oracleJdbc, schema);
+        // A_TOP sorts first but needs M_MID, which needs EMP_VIEW.
+        oracleJdbc.update("INSERT INTO ALL_VIEWS (OWNER, VIEW_NAME, TEXT) VALUES (?, 'A_TOP', ?)",
+                schema, "select id from test.m_mid where name <> 'a_top'");
+        oracleJdbc.update("INSERT INTO ALL_VIEWS (OWNER, VIEW_NAME, TEXT) VALUES (?, 'M_MID', ?)",
+                schema, "select id, name from test.emp_view");
+        oracleJdbc.update("INSERT INTO ALL_VIEWS (OWNER, VIEW_NAME, TEXT) VALUES (?, 'CYC1', ?)",
+                schema, "select * from test.cyc2");
+        oracleJdbc.update("INSERT INTO ALL_VIEWS (OWNER, VIEW_NAME, TEXT) VALUES (?, 'CYC2', ?)",
+                schema, "select * from test.cyc1");
+        oracleJdbc.execute("CREATE TABLE ALL_DEPENDENCIES (OWNER VARCHAR(128), NAME VARCHAR(128), TYPE VARCHAR(32), " +
+                "REFERENCED_OWNER VARCHAR(128), REFERENCED_NAME VARCHAR(128), REFERENCED_TYPE VARCHAR(32))");
+        for (String[] dep : new String[][]{{"A_TOP", "M_MID"}, {"M_MID", "EMP_VIEW"}, {"CYC1", "CYC2"}, {"CYC2", "CYC1"}}) {
+            oracleJdbc.update("INSERT INTO ALL_DEPENDENCIES VALUES (?, ?, 'VIEW', ?, ?, 'VIEW')", schema, dep[0], schema, dep[1]);
+        }
+        OracleLoaderService loader = new OracleLoaderService(
+                target, oracleJdbc.getDataSource(), schema, 2, 2, 3, "", new LoaderProperties());
+
+        long t0 = System.currentTimeMillis();
+        loader.runFullRefresh();
+
+        assertTrue(System.currentTimeMillis() - t0 < 10_000, "View creation must not wait for dependencies");
+        assertEquals(3, target.queryForObject("SELECT COUNT(*) FROM \"A_TOP\"", Integer.class));
+        assertEquals(2, target.queryForObject(
+                "SELECT COUNT(*) FROM ETL_FAIL_LOG WHERE OBJECT_TYPE = 'VIEW' AND ATTEMPT_COUNT = 1 " +
+                        "AND OBJECT_NAME IN ('CYC1', 'CYC2') AND ERROR_MESSAGE LIKE '%dependency cycle%'", Integer.class));
+
+        Set<String> views = Set.of("A_TOP", "M_MID", "EMP_VIEW");
+        ViewGraph parsed = ViewGraph.of(views, ViewGraph.parseReferences(views, Map.of(
+                "A_TOP", "select id from test.m_mid where name <> 'a_top'",
+                "M_MID", "select id, name from test.\"EMP_VIEW\"")));
+        assertEquals(List.of(List.of("EMP_VIEW"), List.of("M_MID"), List.of("A_TOP")), parsed.levels());
+        assertTrue(parsed.cyclic().isEmpty());
+    }
+
+    @Test
+    void loaderHotPathIsMeasuredPerJob() {
+        String schema = "TEST";
+        JdbcTemplate target = new JdbcTemplate(newH2DataSource("h2target" + randomSuffix()));
+        JdbcTemplate oracleJdbc = new JdbcTemplate(newOracleStandIn("oraclesrc" + randomSuffix()));
+        setupOracleStandIn(oracleJdbc, schema);
+        // a table the dictionary lists but that cannot be read, and two views on a dependency cycle
+        oracleJdbc.update("INSERT INTO ALL_TABLES (OWNER, TABLE_NAME, NUM_ROWS, BLOCKS, AVG_ROW_LEN) VALUES (?, 'GHOST', 1, 1, 10)", schema);
+        oracleJdbc.update("INSERT INTO ALL_VIEWS (OWNER, VIEW_NAME, TEXT) VALUES (?, 'CYC1', ?)", schema, "select * from test.cyc2");
+        oracleJdbc.update("INSERT INTO ALL_VIEWS (OWNER, VIEW_NAME, TEXT) VALUES (?, 'CYC2', ?)", schema, "select * from test.cyc1");
+        OracleLoaderService loader = new OracleLoaderService(
+                target, oracleJdbc.getDataSource(), schema, 2, 2, 2, "", new LoaderProperties());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        loader.bindMetrics(registry);
+
+        loader.runFullRefresh();
+
+        for (String phase : List.of("metadata", "ddl", "fetch", "convert", "execute_batch", "commit")) {
+            assertEquals(2, registry.get("h2sync.loader.table.phase").tags("job", "full", "phase", phase).timer().count(),
+                    "one " + phase + " time per copied table");
+        }
+        assertEquals(5, registry.get("h2sync.loader.rows").tag("job", "full").functionCounter().count());
+        assertTrue(registry.get("h2sync.loader.bytes").tag("job", "full").functionCounter().count() > 0);
+        assertEquals(1, registry.get("h2sync.loader.retries").tags("job", "full", "type", "table").counter().count());
+        assertEquals(2, registry.get("h2sync.loader.view.deferrals").tags("job", "full", "reason", "cycle").counter().count());
+        assertTrue(registry.get("h2sync.loader.oracle.acquire").tag("job", "full").timer().count() >= 2);
+        assertEquals(0, registry.get("h2sync.loader.workers.active").tag("job", "full").gauge().value());
+    }
+
+    @Test
+    void refreshKeepsOneOracleConnectionPerWorker() {
+        String schema = "TEST";
+        JdbcTemplate target = new JdbcTemplate(newH2DataSource("h2target" + randomSuffix()));
+        DriverManagerDataSource oracleDelegate = newOracleStandIn("oraclesrc" + randomSuffix());
+        JdbcTemplate oracleJdbc = new JdbcTemplate(oracleDelegate);
+        setupOracleStandIn(oracleJdbc, schema);
+        TrackingDataSource trackingOracle = new TrackingDataSource(oracleDelegate, 0);
+
+        OracleLoaderService loader = new OracleLoaderService(
+                target, trackingOracle, schema, 1, 2, 1, "", new LoaderProperties());
+
+        loader.runFullRefresh();
+
+        assertEquals(3, target.queryForObject("SELECT COUNT(*) FROM \"EMP\"", Integer.class));
+        assertEquals(3, target.queryForObject("SELECT COUNT(*) FROM \"EMP_VIEW\"", Integer.class));
+        assertEquals(1, trackingOracle.getTotalConnections(),
+                "Expected one connection for the table worker; the migration report reuses the loader's row counts");
+        assertEquals(0, trackingOracle.getOpenConnections(), "Oracle connections must be released after refresh");
+    }
+
+    @Test
+    void progressIsTrackedFromStatisticsWithoutCountingOracle() {
+        String schema = "TEST";
+        JdbcTemplate target = new JdbcTemplate(newH2DataSource("h2target" + randomSuffix()));
+        DriverManagerDataSource oracleDelegate = newOracleStandIn("oraclesrc" + randomSuffix());
+        JdbcTemplate oracleJdbc = new JdbcTemplate(oracleDelegate);
+        setupOracleStandIn(oracleJdbc, schema);
+        TrackingDataSource trackingOracle = new TrackingDataSource(oracleDelegate, 0);
+        OracleLoaderService loader = new OracleLoaderService(
+                target, trackingOracle, schema, 2, 2, 1, "", new LoaderProperties());
+
+        loader.runFullRefresh();
+
+        assertTrue(trackingOracle.getPreparedSql().stream().noneMatch(sql -> sql.startsWith("SELECT COUNT(1) FROM (")),
+                "Copies must not pre-count the Oracle rows");
+        LoadProgress progress = loader.getProgress();
+        assertFalse(progress.isRunning());
+        LoadProgress.TableProgress emp = progress.find("EMP");
+        assertEquals(LoadProgress.State.DONE, emp.getState());
+        assertEquals(3, emp.getEstimatedRows());
+        assertEquals(3, emp.getRowsCopied());
+        assertEquals(100.0, emp.getPercent());
+        LoadProgress.ExactCount count = loader.countRowsExactly("emp");
+        assertEquals(3, count.getOracleRows());
+        assertTrue(count.isMatching());
+    }
+
+    @Test
+    void migrationReportReusesLoaderCountsAndIsStored() {
+        String schema = "TEST";
+        JdbcTemplate target = new JdbcTemplate(newH2DataSource("h2target" + randomSuffix()));
+        DriverManagerDataSource oracleDelegate = newOracleStandIn("oraclesrc" + randomSuffix());
+        JdbcTemplate oracleJdbc = new JdbcTemplate(oracleDelegate);
+        setupOracleStandIn(oracleJdbc, schema);
+        oracleJdbc.update("INSERT INTO ALL_TABLES (OWNER, TABLE_NAME, NUM_ROWS) VALUES (?, ?, ?)", schema, "MISSING", 1);
+        TrackingDataSource trackingOracle = new TrackingDataSource(oracleDelegate, 0);
+        OracleLoaderService loader = new OracleLoaderService(
+                target, trackingOracle, schema, 2, 2, 1, "", new LoaderProperties());
+
+        loader.runFullRefresh();
+
+        List<String> counted = trackingOracle.getPreparedSql().stream()
+                .filter(sql -> sql.startsWith("SELECT COUNT(1) FROM " + schema + "."))
+                .toList();
+        assertEquals(List.of("SELECT COUNT(1) FROM TEST.MISSING"), counted,
+                "Only the table the loader could not copy is counted again");
+        MigrationReport report = loader.getLastReport();
+        MigrationReport.TableEntry emp = report.getTables().stream()
+                .filter(t -> t.getTable().equals("EMP")).findFirst().orElseThrow();
+        assertEquals(3L, emp.getOracleRows());
+        assertEquals(3L, emp.getH2Rows());
+        assertEquals("MATCH", emp.getStatus());
+        assertEquals(MigrationReport.SOURCE_LOADER, emp.getCountSource());
+        assertEquals("MIGRATED", report.getViews().get(0).getStatus());
+        assertEquals("MATCH", report.getSequences().get(0).getStatus());
+
+        assertEquals(3, target.queryForObject("SELECT H2_VALUE FROM ETL_MIGRATION_REPORT " +
+                "WHERE OBJECT_TYPE = 'TABLE' AND OBJECT_NAME = 'EMP'", Integer.class));
+        assertEquals("ERROR", target.queryForObject("SELECT STATUS FROM ETL_MIGRATION_REPORT " +
+                "WHERE OBJECT_TYPE = 'TABLE' AND OBJECT_NAME = 'MISSING'", String.class));
+        assertEquals(1, target.queryForObject("SELECT COUNT(*) FROM ETL_MIGRATION_REPORT " +
+                "WHERE OBJECT_TYPE = 'VIEW' AND OBJECT_NAME = 'EMP_VIEW' AND STATUS = 'MIGRATED'", Integer.class));
+    }
+
+    @Test
+    void copyEnginesAreSelectablePerTable() throws Exception {
+        String schema = "TEST";
+        JdbcTemplate target = new JdbcTemplate(newH2DataSource("h2target" + randomSuffix()));
+        DriverManagerDataSource oracle = newOracleStandIn("oraclesrc" + randomSuffix());
+        JdbcTemplate oracleJdbc = new JdbcTemplate(oracle);
+        setupOracleStandIn(oracleJdbc, schema);
+        oracleJdbc.execute("CREATE TABLE " + schema + ".DOCS (ID INT PRIMARY KEY, TITLE VARCHAR(64), BODY CLOB(1000000), " +
+                "DATA BLOB(1000000), CREATED TIMESTAMP)");
+        oracleJdbc.update("INSERT INTO " + schema + ".DOCS VALUES (?, ?, ?, ?, ?)", 1, "say \"hi\", then\nleave",
+                "x".repeat(5000), new byte[]{0, 1, (byte) 0xFF}, Timestamp.valueOf("2024-01-02 03:04:05.5"));
+        oracleJdbc.update("INSERT INTO " + schema + ".DOCS VALUES (?, ?, ?, ?, ?)", 2, null, null, null, null);
+        registerTable(oracleJdbc, schema, "DOCS", 2, "ID");
+        Path spoolDir = Files.createTempDirectory("spool");
+        LoaderProperties properties = new LoaderProperties();
+        properties.getSpill().setDir(spoolDir.toString());
+        properties.getCopy().getTables().put("docs", LoaderProperties.Copy.Engine.CSV);
+        properties.getCopy().getTables().put("DEPT", LoaderProperties.Copy.Engine.CSV);
+        properties.getCopy().getTables().put("EMP", LoaderProperties.Copy.Engine.LINKED);
+        OracleLoaderService loader = new OracleLoaderService(target, oracle, schema, 2, 2, 1, "", properties);
+
+        loader.runFullRefresh();
+
+        assertEquals(oracleJdbc.queryForList("SELECT * FROM " + schema + ".EMP ORDER BY ID"),
+                target.queryForList("SELECT * FROM \"EMP\" ORDER BY ID"));
+        assertEquals(2, target.queryForObject("SELECT COUNT(*) FROM \"DEPT\"", Integer.class));
+        Map<String, Object> doc = target.queryForMap("SELECT * FROM \"DOCS\" WHERE ID = 1");
+        assertEquals("say \"hi\", then\nleave", doc.get("TITLE"));
+        assertEquals("x".repeat(5000), target.queryForObject("SELECT BODY FROM \"DOCS\" WHERE ID = 1", String.class));
+        assertArrayEquals(new byte[]{0, 1, (byte) 0xFF},
+                target.queryForObject("SELECT DATA FROM \"DOCS\" WHERE ID = 1", byte[].class));
+        assertEquals(Timestamp.valueOf("2024-01-02 03:04:05.5"), doc.get("CREATED"));
+        assertEquals(1, target.queryForObject("SELECT COUNT(*) FROM \"DOCS\" WHERE ID = 2 AND TITLE IS NULL " +
+                "AND BODY IS NULL AND DATA IS NULL AND CREATED IS NULL", Integer.class));
+        assertEquals(3L, loader.getProgress().find("EMP").getRowsCopied());
+        try (Stream<Path> left = Files.list(spoolDir)) {
+            assertEquals(0, left.count(), "Spool files are deleted once loaded");
+        }
+    }
+
+    @Test
+    void schemaCatalogReadsDictionaryInBulk() throws Exception {
+        String schema = "TEST";
+        JdbcTemplate oracleJdbc = new JdbcTemplate(newOracleStandIn("oraclesrc" + randomSuffix()));
+        setupOracleStandIn(oracleJdbc, schema);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            SchemaCatalog catalog = SchemaCatalog.load(oracleJdbc.getDataSource(), schema, executor,
+                    org.slf4j.LoggerFactory.getLogger(getClass()));
+
+            assertEquals(Set.of("EMP", "DEPT"), catalog.tables());
+            assertEquals(Set.of("EMP_VIEW"), catalog.views());
+            assertEquals(1, catalog.sequences().size());
+            assertEquals(3, catalog.estimatedRows("EMP"));
+            assertEquals(-1, catalog.estimatedRows("UNKNOWN"));
+            assertEquals(List.of("ID"), catalog.primaryKey("EMP"));
+            assertEquals(List.of(), catalog.uniqueConstraints("EMP"));
+            assertEquals(List.of("ID", "NAME", "SALARY"), catalog.columnNames("EMP"));
+            assertEquals(Boolean.TRUE, catalog.nonNullableColumns("EMP").get("ID"));
+            assertEquals("select id, name from test.emp", catalog.viewText("EMP_VIEW"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void largeTablesAreCopiedInParallelHashChunks() {
+        assertChunkedCopy(LoaderProperties.Chunking.Strategy.HASH);
+    }
+
+    @Test
+    void largeTablesAreCopiedInParallelPrimaryKeyRanges() {
+        assertChunkedCopy(LoaderProperties.Chunking.Strategy.RANGE);
+    }
+
+    private void assertChunkedCopy(LoaderProperties.Chunking.Strategy strategy) {
+        String schema = "TEST";
+        JdbcTemplate target = new JdbcTemplate(newH2DataSource("h2target" + randomSuffix()));
+        DriverManagerDataSource oracleDelegate = newOracleStandIn("oraclesrc" + randomSuffix());
+        JdbcTemplate oracleJdbc = new JdbcTemplate(oracleDelegate);
+        setupOracleStandIn(oracleJdbc, schema);
+        oracleJdbc.execute("CREATE TABLE " + schema + ".EVENTS (ID BIGINT PRIMARY KEY, PAYLOAD VARCHAR(32))");
+        for (int i = 1; i <= 103; i++) {
+            oracleJdbc.update("INSERT INTO " + schema + ".EVENTS VALUES (?, ?)", i * 7L, "event-" + i);
+        }
+        registerTable(oracleJdbc, schema, "EVENTS", 103, "ID");
+        TrackingDataSource trackingOracle = new TrackingDataSource(oracleDelegate, 25);
+
+        LoaderProperties properties = new LoaderProperties();
+        properties.getChunking().setStrategy(strategy);
+        properties.getChunking().setChunks(4);
+        properties.getChunking().setMinRows(50);
+        properties.getChunking().setThreads(4);
+        OracleLoaderService loader = new OracleLoaderService(
+                target, trackingOracle, schema, 1, 10, 1, "EMP,DEPT,EMP_VIEW,EMP_SEQ", properties);
+
+        loader.runFullRefresh();
+
+        assertEquals(103, target.queryForObject("SELECT COUNT(*) FROM \"EVENTS\"", Integer.class));
+        assertEquals(103, target.queryForObject("SELECT COUNT(DISTINCT ID) FROM \"EVENTS\"", Integer.class));
+        assertEquals(0, trackingOracle.getOpenConnections(), "Oracle connections must be closed after refresh");
+        assertTrue(trackingOracle.getMaxOpenConnections() >= 2,
+                "Expected chunks of one table to be read concurrently");
+    }
+
+    @Test
+    void reportCountsTablesOnceWorkersReturnTheirPooledConnections() {
+        String schema = "TEST";
+        JdbcTemplate target = new JdbcTemplate(newH2DataSource("h2target" + randomSuffix()));
+        DriverManagerDataSource standIn = newOracleStandIn("oraclesrc" + randomSuffix());
+        JdbcTemplate oracleJdbc = new JdbcTemplate(standIn);
+        setupOracleStandIn(oracleJdbc, schema);
+        oracleJdbc.execute("CREATE TABLE " + schema + ".EVENTS (ID BIGINT PRIMARY KEY, PAYLOAD VARCHAR(32))");
+        oracleJdbc.update("INSERT INTO " + schema + ".EVENTS SELECT X * 7, 'event-' || X FROM SYSTEM_RANGE(1, 103)");
+        registerTable(oracleJdbc, schema, "EVENTS", 103, "ID");
+
+        LoaderProperties properties = new LoaderProperties();
+        properties.getChunking().setChunks(4);
+        properties.getChunking().setMinRows(50);
+        properties.getChunking().setThreads(2);
+        properties.getReport().setThreads(4);
+        for (String table : List.of("EMP", "DEPT")) {
+            LoaderProperties.IncrementalTable incremental = new LoaderProperties.IncrementalTable();
+            incremental.setWatermarkColumn("ID");
+            properties.getIncremental().getTables().put(table, incremental);
+        }
+        OraclePoolProperties pool = new OraclePoolProperties();
+        pool.setConnectionTimeoutMs(1_000);
+        DataSource oracle = AbstractOracleLoaderService.createOracleDataSource("org.h2.Driver", standIn.getUrl(),
+                "sa", "", pool, "report-test", AbstractOracleLoaderService.oracleWorkers(2, properties), null);
+        try {
+            OracleLoaderService loader = new OracleLoaderService(target, oracle, schema, 2, 10, 1, "", properties);
+            loader.runFullRefresh();
+            // the second run merges EMP and DEPT incrementally, so the report counts them with queries
+            loader.runFullRefresh();
+
+            for (MigrationReport.TableEntry entry : loader.getLastReport().getTables()) {
+                if (!entry.getTable().equals("EVENTS")) {
+                    assertEquals(MigrationReport.SOURCE_QUERY, entry.getCountSource(), entry.getTable());
+                    assertNull(entry.getOracleError(), entry.getTable());
+                    assertEquals("MATCH", entry.getStatus(), entry.getTable());
+                }
+            }
+            assertEquals(103, target.queryForObject("SELECT COUNT(*) FROM \"EVENTS\"", Integer.class));
+        } finally {
+            ((HikariDataSource) oracle).close();
+        }
+    }
+
+    @Test
+    void tablesAreScheduledLongestFirst() {
+        Map<String, Long> bytes = Map.of("SMALL", 1_000L, "HUGE", 900_000L, "TIMED", 10_000L, "NEW", 400_000L);
+        // TIMED took 5 s last time although its statistics look small; HUGE and NEW are costed with the
+        // throughput measured on TIMED and SMALL.
+        Map<String, TableSchedule.Timing> previous = Map.of(
+                "TIMED", new TableSchedule.Timing(5_000, 10_000),
+                "SMALL", new TableSchedule.Timing(100, 1_000));
+
+        List<String> ordered = TableSchedule.longestFirst(
+                Set.of("SMALL", "HUGE", "TIMED", "NEW", "NO_STATS"),
+                table -> bytes.getOrDefault(table, -1L),
+                previous);
+
+        assertEquals(List.of("HUGE", "NEW", "TIMED", "SMALL", "NO_STATS"), ordered);
+    }
+
+    @Test
+    void adaptiveBatchControllerTunesWithinBounds() {
+        LoaderProperties.Batching settings = new LoaderProperties().getBatching();
+        settings.setMinRows(100);
+        settings.setMaxRows(10_000);
+        settings.setTargetBatchBytes(1_000_000);
+        settings.setTargetBatchMs(100);
+
+        // Narrow rows written quickly grow the batch, at most doubling per step, up to maxRows.
+        AdaptiveBatchController narrow = AdaptiveBatchController.forTable("NARROW", 1_000, settings);
+        for (int i = 0; i < 10; i++) {
+            int rows = narrow.batchRows();
+            narrow.recordBatch(rows, rows * 50L, 1_000_000);
+        }
+        assertEquals(10_000, narrow.batchRows());
+        assertEquals(10_000, narrow.fetchSize());
+
+        // 50 KB rows are capped by the byte target: 1 MB / 50 KB = 20 rows, raised to minRows.
+        AdaptiveBatchController wide = AdaptiveBatchController.forTable("WIDE", 1_000, settings);
+        wide.recordBatch(1_000, 1_000 * 50_000L, 50_000_000);
+        assertEquals(100, wide.batchRows());
+
+        // Commits that cost as much as the inserts are spread over more batches.
+        wide.recordCommit(1, 50_000_000);
+        assertEquals(2, wide.commitInterval());
+
+        LoaderProperties.PinnedBatch pinned = new LoaderProperties.PinnedBatch();
+        pinned.setRows(500);
+        pinned.setCommitInterval(4);
+        settings.getPinned().put("pinned", pinned);
+        AdaptiveBatchController fixed = AdaptiveBatchController.forTable("PINNED", 1_000, settings);
+        fixed.recordBatch(500, 500 * 50_000L, 50_000_000);
+        assertEquals(500, fixed.batchRows());
+        assertEquals(4, fixed.commitInterval());
+    }
+
     @Test
     void mapTypeHandlesNegativeScaleForOracleNumber() throws Exception {
         OracleLoaderService loader = new OracleLoaderService(
@@ -181,6 +808,120 @@ class OracleLoaderServiceTest {
         assertEquals(Timestamp.valueOf("2024-02-03 04:05:06"), converted);
     }
 
+    @Test
+    void columnCodecsCopyTypedValuesAndNulls() throws Exception {
+        DriverManagerDataSource ds = newH2DataSource("codec" + randomSuffix());
+        JdbcTemplate jdbc = new JdbcTemplate(ds);
+        jdbc.execute("CREATE TABLE SRC (ID NUMBER(10), AMOUNT NUMBER(20,2), RATIO DOUBLE PRECISION, " +
+                "NAME VARCHAR(20), CREATED TIMESTAMP, PAYLOAD VARBINARY(8))");
+        jdbc.execute("CREATE TABLE DST AS SELECT * FROM SRC WHERE 1=0");
+        jdbc.update("INSERT INTO SRC VALUES (1, 12.50, 0.25, 'a', TIMESTAMP '2024-02-03 04:05:06', X'0102')");
+        jdbc.update("INSERT INTO SRC VALUES (NULL, NULL, NULL, NULL, NULL, NULL)");
+
+        try (Connection con = ds.getConnection();
+             Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("SELECT * FROM SRC ORDER BY ID NULLS LAST");
+             PreparedStatement ins = con.prepareStatement("INSERT INTO DST VALUES (?, ?, ?, ?, ?, ?)")) {
+            ColumnBatch batch = new ColumnBatch(ColumnCodec.forResultSet(rs.getMetaData(), null), 4);
+            while (rs.next()) {
+                batch.readRow(rs);
+            }
+            for (int row = 0; row < batch.size(); row++) {
+                batch.bindRow(ins, row);
+                ins.addBatch();
+            }
+            ins.executeBatch();
+        }
+
+        assertEquals(1, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM DST WHERE ID = 1 AND AMOUNT = 12.50 AND RATIO = 0.25 AND NAME = 'a' " +
+                        "AND CREATED = TIMESTAMP '2024-02-03 04:05:06' AND PAYLOAD = X'0102'", Integer.class));
+        assertEquals(1, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM DST WHERE ID IS NULL AND AMOUNT IS NULL AND RATIO IS NULL AND NAME IS NULL " +
+                        "AND CREATED IS NULL AND PAYLOAD IS NULL", Integer.class));
+    }
+
+    @Test
+    void largeLobsAreStreamedAndCutTheBatchShort() throws Exception {
+        DriverManagerDataSource ds = newH2DataSource("lobs" + randomSuffix());
+        JdbcTemplate jdbc = new JdbcTemplate(ds);
+        jdbc.execute("CREATE TABLE SRC (ID NUMBER(10), BODY CLOB, DATA BLOB)");
+        jdbc.execute("CREATE TABLE DST AS SELECT * FROM SRC WHERE 1=0");
+        String large = "x".repeat(5000);
+        jdbc.update("INSERT INTO SRC VALUES (1, 'small', X'0102')");
+        jdbc.update("INSERT INTO SRC VALUES (2, ?, ?)", large, new byte[6000]);
+        jdbc.update("INSERT INTO SRC VALUES (3, ?, NULL)", large);
+        jdbc.update("INSERT INTO SRC VALUES (4, 'after', NULL)");
+
+        try (Connection con = ds.getConnection();
+             Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("SELECT * FROM SRC ORDER BY ID");
+             PreparedStatement ins = con.prepareStatement("INSERT INTO DST VALUES (?, ?, ?)")) {
+            ColumnBatch batch = new ColumnBatch(ColumnCodec.forResultSet(rs.getMetaData(), 100, null), 100, 25_000);
+            while (!batch.isFull() && rs.next()) {
+                batch.readRow(rs);
+            }
+            // two rows with large LOBs fill the byte budget long before the 100 row capacity
+            assertEquals(3, batch.size());
+            assertTrue(batch.estimateBytes() >= 25_000);
+            for (int row = 0; row < batch.size(); row++) {
+                batch.bindRow(ins, row);
+                ins.addBatch();
+            }
+            ins.executeBatch();
+            batch.clear();
+            assertEquals(0, batch.estimateBytes());
+        }
+
+        assertEquals("small", jdbc.queryForObject("SELECT BODY FROM DST WHERE ID = 1", String.class));
+        assertEquals(large, jdbc.queryForObject("SELECT BODY FROM DST WHERE ID = 2", String.class));
+        assertEquals(6000, jdbc.queryForObject("SELECT OCTET_LENGTH(DATA) FROM DST WHERE ID = 2", Integer.class));
+        assertEquals(large, jdbc.queryForObject("SELECT BODY FROM DST WHERE ID = 3", String.class));
+    }
+
+    @Test
+    void oversizedValuesAreSpilledOffHeapAndReplayed() throws Exception {
+        DriverManagerDataSource ds = newH2DataSource("spill" + randomSuffix());
+        JdbcTemplate jdbc = new JdbcTemplate(ds);
+        jdbc.execute("CREATE TABLE SRC (ID NUMBER(10), BODY CLOB, DATA BLOB)");
+        jdbc.execute("CREATE TABLE DST AS SELECT * FROM SRC WHERE 1=0");
+        String text = "\u00e9t\u00e9 ".repeat(2000);
+        byte[] data = new byte[7000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        jdbc.update("INSERT INTO SRC VALUES (1, 'inline', X'01')");
+        jdbc.update("INSERT INTO SRC VALUES (2, ?, ?)", text, data);
+        Path dir = Files.createTempDirectory("spill");
+
+        try (Connection con = ds.getConnection();
+             Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("SELECT * FROM SRC ORDER BY ID");
+             PreparedStatement ins = con.prepareStatement("INSERT INTO DST VALUES (?, ?, ?)")) {
+            // LOB streaming off, so the LOBs go through the spill codecs
+            ColumnBatch batch = new ColumnBatch(ColumnCodec.forResultSet(rs.getMetaData(), 0, 100, dir, null), 10);
+            while (rs.next()) {
+                batch.readRow(rs);
+            }
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(1, files.count());
+            }
+            for (int row = 0; row < batch.size(); row++) {
+                batch.bindRow(ins, row);
+                ins.addBatch();
+            }
+            ins.executeBatch();
+            batch.close();
+        }
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+        assertEquals("inline", jdbc.queryForObject("SELECT BODY FROM DST WHERE ID = 1", String.class));
+        assertEquals(text, jdbc.queryForObject("SELECT BODY FROM DST WHERE ID = 2", String.class));
+        assertArrayEquals(data, jdbc.queryForObject("SELECT DATA FROM DST WHERE ID = 2", byte[].class));
+    }
+
     @Test
     void translateViewSqlUppercasesIdentifiersAndRewritesNvl2() throws Exception {
         OracleLoaderService loader = new OracleLoaderService(
@@ -239,6 +980,73 @@ class OracleLoaderServiceTest {
         return ds;
     }
 
+    /**
+     * H2 database standing in for Oracle: identifiers are case-insensitive like Oracle's, so the loader's
+     * lower-case dictionary queries resolve against the upper-case ALL_* tables.
+     */
+    static DriverManagerDataSource newOracleStandIn(String dbName) {
+        DriverManagerDataSource ds = new DriverManagerDataSource();
+        ds.setDriverClassName("org.h2.Driver");
+        ds.setUrl("jdbc:h2:mem:" + dbName + ";MODE=Oracle;DATABASE_TO_UPPER=false;CASE_INSENSITIVE_IDENTIFIERS=TRUE;DB_CLOSE_DELAY=-1");
+        ds.setUsername("sa");
+        ds.setPassword("");
+        return ds;
+    }
+
+    static void setupOracleStandIn(JdbcTemplate jdbc, String schema) {
+        jdbc.execute("CREATE TABLE ALL_TABLES (OWNER VARCHAR(128), TABLE_NAME VARCHAR(128), NUM_ROWS BIGINT, " +
+                "BLOCKS BIGINT, AVG_ROW_LEN BIGINT)");
+        jdbc.execute("CREATE TABLE ALL_VIEWS (OWNER VARCHAR(128), VIEW_NAME VARCHAR(128), TEXT CLOB)");
+        jdbc.execute("CREATE TABLE ALL_SEQUENCES (SEQUENCE_OWNER VARCHAR(128), SEQUENCE_NAME VARCHAR(128), " +
+                "INCREMENT_BY BIGINT, LAST_NUMBER DECIMAL(38,0))");
+        jdbc.execute("CREATE TABLE ALL_TAB_COLUMNS (OWNER VARCHAR(128), TABLE_NAME VARCHAR(128), COLUMN_NAME VARCHAR(128), " +
+                "DATA_TYPE VARCHAR(128), DATA_LENGTH INT, CHAR_LENGTH INT, DATA_PRECISION INT, DATA_SCALE INT, " +
+                "NULLABLE VARCHAR(1), COLUMN_ID INT)");
+        jdbc.execute("CREATE TABLE ALL_CONSTRAINTS (OWNER VARCHAR(128), CONSTRAINT_NAME VARCHAR(128), " +
+                "CONSTRAINT_TYPE VARCHAR(1), TABLE_NAME VARCHAR(128))");
+        jdbc.execute("CREATE TABLE ALL_CONS_COLUMNS (OWNER VARCHAR(128), CONSTRAINT_NAME VARCHAR(128), " +
+                "TABLE_NAME VARCHAR(128), COLUMN_NAME VARCHAR(128), POSITION INT)");
+
+        jdbc.execute("CREATE SCHEMA IF NOT EXISTS " + schema);
+        jdbc.execute("CREATE TABLE " + schema + ".EMP (ID INT PRIMARY KEY, NAME VARCHAR(64), SALARY DECIMAL(10,2))");
+        jdbc.update("INSERT INTO " + schema + ".EMP (ID, NAME, SALARY) VALUES (?,?,?)", 1, "Alice", BigDecimal.valueOf(100.10));
+        jdbc.update("INSERT INTO " + schema + ".EMP (ID, NAME, SALARY) VALUES (?,?,?)", 2, "Bob", BigDecimal.valueOf(150.25));
+        jdbc.update("INSERT INTO " + schema + ".EMP (ID, NAME, SALARY) VALUES (?,?,?)", 3, "Carol", BigDecimal.valueOf(200.50));
+        jdbc.execute("CREATE TABLE " + schema + ".DEPT (ID INT PRIMARY KEY, TITLE VARCHAR(64))");
+        jdbc.update("INSERT INTO " + schema + ".DEPT (ID, TITLE) VALUES (?,?)", 10, "Sales");
+        jdbc.update("INSERT INTO " + schema + ".DEPT (ID, TITLE) VALUES (?,?)", 20, "Engineering");
+        jdbc.execute("CREATE VIEW " + schema + ".EMP_VIEW AS SELECT ID, NAME FROM " + schema + ".EMP");
+
+        registerTable(jdbc, schema, "EMP", 3, "ID");
+        registerTable(jdbc, schema, "DEPT", 2, "ID");
+        jdbc.update("INSERT INTO ALL_VIEWS (OWNER, VIEW_NAME, TEXT) VALUES (?, ?, ?)",
+                schema, "EMP_VIEW", "select id, name from " + schema.toLowerCase(Locale.ROOT) + ".emp");
+        jdbc.update("INSERT INTO ALL_SEQUENCES (SEQUENCE_OWNER, SEQUENCE_NAME, INCREMENT_BY, LAST_NUMBER) VALUES (?, ?, ?, ?)",
+                schema, "EMP_SEQ", 1, BigDecimal.valueOf(42));
+    }
+
+    /**
+     * Registers a table of the stand-in in ALL_TABLES, ALL_TAB_COLUMNS and, when given, its primary key.
+     */
+    static void registerTable(JdbcTemplate jdbc, String schema, String table, long numRows, String primaryKey) {
+        jdbc.update("INSERT INTO ALL_TABLES (OWNER, TABLE_NAME, NUM_ROWS, BLOCKS, AVG_ROW_LEN) VALUES (?, ?, ?, ?, ?)",
+                schema, table, numRows, Math.max(1, numRows / 100), 40);
+        jdbc.update("INSERT INTO ALL_TAB_COLUMNS (OWNER, TABLE_NAME, COLUMN_NAME, DATA_TYPE, DATA_LENGTH, CHAR_LENGTH, " +
+                        "DATA_PRECISION, DATA_SCALE, NULLABLE, COLUMN_ID) " +
+                        "SELECT ?, TABLE_NAME, COLUMN_NAME, DATA_TYPE, COALESCE(CHARACTER_MAXIMUM_LENGTH, 22), " +
+                        "COALESCE(CHARACTER_MAXIMUM_LENGTH, 0), NUMERIC_PRECISION, NUMERIC_SCALE, " +
+                        "CASE WHEN IS_NULLABLE = 'YES' THEN 'Y' ELSE 'N' END, ORDINAL_POSITION " +
+                        "FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ?",
+                schema, schema, table);
+        if (primaryKey != null) {
+            String constraint = "PK_" + table;
+            jdbc.update("INSERT INTO ALL_CONSTRAINTS (OWNER, CONSTRAINT_NAME, CONSTRAINT_TYPE, TABLE_NAME) VALUES (?, ?, 'P', ?)",
+                    schema, constraint, table);
+            jdbc.update("INSERT INTO ALL_CONS_COLUMNS (OWNER, CONSTRAINT_NAME, TABLE_NAME, COLUMN_NAME, POSITION) VALUES (?, ?, ?, ?, 1)",
+                    schema, constraint, table, primaryKey);
+        }
+    }
+
     private static String randomSuffix() {
         return UUID.randomUUID().toString().replace("-", "").toLowerCase(Locale.ROOT);
     }
@@ -279,6 +1087,7 @@ class OracleLoaderServiceTest {
         private final AtomicInteger maxOpenConnections = new AtomicInteger();
         private final AtomicInteger totalConnections = new AtomicInteger();
         private final Set<Integer> connectionIds = ConcurrentHashMap.newKeySet();
+        private final List<String> preparedSql = new CopyOnWriteArrayList<>();
 
         TrackingDataSource(DataSource delegate, long queryDelayMs) {
             this.delegate = delegate;
@@ -301,6 +1110,10 @@ class OracleLoaderServiceTest {
             return connectionIds.size();
         }
 
+        List<String> getPreparedSql() {
+            return preparedSql;
+        }
+
         @Override
         public Connection getConnection() throws SQLException {
             Connection real = delegate.getConnection();
@@ -349,6 +1162,7 @@ class OracleLoaderServiceTest {
                         }
                         return null;
                     case "prepareStatement":
+                        preparedSql.add((String) args[0]);
                         return wrapStatement(method, delegate, args);
                     case "createStatement":
                         return wrapStatement(method, delegate, args);
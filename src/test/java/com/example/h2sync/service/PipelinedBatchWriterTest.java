@@ -0,0 +1,155 @@
+package com.example.h2sync.service;
+
+import com.example.h2sync.config.LoaderProperties;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PipelinedBatchWriterTest {
+
+    private static final Logger log = LoggerFactory.getLogger(PipelinedBatchWriterTest.class);
+    private static final int DEPTH = 2;
+
+    @Test
+    void batchesAreHandedToTheWriterThroughABoundedQueue() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (Connection h2 = newDatabase(25, false)) {
+            AtomicLong progress = new AtomicLong();
+            Set<Thread> writers = ConcurrentHashMap.newKeySet();
+            PipelinedBatchWriter writer = newWriter(executor, h2, rows -> {
+                progress.addAndGet(rows);
+                writers.add(Thread.currentThread());
+            });
+
+            assertEquals(25, copy(h2, writer));
+
+            assertEquals(25, count(h2));
+            assertEquals(25, progress.get());
+            assertFalse(writers.contains(Thread.currentThread()), "batches are executed on the writer thread");
+            assertEquals(0, writer.allocatedBuffers(), "buffers are closed once the copy ends");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void writerFailuresReachTheReaderAndAbortReleasesTheBuffers() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (Connection h2 = newDatabase(25, true)) {
+            PipelinedBatchWriter writer = newWriter(executor, h2, rows -> { });
+
+            // the duplicate key is in the third batch of four rows
+            SQLException failure = assertThrows(SQLException.class, () -> copy(h2, writer));
+            writer.abort();
+            h2.rollback();
+
+            assertTrue(failure.getMessage().contains("primary key"), failure.getMessage());
+            assertEquals(0, writer.allocatedBuffers());
+            assertEquals(8, count(h2), "only the batches committed before the failure remain");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void abortAfterAnInterruptedReaderStopsTheWriterTask() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (Connection h2 = newDatabase(25, false)) {
+            PipelinedBatchWriter writer = newWriter(executor, h2, rows -> { });
+
+            Thread.currentThread().interrupt();
+            assertThrows(InterruptedException.class, () -> copy(h2, writer));
+            writer.abort();
+            h2.rollback();
+
+            assertEquals(0, writer.allocatedBuffers());
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS), "the writer task is not left waiting");
+            assertEquals(0, count(h2));
+        } finally {
+            Thread.interrupted();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Reads {@code SRC} into the writer the way {@link JdbcBatchCopyEngine} does, checking that no more than
+     * {@code depth + 1} buffers are ever allocated.
+     */
+    private static long copy(Connection h2, PipelinedBatchWriter writer) throws Exception {
+        // the writer owns the H2 connection, so the rows are read on a second one
+        try (Connection reader = DriverManager.getConnection(h2.getMetaData().getURL(), "sa", "");
+             Statement st = reader.createStatement();
+             ResultSet rs = st.executeQuery("SELECT ID, NAME FROM SRC ORDER BY SEQ")) {
+            ColumnBatch batch = writer.acquire();
+            while (rs.next()) {
+                batch.readRow(rs);
+                if (batch.isFull()) {
+                    writer.submit(batch);
+                    batch = writer.acquire();
+                }
+                assertTrue(writer.allocatedBuffers() <= DEPTH + 1);
+            }
+            writer.submit(batch);
+            return writer.finish();
+        }
+    }
+
+    private static PipelinedBatchWriter newWriter(ExecutorService executor, Connection h2, LongConsumer progress)
+            throws SQLException {
+        LoaderProperties.Batching batching = new LoaderProperties().getBatching();
+        batching.setAdaptive(false);
+        AdaptiveBatchController controller = AdaptiveBatchController.forTable("DST", 4, batching);
+        ColumnCodec[] codecs;
+        try (Statement st = h2.createStatement();
+             ResultSet rs = st.executeQuery("SELECT ID, NAME FROM SRC WHERE 1 = 0")) {
+            codecs = ColumnCodec.forResultSet(rs.getMetaData(), log);
+        }
+        PreparedStatement insert = h2.prepareStatement("INSERT INTO DST (ID, NAME) VALUES (?, ?)");
+        return new PipelinedBatchWriter(executor, h2, insert, codecs, controller, Long.MAX_VALUE, DEPTH, "DST",
+                progress, new LoaderMetrics("full"), new LoaderMetrics.CopyTimes(), log);
+    }
+
+    private static Connection newDatabase(int rows, boolean duplicate) throws SQLException {
+        Connection h2 = DriverManager.getConnection("jdbc:h2:mem:writer" + UUID.randomUUID().toString().replace("-", "")
+                + ";MODE=Oracle;DATABASE_TO_UPPER=false", "sa", "");
+        try (Statement st = h2.createStatement()) {
+            st.execute("CREATE TABLE SRC (SEQ INT, ID INT, NAME VARCHAR(32))");
+            st.execute("CREATE TABLE DST (ID INT PRIMARY KEY, NAME VARCHAR(32))");
+            st.execute("INSERT INTO SRC SELECT X, X, 'row-' || X FROM SYSTEM_RANGE(1, " + rows + ")");
+            if (duplicate) {
+                st.execute("UPDATE SRC SET ID = 1 WHERE SEQ = 10");
+            }
+        }
+        h2.setAutoCommit(false);
+        return h2;
+    }
+
+    private static int count(Connection h2) throws SQLException {
+        try (Statement st = h2.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM DST")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
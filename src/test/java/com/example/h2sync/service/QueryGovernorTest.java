@@ -0,0 +1,83 @@
+package com.example.h2sync.service;
+
+import com.example.h2sync.config.QueryProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QueryGovernorTest {
+
+    @Test
+    void slotsAreLimitedPerClientAndOverallWithABoundedQueue() throws Exception {
+        QueryProperties properties = new QueryProperties();
+        QueryProperties.Governor limits = properties.getGovernor();
+        limits.setMaxConcurrent(1);
+        limits.setMaxConcurrentPerClient(1);
+        limits.setMaxQueued(1);
+        limits.setQueueWaitMs(50);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        QueryGovernor governor = new QueryGovernor(properties, registry);
+
+        QueryGovernor.Permit first = governor.admit("a");
+        assertEquals(QueryGovernor.Reason.CLIENT_BUSY, assertThrows(QueryGovernor.Rejected.class, () -> governor.admit("a")).getReason());
+        assertEquals(QueryGovernor.Reason.BUSY, assertThrows(QueryGovernor.Rejected.class, () -> governor.admit("b")).getReason());
+
+        limits.setQueueWaitMs(10_000);
+        CompletableFuture<QueryGovernor.Permit> queued = CompletableFuture.supplyAsync(() -> governor.admit("b"));
+        while (registry.get("h2sync.query.queued").gauge().value() < 1) {
+            Thread.sleep(5);
+        }
+        assertEquals(QueryGovernor.Reason.QUEUE_FULL, assertThrows(QueryGovernor.Rejected.class, () -> governor.admit("c")).getReason());
+        first.close();
+        queued.get(5, TimeUnit.SECONDS).close();
+        governor.admit("a").close();
+
+        assertEquals(1, registry.get("h2sync.query.rejected").tag("reason", "client_busy").counter().count());
+        assertEquals(1, registry.get("h2sync.query.rejected").tag("reason", "busy").counter().count());
+        assertEquals(1, registry.get("h2sync.query.rejected").tag("reason", "queue_full").counter().count());
+        assertEquals(0, registry.get("h2sync.query.active").gauge().value());
+        assertEquals(0, governor.clientCount(), "clients are forgotten once their slots are returned");
+    }
+
+    @Test
+    void expensivePlansAreRejectedAndResultsAreCapped() {
+        JdbcTemplate h2 = new JdbcTemplate(newH2DataSource());
+        h2.execute("CREATE TABLE A (ID INT PRIMARY KEY, V INT)");
+        h2.execute("CREATE TABLE B (ID INT, V INT)");
+        h2.update("INSERT INTO A SELECT X, X FROM SYSTEM_RANGE(1, 1000)");
+        h2.update("INSERT INTO B SELECT X, X FROM SYSTEM_RANGE(1, 500)");
+        QueryProperties properties = new QueryProperties();
+        properties.getCache().setEnabled(false);
+        properties.getGovernor().setMaxCost(10_000);
+        properties.getGovernor().setMaxRows(3);
+        QueryService service = new QueryService(h2, properties);
+
+        // a cross join reads 1000 x 500 rows
+        QueryGovernor.Rejected rejected = assertThrows(QueryGovernor.Rejected.class,
+                () -> service.stream("SELECT * FROM A, B", ResultFormat.CSV, new ByteArrayOutputStream()));
+        assertEquals(QueryGovernor.Reason.TOO_EXPENSIVE, rejected.getReason());
+        // joining through the primary key reads B once and looks A up
+        assertEquals(3, service.stream("SELECT * FROM B JOIN A ON A.ID = B.ID", ResultFormat.CSV, new ByteArrayOutputStream()));
+        assertEquals(1, service.stream("SELECT * FROM A WHERE ID = ?", List.of(5), ResultFormat.CSV, new ByteArrayOutputStream()));
+    }
+
+    private static DriverManagerDataSource newH2DataSource() {
+        DriverManagerDataSource ds = new DriverManagerDataSource();
+        ds.setDriverClassName("org.h2.Driver");
+        ds.setUrl("jdbc:h2:mem:governor" + UUID.randomUUID().toString().replace("-", "")
+                + ";MODE=Oracle;DATABASE_TO_UPPER=false;DB_CLOSE_DELAY=-1");
+        ds.setUsername("sa");
+        ds.setPassword("");
+        return ds;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.h2sync.service;
+
+import com.example.h2sync.config.QueryProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryJobServiceTest {
+
+    private static final Pattern NEXT_TOKEN = Pattern.compile("\"nextToken\":(?:\"([^\"]+)\"|null)}$");
+
+    @Test
+    void jobsSpoolTheirRowsServePagesAndCanBeCancelled() throws Exception {
+        JdbcTemplate h2 = new JdbcTemplate(newH2DataSource());
+        h2.execute("CREATE TABLE T (ID INT, NAME VARCHAR(16))");
+        h2.update("INSERT INTO T SELECT X, 'n' || X FROM SYSTEM_RANGE(1, 5)");
+        QueryProperties properties = new QueryProperties();
+        properties.getJobs().setTtlMs(0);
+        QueryJobService jobs = new QueryJobService(new QueryService(h2, properties), properties);
+        try {
+            QueryJob job = jobs.submit("SELECT ID, NAME FROM T WHERE ID > ? ORDER BY ID", List.of(1), "test");
+            awaitFinished(job);
+            assertEquals(QueryJob.State.DONE, job.getState());
+            assertEquals(4, job.getRows());
+            Path spool = job.spool;
+
+            String first = page(jobs, job.getId(), null, 3);
+            assertTrue(first.startsWith("{\"job\":\"" + job.getId() + "\",\"rows\":[{\"ID\":2,\"NAME\":\"n2\"},"
+                    + "{\"ID\":3,\"NAME\":\"n3\"},{\"ID\":4,\"NAME\":\"n4\"}],"), first);
+            String token = nextToken(first);
+            String second = page(jobs, job.getId(), token, 3);
+            assertEquals("{\"job\":\"" + job.getId() + "\",\"rows\":[{\"ID\":5,\"NAME\":\"n5\"}],\"nextToken\":null}", second);
+            assertNull(nextToken(second));
+            assertThrows(IllegalArgumentException.class, () -> page(jobs, job.getId(), "bm90LWEtdG9rZW4", 3));
+
+            // a job that spends its time before the first row is cancelled inside H2
+            QueryJob slow = jobs.submit("SELECT COUNT(*) FROM SYSTEM_RANGE(1, 100000) A, SYSTEM_RANGE(1, 100000) B "
+                    + "WHERE A.X + B.X = 0", List.of(), "test");
+            while (slow.getState() == QueryJob.State.QUEUED) {
+                Thread.sleep(5);
+            }
+            Thread.sleep(100);
+            assertTrue(jobs.cancel(slow.getId()));
+            awaitFinished(slow);
+            assertEquals(QueryJob.State.CANCELLED, slow.getState());
+
+            // with a time to live of 0, finished jobs go with the next sweep
+            jobs.expire();
+            assertNull(jobs.find(job.getId()));
+            assertFalse(Files.exists(spool));
+        } finally {
+            jobs.shutdown();
+        }
+    }
+
+    private static String page(QueryJobService jobs, String id, String token, int limit) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        jobs.writePage(id, token, limit, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String nextToken(String page) {
+        Matcher m = NEXT_TOKEN.matcher(page);
+        assertTrue(m.find(), page);
+        return m.group(1);
+    }
+
+    private static void awaitFinished(QueryJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!job.isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(job.isFinished(), "job did not finish: " + job.getState());
+    }
+
+    private static DriverManagerDataSource newH2DataSource() {
+        DriverManagerDataSource ds = new DriverManagerDataSource();
+        ds.setDriverClassName("org.h2.Driver");
+        ds.setUrl("jdbc:h2:mem:jobs" + UUID.randomUUID().toString().replace("-", "")
+                + ";MODE=Oracle;DATABASE_TO_UPPER=false;DB_CLOSE_DELAY=-1");
+        ds.setUsername("sa");
+        ds.setPassword("");
+        return ds;
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.h2sync.service;
+
+import com.example.h2sync.config.QueryProperties;
+import com.example.h2sync.dto.SqlParameter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QueryServiceTest {
+
+    @Test
+    void resultsStreamAsCsvNdjsonAndColumnar() throws IOException {
+        JdbcTemplate h2 = new JdbcTemplate(newH2DataSource());
+        h2.execute("CREATE TABLE T (ID INT, NAME VARCHAR(64), PRICE DECIMAL(10,2), OK BOOLEAN, DATA VARBINARY(8))");
+        h2.update("INSERT INTO T VALUES (1, 'plain', 1.50, TRUE, X'0AFF')");
+        h2.update("INSERT INTO T VALUES (2, 'say \"hi\", then\nleave', NULL, NULL, NULL)");
+        QueryProperties properties = new QueryProperties();
+        properties.setBufferBytes(1024);
+        properties.setColumnarBlockRows(1);
+        QueryService service = new QueryService(h2, properties);
+        String sql = "SELECT ID, NAME, PRICE, OK, DATA FROM T ORDER BY ID";
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        assertEquals(2, service.stream(sql, ResultFormat.CSV, csv));
+        assertEquals("ID,NAME,PRICE,OK,DATA\n1,plain,1.50,TRUE,0AFF\n2,\"say \"\"hi\"\", then\nleave\",,,\n",
+                csv.toString(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        service.stream(sql, ResultFormat.NDJSON, ndjson);
+        assertEquals("{\"ID\":1,\"NAME\":\"plain\",\"PRICE\":1.50,\"OK\":true,\"DATA\":\"0AFF\"}\n"
+                        + "{\"ID\":2,\"NAME\":\"say \\\"hi\\\", then\\nleave\",\"PRICE\":null,\"OK\":null,\"DATA\":null}\n",
+                ndjson.toString(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream columnar = new ByteArrayOutputStream();
+        service.stream("SELECT ID, NAME FROM T ORDER BY ID", ResultFormat.COLUMNAR, columnar);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(columnar.toByteArray()));
+        assertEquals("H2SC", new String(in.readNBytes(4), StandardCharsets.US_ASCII));
+        assertEquals(1, in.read());
+        assertEquals(2, in.read());
+        assertEquals("ID", new String(in.readNBytes(in.read()), StandardCharsets.US_ASCII));
+        assertEquals(ColumnarResultWriter.INT64, in.read());
+        assertEquals("NAME", new String(in.readNBytes(in.read()), StandardCharsets.US_ASCII));
+        assertEquals(ColumnarResultWriter.STRING, in.read());
+        // first block: one row, ID = zigzag(1), NAME = "plain"
+        assertEquals(1, in.read());
+        assertEquals(2, in.read());
+        assertEquals(0, in.read());
+        assertEquals(2, in.read());
+        assertEquals(7, in.read());
+        assertEquals(0, in.read());
+        assertEquals(5, in.read());
+        assertEquals("plain", new String(in.readNBytes(5), StandardCharsets.UTF_8));
+        // second block, then the end marker
+        assertEquals(1, in.read());
+        in.skipNBytes(3);
+        int nameLength = in.read();
+        in.skipNBytes(nameLength);
+        assertEquals(0, in.read());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    void cachedResultsLastUntilARefreshChangesTheirTables() {
+        JdbcTemplate h2 = new JdbcTemplate(newH2DataSource());
+        h2.execute("CREATE TABLE A (ID INT)");
+        h2.execute("CREATE TABLE B (ID INT)");
+        h2.update("INSERT INTO A VALUES (1)");
+        h2.update("INSERT INTO B VALUES (1)");
+        QueryProperties properties = new QueryProperties();
+        // every result here is larger than 4 bytes, so all of them go to memory-mapped spill files
+        properties.getCache().setSpillThreshold(4);
+        QueryService service = new QueryService(h2, properties);
+        String fromA = "SELECT ID FROM A ORDER BY ID";
+        String fromB = "SELECT ID FROM B ORDER BY ID";
+        String etagA = service.etag(fromA, List.of(), ResultFormat.CSV);
+        assertEquals("ID\n1\n", csv(service, fromA));
+        assertEquals("ID\n1\n", csv(service, fromB));
+
+        // changes made outside a refresh are not seen, even with different whitespace in the SQL
+        h2.update("INSERT INTO A VALUES (2)");
+        h2.update("INSERT INTO B VALUES (2)");
+        assertEquals("ID\n1\n", csv(service, "SELECT ID\n  FROM A   ORDER BY ID"));
+        assertEquals(etagA, service.etag(fromA, List.of(), ResultFormat.CSV));
+
+        // a refresh that left A alone only invalidates B
+        MigrationReport report = new MigrationReport("test", Instant.now(),
+                List.of(new MigrationReport.TableEntry("A", 1L, 1L, "UNCHANGED", null, null, null),
+                        new MigrationReport.TableEntry("B", 2L, 2L, "MATCH", null, null, null)),
+                List.of(), List.of(), List.of());
+        service.refreshCompleted(report);
+        assertEquals(etagA, service.etag(fromA, List.of(), ResultFormat.CSV));
+        assertEquals("ID\n1\n", csv(service, fromA));
+        assertEquals("ID\n1\n2\n", csv(service, fromB));
+
+        // without a report everything goes
+        service.refreshCompleted(null);
+        assertNotEquals(etagA, service.etag(fromA, List.of(), ResultFormat.CSV));
+        assertEquals("ID\n1\n2\n", csv(service, fromA));
+    }
+
+    @Test
+    void volatileAndTablelessQueriesBypassTheCache() {
+        JdbcTemplate h2 = new JdbcTemplate(newH2DataSource());
+        h2.execute("CREATE TABLE A (ID INT)");
+        h2.execute("CREATE TABLE ETL_WATERMARK (ID INT)");
+        h2.execute("CREATE SEQUENCE S");
+        h2.update("INSERT INTO A VALUES (1)");
+        QueryService service = new QueryService(h2, new QueryProperties());
+        String nextval = "SELECT S.NEXTVAL AS N FROM DUAL";
+        String fromA = "SELECT ID, RAND() < 2 AS R FROM A";
+        String bookkeeping = "SELECT COUNT(*) AS C FROM ETL_WATERMARK";
+
+        assertEquals("N\n1\n", csv(service, nextval));
+        assertEquals("N\n2\n", csv(service, nextval));
+        assertEquals("ID,R\n1,TRUE\n", csv(service, fromA));
+        h2.update("INSERT INTO A VALUES (2)");
+        assertEquals("ID,R\n1,TRUE\n2,TRUE\n", csv(service, fromA));
+        assertEquals("C\n0\n", csv(service, bookkeeping));
+        h2.update("INSERT INTO ETL_WATERMARK VALUES (1)");
+        assertEquals("C\n1\n", csv(service, bookkeeping));
+
+        assertNull(service.etag(nextval, List.of(), ResultFormat.CSV));
+        assertNull(service.etag("SELECT CURRENT_TIMESTAMP FROM DUAL", List.of(), ResultFormat.CSV));
+        assertNull(service.etag("SELECT 1 AS X FROM DUAL", List.of(), ResultFormat.CSV));
+        assertNull(service.etag(fromA, List.of(), ResultFormat.CSV));
+        assertNull(service.etag(bookkeeping, List.of(), ResultFormat.CSV));
+        // a literal that looks like a volatile function does not keep a result out of the cache
+        assertNotNull(service.etag("SELECT ID FROM A WHERE 'rand()' <> 'x'", List.of(), ResultFormat.CSV));
+    }
+
+    @Test
+    void typedParametersBindThroughCachedStatements() {
+        // one connection that is never closed, as a pooled connection would be
+        JdbcTemplate h2 = new JdbcTemplate(new SingleConnectionDataSource(newH2DataSource().getUrl(), "sa", "", true));
+        h2.execute("CREATE TABLE T (ID BIGINT, D DATE, NAME VARCHAR(16))");
+        h2.update("INSERT INTO T VALUES (1, DATE '2024-01-31', 'one')");
+        h2.update("INSERT INTO T VALUES (2, DATE '2024-02-29', 'two')");
+        QueryProperties properties = new QueryProperties();
+        properties.getCache().setEnabled(false);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        QueryService service = new QueryService(h2, properties, registry);
+        String sql = "SELECT NAME FROM T WHERE ID = ? AND D = ?";
+
+        assertEquals("NAME\none\n", csv(service, sql, new SqlParameter(null, 1),
+                new SqlParameter(SqlParameter.Type.DATE, "2024-01-31")));
+        assertEquals("NAME\ntwo\n", csv(service, sql, new SqlParameter(SqlParameter.Type.LONG, "2"),
+                new SqlParameter(SqlParameter.Type.DATE, "2024-02-29")));
+        assertEquals("NAME\n", csv(service, sql, new SqlParameter(null, 2), new SqlParameter(SqlParameter.Type.DATE, null)));
+        assertThrows(IllegalArgumentException.class, () -> new SqlParameter(SqlParameter.Type.LONG, "1.5").toJdbcValue());
+
+        assertEquals(2, registry.get("h2sync.query.statements").tag("cache", "hit").functionCounter().count());
+        assertEquals(1, registry.get("h2sync.query.statements").tag("cache", "miss").functionCounter().count());
+    }
+
+    private static String csv(QueryService service, String sql, SqlParameter... params) {
+        List<Object> values = new ArrayList<>();
+        for (SqlParameter param : params) {
+            values.add(param.toJdbcValue());
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.stream(sql, values, ResultFormat.CSV, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String csv(QueryService service, String sql) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.stream(sql, ResultFormat.CSV, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static DriverManagerDataSource newH2DataSource() {
+        DriverManagerDataSource ds = new DriverManagerDataSource();
+        ds.setDriverClassName("org.h2.Driver");
+        ds.setUrl("jdbc:h2:mem:query" + UUID.randomUUID().toString().replace("-", "")
+                + ";MODE=Oracle;DATABASE_TO_UPPER=false;DB_CLOSE_DELAY=-1");
+        ds.setUsername("sa");
+        ds.setPassword("");
+        return ds;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.h2sync.service;
+
+import com.example.h2sync.config.LoaderProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RefreshJobServiceTest {
+
+    @Test
+    void cancelledRefreshJobsStopTheirOracleQueriesAndKeepTheLiveSchema() throws Exception {
+        String schema = "TEST";
+        JdbcTemplate target = new JdbcTemplate(newH2DataSource());
+        DriverManagerDataSource oracleDs = OracleLoaderServiceTest.newOracleStandIn("oraclesrc" + suffix());
+        JdbcTemplate oracle = new JdbcTemplate(oracleDs);
+        OracleLoaderServiceTest.setupOracleStandIn(oracle, schema);
+        // a table whose query spends its time before the first row, and is copied first
+        oracle.execute("CREATE VIEW " + schema + ".SLOW AS SELECT A.X AS ID FROM SYSTEM_RANGE(1, 100000) A, "
+                + "SYSTEM_RANGE(1, 100000) B WHERE A.X + B.X = 0");
+        OracleLoaderServiceTest.registerTable(oracle, schema, "SLOW", 1_000_000, null);
+
+        LoaderProperties properties = new LoaderProperties();
+        properties.setRefreshMode(LoaderProperties.RefreshMode.SHADOW);
+        properties.setTargetSchema("APP");
+        OracleLoaderService loader = new OracleLoaderService(target, oracleDs, schema, 1, 2, 1, "", properties);
+        RefreshJobService jobs = new RefreshJobService(properties);
+
+        RefreshJob cancelled = jobs.submit(loader, "test", loader::runFullRefresh);
+        awaitCopying(cancelled, "SLOW");
+        assertThrows(RefreshJobService.AlreadyRunning.class, () -> jobs.submit(loader, "again", loader::runFullRefresh));
+        assertTrue(jobs.cancel(cancelled.getId()));
+        assertTrue(cancelled.await(30_000), "cancelled refresh did not stop");
+        assertEquals(RefreshJob.State.CANCELLED, cancelled.getState());
+        assertNull(cancelled.getError());
+        assertEquals(LoadProgress.State.CANCELLED, state(cancelled, "SLOW"));
+        assertEquals(LoadProgress.State.CANCELLED, state(cancelled, "EMP"));
+        assertFalse(schemaExists(target, "APP_STAGE"), "the staging schema of a cancelled refresh is dropped");
+        assertNull(loader.getLastReport());
+
+        // shutdown goes through the same cancellation
+        RefreshJob shutdown = jobs.submit(loader, "shutdown", loader::runFullRefresh);
+        awaitCopying(shutdown, "SLOW");
+        jobs.onContextClosed();
+        assertEquals(RefreshJob.State.CANCELLED, shutdown.getState());
+        assertEquals(2, jobs.list().size());
+
+        // the cancellations do not outlive their refreshes
+        oracle.update("DELETE FROM ALL_TABLES WHERE TABLE_NAME = 'SLOW'");
+        RefreshJob done = jobs.run(loader, "complete", loader::runFullRefresh);
+        assertEquals(RefreshJob.State.DONE, done.getState());
+        assertEquals(3, done.getRowsCopied() - rows(done, "DEPT"));
+        assertEquals(3, target.queryForObject("SELECT COUNT(*) FROM \"APP\".\"EMP\"", Integer.class));
+        assertEquals(done, jobs.list().get(0));
+    }
+
+    private static void awaitCopying(RefreshJob job, String table) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (state(job, table) != LoadProgress.State.COPYING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(LoadProgress.State.COPYING, state(job, table), "job state " + job.getState());
+        // let the Oracle query start executing
+        Thread.sleep(100);
+    }
+
+    private static LoadProgress.State state(RefreshJob job, String table) {
+        return job.getTables().stream()
+                .filter(t -> t.getTable().equals(table))
+                .map(LoadProgress.TableProgress::getState)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static long rows(RefreshJob job, String table) {
+        return job.getTables().stream()
+                .filter(t -> t.getTable().equals(table))
+                .mapToLong(LoadProgress.TableProgress::getRowsCopied)
+                .sum();
+    }
+
+    private static boolean schemaExists(JdbcTemplate jdbc, String schema) {
+        Integer count = jdbc.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SCHEMATA WHERE SCHEMA_NAME = ?", Integer.class, schema);
+        return count != null && count > 0;
+    }
+
+    private static DriverManagerDataSource newH2DataSource() {
+        DriverManagerDataSource ds = new DriverManagerDataSource();
+        ds.setDriverClassName("org.h2.Driver");
+        ds.setUrl("jdbc:h2:mem:refresh" + suffix() + ";MODE=Oracle;DATABASE_TO_UPPER=false;DB_CLOSE_DELAY=-1");
+        ds.setUsername("sa");
+        ds.setPassword("");
+        return ds;
+    }
+
+    private static String suffix() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+}